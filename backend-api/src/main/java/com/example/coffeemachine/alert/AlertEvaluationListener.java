@@ -0,0 +1,61 @@
+package com.example.coffeemachine.alert;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.event.MachineEventLanes;
+import com.example.coffeemachine.event.MachineStateChanged;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Evaluates alerts for committed machine updates, off the ingestion transaction.
+ * Events are handed to per-machine lanes, so one machine's updates are evaluated in
+ * the order they committed, each in its own transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlertEvaluationListener {
+
+    private final AlertEvaluatorService alertEvaluatorService;
+    private final PlatformTransactionManager transactionManager;
+    private final AppProperties appProperties;
+
+    private MachineEventLanes lanes;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void start() {
+        AppProperties.Events events = appProperties.getEvents();
+        int laneCount = !events.isAsync() ? 0
+                : events.getLanes() > 0 ? events.getLanes() : Runtime.getRuntime().availableProcessors();
+        lanes = new MachineEventLanes("alert-eval", laneCount, events.getQueueCapacity());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // After commit the publisher's transaction is still bound to the thread
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.shutdown();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        lanes.execute(event.machineId(), () -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> alertEvaluatorService.evaluate(event));
+            } catch (RuntimeException e) {
+                log.error("Failed to evaluate alerts for machine {}", event.machineId(), e);
+            }
+        });
+    }
+}
@@ -1,18 +1,35 @@
 package com.example.coffeemachine.alert;
 
+import com.example.coffeemachine.config.AppProperties;
 import com.example.coffeemachine.domain.*;
+import com.example.coffeemachine.event.AlertStateChanged;
+import com.example.coffeemachine.event.MachineStateChanged;
 import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.service.MachineLiveState;
+import com.example.coffeemachine.service.MachineStateStore;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
  * Service for evaluating machine conditions and generating alerts.
- * Implements threshold-based alerting with debouncing to prevent spam.
+ * Implements threshold-based alerting with debouncing to prevent spam:
+ * low-level alerts open only after the condition has held for
+ * {@code app.alerts.debounce-interval-ms} and resolve only once the level has
+ * recovered by {@code app.alerts.hysteresis-margin} points above the threshold.
  */
 @Service
 @RequiredArgsConstructor
@@ -22,33 +39,75 @@ public class AlertEvaluatorService {
 
     private final AlertRepository alertRepository;
     private final AlertNotificationService alertNotificationService;
+    private final OpenAlertIndex openAlertIndex;
+    private final AlertThresholdRules thresholdRules;
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final MachineStateStore machineStateStore;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AppProperties appProperties;
     
-    // Alert thresholds (configurable via properties in future)
-    private static final int LOW_WATER_THRESHOLD = 20;
-    private static final int LOW_MILK_THRESHOLD = 20;
-    private static final int LOW_BEANS_THRESHOLD = 20;
     private static final double MIN_TEMPERATURE = 85.0;
     private static final double MAX_TEMPERATURE = 100.0;
     
+    /** Low-level conditions waiting out the debounce interval, keyed like the open-alert index. */
+    private HashedTimingWheel<PendingAlert> pendingAlerts;
+    
+    private record PendingAlert(Long machineId, AlertType type) {
+    }
+    
+    @PostConstruct
+    void initPendingAlerts() {
+        AppProperties.Alerts alerts = appProperties.getAlerts();
+        pendingAlerts = new HashedTimingWheel<>(alerts.getDebounceTickMs(), alerts.getDebounceWheelSize(),
+                System.currentTimeMillis());
+    }
+    
+    /**
+     * Runs the alert checks affected by a committed machine update. Status and
+     * temperature are evaluated whenever they were reported; a reported level is
+     * evaluated only when it crossed its threshold or resolve level, since otherwise
+     * no alert can open, resolve or stop pending. A level that stays below its
+     * threshold only makes sure its alert is pending.
+     *
+     * @param event the machine state change
+     */
+    public void evaluate(MachineStateChanged event) {
+        MachineStateChanged.Readings reported = event.reported();
+        MachineStateChanged.Readings previous = event.previous();
+        CoffeeMachine machine = event.toMachine();
+        if (reported.status() != null) {
+            evaluateStatusAlerts(machine, previous.status());
+        }
+        if (reported.temperature() != null) {
+            evaluateTemperatureAlerts(machine);
+        }
+        evaluateLevel(machine, AlertType.LOW_WATER, previous.waterLevel(), reported.waterLevel());
+        evaluateLevel(machine, AlertType.LOW_MILK, previous.milkLevel(), reported.milkLevel());
+        evaluateLevel(machine, AlertType.LOW_BEANS, previous.beansLevel(), reported.beansLevel());
+    }
+    
+    /**
+     * Evaluates a reported level that crossed its threshold or resolve level. A level
+     * that stays below the threshold makes sure its alert is pending: the timer armed
+     * at the crossing may have been lost in a restart, or armed on another node.
+     */
+    private void evaluateLevel(CoffeeMachine machine, AlertType type, Integer previousLevel, Integer reportedLevel) {
+        Long facilityId = facilityIdOf(machine);
+        if (crossesLevelThreshold(machine.getId(), facilityId, type, previousLevel, reportedLevel)) {
+            evaluateLevelAlerts(machine, type, reportedLevel);
+        } else if (reportedLevel != null && reportedLevel < thresholdRules.levelThreshold(machine.getId(), facilityId, type)) {
+            armPendingAlert(machine.getId(), type);
+        }
+    }
+    
     /**
      * Evaluates water level and creates/resolves alerts as needed.
      *
      * @param machine the coffee machine to evaluate
      */
     public void evaluateWaterLevelAlerts(CoffeeMachine machine) {
-        if (machine.getWaterLevel() == null) {
-            return;
-        }
-        
-        if (machine.getWaterLevel() < LOW_WATER_THRESHOLD) {
-            createAlertIfNotExists(machine, AlertType.LOW_WATER, 
-                    String.format("Water level is low: %d%% (threshold: %d%%)", 
-                            machine.getWaterLevel(), LOW_WATER_THRESHOLD),
-                    Severity.WARNING, LOW_WATER_THRESHOLD);
-        } else {
-            // Resolve existing low water alerts if water level is above threshold
-            resolveAlertsIfExists(machine, AlertType.LOW_WATER);
-        }
+        evaluateLevelAlerts(machine, AlertType.LOW_WATER, machine.getWaterLevel());
     }
     
     /**
@@ -57,18 +116,7 @@ public class AlertEvaluatorService {
      * @param machine the coffee machine to evaluate
      */
     public void evaluateMilkLevelAlerts(CoffeeMachine machine) {
-        if (machine.getMilkLevel() == null) {
-            return;
-        }
-        
-        if (machine.getMilkLevel() < LOW_MILK_THRESHOLD) {
-            createAlertIfNotExists(machine, AlertType.LOW_MILK,
-                    String.format("Milk level is low: %d%% (threshold: %d%%)", 
-                            machine.getMilkLevel(), LOW_MILK_THRESHOLD),
-                    Severity.WARNING, LOW_MILK_THRESHOLD);
-        } else {
-            resolveAlertsIfExists(machine, AlertType.LOW_MILK);
-        }
+        evaluateLevelAlerts(machine, AlertType.LOW_MILK, machine.getMilkLevel());
     }
     
     /**
@@ -77,18 +125,56 @@ public class AlertEvaluatorService {
      * @param machine the coffee machine to evaluate
      */
     public void evaluateBeansLevelAlerts(CoffeeMachine machine) {
-        if (machine.getBeansLevel() == null) {
+        evaluateLevelAlerts(machine, AlertType.LOW_BEANS, machine.getBeansLevel());
+    }
+    
+    /**
+     * Opens a low-level alert once the level has stayed below the threshold for the
+     * debounce interval, and resolves it only once the level is back above the
+     * threshold by the hysteresis margin. A level between the two leaves an open
+     * alert open but cancels a pending one.
+     */
+    private void evaluateLevelAlerts(CoffeeMachine machine, AlertType type, Integer level) {
+        if (level == null) {
             return;
         }
         
-        if (machine.getBeansLevel() < LOW_BEANS_THRESHOLD) {
-            createAlertIfNotExists(machine, AlertType.LOW_BEANS,
-                    String.format("Beans level is low: %d%% (threshold: %d%%)", 
-                            machine.getBeansLevel(), LOW_BEANS_THRESHOLD),
-                    Severity.WARNING, LOW_BEANS_THRESHOLD);
+        int threshold = thresholdRules.levelThreshold(machine.getId(), facilityIdOf(machine), type);
+        if (level < threshold) {
+            openAlertAfterDebounce(machine, type, level, threshold);
         } else {
-            resolveAlertsIfExists(machine, AlertType.LOW_BEANS);
+            pendingAlerts.cancel(OpenAlertIndex.key(machine.getId(), type));
+            if (level >= threshold + appProperties.getAlerts().getHysteresisMargin()) {
+                resolveAlertsIfExists(machine, type);
+            }
+        }
+    }
+    
+    /**
+     * Checks whether a level change moves across the low-level threshold or the
+     * resolve level (threshold plus hysteresis margin) of an alert type in either
+     * direction, i.e. whether evaluating it could open, cancel or resolve an alert.
+     * An unknown previous level always counts as a crossing.
+     *
+     * @param machineId the machine ID
+     * @param facilityId the machine's facility ID, or null if not known
+     * @param type LOW_WATER, LOW_MILK or LOW_BEANS
+     * @param previousLevel the level before the update, may be null
+     * @param newLevel the level after the update
+     * @return true if the alert state may change
+     */
+    public boolean crossesLevelThreshold(Long machineId, Long facilityId, AlertType type,
+                                         Integer previousLevel, Integer newLevel) {
+        if (newLevel == null) {
+            return false;
+        }
+        if (previousLevel == null) {
+            return true;
         }
+        int threshold = thresholdRules.levelThreshold(machineId, facilityId, type);
+        int resolveLevel = threshold + appProperties.getAlerts().getHysteresisMargin();
+        return (previousLevel < threshold) != (newLevel < threshold)
+                || (previousLevel < resolveLevel) != (newLevel < resolveLevel);
     }
     
     /**
@@ -111,7 +197,7 @@ public class AlertEvaluatorService {
             Severity severity = (temp < MIN_TEMPERATURE - 10 || temp > MAX_TEMPERATURE + 10) ? 
                     Severity.CRITICAL : Severity.WARNING;
             
-            createAlertIfNotExists(machine, AlertType.MALFUNCTION, message, severity, (int) temp);
+            createAlertUnlessIndexedOpen(machine, AlertType.MALFUNCTION, message, severity, (int) temp);
         }
         // Note: We don't auto-resolve temperature alerts as they might indicate equipment issues
     }
@@ -124,7 +210,7 @@ public class AlertEvaluatorService {
      */
     public void evaluateStatusAlerts(CoffeeMachine machine, MachineStatus previousStatus) {
         if (machine.getStatus() == MachineStatus.ERROR) {
-            createAlertIfNotExists(machine, AlertType.MALFUNCTION,
+            createAlertUnlessIndexedOpen(machine, AlertType.MALFUNCTION,
                     String.format("Machine is in ERROR state (was: %s)", 
                             previousStatus != null ? previousStatus : "UNKNOWN"),
                     Severity.CRITICAL, 0);
@@ -137,8 +223,118 @@ public class AlertEvaluatorService {
     }
     
     /**
-     * Creates an alert if one doesn't already exist for the same machine and type.
-     * Implements debouncing to prevent alert spam.
+     * Schedules a low-level alert to open after {@code app.alerts.debounce-interval-ms}
+     * unless the condition clears first; with a zero interval the alert opens immediately.
+     */
+    private void openAlertAfterDebounce(CoffeeMachine machine, AlertType type, int level, int threshold) {
+        if (appProperties.getAlerts().getDebounceIntervalMs() <= 0) {
+            createAlertIfNotExists(machine, type, lowLevelMessage(type, level, threshold), Severity.WARNING, threshold);
+            return;
+        }
+        armPendingAlert(machine.getId(), type);
+    }
+    
+    /**
+     * Starts the debounce timer of a low-level alert unless it is already pending or
+     * the alert is known to be open. A pending timer keeps its deadline.
+     */
+    private void armPendingAlert(Long machineId, AlertType type) {
+        long debounceMs = appProperties.getAlerts().getDebounceIntervalMs();
+        if (debounceMs <= 0 || (openAlertIndex.isEnabled() && openAlertIndex.isOpen(machineId, type))) {
+            return;
+        }
+        if (pendingAlerts.schedule(OpenAlertIndex.key(machineId, type), debounceMs, new PendingAlert(machineId, type))) {
+            log.debug("{} alert for machine {} pending for {}ms", type, machineId, debounceMs);
+        }
+    }
+    
+    /**
+     * Re-arms the debounce timers lost in a restart: every machine whose level is
+     * below its threshold gets a pending alert, which opens only if the level is still
+     * low and no alert is open when it comes due.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rearmPendingAlerts() {
+        if (appProperties.getAlerts().getDebounceIntervalMs() <= 0) {
+            return;
+        }
+        int armed = 0;
+        for (CoffeeMachineRepository.MachineLevels machine : coffeeMachineRepository.findActiveMachineLevels()) {
+            armed += rearmIfLow(machine, AlertType.LOW_WATER, machine.getWaterLevel());
+            armed += rearmIfLow(machine, AlertType.LOW_MILK, machine.getMilkLevel());
+            armed += rearmIfLow(machine, AlertType.LOW_BEANS, machine.getBeansLevel());
+        }
+        log.info("Re-armed {} pending low-level alerts", armed);
+    }
+    
+    private int rearmIfLow(CoffeeMachineRepository.MachineLevels machine, AlertType type, Integer level) {
+        if (level == null || level >= thresholdRules.levelThreshold(machine.getId(), machine.getFacilityId(), type)) {
+            return 0;
+        }
+        return pendingAlerts.schedule(OpenAlertIndex.key(machine.getId(), type),
+                appProperties.getAlerts().getDebounceIntervalMs(), new PendingAlert(machine.getId(), type)) ? 1 : 0;
+    }
+    
+    /**
+     * Opens the alerts whose condition has held for the whole debounce interval.
+     * Each pending alert re-reads the machine's current level in its own transaction,
+     * since the level may have recovered on another node, and opens only if it is
+     * still below the threshold.
+     *
+     * @return number of pending alerts that came due
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.debounce-tick-ms:100}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int openDueAlerts() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return pendingAlerts.advance(System.currentTimeMillis(), (key, pending) -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> currentMachine(pending.machineId())
+                        .ifPresent(machine -> openIfStillLow(machine, pending.type())));
+            } catch (RuntimeException e) {
+                log.error("Failed to open debounced {} alert for machine {}", pending.type(), pending.machineId(), e);
+            }
+        });
+    }
+    
+    private void openIfStillLow(CoffeeMachine machine, AlertType type) {
+        Integer level = levelOf(machine, type);
+        int threshold = thresholdRules.levelThreshold(machine.getId(), facilityIdOf(machine), type);
+        if (level != null && level < threshold) {
+            createAlertIfNotExists(machine, type, lowLevelMessage(type, level, threshold), Severity.WARNING, threshold);
+        } else {
+            log.debug("{} for machine {} recovered before its alert came due", type, machine.getId());
+        }
+    }
+    
+    /**
+     * Reads a machine's current state, from the write-behind store when it is enabled
+     * since the database lags it.
+     */
+    private Optional<CoffeeMachine> currentMachine(Long machineId) {
+        return machineStateStore.isEnabled()
+                ? machineStateStore.get(machineId).map(MachineLiveState::toMachine)
+                : coffeeMachineRepository.findActiveById(machineId);
+    }
+    
+    /**
+     * Creates an alert unless the open-alert index already has one for the machine and
+     * type. Only for conditions evaluated again on every reading: a stale index entry
+     * then delays the alert by at most one index sync, whereas a decision made once,
+     * on a threshold crossing, must check the database.
+     */
+    private void createAlertUnlessIndexedOpen(CoffeeMachine machine, AlertType type, String message,
+                                              Severity severity, Integer threshold) {
+        if (openAlertIndex.isEnabled() && openAlertIndex.isOpen(machine.getId(), type)) {
+            log.debug("Alert already open for machine {} and type {}, skipping", machine.getId(), type);
+            return;
+        }
+        createAlertIfNotExists(machine, type, message, severity, threshold);
+    }
+    
+    /**
+     * Creates an alert if one doesn't already exist for the same machine and type,
+     * checking the database.
      *
      * @param machine the machine
      * @param type the alert type
@@ -148,37 +344,67 @@ public class AlertEvaluatorService {
      */
     private void createAlertIfNotExists(CoffeeMachine machine, AlertType type, String message, 
                                       Severity severity, Integer threshold) {
-        
         // Check if there's already an unresolved alert of this type
         Optional<Alert> existingAlert = alertRepository
                 .findMostRecentUnresolvedByMachineIdAndType(machine.getId(), type);
         
         if (existingAlert.isEmpty()) {
-            Alert alert = new Alert(machine, type, severity, message, threshold);
+            // The machine may be a detached view built from a state change event
+            Alert alert = new Alert(coffeeMachineRepository.getReferenceById(machine.getId()),
+                    type, severity, message, threshold);
             
             Alert saved = alertRepository.save(alert);
             log.warn("Created alert for machine {}: {} - {}", machine.getId(), type, message);
+            openAlertIndex.opened(machine.getId(), type, saved.getId());
+            eventPublisher.publishEvent(new AlertStateChanged(saved.getId(), machine.getId(),
+                    facilityIdOf(machine), type, severity,
+                    AlertStateChanged.Change.OPENED));
             
             // Send notification
             alertNotificationService.sendAlertNotification(saved);
         } else {
             log.debug("Alert already exists for machine {} and type {}, skipping", machine.getId(), type);
+            // Possibly created by another node since the last index sync
+            openAlertIndex.opened(machine.getId(), type, existingAlert.get().getId());
         }
     }
     
     /**
      * Resolves existing unresolved alerts of the specified type for the machine.
+     * Always checks the database rather than the open-alert index: resolving is
+     * decided once, on a threshold crossing or a status transition, and is not retried,
+     * so an alert opened by another node since the last index sync must not be missed.
      *
      * @param machine the machine
      * @param type the alert type to resolve
      */
     private void resolveAlertsIfExists(CoffeeMachine machine, AlertType type) {
-        int resolvedCount = alertRepository.resolveAlertsByMachineIdAndType(machine.getId(), type);
+        int resolvedCount = resolveOpenAlerts(machine.getId(), type);
         if (resolvedCount > 0) {
             log.info("Resolved {} {} alerts for machine {}", resolvedCount, type, machine.getId());
         }
     }
     
+    /**
+     * Resolves every open alert of a type for a machine, one by one, publishing an
+     * {@link AlertStateChanged} for each alert this call actually resolved.
+     *
+     * @param machineId the machine ID
+     * @param type the alert type to resolve
+     * @return number of alerts resolved
+     */
+    public int resolveOpenAlerts(Long machineId, AlertType type) {
+        int resolvedCount = 0;
+        for (AlertRepository.CountedAlert alert : alertRepository.findOpenAlertsByMachineIdAndType(machineId, type)) {
+            if (alertRepository.resolveOpenAlertById(alert.getId()) > 0) {
+                eventPublisher.publishEvent(AlertStateChanged.resolved(alert));
+                resolvedCount++;
+            }
+        }
+        openAlertIndex.resolved(machineId, type);
+        return resolvedCount;
+    }
+    
     /**
      * Manually resolves a specific alert by ID.
      *
@@ -186,12 +412,17 @@ public class AlertEvaluatorService {
      * @return true if alert was resolved, false if not found
      */
     public boolean resolveAlert(Long alertId) {
-        int resolved = alertRepository.resolveAlertById(alertId);
-        if (resolved > 0) {
-            log.info("Manually resolved alert {}", alertId);
-            return true;
+        Optional<AlertRepository.CountedAlert> open = alertRepository.findOpenAlertById(alertId);
+        if (open.isPresent()) {
+            if (alertRepository.resolveOpenAlertById(alertId) > 0) {
+                eventPublisher.publishEvent(AlertStateChanged.resolved(open.get()));
+            }
+        } else if (alertRepository.resolveAlertById(alertId) == 0) {
+            return false;
         }
-        return false;
+        openAlertIndex.removed(alertId);
+        log.info("Manually resolved alert {}", alertId);
+        return true;
     }
     
     /**
@@ -200,12 +431,36 @@ public class AlertEvaluatorService {
      * @return alert thresholds configuration
      */
     public AlertThresholds getThresholds() {
+        AppProperties.Alerts.Thresholds thresholds = appProperties.getAlerts().getThresholds();
         return AlertThresholds.builder()
-                .lowWaterThreshold(LOW_WATER_THRESHOLD)
-                .lowMilkThreshold(LOW_MILK_THRESHOLD)
-                .lowBeansThreshold(LOW_BEANS_THRESHOLD)
+                .lowWaterThreshold(thresholds.getWaterLevel())
+                .lowMilkThreshold(thresholds.getMilkLevel())
+                .lowBeansThreshold(thresholds.getBeansLevel())
                 .minTemperature(MIN_TEMPERATURE)
                 .maxTemperature(MAX_TEMPERATURE)
                 .build();
     }
-}
\ No newline at end of file
+
+    private static Long facilityIdOf(CoffeeMachine machine) {
+        return machine.getFacility() != null ? machine.getFacility().getId() : null;
+    }
+
+    private static Integer levelOf(CoffeeMachine machine, AlertType type) {
+        return switch (type) {
+            case LOW_WATER -> machine.getWaterLevel();
+            case LOW_MILK -> machine.getMilkLevel();
+            case LOW_BEANS -> machine.getBeansLevel();
+            default -> throw new IllegalArgumentException("Not a level alert type: " + type);
+        };
+    }
+
+    private static String lowLevelMessage(AlertType type, int level, int threshold) {
+        String label = switch (type) {
+            case LOW_WATER -> "Water";
+            case LOW_MILK -> "Milk";
+            case LOW_BEANS -> "Beans";
+            default -> throw new IllegalArgumentException("Not a level alert type: " + type);
+        };
+        return String.format("%s level is low: %d%% (threshold: %d%%)", label, level, threshold);
+    }
+}
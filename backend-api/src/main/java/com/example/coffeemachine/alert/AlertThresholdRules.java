@@ -0,0 +1,205 @@
+package com.example.coffeemachine.alert;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.AlertThresholdRule;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.repository.AlertThresholdRuleRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled low-level alert thresholds for every machine.
+ *
+ * <p>Facility and machine {@link AlertThresholdRule}s are merged over the global
+ * defaults from {@code app.alerts.thresholds} into one {@code int[]} per machine,
+ * indexed by the ordinal of LOW_WATER, LOW_MILK and LOW_BEANS, so a threshold lookup
+ * is a map get and an array read. Each compilation builds a new snapshot that
+ * replaces the previous one in a single write; readers never see a half-built one.
+ *
+ * <p>Rule changes made through this node recompile immediately. Changes made by other
+ * nodes are detected every {@code app.alerts.rules.refresh-interval-ms} by comparing
+ * the rule count and latest modification time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlertThresholdRules {
+
+    private static final int INHERIT = -1;
+    private static final int LEVEL_TYPES = 3;
+
+    private final AlertThresholdRuleRepository ruleRepository;
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final AppProperties appProperties;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Rules and per-machine thresholds of one compilation. Machines created after
+     * it are compiled on first lookup and added to {@code machines}.
+     */
+    private record Snapshot(int[] defaults, Map<Long, int[]> facilityRules, Map<Long, int[]> machineRules,
+                            Map<Long, int[]> machines, long ruleCount, LocalDateTime lastModified) {
+    }
+
+    /**
+     * Gets the threshold a machine's level is compared against.
+     *
+     * @param machineId the machine ID
+     * @param facilityId the machine's facility ID if known, or null to look it up
+     * @param type LOW_WATER, LOW_MILK or LOW_BEANS
+     * @return the effective threshold in percent
+     */
+    public int levelThreshold(Long machineId, Long facilityId, AlertType type) {
+        return thresholds(machineId, facilityId)[levelIndex(type)];
+    }
+
+    /**
+     * Gets all effective low-level thresholds of a machine.
+     *
+     * @param machineId the machine ID
+     * @return thresholds indexed by the ordinal of LOW_WATER, LOW_MILK and LOW_BEANS; not to be modified
+     */
+    public int[] thresholds(Long machineId) {
+        return thresholds(machineId, null);
+    }
+
+    /**
+     * Gets all effective low-level thresholds of a machine. A machine missing from the
+     * snapshot is compiled on the spot; passing its facility saves the lookup query,
+     * which keeps readings for newly created machines query-free.
+     *
+     * @param machineId the machine ID
+     * @param facilityId the machine's facility ID if known, or null to look it up
+     * @return thresholds indexed by the ordinal of LOW_WATER, LOW_MILK and LOW_BEANS; not to be modified
+     */
+    public int[] thresholds(Long machineId, Long facilityId) {
+        Snapshot current = current();
+        int[] compiled = current.machines().get(machineId);
+        if (compiled == null) {
+            if (facilityId == null) {
+                facilityId = coffeeMachineRepository.findFacilityIdById(machineId).orElse(null);
+            }
+            compiled = compile(current, facilityId, machineId);
+            current.machines().put(machineId, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Rebuilds every machine's thresholds from the rule table and swaps them in.
+     */
+    public synchronized void recompile() {
+        long ruleCount = ruleRepository.count();
+        LocalDateTime lastModified = ruleRepository.findLastModified();
+        List<AlertThresholdRule> rules = ruleRepository.findAllActive();
+
+        AppProperties.Alerts.Thresholds defaults = appProperties.getAlerts().getThresholds();
+        int[] defaultLevels = {defaults.getWaterLevel(), defaults.getMilkLevel(), defaults.getBeansLevel()};
+        Map<Long, int[]> facilityRules = new HashMap<>();
+        Map<Long, int[]> machineRules = new HashMap<>();
+        for (AlertThresholdRule rule : rules) {
+            int[] levels = {orInherit(rule.getWaterLevel()), orInherit(rule.getMilkLevel()), orInherit(rule.getBeansLevel())};
+            if (rule.getMachineId() != null) {
+                machineRules.put(rule.getMachineId(), levels);
+            } else {
+                facilityRules.put(rule.getFacilityId(), levels);
+            }
+        }
+
+        Snapshot compiled = new Snapshot(defaultLevels, facilityRules, machineRules, new ConcurrentHashMap<>(),
+                ruleCount, lastModified);
+        for (var machine : coffeeMachineRepository.findActiveMachineFacilities()) {
+            compiled.machines().put(machine.getId(), compile(compiled, machine.getFacilityId(), machine.getId()));
+        }
+        snapshot = compiled;
+        log.info("Compiled alert thresholds for {} machines from {} rules", compiled.machines().size(), rules.size());
+    }
+
+    /**
+     * Recompiles once the current transaction commits, so the new snapshot reads the
+     * committed rules. Recompiles immediately when there is no transaction.
+     */
+    public void recompileAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recompile();
+                }
+            });
+        } else {
+            recompile();
+        }
+    }
+
+    /**
+     * Recompiles when the rule table has changed since the last compilation,
+     * which picks up rule changes made by other nodes.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.rules.refresh-interval-ms:10000}")
+    public void refreshIfChanged() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        if (current.ruleCount() != ruleRepository.count()
+                || !Objects.equals(current.lastModified(), ruleRepository.findLastModified())) {
+            recompile();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    recompile();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static int[] compile(Snapshot snapshot, Long facilityId, Long machineId) {
+        int[] levels = snapshot.defaults().clone();
+        overlay(levels, facilityId != null ? snapshot.facilityRules().get(facilityId) : null);
+        overlay(levels, snapshot.machineRules().get(machineId));
+        return levels;
+    }
+
+    private static void overlay(int[] levels, int[] rule) {
+        if (rule == null) {
+            return;
+        }
+        for (int i = 0; i < LEVEL_TYPES; i++) {
+            if (rule[i] != INHERIT) {
+                levels[i] = rule[i];
+            }
+        }
+    }
+
+    private static int orInherit(Integer value) {
+        return value != null ? value : INHERIT;
+    }
+
+    private static int levelIndex(AlertType type) {
+        return switch (type) {
+            case LOW_WATER, LOW_MILK, LOW_BEANS -> type.ordinal();
+            default -> throw new IllegalArgumentException("Not a level alert type: " + type);
+        };
+    }
+}
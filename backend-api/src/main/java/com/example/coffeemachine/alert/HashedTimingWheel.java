@@ -0,0 +1,163 @@
+package com.example.coffeemachine.alert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Hashed timing wheel holding one pending timer per {@code long} key.
+ *
+ * <p>Timers are hashed into a fixed ring of buckets by their deadline tick and kept in
+ * doubly linked lists, so scheduling and cancelling are O(1) and expiring costs one
+ * bucket per tick. Delays longer than one turn of the wheel are handled by counting
+ * remaining rounds. The wheel owns no threads: the caller drives it by calling
+ * {@link #advance} periodically, and timers fire at most one tick late.
+ *
+ * @param <T> payload carried by each timer
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMs;
+    private final int mask;
+    private final Timer<T>[] buckets;
+    private final Map<Long, Timer<T>> timers = new HashMap<>();
+    private final long startMs;
+    private long currentTick;
+
+    /**
+     * @param tickMs duration of one tick
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param startMs the current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new Timer[size];
+        this.startMs = startMs;
+    }
+
+    /**
+     * Starts a timer for a key, or replaces the payload of the timer already pending
+     * for it. A pending timer keeps its original deadline.
+     *
+     * @param key the timer key
+     * @param delayMs time until the timer fires
+     * @param payload the payload handed back on expiry
+     * @return true if a new timer was started
+     */
+    public synchronized boolean schedule(long key, long delayMs, T payload) {
+        Timer<T> existing = timers.get(key);
+        if (existing != null) {
+            existing.payload = payload;
+            return false;
+        }
+        // Round up so a timer never fires before its delay has passed
+        long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+        long deadline = currentTick + ticks;
+        Timer<T> timer = new Timer<>(key, payload, (ticks - 1) / buckets.length);
+        timer.bucket = (int) (deadline & mask);
+        link(timer);
+        timers.put(key, timer);
+        return true;
+    }
+
+    /**
+     * Cancels the pending timer for a key.
+     *
+     * @return true if a timer was pending
+     */
+    public synchronized boolean cancel(long key) {
+        Timer<T> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    public synchronized boolean isPending(long key) {
+        return timers.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Moves the wheel forward to the given time and hands every expired timer to the
+     * callback. The callback runs outside the wheel's lock and may schedule or cancel timers.
+     *
+     * @param nowMs the current time in milliseconds
+     * @param expired receives the key and payload of each expired timer
+     * @return number of expired timers
+     */
+    public int advance(long nowMs, BiConsumer<Long, T> expired) {
+        List<Timer<T>> fired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (nowMs - startMs) / tickMs;
+            while (currentTick < targetTick) {
+                currentTick++;
+                Timer<T> timer = buckets[(int) (currentTick & mask)];
+                while (timer != null) {
+                    Timer<T> next = timer.next;
+                    if (timer.rounds == 0) {
+                        unlink(timer);
+                        timers.remove(timer.key);
+                        fired.add(timer);
+                    } else {
+                        timer.rounds--;
+                    }
+                    timer = next;
+                }
+            }
+        }
+        for (Timer<T> timer : fired) {
+            expired.accept(timer.key, timer.payload);
+        }
+        return fired.size();
+    }
+
+    private void link(Timer<T> timer) {
+        Timer<T> head = buckets[timer.bucket];
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        buckets[timer.bucket] = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    private static final class Timer<T> {
+        private final long key;
+        private T payload;
+        private long rounds;
+        private int bucket;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(long key, T payload, long rounds) {
+            this.key = key;
+            this.payload = payload;
+            this.rounds = rounds;
+        }
+    }
+}
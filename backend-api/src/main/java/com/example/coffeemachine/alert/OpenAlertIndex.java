@@ -0,0 +1,167 @@
+package com.example.coffeemachine.alert;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.repository.AlertRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of open (active, unresolved) alerts keyed by machine and alert type.
+ *
+ * <p>When {@code app.alerts.open-index.enabled} is set, {@link AlertEvaluatorService}
+ * asks this index whether an alert is already open instead of querying the alert
+ * table for the checks it repeats on every reading (a machine in ERROR, an
+ * out-of-range temperature), so such readings cause no alert queries. The index is
+ * warmed from the database once the application is ready and kept in sync on every
+ * create and resolve made through this node; local changes are applied after their
+ * transaction commits.
+ *
+ * <p>Alerts changed by other backend nodes are picked up by polling the alert table
+ * for rows modified since the last sync, every {@code app.alerts.open-index.sync-interval-ms}.
+ * Until then an entry can be stale. For the repeated checks that only delays an alert
+ * by one sync interval, since the next reading after the sync checks again. Decisions
+ * made once, on a level threshold crossing or a status transition, are not repeated,
+ * so the evaluator takes them from the database and never from this index.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OpenAlertIndex {
+
+    private static final int TYPE_BITS = 3;
+
+    private final AlertRepository alertRepository;
+    private final AppProperties appProperties;
+
+    /** Packed (machineId, type) key to the ID of the open alert. */
+    private final Map<Long, Long> openAlerts = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile LocalDateTime syncedUpTo;
+
+    /**
+     * @return true if the index is enabled and has been warmed, i.e. its answers can be used
+     */
+    public boolean isEnabled() {
+        return ready && appProperties.getAlerts().getOpenIndex().isEnabled();
+    }
+
+    /**
+     * Checks whether a machine has an open alert of the given type.
+     */
+    public boolean isOpen(Long machineId, AlertType type) {
+        return openAlerts.containsKey(key(machineId, type));
+    }
+
+    /**
+     * Records a newly created alert once the current transaction commits.
+     */
+    public void opened(Long machineId, AlertType type, Long alertId) {
+        afterCommit(() -> openAlerts.put(key(machineId, type), alertId));
+    }
+
+    /**
+     * Records that every alert of the given type was resolved for a machine, once the
+     * current transaction commits.
+     */
+    public void resolved(Long machineId, AlertType type) {
+        afterCommit(() -> openAlerts.remove(key(machineId, type)));
+    }
+
+    /**
+     * Forgets a single alert that was resolved or deleted by ID, once the current
+     * transaction commits. This scans the index and is meant for manual operations only.
+     */
+    public void removed(Long alertId) {
+        afterCommit(() -> openAlerts.values().removeIf(alertId::equals));
+    }
+
+    /**
+     * Loads every open alert from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!appProperties.getAlerts().getOpenIndex().isEnabled()) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<AlertRepository.AlertKey> keys = alertRepository.findOpenAlertKeys();
+        openAlerts.clear();
+        for (AlertRepository.AlertKey alert : keys) {
+            openAlerts.put(key(alert.getMachineId(), alert.getType()), alert.getId());
+        }
+        syncedUpTo = startedAt;
+        ready = true;
+        log.info("Open alert index warmed with {} alerts", keys.size());
+    }
+
+    /**
+     * Applies alert changes made since the last sync, including those made by other nodes.
+     *
+     * @return number of changed alerts applied
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.open-index.sync-interval-ms:5000}")
+    public int sync() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        AppProperties.Alerts.OpenIndex config = appProperties.getAlerts().getOpenIndex();
+        // Re-read an overlap window to cover clock skew between nodes and commits that
+        // landed after the previous sync read past them; applying a change twice is harmless.
+        LocalDateTime since = syncedUpTo.minusNanos(config.getSyncOverlapMs() * 1_000_000L);
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<AlertRepository.AlertKey> changes = alertRepository.findAlertKeysChangedSince(since);
+        for (AlertRepository.AlertKey alert : changes) {
+            long key = key(alert.getMachineId(), alert.getType());
+            if (Boolean.TRUE.equals(alert.getActive()) && !Boolean.TRUE.equals(alert.getResolved())) {
+                openAlerts.put(key, alert.getId());
+            } else {
+                openAlerts.remove(key, alert.getId());
+            }
+        }
+        syncedUpTo = startedAt;
+        if (!changes.isEmpty()) {
+            log.debug("Synced {} alert changes into the open alert index", changes.size());
+        }
+        return changes.size();
+    }
+
+    /**
+     * @return number of open alerts in the index
+     */
+    public int size() {
+        return openAlerts.size();
+    }
+
+    /**
+     * Packs a machine ID and alert type into one key.
+     */
+    static long key(Long machineId, AlertType type) {
+        return (machineId << TYPE_BITS) | type.ordinal();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
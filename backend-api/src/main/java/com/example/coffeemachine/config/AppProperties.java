@@ -18,6 +18,11 @@ public class AppProperties {
     private Jwt jwt = new Jwt();
     private Alerts alerts = new Alerts();
     private Dashboard dashboard = new Dashboard();
+    private Ingestion ingestion = new Ingestion();
+    private StateStore stateStore = new StateStore();
+    private Events events = new Events();
+    private UsageWriter usageWriter = new UsageWriter();
+    private MachineCache machineCache = new MachineCache();
 
     @Data
     public static class Jwt {
@@ -29,13 +34,30 @@ public class AppProperties {
     @Data
     public static class Alerts {
         private long debounceIntervalMs;
+        private long debounceTickMs = 100;
+        private int debounceWheelSize = 512;
+        private int hysteresisMargin = 5;
         private Thresholds thresholds = new Thresholds();
+        private OpenIndex openIndex = new OpenIndex();
+        private Rules rules = new Rules();
 
         @Data
         public static class Thresholds {
-            private int waterLevel;
-            private int milkLevel;
-            private int beansLevel;
+            private int waterLevel = 20;
+            private int milkLevel = 20;
+            private int beansLevel = 20;
+        }
+
+        @Data
+        public static class OpenIndex {
+            private boolean enabled = true;
+            private long syncIntervalMs = 5000;
+            private long syncOverlapMs = 5000;
+        }
+
+        @Data
+        public static class Rules {
+            private long refreshIntervalMs = 10000;
         }
     }
 
@@ -43,5 +65,75 @@ public class AppProperties {
     public static class Dashboard {
         private long facilityRefreshMs;
         private long adminRefreshMs;
+        private Counters counters = new Counters();
+        private Stream stream = new Stream();
+
+        @Data
+        public static class Counters {
+            private long reconcileIntervalMs = 300000;
+        }
+
+        @Data
+        public static class Stream {
+            private int bufferSize = 256;
+            private int replaySize = 4096;
+            private long heartbeatMs = 15000;
+            private long timeoutMs = 1800000;
+            private int senderThreads = 2;
+        }
+    }
+
+    @Data
+    public static class Ingestion {
+        private int batchChunkSize = 500;
+        private int maxBatchSize = 10000;
+        private Mailboxes mailboxes = new Mailboxes();
+        private Idempotency idempotency = new Idempotency();
+
+        @Data
+        public static class Mailboxes {
+            private boolean enabled = true;
+            private int lanes = 16;
+            private int queueCapacity = 1000;
+            private long waitTimeoutMs = 5000;
+        }
+
+        @Data
+        public static class Idempotency {
+            private int maxKeys = 100000;
+            private long ttlMs = 3600000;
+        }
+    }
+
+    @Data
+    public static class StateStore {
+        private boolean enabled = false;
+        private long flushIntervalMs = 1000;
+        private int flushBatchSize = 500;
+    }
+
+    @Data
+    public static class Events {
+        private boolean async = true;
+        private int lanes = 0;
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class UsageWriter {
+        private boolean buffered = true;
+        private int flushSize = 500;
+        private long flushIntervalMs = 200;
+        private int maxPending = 10000;
+        private int idBlockSize = 1000;
+    }
+
+    @Data
+    public static class MachineCache {
+        private boolean enabled = true;
+        private long maxMachines = 10000;
+        private long maxFacilities = 1000;
+        private long syncIntervalMs = 5000;
+        private long syncOverlapMs = 5000;
     }
-}
\ No newline at end of file
+}
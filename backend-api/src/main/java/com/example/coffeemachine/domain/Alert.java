@@ -19,7 +19,8 @@ import jakarta.validation.constraints.Size;
            @Index(name = "idx_alert_severity", columnList = "severity"),
            @Index(name = "idx_alert_resolved", columnList = "resolved"),
            @Index(name = "idx_alert_machine_type", columnList = "machine_id, type"),
-           @Index(name = "idx_alert_unresolved", columnList = "machine_id, resolved, created_at")
+           @Index(name = "idx_alert_unresolved", columnList = "machine_id, resolved, created_at"),
+           @Index(name = "idx_alert_updated", columnList = "updated_at")
        })
 public class Alert extends BaseEntity {
 
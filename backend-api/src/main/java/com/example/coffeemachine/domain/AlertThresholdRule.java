@@ -0,0 +1,84 @@
+package com.example.coffeemachine.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Entity representing low-level alert thresholds for one facility or one machine.
+ * 
+ * Exactly one of facilityId and machineId is set. A null threshold inherits the
+ * value from the next wider scope: machine rule, then facility rule, then the
+ * global defaults under {@code app.alerts.thresholds}.
+ */
+@Entity
+@Table(name = "alert_threshold_rule",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_threshold_rule_facility", columnNames = "facility_id"),
+           @UniqueConstraint(name = "uk_threshold_rule_machine", columnNames = "machine_id")
+       },
+       indexes = {
+           @Index(name = "idx_threshold_rule_updated", columnList = "updated_at")
+       })
+public class AlertThresholdRule extends BaseEntity {
+
+    /**
+     * Facility the rule applies to, or null for a machine rule.
+     */
+    @Column(name = "facility_id")
+    private Long facilityId;
+
+    /**
+     * Machine the rule applies to, or null for a facility rule.
+     */
+    @Column(name = "machine_id")
+    private Long machineId;
+
+    @Min(value = 0, message = "Water level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Water level threshold must be between 0 and 100")
+    @Column(name = "water_level")
+    private Integer waterLevel;
+
+    @Min(value = 0, message = "Milk level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Milk level threshold must be between 0 and 100")
+    @Column(name = "milk_level")
+    private Integer milkLevel;
+
+    @Min(value = 0, message = "Beans level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Beans level threshold must be between 0 and 100")
+    @Column(name = "beans_level")
+    private Integer beansLevel;
+
+    public AlertThresholdRule() {
+    }
+
+    /**
+     * Create an empty rule for a facility.
+     */
+    public static AlertThresholdRule forFacility(Long facilityId) {
+        AlertThresholdRule rule = new AlertThresholdRule();
+        rule.facilityId = facilityId;
+        return rule;
+    }
+
+    /**
+     * Create an empty rule for a machine.
+     */
+    public static AlertThresholdRule forMachine(Long machineId) {
+        AlertThresholdRule rule = new AlertThresholdRule();
+        rule.machineId = machineId;
+        return rule;
+    }
+
+    // Manual accessors
+    public Long getFacilityId() { return facilityId; }
+    public void setFacilityId(Long facilityId) { this.facilityId = facilityId; }
+    public Long getMachineId() { return machineId; }
+    public void setMachineId(Long machineId) { this.machineId = machineId; }
+    public Integer getWaterLevel() { return waterLevel; }
+    public void setWaterLevel(Integer waterLevel) { this.waterLevel = waterLevel; }
+    public Integer getMilkLevel() { return milkLevel; }
+    public void setMilkLevel(Integer milkLevel) { this.milkLevel = milkLevel; }
+    public Integer getBeansLevel() { return beansLevel; }
+    public void setBeansLevel(Integer beansLevel) { this.beansLevel = beansLevel; }
+}
@@ -2,6 +2,7 @@ package com.example.coffeemachine.domain;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,8 +13,11 @@ import java.math.BigDecimal;
  * 
  * Tracks real-time status, supply levels, and operational data
  * received via MQTT and managed through REST APIs.
+ * Updates only write the columns that changed, since telemetry usually
+ * touches one or two readings at a time.
  */
 @Entity
+@DynamicUpdate
 @Table(name = "coffee_machine",
        indexes = {
            @Index(name = "idx_machine_facility", columnList = "facility_id"),
@@ -0,0 +1,43 @@
+package com.example.coffeemachine.domain;
+
+import jakarta.persistence.*;
+
+/**
+ * Entity representing a named ID sequence stored in a table.
+ * 
+ * Used for tables whose rows are inserted in JDBC batches with IDs allocated in
+ * blocks (see {@code PooledIdAllocator}) instead of AUTO_INCREMENT, which would
+ * need a round trip per row to learn each generated key. Not a {@link BaseEntity}:
+ * rows are only ever read and advanced by the allocator.
+ */
+@Entity
+@Table(name = "id_sequence")
+public class IdSequence {
+
+    /**
+     * Name of the sequence, by convention the table it numbers.
+     */
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    /**
+     * First ID not yet handed out.
+     */
+    @Column(name = "next_val", nullable = false)
+    private Long nextVal;
+
+    public IdSequence() {
+    }
+
+    public IdSequence(String name, Long nextVal) {
+        this.name = name;
+        this.nextVal = nextVal;
+    }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Long getNextVal() { return nextVal; }
+    public void setNextVal(Long nextVal) { this.nextVal = nextVal; }
+}
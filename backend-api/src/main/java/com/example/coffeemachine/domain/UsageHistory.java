@@ -14,6 +14,9 @@ import java.math.BigDecimal;
  */
 @Entity
 @Table(name = "usage_history",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_usage_machine_idempotency", columnNames = {"machine_id", "idempotency_key"})
+       },
        indexes = {
            @Index(name = "idx_usage_machine", columnList = "machine_id"),
            @Index(name = "idx_usage_timestamp", columnList = "timestamp"),
@@ -68,6 +71,14 @@ public class UsageHistory extends BaseEntity {
     @Column(name = "temp_at_brew", precision = 5, scale = 2)
     private BigDecimal tempAtBrew;
 
+    /**
+     * Key supplied by the sender to identify this brewing event across retries.
+     * Unique per machine; null for brews recorded without one (e.g. API-triggered brews).
+     */
+    @Size(max = 64, message = "Idempotency key cannot exceed 64 characters")
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
     /**
      * Constructor for creating a new usage history record.
      */
@@ -200,4 +211,6 @@ public class UsageHistory extends BaseEntity {
     public void setVolumeMl(Integer volumeMl) { this.volumeMl = volumeMl; }
     public BigDecimal getTempAtBrew() { return tempAtBrew; }
     public void setTempAtBrew(BigDecimal tempAtBrew) { this.tempAtBrew = tempAtBrew; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.example.coffeemachine.event;
+
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.repository.AlertRepository;
+
+/**
+ * Published whenever an alert opens, is resolved or is deleted, and delivered to
+ * listeners after the change has committed. Lets aggregates of alerts be kept up to
+ * date without counting the alert table.
+ *
+ * @param alertId the alert ID
+ * @param machineId the alert's machine
+ * @param facilityId the machine's facility, or null if unknown
+ * @param type the alert type
+ * @param severity the alert severity
+ * @param change what happened to the alert
+ */
+public record AlertStateChanged(Long alertId, Long machineId, Long facilityId, AlertType type, Severity severity,
+                                Change change) {
+
+    public enum Change {
+        OPENED(1, 1),
+        RESOLVED(-1, 0),
+        DELETED_OPEN(-1, -1),
+        DELETED_RESOLVED(0, -1);
+
+        private final int openDelta;
+        private final int activeDelta;
+
+        Change(int openDelta, int activeDelta) {
+            this.openDelta = openDelta;
+            this.activeDelta = activeDelta;
+        }
+
+        /**
+         * @return change in the number of open (active, unresolved) alerts
+         */
+        public int openDelta() {
+            return openDelta;
+        }
+
+        /**
+         * @return change in the number of active (not deleted) alerts
+         */
+        public int activeDelta() {
+            return activeDelta;
+        }
+    }
+
+    public static AlertStateChanged resolved(AlertRepository.CountedAlert alert) {
+        return of(alert, Change.RESOLVED);
+    }
+
+    public static AlertStateChanged deleted(AlertRepository.CountedAlert alert) {
+        return of(alert, Boolean.TRUE.equals(alert.getResolved()) ? Change.DELETED_RESOLVED : Change.DELETED_OPEN);
+    }
+
+    private static AlertStateChanged of(AlertRepository.CountedAlert alert, Change change) {
+        return new AlertStateChanged(alert.getId(), alert.getMachineId(), alert.getFacilityId(),
+                alert.getType(), alert.getSeverity(), change);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.coffeemachine.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded lanes with bounded queues, chosen by hashing the
+ * machine ID, so work for one machine runs in submission order while different
+ * machines run in parallel. Each event subscriber, and the ingestion mailboxes,
+ * own their own lanes.
+ *
+ * <p>When a lane's queue is full the submitting thread blocks until there is room,
+ * so a slow subscriber slows its publishers down instead of dropping or reordering
+ * work. With zero lanes, work runs on the submitting thread.
+ */
+@Slf4j
+public class MachineEventLanes {
+
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * @param name thread name prefix
+     * @param laneCount number of lanes, or 0 to run work inline
+     * @param queueCapacity queued tasks per lane
+     */
+    public MachineEventLanes(String name, int laneCount, int queueCapacity) {
+        this.name = name;
+        this.lanes = new ThreadPoolExecutor[Math.max(0, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = name + "-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (task, executor) -> {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException(threadName + " is shut down");
+                        }
+                        try {
+                            executor.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for " + threadName, e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Runs a task on the lane owning the machine.
+     */
+    public void execute(Long machineId, Runnable task) {
+        if (lanes.length == 0) {
+            task.run();
+            return;
+        }
+        int lane = machineId == null ? 0 : (int) Math.floorMod(machineId, (long) lanes.length);
+        lanes[lane].execute(task);
+    }
+
+    /**
+     * @return tasks waiting across all lanes
+     */
+    public int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stops accepting work and waits briefly for queued work to finish.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("{} lanes did not drain in time, {} tasks dropped", name, lane.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.coffeemachine.event;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Published by {@code CoffeeMachineService} whenever readings are applied to a machine,
+ * and delivered to listeners after the update has committed.
+ *
+ * <p>{@code previous} and {@code current} hold the machine's readings before and after
+ * the update; a null field is unknown, e.g. status and temperature on the level-only
+ * fast path. {@code reported} holds the readings that were part of the update.
+ *
+ * @param machineId the machine ID
+ * @param facilityId the machine's facility, or null if unknown
+ * @param previous readings before the update
+ * @param current readings after the update
+ * @param reported readings carried by the update, null where not reported
+ */
+public record MachineStateChanged(Long machineId, Long facilityId, Readings previous, Readings current,
+                                  Readings reported) {
+
+    /**
+     * Readings of a machine at one point in time.
+     */
+    public record Readings(MachineStatus status, BigDecimal temperature,
+                           Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+
+        public static Readings of(CoffeeMachine machine) {
+            return new Readings(machine.getStatus(), machine.getTemperature(),
+                    machine.getWaterLevel(), machine.getMilkLevel(), machine.getBeansLevel());
+        }
+    }
+
+    /**
+     * Builds a detached, read-only machine view of the current readings.
+     */
+    public CoffeeMachine toMachine() {
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setId(machineId);
+        if (facilityId != null) {
+            Facility facility = new Facility();
+            facility.setId(facilityId);
+            machine.setFacility(facility);
+        }
+        machine.setStatus(current.status());
+        machine.setTemperature(current.temperature());
+        machine.setWaterLevel(current.waterLevel());
+        machine.setMilkLevel(current.milkLevel());
+        machine.setBeansLevel(current.beansLevel());
+        return machine;
+    }
+}
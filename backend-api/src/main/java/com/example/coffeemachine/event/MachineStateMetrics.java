@@ -0,0 +1,43 @@
+package com.example.coffeemachine.event;
+
+import com.example.coffeemachine.domain.MachineStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counts committed machine updates and status transitions. Counter increments do
+ * not block, so this listener runs inline on the committing thread.
+ */
+@Component
+public class MachineStateMetrics {
+
+    private final Counter updates;
+    private final Map<MachineStatus, Counter> transitions = new EnumMap<>(MachineStatus.class);
+
+    public MachineStateMetrics(MeterRegistry meterRegistry) {
+        this.updates = Counter.builder("machine.state.updates")
+                .description("Committed machine reading updates")
+                .register(meterRegistry);
+        for (MachineStatus status : MachineStatus.values()) {
+            transitions.put(status, Counter.builder("machine.state.transitions")
+                    .description("Machine status changes by new status")
+                    .tag("status", status.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        updates.increment();
+        MachineStatus status = event.reported().status();
+        if (status != null && status != event.previous().status()) {
+            transitions.get(status).increment();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.example.coffeemachine.repository;
 import com.example.coffeemachine.domain.Alert;
 import com.example.coffeemachine.domain.AlertType;
 import com.example.coffeemachine.domain.Severity;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -102,10 +104,12 @@ public interface AlertRepository extends BaseRepository<Alert> {
      * 
      * @param machineId the machine ID
      * @param alertType the alert type
-     * @return Optional containing the most recent unresolved alert
+     * @param pageable limits how many alerts are loaded
+     * @return List of unresolved alerts, most recent first
      */
     @Query("SELECT a FROM Alert a WHERE a.machine.id = :machineId AND a.type = :alertType AND a.resolved = false AND a.isActive = true ORDER BY a.createdAt DESC")
-    List<Alert> findUnresolvedByMachineIdAndTypeOrderByCreatedAtDesc(@Param("machineId") Long machineId, @Param("alertType") AlertType alertType);
+    List<Alert> findUnresolvedByMachineIdAndTypeOrderByCreatedAtDesc(@Param("machineId") Long machineId, @Param("alertType") AlertType alertType,
+                                                                     Pageable pageable);
     
     /**
      * Find the most recent unresolved alert of a specific type for a machine.
@@ -116,7 +120,7 @@ public interface AlertRepository extends BaseRepository<Alert> {
      * @return Optional containing the most recent unresolved alert
      */
     default Optional<Alert> findMostRecentUnresolvedByMachineIdAndType(Long machineId, AlertType alertType) {
-        List<Alert> alerts = findUnresolvedByMachineIdAndTypeOrderByCreatedAtDesc(machineId, alertType);
+        List<Alert> alerts = findUnresolvedByMachineIdAndTypeOrderByCreatedAtDesc(machineId, alertType, PageRequest.of(0, 1));
         return alerts.isEmpty() ? Optional.empty() : Optional.of(alerts.get(0));
     }
 
@@ -138,6 +142,15 @@ public interface AlertRepository extends BaseRepository<Alert> {
     @Query("SELECT a.severity, COUNT(a) FROM Alert a WHERE a.resolved = false AND a.isActive = true GROUP BY a.severity")
     List<Object[]> countUnresolvedBySeverity();
 
+    /**
+     * Count unresolved alerts by severity and type.
+     * 
+     * @return List of [severity, alertType, count] for unresolved alerts
+     */
+    @Query("SELECT a.severity, a.type, COUNT(a) FROM Alert a WHERE a.resolved = false AND a.isActive = true " +
+           "GROUP BY a.severity, a.type")
+    List<Object[]> countUnresolvedBySeverityAndType();
+
     /**
      * Count unresolved alerts by type.
      * 
@@ -175,6 +188,16 @@ public interface AlertRepository extends BaseRepository<Alert> {
            "WHERE a.isActive = true")
     Object[] getOverallAlertStatistics();
 
+    /**
+     * Count active alerts per facility, split by severity and resolution.
+     * The per-facility counterpart of {@link #getOverallAlertStatistics()}.
+     * 
+     * @return List of [facilityId, severity, resolved, count] for active alerts
+     */
+    @Query("SELECT a.machine.facility.id, a.severity, a.resolved, COUNT(a) FROM Alert a " +
+           "WHERE a.isActive = true GROUP BY a.machine.facility.id, a.severity, a.resolved")
+    List<Object[]> countActiveByFacilitySeverityAndResolved();
+
     /**
      * Bulk resolve alerts of a specific type for a machine.
      * Used when an issue is fixed to resolve all related alerts.
@@ -185,10 +208,22 @@ public interface AlertRepository extends BaseRepository<Alert> {
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Alert a SET a.resolved = true " +
+    @Query("UPDATE Alert a SET a.resolved = true, a.updatedAt = CURRENT_TIMESTAMP " +
            "WHERE a.machine.id = :machineId AND a.type = :alertType AND a.resolved = false AND a.isActive = true")
     int resolveAlertsByMachineIdAndType(@Param("machineId") Long machineId, @Param("alertType") AlertType alertType);
 
+    /**
+     * Resolve a specific alert by ID if it is still open.
+     * 
+     * @param alertId the alert ID
+     * @return 1 if this call resolved the alert, 0 if it was already resolved or deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Alert a SET a.resolved = true, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.id = :alertId AND a.resolved = false AND a.isActive = true")
+    int resolveOpenAlertById(@Param("alertId") Long alertId);
+
     /**
      * Resolve a specific alert by ID.
      * 
@@ -197,7 +232,7 @@ public interface AlertRepository extends BaseRepository<Alert> {
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Alert a SET a.resolved = true WHERE a.id = :alertId AND a.isActive = true")
+    @Query("UPDATE Alert a SET a.resolved = true, a.updatedAt = CURRENT_TIMESTAMP WHERE a.id = :alertId AND a.isActive = true")
     int resolveAlertById(@Param("alertId") Long alertId);
 
     /**
@@ -256,4 +291,108 @@ public interface AlertRepository extends BaseRepository<Alert> {
     List<Object[]> getMachinesByAlertFrequency(@Param("facilityId") Long facilityId, 
                                               @Param("startTime") LocalDateTime startTime, 
                                               @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+    /**
+     * Key fields of an alert, read without loading the entity.
+     */
+    interface AlertKey {
+        Long getId();
+        Long getMachineId();
+        AlertType getType();
+        Boolean getResolved();
+        Boolean getActive();
+        LocalDateTime getUpdatedAt();
+    }
+
+    /**
+     * Find the keys of every active unresolved alert.
+     * Used to warm the open-alert index at startup.
+     * 
+     * @return keys of all open alerts
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.type AS type, a.resolved AS resolved, " +
+           "a.isActive AS active, a.updatedAt AS updatedAt " +
+           "FROM Alert a WHERE a.resolved = false AND a.isActive = true")
+    List<AlertKey> findOpenAlertKeys();
+
+    /**
+     * Find the keys of alerts created, resolved or deleted since a point in time,
+     * oldest change first. Used to pick up alert changes made by other nodes.
+     * 
+     * @param since the lower bound on the modification time (inclusive)
+     * @return keys of changed alerts
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.type AS type, a.resolved AS resolved, " +
+           "a.isActive AS active, a.updatedAt AS updatedAt " +
+           "FROM Alert a WHERE a.updatedAt >= :since ORDER BY a.updatedAt ASC, a.id ASC")
+    List<AlertKey> findAlertKeysChangedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Machine and facility of a changed alert, read without loading the entity.
+     */
+    interface AlertChange {
+        Long getId();
+        Long getMachineId();
+        Long getFacilityId();
+        LocalDateTime getUpdatedAt();
+    }
+
+    /**
+     * Find the machine and facility of every alert created, resolved or deleted since
+     * a point in time. Used to pick up alert changes made by other nodes.
+     * 
+     * @param since the lower bound on the modification time (inclusive)
+     * @return changed alerts
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.machine.facility.id AS facilityId, " +
+           "a.updatedAt AS updatedAt FROM Alert a WHERE a.updatedAt >= :since")
+    List<AlertChange> findAlertChangesSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Fields of an alert that its counters are keyed by, read without loading the entity.
+     */
+    interface CountedAlert {
+        Long getId();
+        Long getMachineId();
+        Long getFacilityId();
+        AlertType getType();
+        Severity getSeverity();
+        Boolean getResolved();
+    }
+
+    /**
+     * Find the open alerts of one type for a machine.
+     * 
+     * @param machineId the machine ID
+     * @param alertType the alert type
+     * @return the open alerts
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.machine.facility.id AS facilityId, " +
+           "a.type AS type, a.severity AS severity, a.resolved AS resolved " +
+           "FROM Alert a WHERE a.machine.id = :machineId AND a.type = :alertType " +
+           "AND a.resolved = false AND a.isActive = true")
+    List<CountedAlert> findOpenAlertsByMachineIdAndType(@Param("machineId") Long machineId,
+                                                        @Param("alertType") AlertType alertType);
+
+    /**
+     * Find an alert if it is open.
+     * 
+     * @param alertId the alert ID
+     * @return the alert, or empty if it is missing, resolved or deleted
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.machine.facility.id AS facilityId, " +
+           "a.type AS type, a.severity AS severity, a.resolved AS resolved " +
+           "FROM Alert a WHERE a.id = :alertId AND a.resolved = false AND a.isActive = true")
+    Optional<CountedAlert> findOpenAlertById(@Param("alertId") Long alertId);
+
+    /**
+     * Find an alert if it is active, whether resolved or not.
+     * 
+     * @param alertId the alert ID
+     * @return the alert, or empty if it is missing or deleted
+     */
+    @Query("SELECT a.id AS id, a.machine.id AS machineId, a.machine.facility.id AS facilityId, " +
+           "a.type AS type, a.severity AS severity, a.resolved AS resolved " +
+           "FROM Alert a WHERE a.id = :alertId AND a.isActive = true")
+    Optional<CountedAlert> findCountedAlertById(@Param("alertId") Long alertId);
+}
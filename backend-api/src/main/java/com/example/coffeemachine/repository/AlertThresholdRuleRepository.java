@@ -0,0 +1,62 @@
+package com.example.coffeemachine.repository;
+
+import com.example.coffeemachine.domain.AlertThresholdRule;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repository interface for AlertThresholdRule entity operations.
+ * 
+ * Rules are looked up by scope; a facility or machine has at most one rule row,
+ * which is soft-deleted and restored rather than recreated.
+ */
+@Repository
+public interface AlertThresholdRuleRepository extends BaseRepository<AlertThresholdRule> {
+
+    /**
+     * Find the rule row of a facility, active or not.
+     * 
+     * @param facilityId the facility ID
+     * @return Optional containing the rule if one was ever created
+     */
+    Optional<AlertThresholdRule> findByFacilityId(Long facilityId);
+
+    /**
+     * Find the rule row of a machine, active or not.
+     * 
+     * @param machineId the machine ID
+     * @return Optional containing the rule if one was ever created
+     */
+    Optional<AlertThresholdRule> findByMachineId(Long machineId);
+
+    /**
+     * Find the active rule of a facility.
+     * 
+     * @param facilityId the facility ID
+     * @return Optional containing the active rule
+     */
+    @Query("SELECT r FROM AlertThresholdRule r WHERE r.facilityId = :facilityId AND r.isActive = true")
+    Optional<AlertThresholdRule> findActiveByFacilityId(@Param("facilityId") Long facilityId);
+
+    /**
+     * Find the active rule of a machine.
+     * 
+     * @param machineId the machine ID
+     * @return Optional containing the active rule
+     */
+    @Query("SELECT r FROM AlertThresholdRule r WHERE r.machineId = :machineId AND r.isActive = true")
+    Optional<AlertThresholdRule> findActiveByMachineId(@Param("machineId") Long machineId);
+
+    /**
+     * Get the modification time of the most recently changed rule, including deleted ones.
+     * Compared between polls to detect rule changes made by other nodes.
+     * 
+     * @return the latest modification time, or null if there are no rules
+     */
+    @Query("SELECT MAX(r.updatedAt) FROM AlertThresholdRule r")
+    LocalDateTime findLastModified();
+}
@@ -2,11 +2,15 @@ package com.example.coffeemachine.repository;
 
 import com.example.coffeemachine.domain.CoffeeMachine;
 import com.example.coffeemachine.domain.MachineStatus;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +23,16 @@ import java.util.Optional;
 @Repository
 public interface CoffeeMachineRepository extends BaseRepository<CoffeeMachine> {
 
+    /**
+     * Find an active coffee machine together with its facility.
+     * Used to seed the live state store, which keeps the facility name for reads.
+     * 
+     * @param id the machine ID
+     * @return the machine with its facility initialized
+     */
+    @Query("SELECT cm FROM CoffeeMachine cm JOIN FETCH cm.facility WHERE cm.id = :id AND cm.isActive = true")
+    Optional<CoffeeMachine> findActiveByIdWithFacility(@Param("id") Long id);
+
     /**
      * Find all active coffee machines in a specific facility.
      * 
@@ -28,6 +42,18 @@ public interface CoffeeMachineRepository extends BaseRepository<CoffeeMachine> {
     @Query("SELECT cm FROM CoffeeMachine cm WHERE cm.facility.id = :facilityId AND cm.isActive = true ORDER BY cm.id")
     List<CoffeeMachine> findActiveByFacilityId(@Param("facilityId") Long facilityId);
 
+    /**
+     * Find the active coffee machines of a facility among the given IDs, with their facility loaded.
+     * 
+     * @param facilityId the facility ID
+     * @param ids the machine IDs
+     * @return List of the matching active coffee machines
+     */
+    @Query("SELECT cm FROM CoffeeMachine cm JOIN FETCH cm.facility WHERE cm.facility.id = :facilityId AND cm.id IN :ids " +
+           "AND cm.isActive = true ORDER BY cm.id")
+    List<CoffeeMachine> findActiveByFacilityIdAndIdIn(@Param("facilityId") Long facilityId,
+                                                      @Param("ids") Collection<Long> ids);
+
     /**
      * Find all active coffee machines by status.
      * 
@@ -150,6 +176,14 @@ public interface CoffeeMachineRepository extends BaseRepository<CoffeeMachine> {
            "WHERE cm.facility.id = :facilityId AND cm.isActive = true")
     Object[] getMachineStatisticsForFacility(@Param("facilityId") Long facilityId);
 
+    /**
+     * Count active machines by status.
+     * 
+     * @return List of [status, count] for active machines
+     */
+    @Query("SELECT cm.status, COUNT(cm) FROM CoffeeMachine cm WHERE cm.isActive = true GROUP BY cm.status")
+    List<Object[]> countActiveByStatus();
+
     /**
      * Get overall machine statistics across all facilities.
      * 
@@ -216,4 +250,163 @@ public interface CoffeeMachineRepository extends BaseRepository<CoffeeMachine> {
            "AND (cm.beansLevel IS NULL OR cm.beansLevel >= :threshold) " +
            "ORDER BY cm.facility.name, cm.id")
     List<CoffeeMachine> findActiveWithAdequateSupplies(@Param("threshold") int threshold);
-}
\ No newline at end of file
+
+    /**
+     * Supply levels and facility of a machine, read without loading the entity.
+     */
+    interface LevelReadings {
+        Long getFacilityId();
+        Integer getWaterLevel();
+        Integer getMilkLevel();
+        Integer getBeansLevel();
+    }
+
+    /**
+     * Read the current levels of an active machine and lock its row until the
+     * end of the transaction.
+     * 
+     * @param id the machine ID
+     * @return the current levels, or empty if the machine is missing or inactive
+     */
+    @Query(value = "SELECT facility_id AS facilityId, water_level AS waterLevel, milk_level AS milkLevel, beans_level AS beansLevel " +
+                   "FROM coffee_machine WHERE id = :id AND is_active = TRUE FOR UPDATE",
+           nativeQuery = true)
+    Optional<LevelReadings> lockLevelsById(@Param("id") Long id);
+
+    /**
+     * Set the non-null levels of an active machine in a single UPDATE.
+     * 
+     * @param id the machine ID
+     * @param waterLevel the new water level, or null to keep it
+     * @param milkLevel the new milk level, or null to keep it
+     * @param beansLevel the new beans level, or null to keep it
+     * @param updatedAt the modification timestamp
+     * @return number of machines updated
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE coffee_machine SET water_level = COALESCE(:waterLevel, water_level), " +
+                   "milk_level = COALESCE(:milkLevel, milk_level), " +
+                   "beans_level = COALESCE(:beansLevel, beans_level), updated_at = :updatedAt " +
+                   "WHERE id = :id AND is_active = TRUE",
+           nativeQuery = true)
+    int updateLevels(@Param("id") Long id, @Param("waterLevel") Integer waterLevel,
+                     @Param("milkLevel") Integer milkLevel, @Param("beansLevel") Integer beansLevel,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Update the levels of an active machine without loading the entity and return
+     * what they were before. The row stays locked between the read and the write,
+     * so the previous values are exact even with concurrent updates.
+     * MySQL has no UPDATE ... RETURNING, hence the locking read.
+     * 
+     * @param id the machine ID
+     * @param waterLevel the new water level, or null to keep it
+     * @param milkLevel the new milk level, or null to keep it
+     * @param beansLevel the new beans level, or null to keep it
+     * @return the levels before the update, or empty if the machine is missing or inactive
+     */
+    @Transactional
+    default Optional<LevelReadings> updateLevelsReturningPrevious(Long id, Integer waterLevel,
+                                                                  Integer milkLevel, Integer beansLevel) {
+        Optional<LevelReadings> previous = lockLevelsById(id);
+        previous.ifPresent(levels -> updateLevels(id, waterLevel, milkLevel, beansLevel, LocalDateTime.now()));
+        return previous;
+    }
+
+    /**
+     * Temperature of an active machine, read without loading the entity.
+     */
+    interface BrewReadings {
+        Long getId();
+        BigDecimal getTemperature();
+    }
+
+    /**
+     * Find the current temperature of an active machine.
+     * 
+     * @param id the machine ID
+     * @return the readings, or empty if the machine is missing or inactive
+     */
+    @Query("SELECT cm.id AS id, cm.temperature AS temperature FROM CoffeeMachine cm " +
+           "WHERE cm.id = :id AND cm.isActive = true")
+    Optional<BrewReadings> findBrewReadingsById(@Param("id") Long id);
+
+    /**
+     * Facility of a machine, read without loading the entity.
+     */
+    interface MachineFacility {
+        Long getId();
+        Long getFacilityId();
+    }
+
+    /**
+     * Machine, facility and modification time of a changed machine, read without loading the entity.
+     */
+    interface MachineChange {
+        Long getId();
+        Long getFacilityId();
+        LocalDateTime getUpdatedAt();
+    }
+
+    /**
+     * Find the facility of every active machine.
+     * 
+     * @return machine and facility IDs
+     */
+    @Query("SELECT cm.id AS id, cm.facility.id AS facilityId FROM CoffeeMachine cm WHERE cm.isActive = true")
+    List<MachineFacility> findActiveMachineFacilities();
+
+    /**
+     * Find every machine modified since a point in time, deleted ones included.
+     * Used to pick up machine changes made by other nodes.
+     * 
+     * @param since the lower bound on the modification time (inclusive)
+     * @return keys of changed machines
+     */
+    @Query("SELECT cm.id AS id, cm.facility.id AS facilityId, cm.updatedAt AS updatedAt " +
+           "FROM CoffeeMachine cm WHERE cm.updatedAt >= :since")
+    List<MachineChange> findMachineChangesSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Soft delete a machine, bumping its modification time so that other nodes
+     * polling for changed machines see the deletion.
+     * 
+     * @param id the machine ID
+     * @return number of machines updated
+     */
+    @Override
+    @Modifying
+    @Transactional
+    @Query("UPDATE CoffeeMachine cm SET cm.isActive = false, cm.updatedAt = CURRENT_TIMESTAMP WHERE cm.id = :id")
+    int softDeleteById(@Param("id") Long id);
+
+    /**
+     * Supply levels and facility of a machine, read without loading the entity.
+     */
+    interface MachineLevels {
+        Long getId();
+        Long getFacilityId();
+        Integer getWaterLevel();
+        Integer getMilkLevel();
+        Integer getBeansLevel();
+    }
+
+    /**
+     * Find the supply levels of every active machine.
+     * 
+     * @return machine IDs, facilities and levels
+     */
+    @Query("SELECT cm.id AS id, cm.facility.id AS facilityId, cm.waterLevel AS waterLevel, " +
+           "cm.milkLevel AS milkLevel, cm.beansLevel AS beansLevel FROM CoffeeMachine cm WHERE cm.isActive = true")
+    List<MachineLevels> findActiveMachineLevels();
+
+    /**
+     * Find the facility ID of a machine.
+     * 
+     * @param id the machine ID
+     * @return the facility ID, or empty if the machine does not exist
+     */
+    @Query("SELECT cm.facility.id FROM CoffeeMachine cm WHERE cm.id = :id")
+    Optional<Long> findFacilityIdById(@Param("id") Long id);
+}
@@ -1,10 +1,13 @@
 package com.example.coffeemachine.repository;
 
 import com.example.coffeemachine.domain.Facility;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -139,4 +142,35 @@ public interface FacilityRepository extends BaseRepository<Facility> {
      */
     @Query("SELECT f FROM Facility f WHERE f.isActive = true ORDER BY f.name")
     List<Facility> findAllActiveOrderByName();
+
+    /**
+     * ID and modification time of a changed facility, read without loading the entity.
+     */
+    interface FacilityChange {
+        Long getId();
+        LocalDateTime getUpdatedAt();
+    }
+
+    /**
+     * Find every facility modified since a point in time, deleted ones included.
+     * Used to pick up facility changes made by other nodes.
+     * 
+     * @param since the lower bound on the modification time (inclusive)
+     * @return changed facilities
+     */
+    @Query("SELECT f.id AS id, f.updatedAt AS updatedAt FROM Facility f WHERE f.updatedAt >= :since")
+    List<FacilityChange> findFacilityChangesSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Soft delete a facility, bumping its modification time so that other nodes
+     * polling for changed facilities see the deletion.
+     * 
+     * @param id the facility ID
+     * @return number of facilities updated
+     */
+    @Override
+    @Modifying
+    @Transactional
+    @Query("UPDATE Facility f SET f.isActive = false, f.updatedAt = CURRENT_TIMESTAMP WHERE f.id = :id")
+    int softDeleteById(@Param("id") Long id);
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for UsageHistory entity operations.
@@ -27,6 +28,17 @@ public interface UsageHistoryRepository extends BaseRepository<UsageHistory> {
     @Query("SELECT uh FROM UsageHistory uh WHERE uh.machine.id = :machineId AND uh.isActive = true ORDER BY uh.timestamp DESC")
     List<UsageHistory> findActiveByMachineIdOrderByTimestampDesc(@Param("machineId") Long machineId);
 
+    /**
+     * Find a usage record previously stored under an idempotency key.
+     * 
+     * @param machineId the machine ID
+     * @param idempotencyKey the key supplied with the brewing event
+     * @return the existing usage record, if any
+     */
+    @Query("SELECT uh FROM UsageHistory uh WHERE uh.machine.id = :machineId AND uh.idempotencyKey = :idempotencyKey")
+    Optional<UsageHistory> findByMachineIdAndIdempotencyKey(@Param("machineId") Long machineId,
+                                                           @Param("idempotencyKey") String idempotencyKey);
+
     /**
      * Find recent usage history for a machine (within specified hours).
      * 
@@ -5,8 +5,11 @@ import com.example.coffeemachine.domain.AlertType;
 import com.example.coffeemachine.domain.Severity;
 import com.example.coffeemachine.repository.AlertRepository;
 import com.example.coffeemachine.alert.AlertEvaluatorService;
+import com.example.coffeemachine.alert.OpenAlertIndex;
+import com.example.coffeemachine.event.AlertStateChanged;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +28,9 @@ public class AlertService {
 
     private final AlertRepository alertRepository;
     private final AlertEvaluatorService alertEvaluatorService;
+    private final OpenAlertIndex openAlertIndex;
+    private final AlertStatisticsCounters alertStatisticsCounters;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Finds an alert by ID (active only).
@@ -122,30 +128,8 @@ public class AlertService {
      * @param facilityId the facility ID
      * @return alert statistics
      */
-    @Transactional(readOnly = true)
     public AlertStatistics getAlertStatistics(Long facilityId) {
-        List<Alert> facilityAlerts = alertRepository.findActiveUnresolvedByFacilityId(facilityId);
-        
-        long totalAlerts = facilityAlerts.size();
-        long unresolvedAlerts = facilityAlerts.stream().filter(a -> !a.getResolved()).count();
-        long criticalAlerts = facilityAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.CRITICAL && !a.getResolved())
-                .count();
-        long warningAlerts = facilityAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.WARNING && !a.getResolved())
-                .count();
-        long infoAlerts = facilityAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.INFO && !a.getResolved())
-                .count();
-
-        return AlertStatistics.builder()
-                .facilityId(facilityId)
-                .totalAlerts((int) totalAlerts)
-                .unresolvedAlerts((int) unresolvedAlerts)
-                .criticalAlerts((int) criticalAlerts)
-                .warningAlerts((int) warningAlerts)
-                .infoAlerts((int) infoAlerts)
-                .build();
+        return alertStatisticsCounters.facility(facilityId);
     }
 
     /**
@@ -153,30 +137,8 @@ public class AlertService {
      *
      * @return overall alert statistics
      */
-    @Transactional(readOnly = true)
     public AlertStatistics getOverallAlertStatistics() {
-        List<Alert> allAlerts = alertRepository.findAllActive();
-        
-        long totalAlerts = allAlerts.size();
-        long unresolvedAlerts = allAlerts.stream().filter(a -> !a.getResolved()).count();
-        long criticalAlerts = allAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.CRITICAL && !a.getResolved())
-                .count();
-        long warningAlerts = allAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.WARNING && !a.getResolved())
-                .count();
-        long infoAlerts = allAlerts.stream()
-                .filter(a -> a.getSeverity() == Severity.INFO && !a.getResolved())
-                .count();
-
-        return AlertStatistics.builder()
-                .facilityId(null) // Overall statistics
-                .totalAlerts((int) totalAlerts)
-                .unresolvedAlerts((int) unresolvedAlerts)
-                .criticalAlerts((int) criticalAlerts)
-                .warningAlerts((int) warningAlerts)
-                .infoAlerts((int) infoAlerts)
-                .build();
+        return alertStatisticsCounters.overall();
     }
 
     /**
@@ -201,7 +163,7 @@ public class AlertService {
     @Transactional
     public int resolveAlertsByTypeAndMachine(Long machineId, AlertType alertType) {
         log.info("Resolving all {} alerts for machine {}", alertType, machineId);
-        return alertRepository.resolveAlertsByMachineIdAndType(machineId, alertType);
+        return alertEvaluatorService.resolveOpenAlerts(machineId, alertType);
     }
 
     /**
@@ -245,7 +207,13 @@ public class AlertService {
     @Transactional
     public boolean deleteAlert(Long alertId) {
         log.info("Soft deleting alert {}", alertId);
-        return alertRepository.softDeleteById(alertId) > 0;
+        Optional<AlertRepository.CountedAlert> active = alertRepository.findCountedAlertById(alertId);
+        if (alertRepository.softDeleteById(alertId) > 0) {
+            openAlertIndex.removed(alertId);
+            active.ifPresent(alert -> eventPublisher.publishEvent(AlertStateChanged.deleted(alert)));
+            return true;
+        }
+        return false;
     }
 
     /**
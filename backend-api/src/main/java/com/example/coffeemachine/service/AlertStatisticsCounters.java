@@ -0,0 +1,175 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.event.AlertStateChanged;
+import com.example.coffeemachine.repository.AlertRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Overall and per-facility alert counts behind {@link AlertStatistics}, kept in memory
+ * so reading the statistics costs the same however many alerts have been recorded.
+ *
+ * <p>Each {@link AlertStateChanged} adjusts the overall counters and those of the
+ * alert's facility as its transaction commits. Machines never change facility, so an
+ * alert stays counted under the facility it was opened in.
+ *
+ * <p>The counters are built from the alert aggregate queries when the application is
+ * ready and rebuilt every {@code app.dashboard.counters.reconcile-interval-ms}, which
+ * corrects drift from transitions racing a rebuild and picks up changes made by other nodes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlertStatisticsCounters {
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final AlertRepository alertRepository;
+
+    private volatile Generation generation;
+
+    /**
+     * Counts of active alerts in one scope: a facility or the whole fleet.
+     */
+    private static final class Counts {
+        private final LongAdder active = new LongAdder();
+        /** Unresolved alerts, indexed by severity ordinal. */
+        private final LongAdder[] unresolved = new LongAdder[SEVERITIES.length];
+
+        private Counts() {
+            for (int i = 0; i < unresolved.length; i++) {
+                unresolved[i] = new LongAdder();
+            }
+        }
+
+        private void apply(AlertStateChanged event) {
+            active.add(event.change().activeDelta());
+            unresolved[event.severity().ordinal()].add(event.change().openDelta());
+        }
+
+        private AlertStatistics toStatistics(Long facilityId) {
+            long[] bySeverity = new long[SEVERITIES.length];
+            long totalUnresolved = 0;
+            for (int i = 0; i < bySeverity.length; i++) {
+                bySeverity[i] = Math.max(0, unresolved[i].sum());
+                totalUnresolved += bySeverity[i];
+            }
+            return AlertStatistics.builder()
+                    .facilityId(facilityId)
+                    .totalAlerts((int) Math.max(totalUnresolved, active.sum()))
+                    .unresolvedAlerts((int) totalUnresolved)
+                    .criticalAlerts((int) bySeverity[Severity.CRITICAL.ordinal()])
+                    .warningAlerts((int) bySeverity[Severity.WARNING.ordinal()])
+                    .infoAlerts((int) bySeverity[Severity.INFO.ordinal()])
+                    .build();
+        }
+    }
+
+    /**
+     * One generation of counters; a rebuild swaps in a new one.
+     */
+    private static final class Generation {
+        private final Counts overall = new Counts();
+        private final Map<Long, Counts> facilities = new ConcurrentHashMap<>();
+
+        private Counts facility(Long facilityId) {
+            return facilities.computeIfAbsent(facilityId, id -> new Counts());
+        }
+    }
+
+    /**
+     * Reads the statistics of one facility. Counts that drifted below zero between
+     * reconciliations are reported as zero.
+     *
+     * @param facilityId the facility ID
+     * @return statistics of the facility's active alerts
+     */
+    public AlertStatistics facility(Long facilityId) {
+        Counts counts = current().facilities.get(facilityId);
+        return (counts != null ? counts : new Counts()).toStatistics(facilityId);
+    }
+
+    /**
+     * Reads the statistics across all facilities.
+     *
+     * @return statistics of all active alerts
+     */
+    public AlertStatistics overall() {
+        return current().overall.toStatistics(null);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAlertStateChanged(AlertStateChanged event) {
+        Generation current = generation;
+        if (current == null) {
+            return;
+        }
+        current.overall.apply(event);
+        if (event.facilityId() != null) {
+            current.facility(event.facilityId()).apply(event);
+        }
+    }
+
+    /**
+     * Rebuilds every counter from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        Generation rebuilt = new Generation();
+        Object[] overall = row(alertRepository.getOverallAlertStatistics());
+        rebuilt.overall.active.add(((Number) overall[0]).longValue());
+        for (Object[] row : alertRepository.countUnresolvedBySeverity()) {
+            rebuilt.overall.unresolved[((Severity) row[0]).ordinal()].add((Long) row[1]);
+        }
+        for (Object[] row : alertRepository.countActiveByFacilitySeverityAndResolved()) {
+            if (row[0] == null) {
+                continue;
+            }
+            Counts counts = rebuilt.facility((Long) row[0]);
+            long count = (Long) row[3];
+            counts.active.add(count);
+            if (!Boolean.TRUE.equals(row[2])) {
+                counts.unresolved[((Severity) row[1]).ordinal()].add(count);
+            }
+        }
+        generation = rebuilt;
+        log.debug("Reconciled alert statistics for {} facilities", rebuilt.facilities.size());
+    }
+
+    private Generation current() {
+        Generation current = generation;
+        if (current == null) {
+            synchronized (this) {
+                if (generation == null) {
+                    reconcile();
+                }
+                current = generation;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Unwraps a single-row aggregate result, which Spring Data may return nested in
+     * a one-element array.
+     */
+    private static Object[] row(Object[] result) {
+        if (result.length == 1 && result[0] instanceof Object[] nested) {
+            return nested;
+        }
+        return result;
+    }
+}
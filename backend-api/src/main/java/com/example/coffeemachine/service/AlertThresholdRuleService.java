@@ -0,0 +1,160 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.alert.AlertThresholdRules;
+import com.example.coffeemachine.domain.AlertThresholdRule;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.repository.AlertThresholdRuleRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import com.example.coffeemachine.service.dto.UpdateAlertThresholdRuleRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service for managing per-facility and per-machine alert threshold rules.
+ * Every change recompiles the thresholds used by alert evaluation after commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class AlertThresholdRuleService {
+
+    private final AlertThresholdRuleRepository ruleRepository;
+    private final FacilityRepository facilityRepository;
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final AlertThresholdRules thresholdRules;
+
+    /**
+     * Gets all active threshold rules.
+     *
+     * @return list of facility and machine rules
+     */
+    @Transactional(readOnly = true)
+    public List<AlertThresholdRule> findAllActive() {
+        return ruleRepository.findAllActive();
+    }
+
+    /**
+     * Gets the threshold rule of a facility.
+     *
+     * @param facilityId the facility ID
+     * @return the rule or empty if the facility has none
+     */
+    @Transactional(readOnly = true)
+    public Optional<AlertThresholdRule> findFacilityRule(Long facilityId) {
+        return ruleRepository.findActiveByFacilityId(facilityId);
+    }
+
+    /**
+     * Gets the threshold rule of a machine.
+     *
+     * @param machineId the machine ID
+     * @return the rule or empty if the machine has none
+     */
+    @Transactional(readOnly = true)
+    public Optional<AlertThresholdRule> findMachineRule(Long machineId) {
+        return ruleRepository.findActiveByMachineId(machineId);
+    }
+
+    /**
+     * Sets the thresholds of a facility, replacing its previous rule.
+     *
+     * @param facilityId the facility ID
+     * @param request the thresholds, null ones inherited from the global defaults
+     * @return the saved rule or empty if the facility is not found
+     */
+    public Optional<AlertThresholdRule> updateFacilityRule(Long facilityId, UpdateAlertThresholdRuleRequest request) {
+        if (!facilityRepository.existsActiveById(facilityId)) {
+            return Optional.empty();
+        }
+        log.info("Updating alert thresholds for facility {}", facilityId);
+        AlertThresholdRule rule = ruleRepository.findByFacilityId(facilityId)
+                .orElseGet(() -> AlertThresholdRule.forFacility(facilityId));
+        return Optional.of(save(rule, request));
+    }
+
+    /**
+     * Sets the thresholds of a machine, replacing its previous rule.
+     *
+     * @param machineId the machine ID
+     * @param request the thresholds, null ones inherited from the facility
+     * @return the saved rule or empty if the machine is not found
+     */
+    public Optional<AlertThresholdRule> updateMachineRule(Long machineId, UpdateAlertThresholdRuleRequest request) {
+        if (!coffeeMachineRepository.existsActiveById(machineId)) {
+            return Optional.empty();
+        }
+        log.info("Updating alert thresholds for machine {}", machineId);
+        AlertThresholdRule rule = ruleRepository.findByMachineId(machineId)
+                .orElseGet(() -> AlertThresholdRule.forMachine(machineId));
+        return Optional.of(save(rule, request));
+    }
+
+    /**
+     * Removes the rule of a facility so its machines fall back to the global defaults.
+     *
+     * @param facilityId the facility ID
+     * @return true if a rule was removed
+     */
+    public boolean deleteFacilityRule(Long facilityId) {
+        log.info("Removing alert thresholds for facility {}", facilityId);
+        return delete(ruleRepository.findActiveByFacilityId(facilityId));
+    }
+
+    /**
+     * Removes the rule of a machine so it falls back to its facility's thresholds.
+     *
+     * @param machineId the machine ID
+     * @return true if a rule was removed
+     */
+    public boolean deleteMachineRule(Long machineId) {
+        log.info("Removing alert thresholds for machine {}", machineId);
+        return delete(ruleRepository.findActiveByMachineId(machineId));
+    }
+
+    /**
+     * Gets the thresholds a machine is currently evaluated against.
+     *
+     * @param machineId the machine ID
+     * @return effective thresholds with every level set, or empty if the machine is not found
+     */
+    @Transactional(readOnly = true)
+    public Optional<AlertThresholdRule> getEffectiveThresholds(Long machineId) {
+        if (!coffeeMachineRepository.existsActiveById(machineId)) {
+            return Optional.empty();
+        }
+        int[] thresholds = thresholdRules.thresholds(machineId);
+        AlertThresholdRule effective = AlertThresholdRule.forMachine(machineId);
+        effective.setWaterLevel(thresholds[AlertType.LOW_WATER.ordinal()]);
+        effective.setMilkLevel(thresholds[AlertType.LOW_MILK.ordinal()]);
+        effective.setBeansLevel(thresholds[AlertType.LOW_BEANS.ordinal()]);
+        return Optional.of(effective);
+    }
+
+    private AlertThresholdRule save(AlertThresholdRule rule, UpdateAlertThresholdRuleRequest request) {
+        rule.setWaterLevel(request.getWaterLevel());
+        rule.setMilkLevel(request.getMilkLevel());
+        rule.setBeansLevel(request.getBeansLevel());
+        rule.restore();
+        AlertThresholdRule saved = ruleRepository.save(rule);
+        thresholdRules.recompileAfterCommit();
+        return saved;
+    }
+
+    private boolean delete(Optional<AlertThresholdRule> rule) {
+        if (rule.isEmpty()) {
+            return false;
+        }
+        // Soft delete through the entity so updated_at changes and other nodes notice
+        rule.get().delete();
+        ruleRepository.save(rule.get());
+        thresholdRules.recompileAfterCommit();
+        return true;
+    }
+}
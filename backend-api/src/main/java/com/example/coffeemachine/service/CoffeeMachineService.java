@@ -1,22 +1,42 @@
 package com.example.coffeemachine.service;
 
+import com.example.coffeemachine.config.AppProperties;
 import com.example.coffeemachine.domain.*;
 import com.example.coffeemachine.repository.CoffeeMachineRepository;
 import com.example.coffeemachine.repository.UsageHistoryRepository;
-import com.example.coffeemachine.alert.AlertEvaluatorService;
+import com.example.coffeemachine.event.MachineStateChanged;
+import com.example.coffeemachine.service.dto.TelemetryBatchResponse;
+import com.example.coffeemachine.service.dto.TelemetryRecordRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 import java.math.BigDecimal;
 
 /**
  * Service for managing coffee machine operations and state updates.
- * Handles MQTT message processing, machine state changes, and alert generation.
+ * Handles MQTT message processing and machine state changes. Every applied update
+ * publishes a {@link MachineStateChanged} event; alerting and other subscribers act
+ * on it after the update commits.
  */
 @Service
 @RequiredArgsConstructor
@@ -26,7 +46,17 @@ public class CoffeeMachineService {
 
     private final CoffeeMachineRepository coffeeMachineRepository;
     private final UsageHistoryRepository usageHistoryRepository;
-    private final AlertEvaluatorService alertEvaluatorService;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AppProperties appProperties;
+    private final MachineStateStore machineStateStore;
+    private final UsageHistoryWriter usageHistoryWriter;
+    private final IdempotencyKeyCache idempotencyKeyCache;
+    private final FleetCounters fleetCounters;
+    private final FacilityVersions facilityVersions;
+    private final MachineDtoCache machineDtoCache;
+    private final MachineMailboxes machineMailboxes;
+    private final Validator validator;
 
     /**
      * Updates machine temperature and evaluates alerts.
@@ -37,17 +67,10 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateTemperature(Long machineId, Double temperature) {
         log.debug("Updating temperature for machine {} to {}°C", machineId, temperature);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    machine.setTemperature(temperature != null ? new BigDecimal(temperature.toString()) : null);
-                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
-                    
-                    // Evaluate temperature-related alerts
-                    alertEvaluatorService.evaluateTemperatureAlerts(saved);
-                    
-                    return saved;
-                });
+        if (temperature == null) {
+            return coffeeMachineRepository.findActiveById(machineId);
+        }
+        return applyMachineSnapshot(machineId, null, new BigDecimal(temperature.toString()), null, null, null);
     }
 
     /**
@@ -59,17 +82,7 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateWaterLevel(Long machineId, Integer waterLevel) {
         log.debug("Updating water level for machine {} to {}%", machineId, waterLevel);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    machine.setWaterLevel(waterLevel);
-                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
-                    
-                    // Evaluate water level alerts
-                    alertEvaluatorService.evaluateWaterLevelAlerts(saved);
-                    
-                    return saved;
-                });
+        return applyMachineSnapshot(machineId, null, null, waterLevel, null, null);
     }
 
     /**
@@ -81,17 +94,7 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateMilkLevel(Long machineId, Integer milkLevel) {
         log.debug("Updating milk level for machine {} to {}%", machineId, milkLevel);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    machine.setMilkLevel(milkLevel);
-                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
-                    
-                    // Evaluate milk level alerts
-                    alertEvaluatorService.evaluateMilkLevelAlerts(saved);
-                    
-                    return saved;
-                });
+        return applyMachineSnapshot(machineId, null, null, null, milkLevel, null);
     }
 
     /**
@@ -103,17 +106,7 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateBeansLevel(Long machineId, Integer beansLevel) {
         log.debug("Updating beans level for machine {} to {}%", machineId, beansLevel);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    machine.setBeansLevel(beansLevel);
-                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
-                    
-                    // Evaluate beans level alerts
-                    alertEvaluatorService.evaluateBeansLevelAlerts(saved);
-                    
-                    return saved;
-                });
+        return applyMachineSnapshot(machineId, null, null, null, null, beansLevel);
     }
 
     /**
@@ -125,18 +118,7 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateStatus(Long machineId, MachineStatus status) {
         log.info("Updating status for machine {} to {}", machineId, status);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    MachineStatus oldStatus = machine.getStatus();
-                    machine.setStatus(status);
-                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
-                    
-                    // Evaluate status-related alerts
-                    alertEvaluatorService.evaluateStatusAlerts(saved, oldStatus);
-                    
-                    return saved;
-                });
+        return applyMachineSnapshot(machineId, status, null, null, null, null);
     }
 
     /**
@@ -148,15 +130,70 @@ public class CoffeeMachineService {
      * @return the usage history record or empty if machine not found
      */
     public Optional<UsageHistory> recordBrewing(Long machineId, BrewType brewType, Integer volumeMl) {
+        return recordBrewing(machineId, brewType, volumeMl, null);
+    }
+
+    /**
+     * Records a brewing event at most once per idempotency key.
+     * A retry carrying a key that was already stored for the machine returns the
+     * existing record instead of inserting another one. Recently seen keys are
+     * answered from {@link IdempotencyKeyCache} without touching the database.
+     *
+     * @param machineId the machine ID
+     * @param brewType the type of beverage brewed
+     * @param volumeMl the volume in milliliters
+     * @param idempotencyKey key identifying the event across retries, or null
+     * @return the usage history record or empty if machine not found
+     */
+    public Optional<UsageHistory> recordBrewing(Long machineId, BrewType brewType, Integer volumeMl, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<UsageHistory> existing = findByIdempotencyKey(machineId, idempotencyKey);
+            if (existing.isPresent()) {
+                log.debug("Ignoring duplicate brewing event {} for machine {}", idempotencyKey, machineId);
+                return existing;
+            }
+        }
+
         log.info("Recording brewing event for machine {}: {} ({}ml)", machineId, brewType, volumeMl);
-        
-        return coffeeMachineRepository.findActiveById(machineId)
-                .map(machine -> {
-                    Double tempAtBrew = machine.getTemperature() != null ? machine.getTemperature().doubleValue() : null;
-                    UsageHistory usage = new UsageHistory(machine, LocalDateTime.now(), brewType, volumeMl, tempAtBrew);
-                    
-                    return usageHistoryRepository.save(usage);
-                });
+
+        // Only the temperature is needed, so the machine entity is never loaded
+        BigDecimal tempAtBrew;
+        if (machineStateStore.isEnabled()) {
+            Optional<MachineLiveState> state = machineStateStore.get(machineId);
+            if (state.isEmpty()) {
+                return Optional.empty();
+            }
+            tempAtBrew = state.get().toMachine().getTemperature();
+        } else {
+            Optional<CoffeeMachineRepository.BrewReadings> readings = coffeeMachineRepository.findBrewReadingsById(machineId);
+            if (readings.isEmpty()) {
+                return Optional.empty();
+            }
+            tempAtBrew = readings.get().getTemperature();
+        }
+        UsageHistory usage;
+        try {
+            usage = usageHistoryWriter.append(machineId, LocalDateTime.now(), brewType, volumeMl,
+                    tempAtBrew, idempotencyKey);
+        } catch (DuplicateKeyException e) {
+            // Recorded concurrently, e.g. by another node, after the lookup above
+            log.debug("Brewing event {} for machine {} recorded concurrently", idempotencyKey, machineId);
+            return usageHistoryRepository.findByMachineIdAndIdempotencyKey(machineId, idempotencyKey);
+        }
+        if (idempotencyKey != null) {
+            idempotencyKeyCache.put(machineId, idempotencyKey, usage);
+        }
+        return Optional.of(usage);
+    }
+
+    private Optional<UsageHistory> findByIdempotencyKey(Long machineId, String idempotencyKey) {
+        Optional<UsageHistory> cached = idempotencyKeyCache.get(machineId, idempotencyKey);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<UsageHistory> stored = usageHistoryRepository.findByMachineIdAndIdempotencyKey(machineId, idempotencyKey);
+        stored.ifPresent(usage -> idempotencyKeyCache.put(machineId, idempotencyKey, usage));
+        return stored;
     }
 
     /**
@@ -181,6 +218,18 @@ public class CoffeeMachineService {
         return coffeeMachineRepository.findActiveByFacilityId(facilityId);
     }
 
+    /**
+     * Finds the active machines of a facility among the given IDs.
+     *
+     * @param facilityId the facility ID
+     * @param machineIds the machine IDs
+     * @return list of the matching active machines
+     */
+    @Transactional(readOnly = true)
+    public List<CoffeeMachine> findByFacilityIdAndIds(Long facilityId, Collection<Long> machineIds) {
+        return coffeeMachineRepository.findActiveByFacilityIdAndIdIn(facilityId, machineIds);
+    }
+
     /**
      * Finds all active machines.
      *
@@ -193,12 +242,16 @@ public class CoffeeMachineService {
 
     /**
      * Gets machine status and current levels.
+     * Served from the live state store when it is enabled.
      *
      * @param machineId the machine ID
      * @return machine status information
      */
     @Transactional(readOnly = true)
     public Optional<CoffeeMachine> getMachineStatus(Long machineId) {
+        if (machineStateStore.isEnabled()) {
+            return machineStateStore.get(machineId).map(MachineLiveState::toMachine);
+        }
         return coffeeMachineRepository.findActiveById(machineId);
     }
 
@@ -241,7 +294,11 @@ public class CoffeeMachineService {
         
         // The facility validation will be done at the controller level
         // or we can inject FacilityService here
-        return coffeeMachineRepository.save(machine);
+        CoffeeMachine saved = coffeeMachineRepository.save(machine);
+        fleetCounters.reconcileAfterCommit();
+        machineDtoCache.invalidateAfterCommit(facilityIdOf(saved), saved.getId());
+        facilityVersions.changedAfterCommit(facilityIdOf(saved), saved.getId());
+        return saved;
     }
 
     /**
@@ -252,7 +309,15 @@ public class CoffeeMachineService {
      */
     public boolean deleteMachine(Long machineId) {
         log.info("Soft deleting machine {}", machineId);
-        return coffeeMachineRepository.softDeleteById(machineId) > 0;
+        machineStateStore.flushAndEvict(machineId);
+        Optional<Long> facilityId = coffeeMachineRepository.findFacilityIdById(machineId);
+        if (coffeeMachineRepository.softDeleteById(machineId) == 0) {
+            return false;
+        }
+        fleetCounters.reconcileAfterCommit();
+        machineDtoCache.invalidateAfterCommit(facilityId.orElse(null), machineId);
+        facilityVersions.changedAfterCommit(facilityId.orElse(null), machineId);
+        return true;
     }
 
     /**
@@ -264,12 +329,14 @@ public class CoffeeMachineService {
      */
     public Optional<CoffeeMachine> updateMachine(Long machineId, CoffeeMachine updates) {
         log.info("Updating machine {}", machineId);
+        machineStateStore.flushAndEvict(machineId);
         
         return coffeeMachineRepository.findActiveById(machineId)
                 .map(existing -> {
                     // Update only non-null fields from updates
-                    if (updates.getStatus() != null) {
+                    if (updates.getStatus() != null && updates.getStatus() != existing.getStatus()) {
                         existing.setStatus(updates.getStatus());
+                        fleetCounters.reconcileAfterCommit();
                     }
                     if (updates.getTemperature() != null) {
                         existing.setTemperature(updates.getTemperature());
@@ -284,6 +351,8 @@ public class CoffeeMachineService {
                         existing.setBeansLevel(updates.getBeansLevel());
                     }
                     
+                    machineDtoCache.invalidateAfterCommit(facilityIdOf(existing), machineId);
+                    facilityVersions.changedAfterCommit(facilityIdOf(existing), machineId);
                     return coffeeMachineRepository.save(existing);
                 });
     }
@@ -291,31 +360,245 @@ public class CoffeeMachineService {
     // --- Methods for MQTT Worker Integration ---
 
     public void updateMachineStatus(Long machineId, com.example.coffeemachine.service.dto.UpdateMachineStatusRequest request) {
-        coffeeMachineRepository.findActiveById(machineId).ifPresent(machine -> {
-            if (request.getStatus() != null) {
-                updateStatus(machineId, MachineStatus.valueOf(request.getStatus()));
-            }
-            if (request.getTemperature() != null) {
-                updateTemperature(machineId, request.getTemperature().doubleValue());
-            }
-        });
+        applyReadings(machineId, request.getStatus() != null ? MachineStatus.valueOf(request.getStatus()) : null,
+                request.getTemperature(), null, null, null);
     }
 
     public void updateMachineLevels(Long machineId, com.example.coffeemachine.service.dto.UpdateMachineLevelsRequest request) {
-        coffeeMachineRepository.findActiveById(machineId).ifPresent(machine -> {
-            if (request.getWaterLevel() != null) {
-                updateWaterLevel(machineId, request.getWaterLevel());
-            }
-            if (request.getMilkLevel() != null) {
-                updateMilkLevel(machineId, request.getMilkLevel());
+        applyReadings(machineId, null, null,
+                request.getWaterLevel(), request.getMilkLevel(), request.getBeansLevel());
+    }
+
+    public void updateMachineSnapshot(Long machineId, com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest request) {
+        applyReadings(machineId, request.getStatus() != null ? MachineStatus.valueOf(request.getStatus()) : null,
+                request.getTemperature(), request.getWaterLevel(), request.getMilkLevel(), request.getBeansLevel());
+    }
+
+    public void recordUsage(Long machineId, com.example.coffeemachine.service.dto.RecordUsageRequest request) {
+        recordBrewing(machineId, request.getBrewType(), request.getVolumeMl(), request.getIdempotencyKey());
+    }
+
+    /**
+     * Applies a batch of mixed telemetry records.
+     * The batch is cut into chunks of {@code app.ingestion.batch-chunk-size} records,
+     * and each chunk's records are grouped by machine. Every group is applied in one
+     * transaction in its machine's mailbox, so batches never race with each other or
+     * with the single-record endpoints over the same machine, and one machine's
+     * records stay in submission order. If a group fails to commit, every record in
+     * it that had been applied is reported as FAILED. Records violating their
+     * constraints are reported as INVALID without being applied.
+     *
+     * @param records the telemetry records
+     * @return per-record results in submission order, once every group has finished
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TelemetryBatchResponse ingestTelemetry(List<TelemetryRecordRequest> records) {
+        int chunkSize = Math.max(1, appProperties.getIngestion().getBatchChunkSize());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        TelemetryBatchResponse.RecordResult[] results = new TelemetryBatchResponse.RecordResult[records.size()];
+
+        List<Map.Entry<List<Integer>, CompletableFuture<Void>>> groups = new ArrayList<>();
+        for (int start = 0; start < records.size(); start += chunkSize) {
+            Map<Long, List<Integer>> byMachine = new LinkedHashMap<>();
+            for (int i = start; i < Math.min(records.size(), start + chunkSize); i++) {
+                TelemetryRecordRequest record = records.get(i);
+                String violations = violationsOf(record);
+                if (violations != null) {
+                    results[i] = new TelemetryBatchResponse.RecordResult(i, record != null ? record.getMachineId() : null,
+                            TelemetryBatchResponse.Outcome.INVALID, violations);
+                    continue;
+                }
+                byMachine.computeIfAbsent(record.getMachineId(), id -> new ArrayList<>()).add(i);
             }
-            if (request.getBeansLevel() != null) {
-                updateBeansLevel(machineId, request.getBeansLevel());
+            byMachine.forEach((machineId, indexes) -> groups.add(Map.entry(indexes,
+                    machineMailboxes.submit(machineId, () -> transactionTemplate.executeWithoutResult(status -> {
+                        for (int i : indexes) {
+                            results[i] = applyTelemetryRecord(i, records.get(i));
+                        }
+                    })))));
+        }
+
+        for (Map.Entry<List<Integer>, CompletableFuture<Void>> group : groups) {
+            List<Integer> indexes = group.getKey();
+            try {
+                group.getValue().join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Telemetry records {} rolled back: {}", indexes, cause.getMessage());
+                for (int i : indexes) {
+                    if (results[i] == null || results[i].getOutcome() == TelemetryBatchResponse.Outcome.APPLIED) {
+                        results[i] = new TelemetryBatchResponse.RecordResult(i, records.get(i).getMachineId(),
+                                TelemetryBatchResponse.Outcome.FAILED, cause.getMessage());
+                    }
+                }
             }
-        });
+        }
+
+        List<TelemetryBatchResponse.RecordResult> resultList = new ArrayList<>(List.of(results));
+        int applied = (int) resultList.stream()
+                .filter(result -> result.getOutcome() == TelemetryBatchResponse.Outcome.APPLIED)
+                .count();
+        return TelemetryBatchResponse.builder()
+                .applied(applied)
+                .rejected(resultList.size() - applied)
+                .results(resultList)
+                .build();
     }
 
-    public void recordUsage(Long machineId, com.example.coffeemachine.service.dto.RecordUsageRequest request) {
-        recordBrewing(machineId, request.getBrewType(), request.getVolumeMl());
+    private TelemetryBatchResponse.RecordResult applyTelemetryRecord(int index, TelemetryRecordRequest record) {
+        Long machineId = record.getMachineId();
+        try {
+            boolean found = switch (record.getType()) {
+                case STATUS -> applyReadings(machineId, parseStatus(record.getStatus()), record.getTemperature(),
+                        null, null, null);
+                case LEVELS -> applyReadings(machineId, null, null,
+                        record.getWaterLevel(), record.getMilkLevel(), record.getBeansLevel());
+                case SNAPSHOT -> applyReadings(machineId, parseStatus(record.getStatus()), record.getTemperature(),
+                        record.getWaterLevel(), record.getMilkLevel(), record.getBeansLevel());
+                case USAGE -> {
+                    if (record.getBrewType() == null) {
+                        throw new IllegalArgumentException("brewType is required for USAGE records");
+                    }
+                    yield recordBrewing(machineId, record.getBrewType(), record.getVolumeMl(),
+                            record.getIdempotencyKey()).isPresent();
+                }
+            };
+            return new TelemetryBatchResponse.RecordResult(index, machineId,
+                    found ? TelemetryBatchResponse.Outcome.APPLIED : TelemetryBatchResponse.Outcome.NOT_FOUND, null);
+        } catch (IllegalArgumentException e) {
+            return new TelemetryBatchResponse.RecordResult(index, machineId,
+                    TelemetryBatchResponse.Outcome.INVALID, e.getMessage());
+        }
+    }
+
+    private String violationsOf(TelemetryRecordRequest record) {
+        if (record == null) {
+            return "Record must not be null";
+        }
+        Set<ConstraintViolation<TelemetryRecordRequest>> violations = validator.validate(record);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private MachineStatus parseStatus(String status) {
+        return status != null ? MachineStatus.valueOf(status) : null;
+    }
+
+    /**
+     * Applies any non-null readings to an active machine.
+     *
+     * @return true if the machine exists and is active
+     */
+    private boolean applyReadings(Long machineId, MachineStatus status, BigDecimal temperature,
+                                  Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        if (machineStateStore.isEnabled()) {
+            return applyToStateStore(machineId, status, temperature, waterLevel, milkLevel, beansLevel);
+        }
+        if (status == null && temperature == null) {
+            return applyLevels(machineId, waterLevel, milkLevel, beansLevel);
+        }
+        return applyMachineSnapshot(machineId, status, temperature, waterLevel, milkLevel, beansLevel).isPresent();
+    }
+
+    /**
+     * Applies a full or partial machine snapshot in one go: the machine is loaded once,
+     * all non-null readings are set, and a single UPDATE writes only the changed columns.
+     * Alerts are evaluated against the resulting state once the update commits.
+     *
+     * @param machineId the machine ID
+     * @param status the new status, or null to keep the current one
+     * @param temperature the new temperature, or null
+     * @param waterLevel the new water level, or null
+     * @param milkLevel the new milk level, or null
+     * @param beansLevel the new beans level, or null
+     * @return updated machine or empty if not found
+     */
+    public Optional<CoffeeMachine> applyMachineSnapshot(Long machineId, MachineStatus status, BigDecimal temperature,
+                                                        Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        log.debug("Applying snapshot to machine {}", machineId);
+
+        return coffeeMachineRepository.findActiveById(machineId)
+                .map(machine -> {
+                    MachineStateChanged.Readings previous = MachineStateChanged.Readings.of(machine);
+                    if (status != null) {
+                        machine.setStatus(status);
+                    }
+                    if (temperature != null) {
+                        machine.setTemperature(temperature);
+                    }
+                    if (waterLevel != null) {
+                        machine.setWaterLevel(waterLevel);
+                    }
+                    if (milkLevel != null) {
+                        machine.setMilkLevel(milkLevel);
+                    }
+                    if (beansLevel != null) {
+                        machine.setBeansLevel(beansLevel);
+                    }
+                    CoffeeMachine saved = coffeeMachineRepository.save(machine);
+
+                    publishStateChanged(machineId, facilityIdOf(saved), previous, MachineStateChanged.Readings.of(saved),
+                            status, temperature, waterLevel, milkLevel, beansLevel);
+                    return saved;
+                });
+    }
+
+    /**
+     * Fast path for level-only updates. The levels are written with a single UPDATE
+     * and no entity load; the previous levels read under the row lock travel with the
+     * change event, so alert evaluation needs no load either.
+     *
+     * @return true if the machine exists and is active
+     */
+    private boolean applyLevels(Long machineId, Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        Optional<CoffeeMachineRepository.LevelReadings> updated =
+                coffeeMachineRepository.updateLevelsReturningPrevious(machineId, waterLevel, milkLevel, beansLevel);
+        if (updated.isEmpty()) {
+            return false;
+        }
+        CoffeeMachineRepository.LevelReadings before = updated.get();
+        MachineStateChanged.Readings previous = new MachineStateChanged.Readings(null, null,
+                before.getWaterLevel(), before.getMilkLevel(), before.getBeansLevel());
+        MachineStateChanged.Readings current = new MachineStateChanged.Readings(null, null,
+                waterLevel != null ? waterLevel : before.getWaterLevel(),
+                milkLevel != null ? milkLevel : before.getMilkLevel(),
+                beansLevel != null ? beansLevel : before.getBeansLevel());
+        publishStateChanged(machineId, before.getFacilityId(), previous, current,
+                null, null, waterLevel, milkLevel, beansLevel);
+        return true;
+    }
+
+    /**
+     * Applies readings to the live state store. The database row is written by the
+     * store's next flush; the change event is published like any other update.
+     */
+    private boolean applyToStateStore(Long machineId, MachineStatus status, BigDecimal temperature,
+                                      Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        Optional<MachineLiveState.Applied> applied = machineStateStore.apply(machineId, status, temperature,
+                waterLevel, milkLevel, beansLevel);
+        if (applied.isEmpty()) {
+            return false;
+        }
+        CoffeeMachine machine = applied.get().machine();
+        publishStateChanged(machineId, facilityIdOf(machine), MachineStateChanged.Readings.of(applied.get().previous()),
+                MachineStateChanged.Readings.of(machine), status, temperature, waterLevel, milkLevel, beansLevel);
+        return true;
+    }
+
+    private void publishStateChanged(Long machineId, Long facilityId, MachineStateChanged.Readings previous,
+                                     MachineStateChanged.Readings current, MachineStatus status, BigDecimal temperature,
+                                     Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        MachineStateChanged.Readings reported = new MachineStateChanged.Readings(status, temperature,
+                waterLevel, milkLevel, beansLevel);
+        eventPublisher.publishEvent(new MachineStateChanged(machineId, facilityId, previous, current, reported));
+    }
+
+    private static Long facilityIdOf(CoffeeMachine machine) {
+        return machine.getFacility() != null ? machine.getFacility().getId() : null;
     }
-}
\ No newline at end of file
+}
@@ -25,6 +25,9 @@ public class FacilityService {
 
     private final FacilityRepository facilityRepository;
     private final CoffeeMachineRepository coffeeMachineRepository;
+    private final FleetCounters fleetCounters;
+    private final FacilityVersions facilityVersions;
+    private final MachineDtoCache machineDtoCache;
 
     /**
      * Creates a new facility.
@@ -41,7 +44,9 @@ public class FacilityService {
             throw new IllegalArgumentException("Facility with name '" + facility.getName() + "' already exists");
         }
         
-        return facilityRepository.save(facility);
+        Facility saved = facilityRepository.save(facility);
+        fleetCounters.reconcileAfterCommit();
+        return saved;
     }
 
     /**
@@ -85,6 +90,9 @@ public class FacilityService {
                             throw new IllegalArgumentException("Facility with name '" + updates.getName() + "' already exists");
                         }
                         existing.setName(updates.getName().trim());
+                        // The facility name is part of every machine DTO
+                        machineDtoCache.invalidateAfterCommit(facilityId, null);
+                        facilityVersions.changedAfterCommit(facilityId, null);
                     }
                     
                     if (updates.getLocation() != null && !updates.getLocation().trim().isEmpty()) {
@@ -111,12 +119,16 @@ public class FacilityService {
         
         // First, soft delete all machines in this facility
         List<CoffeeMachine> machines = coffeeMachineRepository.findActiveByFacilityId(facilityId);
+        machineDtoCache.invalidateAfterCommit(facilityId, null);
         for (CoffeeMachine machine : machines) {
             coffeeMachineRepository.softDeleteById(machine.getId());
+            facilityVersions.changedAfterCommit(facilityId, machine.getId());
         }
         
         // Then soft delete the facility
-        return facilityRepository.softDeleteById(facilityId) > 0;
+        boolean deleted = facilityRepository.softDeleteById(facilityId) > 0;
+        fleetCounters.reconcileAfterCommit();
+        return deleted;
     }
 
     /**
@@ -149,7 +161,11 @@ public class FacilityService {
             machine.setBeansLevel(100);
         }
         
-        return coffeeMachineRepository.save(machine);
+        CoffeeMachine saved = coffeeMachineRepository.save(machine);
+        fleetCounters.reconcileAfterCommit();
+        machineDtoCache.invalidateAfterCommit(facilityId, saved.getId());
+        facilityVersions.changedAfterCommit(facilityId, saved.getId());
+        return saved;
     }
 
     /**
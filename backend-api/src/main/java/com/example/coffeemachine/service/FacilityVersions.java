@@ -0,0 +1,174 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.event.AlertStateChanged;
+import com.example.coffeemachine.event.MachineStateChanged;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-facility version counters for conditional and incremental machine list fetches.
+ *
+ * <p>Every committed machine or alert change bumps its facility's version and records
+ * that version against the machine, so clients can ask whether a facility changed
+ * (ETag) and which machines changed since a version they hold, without a query.
+ *
+ * <p>Versions live in memory and are specific to this node and run. Every facility
+ * starts at a base drawn at random at startup, in its own range of 2<sup>40</sup>
+ * versions, so a version handed out by another node or an earlier run falls outside
+ * this node's range. Changes from before startup are unknown: a {@code sinceVersion}
+ * below the base, or above the current version, cannot be answered incrementally.
+ * ETags carry this node's start time as well, so an ETag from another node or an
+ * earlier run never matches.
+ *
+ * <p>Versions are bumped after commit once {@link MachineDtoCache} has dropped the
+ * entries for the same change ({@link #BUMP_ORDER}), so a client that reads the new
+ * version never gets the old machines with it.
+ *
+ * <p>Changes committed by other nodes are applied by {@link MachineChangeSync}, which
+ * polls the database every {@code app.machine-cache.sync-interval-ms}. Until then this
+ * node can answer 304, or leave a machine out of a delta, for a facility another node
+ * has just changed.
+ *
+ * <p>Versions are not offered while the write-behind {@link MachineStateStore} is
+ * enabled: machine lists are read from the database, which lags the store, so a
+ * version could be handed out with readings older than it.
+ */
+@Component
+@RequiredArgsConstructor
+public class FacilityVersions {
+
+    /** Order of the after-commit bumps, right after {@link MachineDtoCache#INVALIDATE_ORDER}. */
+    public static final int BUMP_ORDER = MachineDtoCache.INVALIDATE_ORDER + 1;
+
+    private static final int RANGE_BITS = 40;
+
+    private final MachineStateStore machineStateStore;
+
+    private final long baseVersion = ThreadLocalRandom.current().nextLong(1, 1L << (63 - RANGE_BITS)) << RANGE_BITS;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, Versions> facilities = new ConcurrentHashMap<>();
+
+    /**
+     * Version of one facility and the version at which each of its machines last changed.
+     */
+    private final class Versions {
+        private long version = baseVersion;
+        private final Map<Long, Long> machines = new ConcurrentHashMap<>();
+
+        private synchronized void bump(Long machineId) {
+            version++;
+            if (machineId != null) {
+                machines.put(machineId, version);
+            }
+        }
+
+        private synchronized long version() {
+            return version;
+        }
+    }
+
+    /**
+     * @return true if versions can be handed out to clients
+     */
+    public boolean isEnabled() {
+        return !machineStateStore.isEnabled();
+    }
+
+    /**
+     * @param facilityId the facility ID
+     * @return the facility's current version
+     */
+    public long version(Long facilityId) {
+        Versions versions = facilities.get(facilityId);
+        return versions != null ? versions.version() : baseVersion;
+    }
+
+    /**
+     * Builds a strong ETag for a facility version.
+     *
+     * @param version a version returned by {@link #version}
+     * @return the quoted ETag value
+     */
+    public String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * Lists the machines of a facility that changed after a version.
+     *
+     * @param facilityId the facility ID
+     * @param sinceVersion the version the client holds
+     * @param currentVersion the version the answer is for, read before this call
+     * @return the changed machine IDs, or empty if changes since that version are unknown
+     */
+    public Optional<Set<Long>> changedSince(Long facilityId, long sinceVersion, long currentVersion) {
+        if (sinceVersion < baseVersion || sinceVersion > currentVersion) {
+            return Optional.empty();
+        }
+        Set<Long> changed = new HashSet<>();
+        Versions versions = facilities.get(facilityId);
+        if (versions != null) {
+            versions.machines.forEach((machineId, version) -> {
+                if (version > sinceVersion) {
+                    changed.add(machineId);
+                }
+            });
+        }
+        return Optional.of(changed);
+    }
+
+    @Order(BUMP_ORDER)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        bump(event.facilityId(), event.machineId());
+    }
+
+    @Order(BUMP_ORDER)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAlertStateChanged(AlertStateChanged event) {
+        bump(event.facilityId(), event.machineId());
+    }
+
+    /**
+     * Records a change that is not published as an event, such as a machine being
+     * added, edited or deleted, once the current transaction commits.
+     *
+     * @param facilityId the facility ID
+     * @param machineId the changed machine, or null if the change is not about one machine
+     */
+    public void changedAfterCommit(Long facilityId, Long machineId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return BUMP_ORDER;
+                }
+
+                @Override
+                public void afterCommit() {
+                    bump(facilityId, machineId);
+                }
+            });
+        } else {
+            bump(facilityId, machineId);
+        }
+    }
+
+    private void bump(Long facilityId, Long machineId) {
+        if (facilityId != null) {
+            facilities.computeIfAbsent(facilityId, id -> new Versions()).bump(machineId);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.event.AlertStateChanged;
+import com.example.coffeemachine.event.MachineStateChanged;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fleet-wide counts of facilities, machines by status and open alerts by severity
+ * and type, kept in memory so the admin dashboard costs the same for any fleet size.
+ *
+ * <p>Counters are {@link LongAdder}s, which stripe concurrent increments instead of
+ * contending on one value. Machine status transitions and alert transitions adjust
+ * them as their transactions commit, via {@link MachineStateChanged} and
+ * {@link AlertStateChanged}. Rare administrative changes (machines and facilities
+ * created or deleted) rebuild them instead, through {@link #reconcileAfterCommit}.
+ *
+ * <p>The counters are built from GROUP BY counts when the application is ready and
+ * rebuilt every {@code app.dashboard.counters.reconcile-interval-ms}, which also
+ * corrects drift: a transition committing while a rebuild reads the counts can be
+ * counted twice or missed, and changes made by other nodes are only seen here.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FleetCounters {
+
+    private static final MachineStatus[] STATUSES = MachineStatus.values();
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final AlertType[] TYPES = AlertType.values();
+
+    private final FacilityRepository facilityRepository;
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final AlertRepository alertRepository;
+
+    private volatile Counts counts;
+
+    /**
+     * One generation of counters; a rebuild swaps in a new one.
+     */
+    private static final class Counts {
+        private final LongAdder facilities = new LongAdder();
+        private final LongAdder[] machines = adders(STATUSES.length);
+        /** Open alerts, indexed by severity ordinal * types + type ordinal. */
+        private final LongAdder[] openAlerts = adders(SEVERITIES.length * TYPES.length);
+
+        private LongAdder openAlerts(Severity severity, AlertType type) {
+            return openAlerts[severity.ordinal() * TYPES.length + type.ordinal()];
+        }
+
+        private static LongAdder[] adders(int size) {
+            LongAdder[] adders = new LongAdder[size];
+            for (int i = 0; i < size; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+
+    /**
+     * Point-in-time view of the counters.
+     *
+     * @param facilities active facilities
+     * @param machinesByStatus active machines, indexed by status ordinal
+     * @param openAlertsBySeverityAndType open alerts, indexed by severity ordinal then type ordinal
+     */
+    public record Snapshot(long facilities, long[] machinesByStatus, long[][] openAlertsBySeverityAndType) {
+
+        public long machines() {
+            long total = 0;
+            for (long count : machinesByStatus) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long machines(MachineStatus status) {
+            return machinesByStatus[status.ordinal()];
+        }
+
+        public long openAlerts() {
+            long total = 0;
+            for (long[] bySeverity : openAlertsBySeverityAndType) {
+                for (long count : bySeverity) {
+                    total += count;
+                }
+            }
+            return total;
+        }
+
+        public long openAlerts(Severity severity) {
+            long total = 0;
+            for (long count : openAlertsBySeverityAndType[severity.ordinal()]) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long openAlerts(AlertType type) {
+            long total = 0;
+            for (long[] bySeverity : openAlertsBySeverityAndType) {
+                total += bySeverity[type.ordinal()];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Reads the current counters. Counts that drifted below zero between
+     * reconciliations are reported as zero.
+     */
+    public Snapshot snapshot() {
+        Counts current = current();
+        long[] machines = new long[STATUSES.length];
+        for (int i = 0; i < machines.length; i++) {
+            machines[i] = Math.max(0, current.machines[i].sum());
+        }
+        long[][] openAlerts = new long[SEVERITIES.length][TYPES.length];
+        for (Severity severity : SEVERITIES) {
+            for (AlertType type : TYPES) {
+                openAlerts[severity.ordinal()][type.ordinal()] = Math.max(0, current.openAlerts(severity, type).sum());
+            }
+        }
+        return new Snapshot(Math.max(0, current.facilities.sum()), machines, openAlerts);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        MachineStatus from = event.previous().status();
+        MachineStatus to = event.reported().status();
+        Counts current = counts;
+        if (current == null || from == null || to == null || from == to) {
+            return;
+        }
+        current.machines[from.ordinal()].decrement();
+        current.machines[to.ordinal()].increment();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAlertStateChanged(AlertStateChanged event) {
+        Counts current = counts;
+        if (current == null) {
+            return;
+        }
+        int delta = event.change().openDelta();
+        if (delta != 0) {
+            current.openAlerts(event.severity(), event.type()).add(delta);
+        }
+    }
+
+    /**
+     * Rebuilds the counters once the current transaction commits, or immediately
+     * when there is no transaction. For changes that are not published as events.
+     */
+    public void reconcileAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reconcile();
+                }
+            });
+        } else {
+            reconcile();
+        }
+    }
+
+    /**
+     * Rebuilds every counter from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.dashboard.counters.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        Counts rebuilt = new Counts();
+        rebuilt.facilities.add(facilityRepository.countActive());
+        for (Object[] row : coffeeMachineRepository.countActiveByStatus()) {
+            if (row[0] != null) {
+                rebuilt.machines[((MachineStatus) row[0]).ordinal()].add((Long) row[1]);
+            }
+        }
+        for (Object[] row : alertRepository.countUnresolvedBySeverityAndType()) {
+            rebuilt.openAlerts((Severity) row[0], (AlertType) row[1]).add((Long) row[2]);
+        }
+        counts = rebuilt;
+        log.debug("Reconciled fleet counters");
+    }
+
+    private Counts current() {
+        Counts current = counts;
+        if (current == null) {
+            synchronized (this) {
+                if (counts == null) {
+                    reconcile();
+                }
+                current = counts;
+            }
+        }
+        return current;
+    }
+}
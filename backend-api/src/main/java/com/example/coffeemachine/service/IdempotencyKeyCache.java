@@ -0,0 +1,74 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.UsageHistory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Recently seen usage idempotency keys and the usage recorded under each.
+ *
+ * <p>Lets a retried brewing event be answered without a database lookup. The cache
+ * holds at most {@code app.ingestion.idempotency.max-keys} keys, each for
+ * {@code app.ingestion.idempotency.ttl-ms}; keys are kept in insertion order, which
+ * with a fixed time-to-live is also expiry order, so expired and overflowing keys
+ * are dropped from the head in constant time. A key that is no longer cached falls
+ * back to the database, where the unique (machine_id, idempotency_key) constraint
+ * is the final guard against duplicates.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyCache {
+
+    private final AppProperties appProperties;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private record Entry(UsageHistory usage, long expiresAt) {
+    }
+
+    /**
+     * Gets the usage recorded under a key, if the key is cached and not expired.
+     */
+    public synchronized Optional<UsageHistory> get(Long machineId, String idempotencyKey) {
+        Entry entry = entries.get(cacheKey(machineId, idempotencyKey));
+        if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.usage());
+    }
+
+    /**
+     * Remembers the usage recorded under a key.
+     */
+    public synchronized void put(Long machineId, String idempotencyKey, UsageHistory usage) {
+        AppProperties.Ingestion.Idempotency config = appProperties.getIngestion().getIdempotency();
+        long now = System.currentTimeMillis();
+        String key = cacheKey(machineId, idempotencyKey);
+        // Re-insert so the entry moves to the tail with its new expiry
+        entries.remove(key);
+        entries.put(key, new Entry(usage, now + config.getTtlMs()));
+
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next();
+            if (entries.size() <= config.getMaxKeys() && entry.expiresAt() > now) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static String cacheKey(Long machineId, String idempotencyKey) {
+        return machineId + ":" + idempotencyKey;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies machine, alert and facility changes made by other backend nodes to this
+ * node's {@link FacilityVersions}, {@link MachineDtoCache} and {@link MachineUpdateStream}.
+ *
+ * <p>All three are kept up to date by this node's own commits, which never reach the
+ * other nodes. Every {@code app.machine-cache.sync-interval-ms} the machine, alert and
+ * facility tables are polled for rows modified since the last sync, and each change
+ * invalidates its cached DTOs, bumps its facility's version and, while dashboards are
+ * connected, is published to the live stream. Until then another node's change can be
+ * missing here: a stale entry can be served, a conditional fetch can be answered with
+ * 304 and a dashboard can miss the change. Changes made through this node are seen
+ * again by the next sync and apply once more, which only costs a reload, a client
+ * refetch and a repeated stream event.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MachineChangeSync {
+
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final AlertRepository alertRepository;
+    private final FacilityRepository facilityRepository;
+    private final FacilityVersions facilityVersions;
+    private final MachineDtoCache machineDtoCache;
+    private final MachineUpdateStream machineUpdateStream;
+    private final AppProperties appProperties;
+
+    /** Changes from before startup are not needed: versions and cache entries start here. */
+    private volatile LocalDateTime syncedUpTo = LocalDateTime.now();
+
+    /** Rows read by the previous sync, so changes re-read in the overlap window apply once. */
+    private Map<Long, LocalDateTime> machinesSeen = Map.of();
+    private Map<Long, LocalDateTime> alertsSeen = Map.of();
+    private Map<Long, LocalDateTime> facilitiesSeen = Map.of();
+
+    /**
+     * Applies changes made since the last sync, including those made by other nodes.
+     *
+     * @return number of changes applied
+     */
+    @Scheduled(fixedDelayString = "${app.machine-cache.sync-interval-ms:5000}")
+    public synchronized int sync() {
+        AppProperties.MachineCache config = appProperties.getMachineCache();
+        boolean streaming = machineUpdateStream.subscriberCount() > 0;
+        if (!config.isEnabled() && !facilityVersions.isEnabled() && !streaming) {
+            syncedUpTo = LocalDateTime.now();
+            return 0;
+        }
+        // Re-read an overlap window to cover clock skew between nodes and commits that
+        // landed after the previous sync read past them.
+        LocalDateTime since = syncedUpTo.minusNanos(config.getSyncOverlapMs() * 1_000_000L);
+        LocalDateTime startedAt = LocalDateTime.now();
+        int applied = 0;
+
+        Map<Long, LocalDateTime> machines = new HashMap<>();
+        for (CoffeeMachineRepository.MachineChange machine : coffeeMachineRepository.findMachineChangesSince(since)) {
+            if (isNew(machinesSeen, machines, machine.getId(), machine.getUpdatedAt())) {
+                changed(machine.getFacilityId(), machine.getId());
+                if (streaming) {
+                    machineDtoCache.machine(machine.getId()).ifPresentOrElse(machineUpdateStream::publishSynced,
+                            () -> machineUpdateStream.publishResync(machine.getFacilityId(), machine.getId()));
+                }
+                applied++;
+            }
+        }
+        Map<Long, LocalDateTime> alerts = new HashMap<>();
+        Set<Long> alertMachines = new HashSet<>();
+        for (AlertRepository.AlertChange alert : alertRepository.findAlertChangesSince(since)) {
+            if (isNew(alertsSeen, alerts, alert.getId(), alert.getUpdatedAt())) {
+                changed(alert.getFacilityId(), alert.getMachineId());
+                if (streaming && alertMachines.add(alert.getMachineId())) {
+                    machineUpdateStream.publishResync(alert.getFacilityId(), alert.getMachineId());
+                }
+                applied++;
+            }
+        }
+        Map<Long, LocalDateTime> facilities = new HashMap<>();
+        for (FacilityRepository.FacilityChange facility : facilityRepository.findFacilityChangesSince(since)) {
+            if (isNew(facilitiesSeen, facilities, facility.getId(), facility.getUpdatedAt())) {
+                changed(facility.getId(), null);
+                if (streaming) {
+                    machineUpdateStream.publishResync(facility.getId(), null);
+                }
+                applied++;
+            }
+        }
+
+        machinesSeen = machines;
+        alertsSeen = alerts;
+        facilitiesSeen = facilities;
+        syncedUpTo = startedAt;
+        if (applied > 0) {
+            log.debug("Synced {} machine, alert and facility changes", applied);
+        }
+        return applied;
+    }
+
+    private void changed(Long facilityId, Long machineId) {
+        // No transaction is active here, so both apply immediately. Entries are dropped
+        // first, so a client that sees the new version cannot be served the old entry.
+        machineDtoCache.invalidateAfterCommit(facilityId, machineId);
+        facilityVersions.changedAfterCommit(facilityId, machineId);
+    }
+
+    private static boolean isNew(Map<Long, LocalDateTime> previous, Map<Long, LocalDateTime> current,
+                                 Long id, LocalDateTime updatedAt) {
+        current.put(id, updatedAt);
+        return !updatedAt.equals(previous.get(id));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.event.MachineStateChanged;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.service.dto.CoffeeMachineDto;
+import com.example.coffeemachine.service.mapper.CoffeeMachineMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache of ready-to-serve {@link CoffeeMachineDto}s, one entry per machine
+ * and one list per facility.
+ *
+ * <p>Entries do not expire; they are dropped when their machine changes. Committed
+ * readings invalidate through {@link MachineStateChanged}, and administrative changes
+ * (machines added, edited or deleted, facilities renamed or deleted) through
+ * {@link #invalidateAfterCommit}. Caches are bounded by {@code app.machine-cache.max-*}
+ * and evict the least valuable entries beyond that.
+ *
+ * <p>Invalidations run after commit ahead of the {@link FacilityVersions} bump for the
+ * same change ({@link #INVALIDATE_ORDER}): clients read a facility's version before its
+ * machines, so a client handed the new version must not be served the old entries.
+ *
+ * <p>Changes committed by other nodes are invalidated by {@link MachineChangeSync},
+ * which polls the database every {@code app.machine-cache.sync-interval-ms}. Until
+ * then this node can serve an entry another node has just made stale.
+ *
+ * <p>Loads go through Caffeine's per-key compute, so concurrent misses for one key
+ * share a single query. An invalidation that arrives while a load is running waits for
+ * it and then removes its result, so a load that read the database before a change
+ * committed cannot leave a stale entry behind. Hits, misses and evictions are reported
+ * as the {@code cache.*} meters tagged {@code machine.dtos} and {@code facility.machine.dtos}.
+ *
+ * <p>While the write-behind {@link MachineStateStore} is enabled, machines are loaded
+ * from the store, but facility lists are not cached: they are read from the database,
+ * which lags the store, and a cached list would keep that lag after the invalidation.
+ */
+@Component
+public class MachineDtoCache {
+
+    /** Order of the after-commit invalidations, ahead of {@link FacilityVersions#BUMP_ORDER}. */
+    public static final int INVALIDATE_ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final MachineStateStore machineStateStore;
+    private final CoffeeMachineMapper coffeeMachineMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AppProperties.MachineCache config;
+
+    private final Cache<Long, CoffeeMachineDto> machines;
+    private final Cache<Long, List<CoffeeMachineDto>> facilities;
+
+    public MachineDtoCache(CoffeeMachineRepository coffeeMachineRepository, MachineStateStore machineStateStore,
+                           CoffeeMachineMapper coffeeMachineMapper, PlatformTransactionManager transactionManager,
+                           AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.coffeeMachineRepository = coffeeMachineRepository;
+        this.machineStateStore = machineStateStore;
+        this.coffeeMachineMapper = coffeeMachineMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.config = appProperties.getMachineCache();
+        this.machines = Caffeine.newBuilder()
+                .maximumSize(config.getMaxMachines())
+                .recordStats()
+                .build();
+        this.facilities = Caffeine.newBuilder()
+                .maximumSize(config.getMaxFacilities())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, machines, "machine.dtos");
+        CaffeineCacheMetrics.monitor(meterRegistry, facilities, "facility.machine.dtos");
+    }
+
+    /**
+     * Gets a machine's current status and levels.
+     *
+     * @param machineId the machine ID
+     * @return the machine, not to be modified, or empty if it does not exist or is deleted
+     */
+    public Optional<CoffeeMachineDto> machine(Long machineId) {
+        if (!config.isEnabled()) {
+            return Optional.ofNullable(loadMachine(machineId));
+        }
+        return Optional.ofNullable(machines.get(machineId, this::loadMachine));
+    }
+
+    /**
+     * Gets the active machines of a facility.
+     *
+     * @param facilityId the facility ID
+     * @return the machines ordered by ID, not to be modified
+     */
+    public List<CoffeeMachineDto> facilityMachines(Long facilityId) {
+        if (!config.isEnabled() || machineStateStore.isEnabled()) {
+            return loadFacility(facilityId);
+        }
+        return facilities.get(facilityId, this::loadFacility);
+    }
+
+    @Order(INVALIDATE_ORDER)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        invalidate(event.facilityId(), event.machineId());
+    }
+
+    /**
+     * Drops the entries of a machine, or of a whole facility, once the current
+     * transaction commits. For changes that are not published as events.
+     *
+     * @param facilityId the facility ID
+     * @param machineId the changed machine, or null to drop every machine of the facility
+     */
+    public void invalidateAfterCommit(Long facilityId, Long machineId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return INVALIDATE_ORDER;
+                }
+
+                @Override
+                public void afterCommit() {
+                    invalidate(facilityId, machineId);
+                }
+            });
+        } else {
+            invalidate(facilityId, machineId);
+        }
+    }
+
+    private void invalidate(Long facilityId, Long machineId) {
+        if (machineId != null) {
+            machines.invalidate(machineId);
+        } else if (facilityId != null) {
+            machines.asMap().values().removeIf(machine -> facilityId.equals(machine.getFacilityId()));
+        }
+        if (facilityId != null) {
+            facilities.invalidate(facilityId);
+        }
+    }
+
+    private CoffeeMachineDto loadMachine(Long machineId) {
+        return readOnlyTransaction.execute(status -> {
+            Optional<CoffeeMachine> machine = machineStateStore.isEnabled()
+                    ? machineStateStore.get(machineId).map(MachineLiveState::toMachine)
+                    : coffeeMachineRepository.findActiveById(machineId);
+            return machine.map(coffeeMachineMapper::toDto).orElse(null);
+        });
+    }
+
+    private List<CoffeeMachineDto> loadFacility(Long facilityId) {
+        return readOnlyTransaction.execute(status ->
+                List.copyOf(coffeeMachineMapper.toDto(coffeeMachineRepository.findActiveByFacilityId(facilityId))));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Current readings of one machine, held by {@link MachineStateStore}.
+ * Readings are kept in primitive fields (temperature in hundredths of a degree,
+ * -1 for an unknown level) and guarded by the instance's own monitor, so updates
+ * for different machines never contend.
+ */
+public final class MachineLiveState {
+
+    private static final MachineStatus[] STATUSES = MachineStatus.values();
+    private static final int NO_TEMPERATURE = Integer.MIN_VALUE;
+    private static final int NO_LEVEL = -1;
+
+    private final long machineId;
+    private final Long facilityId;
+    private final String facilityName;
+    private final LocalDateTime createdAt;
+
+    private int status;
+    private int temperature;
+    private int waterLevel;
+    private int milkLevel;
+    private int beansLevel;
+    private LocalDateTime updatedAt;
+    private boolean dirty;
+    private boolean retired;
+
+    MachineLiveState(CoffeeMachine machine) {
+        this.machineId = machine.getId();
+        this.facilityId = machine.getFacility() != null ? machine.getFacility().getId() : null;
+        this.facilityName = machine.getFacility() != null ? machine.getFacility().getName() : null;
+        this.createdAt = machine.getCreatedAt();
+        this.status = machine.getStatus() != null ? machine.getStatus().ordinal() : MachineStatus.OFF.ordinal();
+        this.temperature = toHundredths(machine.getTemperature());
+        this.waterLevel = toLevel(machine.getWaterLevel());
+        this.milkLevel = toLevel(machine.getMilkLevel());
+        this.beansLevel = toLevel(machine.getBeansLevel());
+        this.updatedAt = machine.getUpdatedAt();
+    }
+
+    /**
+     * Result of {@link #apply}: the machine as it stood before the update and as it
+     * stands after it, both taken under the same lock.
+     */
+    public record Applied(CoffeeMachine previous, CoffeeMachine machine) {
+    }
+
+    /**
+     * Applies any non-null readings.
+     *
+     * @return the machine views before and after the update, or null if the state
+     *         was retired and the caller must apply to a freshly loaded one
+     */
+    synchronized Applied apply(MachineStatus newStatus, BigDecimal newTemperature,
+                                     Integer newWaterLevel, Integer newMilkLevel, Integer newBeansLevel) {
+        if (retired) {
+            return null;
+        }
+        CoffeeMachine previous = toMachine();
+        if (newStatus != null) {
+            status = newStatus.ordinal();
+        }
+        if (newTemperature != null) {
+            temperature = toHundredths(newTemperature);
+        }
+        if (newWaterLevel != null) {
+            waterLevel = newWaterLevel;
+        }
+        if (newMilkLevel != null) {
+            milkLevel = newMilkLevel;
+        }
+        if (newBeansLevel != null) {
+            beansLevel = newBeansLevel;
+        }
+        updatedAt = LocalDateTime.now();
+        return new Applied(previous, toMachine());
+    }
+
+    /**
+     * Marks the state as changed since the last flush.
+     *
+     * @return true if it was clean before, i.e. the caller should queue it for flushing
+     */
+    synchronized boolean markDirty() {
+        if (retired) {
+            return false;
+        }
+        boolean wasClean = !dirty;
+        dirty = true;
+        return wasClean;
+    }
+
+    /**
+     * Returns the column values to write and marks the state clean, or null if it is
+     * already clean. Order matches {@link MachineStateStore}'s UPDATE statement.
+     */
+    synchronized Object[] takeFlushRow() {
+        if (!dirty || retired) {
+            return null;
+        }
+        dirty = false;
+        return flushRow();
+    }
+
+    /**
+     * Stops the state from taking further readings or flushes and returns its final
+     * column values, whether or not it is dirty: a reading applied just before
+     * retirement may not have been marked dirty yet.
+     */
+    synchronized Object[] retire() {
+        retired = true;
+        dirty = false;
+        return flushRow();
+    }
+
+    private Object[] flushRow() {
+        return new Object[] {
+            STATUSES[status].name(),
+            temperature == NO_TEMPERATURE ? null : BigDecimal.valueOf(temperature, 2),
+            waterLevel == NO_LEVEL ? null : waterLevel,
+            milkLevel == NO_LEVEL ? null : milkLevel,
+            beansLevel == NO_LEVEL ? null : beansLevel,
+            updatedAt,
+            machineId
+        };
+    }
+
+    /**
+     * Builds a detached, read-only machine view of the current readings.
+     */
+    public synchronized CoffeeMachine toMachine() {
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setId(machineId);
+        if (facilityId != null) {
+            Facility facility = new Facility();
+            facility.setId(facilityId);
+            facility.setName(facilityName);
+            machine.setFacility(facility);
+        }
+        machine.setStatus(STATUSES[status]);
+        machine.setTemperature(temperature == NO_TEMPERATURE ? null : BigDecimal.valueOf(temperature, 2));
+        machine.setWaterLevel(waterLevel == NO_LEVEL ? null : waterLevel);
+        machine.setMilkLevel(milkLevel == NO_LEVEL ? null : milkLevel);
+        machine.setBeansLevel(beansLevel == NO_LEVEL ? null : beansLevel);
+        machine.setCreatedAt(createdAt);
+        machine.setUpdatedAt(updatedAt);
+        return machine;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    private static int toHundredths(BigDecimal value) {
+        return value == null ? NO_TEMPERATURE : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    private static int toLevel(Integer value) {
+        return value == null ? NO_LEVEL : value;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.event.MachineEventLanes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-machine mailboxes for ingested readings and usage events.
+ *
+ * <p>Machines are sharded over {@code app.ingestion.mailboxes.lanes} single-threaded
+ * lanes, so every mutation of one machine is applied in arrival order, one at a
+ * time, while different machines are applied in parallel. Two concurrent requests
+ * for the same machine therefore never load and overwrite the same entity, without
+ * taking database row locks. Each mutation runs in its own transaction on the lane.
+ *
+ * <p>Mailboxes are bounded; when a lane is full the submitting request thread waits
+ * for room. With mailboxes disabled, mutations run on the request thread.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MachineMailboxes {
+
+    private final AppProperties appProperties;
+
+    private MachineEventLanes lanes;
+
+    @PostConstruct
+    public void start() {
+        AppProperties.Ingestion.Mailboxes config = appProperties.getIngestion().getMailboxes();
+        lanes = new MachineEventLanes("machine-mailbox", config.isEnabled() ? config.getLanes() : 0,
+                config.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.shutdown();
+    }
+
+    /**
+     * Queues a mutation in the machine's mailbox.
+     *
+     * @param machineId the machine ID
+     * @param mutation the mutation, run in order with the machine's other mutations
+     * @return completes once the mutation has been applied, or exceptionally if it failed
+     */
+    public CompletableFuture<Void> submit(Long machineId, Runnable mutation) {
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        lanes.execute(machineId, () -> {
+            try {
+                mutation.run();
+                applied.complete(null);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply mutation for machine {}", machineId, e);
+                applied.completeExceptionally(e);
+            }
+        });
+        return applied;
+    }
+
+    /**
+     * Queues a mutation and waits up to {@code app.ingestion.mailboxes.wait-timeout-ms}
+     * for it to be applied. A failure of the mutation is rethrown to the caller.
+     *
+     * @param machineId the machine ID
+     * @param mutation the mutation
+     * @return true if applied within the timeout, false if it is still queued
+     */
+    public boolean submitAndWait(Long machineId, Runnable mutation) {
+        CompletableFuture<Void> applied = submit(machineId, mutation);
+        try {
+            applied.get(appProperties.getIngestion().getMailboxes().getWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.debug("Mutation for machine {} still queued after wait timeout", machineId);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return mutations waiting across all mailboxes
+     */
+    public int queued() {
+        return lanes.queued();
+    }
+}
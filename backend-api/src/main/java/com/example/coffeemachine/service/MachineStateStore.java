@@ -0,0 +1,247 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind store for live machine readings.
+ *
+ * <p>When {@code app.state-store.enabled} is set, telemetry updates are applied to
+ * an in-memory {@link MachineLiveState} and status reads are served from it, while
+ * changed machines are written to the database in batched UPDATEs every
+ * {@code app.state-store.flush-interval-ms}. That interval is the durability window:
+ * readings applied since the last flush are lost if the process dies without
+ * running its shutdown flush. The store assumes a single backend instance owns the
+ * live readings; machine configuration changes go through {@link #flushAndEvict},
+ * which holds off readings and loads of that machine until the change completes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MachineStateStore {
+
+    private static final String FLUSH_SQL = "UPDATE coffee_machine SET status = ?, temperature = ?, water_level = ?, "
+            + "milk_level = ?, beans_level = ?, updated_at = ? WHERE id = ? AND is_active = TRUE";
+
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final AppProperties appProperties;
+
+    private final Map<Long, MachineLiveState> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<MachineLiveState> dirtyQueue = new ConcurrentLinkedQueue<>();
+    // Machines whose row is being changed outside the store, released when that change completes
+    private final Map<Long, Fence> fences = new ConcurrentHashMap<>();
+    // Held across a flush, so an eviction never overtakes rows already taken for writing
+    private final Object flushLock = new Object();
+    // Bumped by every eviction, so a load that raced one is discarded instead of cached
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Fence(Thread owner, CountDownLatch released) {
+    }
+
+    public boolean isEnabled() {
+        return appProperties.getStateStore().isEnabled();
+    }
+
+    /**
+     * Returns the live state of an active machine, loading it on first access. While
+     * the machine is being changed through {@link #flushAndEvict}, waits for that
+     * change to complete so the state is loaded from the committed row.
+     *
+     * @param machineId the machine ID
+     * @return the live state or empty if the machine does not exist or is inactive
+     */
+    public Optional<MachineLiveState> get(Long machineId) {
+        while (true) {
+            MachineLiveState state = states.get(machineId);
+            if (state != null) {
+                return Optional.of(state);
+            }
+            Fence fence = fences.get(machineId);
+            if (fence != null && fence.owner() == Thread.currentThread()) {
+                // The changing transaction itself: a view of its own row, never cached
+                return coffeeMachineRepository.findActiveByIdWithFacility(machineId).map(MachineLiveState::new);
+            }
+            if (fence != null) {
+                await(machineId, fence);
+                continue;
+            }
+            long epoch = evictions.get();
+            Optional<CoffeeMachine> machine = coffeeMachineRepository.findActiveByIdWithFacility(machineId);
+            if (machine.isEmpty()) {
+                return Optional.empty();
+            }
+            MachineLiveState loaded = states.compute(machineId, (id, existing) -> existing != null ? existing
+                    : fences.containsKey(id) || evictions.get() != epoch ? null : new MachineLiveState(machine.get()));
+            if (loaded != null) {
+                return Optional.of(loaded);
+            }
+        }
+    }
+
+    /**
+     * Applies any non-null readings to a machine's live state and schedules it for flushing.
+     *
+     * @return the updated machine view and previous status, or empty if the machine does not exist or is inactive
+     */
+    public Optional<MachineLiveState.Applied> apply(Long machineId, MachineStatus status, BigDecimal temperature,
+                                         Integer waterLevel, Integer milkLevel, Integer beansLevel) {
+        while (true) {
+            Optional<MachineLiveState> state = get(machineId);
+            if (state.isEmpty()) {
+                return Optional.empty();
+            }
+            MachineLiveState.Applied applied = state.get().apply(status, temperature, waterLevel, milkLevel, beansLevel);
+            if (applied != null) {
+                if (state.get().markDirty()) {
+                    dirtyQueue.add(state.get());
+                }
+                return Optional.of(applied);
+            }
+            // Evicted since it was looked up; retry against the reloaded state
+        }
+    }
+
+    /**
+     * Writes out and forgets a machine's live state so the next access reloads it
+     * from the database. Called before the machine row is changed by other means.
+     *
+     * <p>The final readings are written in the caller's transaction, and readings and
+     * loads of the machine wait until that transaction completes, so neither a late
+     * flush nor a reload of the uncommitted row can overwrite the change.
+     */
+    public void flushAndEvict(Long machineId) {
+        Fence fence = new Fence(Thread.currentThread(), new CountDownLatch(1));
+        Fence existing;
+        while ((existing = fences.putIfAbsent(machineId, fence)) != null) {
+            if (existing.owner() == Thread.currentThread()) {
+                return;
+            }
+            await(machineId, existing);
+        }
+        evictions.incrementAndGet();
+        try {
+            synchronized (flushLock) {
+                MachineLiveState state = states.remove(machineId);
+                if (state != null) {
+                    jdbcTemplate.update(FLUSH_SQL, state.retire());
+                }
+            }
+        } catch (RuntimeException e) {
+            release(machineId, fence);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(machineId, fence);
+                }
+            });
+        } else {
+            release(machineId, fence);
+        }
+    }
+
+    private void release(Long machineId, Fence fence) {
+        fences.remove(machineId, fence);
+        fence.released().countDown();
+    }
+
+    private static void await(Long machineId, Fence fence) {
+        try {
+            fence.released().await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for machine " + machineId + " to be updated", e);
+        }
+    }
+
+    /**
+     * Writes every machine changed since the last flush, in batches of
+     * {@code app.state-store.flush-batch-size}.
+     *
+     * @return number of machines written
+     */
+    @Scheduled(fixedDelayString = "${app.state-store.flush-interval-ms:1000}")
+    public int flush() {
+        int batchSize = Math.max(1, appProperties.getStateStore().getFlushBatchSize());
+        int written = 0;
+        List<MachineLiveState> batch = new ArrayList<>(batchSize);
+        synchronized (flushLock) {
+            MachineLiveState state;
+            while ((state = dirtyQueue.poll()) != null) {
+                batch.add(state);
+                if (batch.size() == batchSize) {
+                    written += writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                written += writeBatch(batch);
+            }
+        }
+        if (written > 0) {
+            log.debug("Flushed live state of {} machines", written);
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int written = flush();
+        log.info("Flushed live state of {} machines on shutdown", written);
+    }
+
+    private int writeBatch(List<MachineLiveState> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        List<MachineLiveState> taken = new ArrayList<>(batch.size());
+        for (MachineLiveState state : batch) {
+            Object[] row = state.takeFlushRow();
+            if (row != null) {
+                rows.add(row);
+                taken.add(state);
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, rows));
+            return rows.size();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush live state of {} machines, will retry", rows.size(), e);
+            // Re-queue so the readings go out with the next flush
+            for (MachineLiveState state : taken) {
+                if (state.markDirty()) {
+                    dirtyQueue.add(state);
+                }
+            }
+            return 0;
+        }
+    }
+}
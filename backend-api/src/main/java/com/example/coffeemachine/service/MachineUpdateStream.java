@@ -0,0 +1,470 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.event.AlertStateChanged;
+import com.example.coffeemachine.event.MachineStateChanged;
+import com.example.coffeemachine.service.dto.AlertDeltaDto;
+import com.example.coffeemachine.service.dto.CoffeeMachineDto;
+import com.example.coffeemachine.service.dto.MachineDeltaDto;
+import com.example.coffeemachine.service.dto.ResyncDto;
+import com.example.coffeemachine.service.mapper.CoffeeMachineMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes machine and alert changes to live dashboards over Server-Sent Events, so
+ * dashboards no longer poll the machine lists.
+ *
+ * <p>Each committed {@link MachineStateChanged} becomes a {@code machine} event holding
+ * only the readings that changed, and each {@link AlertStateChanged} an {@code alert}
+ * event. Events get increasing IDs of the form {@code <epoch>-<sequence>}, where the
+ * epoch identifies this node's run. Facility subscribers receive their facility's
+ * events; fleet subscribers receive all of them.
+ *
+ * <p>Every subscriber has a buffer of {@code app.dashboard.stream.buffer-size} events,
+ * drained by a small pool of sender threads. Publishing never waits on a client: a
+ * subscriber whose buffer is full is disconnected instead. Browsers reconnect with the
+ * ID of the last event they saw. If the events since then are still among the last
+ * {@code app.dashboard.stream.replay-size}, they are replayed; otherwise, or when the
+ * ID is from another node or run, the subscriber first gets a {@code snapshot} event
+ * with every machine in scope. Machine fields in events are absolute values, so an
+ * event that overlaps a snapshot is harmless.
+ *
+ * <p>Changes committed by other nodes are published by {@link MachineChangeSync} after
+ * each poll: a machine that still exists as a {@code machine} event with all of its
+ * readings, and anything else (alert changes, deleted machines, facility edits) as a
+ * {@code resync} event asking subscribers to reload that machine or facility. Changes
+ * made through this node are seen by the poll too and are sent again the same way.
+ */
+@Component
+@Slf4j
+public class MachineUpdateStream {
+
+    private static final String SNAPSHOT = "snapshot";
+    private static final String MACHINE = "machine";
+    private static final String ALERT = "alert";
+    private static final String RESYNC = "resync";
+
+    private final CoffeeMachineService coffeeMachineService;
+    private final CoffeeMachineMapper coffeeMachineMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AppProperties.Dashboard.Stream config;
+    private final Counter evictions;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> fleetSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Subscriber>> facilitySubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+
+    /** The most recent events, indexed by sequence modulo length. Guarded by this. */
+    private final Update[] replay;
+    private long sequence;
+
+    /**
+     * One event in the stream. A null name marks a heartbeat comment.
+     */
+    record Update(long sequence, Long facilityId, String name, Object data) {
+    }
+
+    /**
+     * Where a subscriber's events are written to.
+     */
+    interface Sink {
+        void send(String id, String name, Object data) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void close();
+    }
+
+    public MachineUpdateStream(CoffeeMachineService coffeeMachineService, CoffeeMachineMapper coffeeMachineMapper,
+                               PlatformTransactionManager transactionManager, AppProperties appProperties,
+                               MeterRegistry meterRegistry) {
+        this.coffeeMachineService = coffeeMachineService;
+        this.coffeeMachineMapper = coffeeMachineMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.config = appProperties.getDashboard().getStream();
+        this.replay = new Update[Math.max(1, config.getReplaySize())];
+        this.senders = Executors.newFixedThreadPool(Math.max(1, config.getSenderThreads()), daemon("machine-stream"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(daemon("machine-stream-heartbeat"));
+        if (config.getHeartbeatMs() > 0) {
+            heartbeats.scheduleWithFixedDelay(this::heartbeat, config.getHeartbeatMs(), config.getHeartbeatMs(),
+                    TimeUnit.MILLISECONDS);
+        }
+        this.evictions = Counter.builder("machine.stream.evictions")
+                .description("Live stream subscribers disconnected because their buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("machine.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Connected live stream subscribers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of one facility's changes, or of the whole fleet's.
+     *
+     * @param facilityId the facility ID, or null for every facility
+     * @param lastEventId the Last-Event-ID sent by a reconnecting client, or null
+     * @return the emitter to return from the controller
+     */
+    public SseEmitter subscribe(Long facilityId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(config.getTimeoutMs());
+        Subscriber subscriber = subscribe(facilityId, lastEventId, new EmitterSink(emitter));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Registers a subscriber, then either replays the events it missed or sends it
+     * a snapshot. Events published meanwhile wait in its buffer until it is ready.
+     */
+    Subscriber subscribe(Long facilityId, String lastEventId, Sink sink) {
+        Subscriber subscriber = new Subscriber(facilityId, sink, Math.max(1, config.getBufferSize()));
+        long snapshotSequence;
+        synchronized (this) {
+            List<Update> missed = missedSince(facilityId, lastEventId);
+            if (missed != null && missed.size() <= subscriber.buffer.remainingCapacity()) {
+                subscriber.buffer.addAll(missed);
+                subscriber.ready = true;
+            }
+            snapshotSequence = sequence;
+            register(subscriber);
+        }
+        if (!subscriber.ready) {
+            try {
+                sink.send(id(snapshotSequence), SNAPSHOT, snapshot(facilityId));
+            } catch (IOException | RuntimeException e) {
+                log.debug("Could not send snapshot to live stream subscriber: {}", e.getMessage());
+                unsubscribe(subscriber);
+                sink.close();
+                return subscriber;
+            }
+            subscriber.ready = true;
+        }
+        subscriber.schedule();
+        return subscriber;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMachineStateChanged(MachineStateChanged event) {
+        MachineDeltaDto delta = delta(event);
+        if (delta != null) {
+            publish(event.facilityId(), MACHINE, delta);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAlertStateChanged(AlertStateChanged event) {
+        publish(event.facilityId(), ALERT, AlertDeltaDto.builder()
+                .id(event.alertId())
+                .machineId(event.machineId())
+                .facilityId(event.facilityId())
+                .type(event.type())
+                .severity(event.severity())
+                .change(event.change())
+                .build());
+    }
+
+    /**
+     * Publishes the current readings of a machine changed on another node, whose
+     * previous readings this node does not know.
+     *
+     * @param machine the machine as now stored
+     */
+    public void publishSynced(CoffeeMachineDto machine) {
+        publish(machine.getFacilityId(), MACHINE, MachineDeltaDto.builder()
+                .id(machine.getId())
+                .facilityId(machine.getFacilityId())
+                .status(machine.getStatus())
+                .temperature(machine.getTemperature())
+                .waterLevel(machine.getWaterLevel())
+                .milkLevel(machine.getMilkLevel())
+                .beansLevel(machine.getBeansLevel())
+                .build());
+    }
+
+    /**
+     * Asks subscribers to reload a machine or facility changed on another node in a
+     * way the stream cannot describe.
+     *
+     * @param facilityId the facility ID
+     * @param machineId the changed machine, or null to reload the whole facility
+     */
+    public void publishResync(Long facilityId, Long machineId) {
+        publish(facilityId, RESYNC, ResyncDto.builder()
+                .facilityId(facilityId)
+                .machineId(machineId)
+                .build());
+    }
+
+    /**
+     * @return number of connected subscribers
+     */
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : allSubscribers()) {
+            unsubscribe(subscriber);
+            subscriber.sink.close();
+        }
+    }
+
+    /**
+     * Builds a delta with the readings that changed, or null if none did.
+     */
+    static MachineDeltaDto delta(MachineStateChanged event) {
+        MachineStateChanged.Readings previous = event.previous();
+        MachineStateChanged.Readings current = event.current();
+        MachineDeltaDto delta = MachineDeltaDto.builder()
+                .id(event.machineId())
+                .facilityId(event.facilityId())
+                .status(changed(previous.status(), current.status()))
+                .temperature(current.temperature() != null
+                        && !Objects.equals(previous.temperature(), current.temperature())
+                        ? current.temperature().doubleValue() : null)
+                .waterLevel(changed(previous.waterLevel(), current.waterLevel()))
+                .milkLevel(changed(previous.milkLevel(), current.milkLevel()))
+                .beansLevel(changed(previous.beansLevel(), current.beansLevel()))
+                .build();
+        boolean anyChanged = delta.getStatus() != null || delta.getTemperature() != null
+                || delta.getWaterLevel() != null || delta.getMilkLevel() != null || delta.getBeansLevel() != null;
+        return anyChanged ? delta : null;
+    }
+
+    private static <T> T changed(T previous, T current) {
+        return current != null && !current.equals(previous) ? current : null;
+    }
+
+    private synchronized void publish(Long facilityId, String name, Object data) {
+        Update update = new Update(++sequence, facilityId, name, data);
+        replay[(int) (update.sequence() % replay.length)] = update;
+        for (Subscriber subscriber : fleetSubscribers) {
+            subscriber.offer(update);
+        }
+        if (facilityId != null) {
+            Set<Subscriber> subscribers = facilitySubscribers.get(facilityId);
+            if (subscribers != null) {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(update);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the events in scope after the given event ID.
+     *
+     * @return the missed events, oldest first, or null if they cannot be replayed
+     */
+    private List<Update> missedSince(Long facilityId, String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return null;
+        }
+        long lastSeen;
+        try {
+            lastSeen = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (lastSeen > sequence || lastSeen < sequence - replay.length) {
+            return null;
+        }
+        List<Update> missed = new ArrayList<>();
+        for (long next = lastSeen + 1; next <= sequence; next++) {
+            Update update = replay[(int) (next % replay.length)];
+            if (facilityId == null || facilityId.equals(update.facilityId())) {
+                missed.add(update);
+            }
+        }
+        return missed;
+    }
+
+    private List<CoffeeMachineDto> snapshot(Long facilityId) {
+        return readOnlyTransaction.execute(status -> coffeeMachineMapper.toDto(facilityId != null
+                ? coffeeMachineService.findByFacilityId(facilityId)
+                : coffeeMachineService.findAllActive()));
+    }
+
+    private void heartbeat() {
+        Update heartbeat = new Update(0, null, null, null);
+        for (Subscriber subscriber : allSubscribers()) {
+            subscriber.offer(heartbeat);
+        }
+    }
+
+    private void register(Subscriber subscriber) {
+        if (subscriber.facilityId == null) {
+            fleetSubscribers.add(subscriber);
+        } else {
+            facilitySubscribers.computeIfAbsent(subscriber.facilityId, id -> ConcurrentHashMap.newKeySet())
+                    .add(subscriber);
+        }
+        subscriberCount.incrementAndGet();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (subscriber.facilityId == null) {
+            fleetSubscribers.remove(subscriber);
+        } else {
+            facilitySubscribers.computeIfPresent(subscriber.facilityId,
+                    (id, subscribers) -> subscribers.remove(subscriber) && subscribers.isEmpty() ? null : subscribers);
+        }
+        subscriberCount.decrementAndGet();
+        subscriber.buffer.clear();
+    }
+
+    private List<Subscriber> allSubscribers() {
+        List<Subscriber> all = new ArrayList<>(fleetSubscribers);
+        facilitySubscribers.values().forEach(all::addAll);
+        return all;
+    }
+
+    private String id(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A connected client. At most one sender thread drains its buffer at a time, so
+     * its events are written in order.
+     */
+    final class Subscriber implements Runnable {
+        private final Long facilityId;
+        private final Sink sink;
+        private final BlockingQueue<Update> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean ready;
+
+        private Subscriber(Long facilityId, Sink sink, int bufferSize) {
+            this.facilityId = facilityId;
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean isClosed() {
+            return closed.get();
+        }
+
+        private void offer(Update update) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(update)) {
+                log.debug("Disconnecting slow live stream subscriber for facility {}", facilityId);
+                evictions.increment();
+                unsubscribe(this);
+                try {
+                    senders.execute(sink::close);
+                } catch (RejectedExecutionException e) {
+                    sink.close();
+                }
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (ready && !closed.get() && scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Update update;
+                while (!closed.get() && (update = buffer.poll()) != null) {
+                    if (update.name() == null) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send(id(update.sequence()), update.name(), update.data());
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Live stream subscriber disconnected: {}", e.getMessage());
+                unsubscribe(this);
+                sink.close();
+            } finally {
+                scheduled.set(false);
+            }
+            if (!buffer.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Writes events to a servlet {@link SseEmitter}.
+     */
+    private record EmitterSink(SseEmitter emitter) implements Sink {
+
+        @Override
+        public void send(String id, String name, Object data) throws IOException {
+            emitter.send(SseEmitter.event().id(id).name(name).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
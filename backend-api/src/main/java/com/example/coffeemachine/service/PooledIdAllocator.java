@@ -0,0 +1,83 @@
+package com.example.coffeemachine.service;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hands out IDs from a named row of the {@code id_sequence} table, reserving them
+ * in blocks of {@code blockSize}. Only one short transaction per block touches the
+ * database, so IDs are known before the row is inserted and inserts can be batched.
+ *
+ * <p>Reserving a block advances the sequence under a row lock, so any number of
+ * allocators and nodes can share a sequence; IDs of a block that is never used are
+ * simply skipped. Every insert into the numbered table must take its ID from here.
+ */
+public class PooledIdAllocator {
+
+    private static final String ADVANCE_SQL = "UPDATE id_sequence SET next_val = next_val + ? WHERE name = ?";
+    private static final String READ_SQL = "SELECT next_val FROM id_sequence WHERE name = ?";
+
+    private final String sequence;
+    private final String table;
+    private final int blockSize;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private long next;
+    private long limit;
+
+    /**
+     * @param table the numbered table, also used as the sequence name
+     * @param blockSize IDs reserved per database round trip
+     */
+    public PooledIdAllocator(String table, int blockSize, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.sequence = table;
+        this.table = table;
+        this.blockSize = Math.max(1, blockSize);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Commit the reservation even if the caller's transaction rolls back
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @return the next unused ID
+     */
+    public synchronized long nextId() {
+        if (next == limit) {
+            limit = reserveBlock();
+            next = limit - blockSize;
+        }
+        return next++;
+    }
+
+    /**
+     * Advances the sequence by one block.
+     *
+     * @return the end (exclusive) of the reserved block
+     */
+    private long reserveBlock() {
+        Long end = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(ADVANCE_SQL, blockSize, sequence) == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(READ_SQL, Long.class, sequence);
+        });
+        if (end != null) {
+            return end;
+        }
+        // No row yet (schema created without migrations): start after the existing rows
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT INTO id_sequence (name, next_val) SELECT ?, COALESCE(MAX(id), 0) + 1 FROM " + table,
+                    sequence));
+        } catch (DuplicateKeyException e) {
+            // Created concurrently by another allocator
+        }
+        return reserveBlock();
+    }
+}
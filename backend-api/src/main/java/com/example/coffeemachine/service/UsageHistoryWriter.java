@@ -0,0 +1,220 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.BrewType;
+import com.example.coffeemachine.domain.UsageHistory;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only writer for usage history rows.
+ *
+ * <p>Rows get their IDs from a {@link PooledIdAllocator} and are written with plain
+ * JDBC batch INSERTs referencing the machine by ID, so recording a brew needs no
+ * entity load and no generated-key round trip. With {@code app.usage-writer.buffered}
+ * set, rows are accumulated in memory and flushed once
+ * {@code app.usage-writer.flush-size} rows are pending or every
+ * {@code app.usage-writer.flush-interval-ms}, whichever comes first. That interval is
+ * the durability and visibility window: pending rows are not yet returned by usage
+ * queries, and are lost if the process dies without running its shutdown flush.
+ * Without buffering, each row is inserted immediately in the caller's transaction.
+ *
+ * <p>A batch that fails for any reason but a constraint violation, e.g. while the
+ * database is unreachable, stays pending and is retried by the next flush; only rows
+ * that violate a constraint (a duplicate idempotency key, a machine deleted meanwhile)
+ * are dropped. At most {@code app.usage-writer.max-pending} rows are held: beyond that
+ * rows are inserted on the caller's thread as without buffering, which slows callers
+ * down to what the database takes and fails them while it is unavailable.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UsageHistoryWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO usage_history (id, machine_id, timestamp, brew_type, "
+            + "volume_ml, temp_at_brew, idempotency_key, is_active, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?)";
+
+    private final CoffeeMachineRepository coffeeMachineRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final AppProperties appProperties;
+
+    private final ConcurrentLinkedQueue<Object[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private PooledIdAllocator idAllocator;
+
+    @PostConstruct
+    public void init() {
+        idAllocator = new PooledIdAllocator("usage_history", appProperties.getUsageWriter().getIdBlockSize(),
+                jdbcTemplate, transactionManager);
+    }
+
+    /**
+     * Records one brewing event.
+     *
+     * @param machineId the ID of an existing machine
+     * @param timestamp when the brew happened
+     * @param brewType the beverage brewed
+     * @param volumeMl the volume in milliliters, or null
+     * @param tempAtBrew the machine temperature at the time, or null
+     * @param idempotencyKey key identifying the event across retries, or null
+     * @return the recorded usage, with its ID assigned
+     * @throws DuplicateKeyException when inserted directly, if the idempotency key was already recorded
+     */
+    public UsageHistory append(Long machineId, LocalDateTime timestamp, BrewType brewType, Integer volumeMl,
+                               BigDecimal tempAtBrew, String idempotencyKey) {
+        long id = idAllocator.nextId();
+        LocalDateTime now = LocalDateTime.now();
+        Object[] row = {id, machineId, timestamp, brewType.name(), volumeMl, tempAtBrew, idempotencyKey, now, now};
+
+        UsageHistory usage = new UsageHistory(coffeeMachineRepository.getReferenceById(machineId), timestamp,
+                brewType, volumeMl, null);
+        usage.setId(id);
+        usage.setTempAtBrew(tempAtBrew);
+        usage.setIdempotencyKey(idempotencyKey);
+        usage.setCreatedAt(now);
+        usage.setUpdatedAt(now);
+
+        AppProperties.UsageWriter config = appProperties.getUsageWriter();
+        if (!config.isBuffered() || pendingCount.get() >= config.getMaxPending()) {
+            jdbcTemplate.update(INSERT_SQL, row);
+            return usage;
+        }
+        pending.add(row);
+        if (pendingCount.incrementAndGet() >= config.getFlushSize()) {
+            flushIfIdle();
+        }
+        return usage;
+    }
+
+    /**
+     * Writes every pending row, in batches of {@code app.usage-writer.flush-size}.
+     *
+     * @return number of rows written
+     */
+    @Scheduled(fixedDelayString = "${app.usage-writer.flush-interval-ms:200}")
+    public int flush() {
+        flushLock.lock();
+        try {
+            return drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int written = flush();
+        log.info("Flushed {} usage history rows on shutdown", written);
+        if (pendingCount() > 0) {
+            log.error("Shutting down with {} usage history rows not written", pendingCount());
+        }
+    }
+
+    /**
+     * @return rows appended but not written yet
+     */
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Flushes on the appending thread unless another flush is already running,
+     * in which case that flush picks up the new rows.
+     */
+    private void flushIfIdle() {
+        if (flushLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private int drain() {
+        int batchSize = Math.max(1, appProperties.getUsageWriter().getFlushSize());
+        int written = 0;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        List<Object[]> retry = new ArrayList<>();
+        Object[] row;
+        // Stops at the first failed batch; the rest waits for the next flush with it
+        while (retry.isEmpty() && (row = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                written += writeBatch(batch, retry);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            written += writeBatch(batch, retry);
+        }
+        if (!retry.isEmpty()) {
+            pending.addAll(retry);
+            pendingCount.addAndGet(retry.size());
+        }
+        if (written > 0) {
+            log.debug("Flushed {} usage history rows", written);
+        }
+        return written;
+    }
+
+    /**
+     * Writes one batch, adding the rows to retry to {@code retry}.
+     *
+     * @return number of rows written
+     */
+    private int writeBatch(List<Object[]> rows, List<Object[]> retry) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+            return rows.size();
+        } catch (DataIntegrityViolationException e) {
+            // One bad row (a duplicate idempotency key, a machine deleted meanwhile) fails
+            // the whole batch; keep the others
+            log.warn("Usage history batch of {} rows failed, inserting rows one by one: {}", rows.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Usage history batch of {} rows failed, keeping it for the next flush: {}", rows.size(), e.getMessage());
+            retry.addAll(rows);
+            return 0;
+        }
+        int written = 0;
+        for (Object[] row : rows) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, row));
+                written++;
+            } catch (DuplicateKeyException duplicate) {
+                log.debug("Usage {} for machine {} already recorded under key {}", row[0], row[1], row[6]);
+            } catch (DataIntegrityViolationException violation) {
+                log.error("Dropping usage history row {} for machine {}: {}", row[0], row[1], violation.getMessage());
+            } catch (RuntimeException rowError) {
+                log.warn("Usage history row {} for machine {} failed, keeping it for the next flush: {}",
+                        row[0], row[1], rowError.getMessage());
+                retry.add(row);
+            }
+        }
+        return written;
+    }
+}
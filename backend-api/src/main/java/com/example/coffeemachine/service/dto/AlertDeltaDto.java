@@ -0,0 +1,27 @@
+package com.example.coffeemachine.service.dto;
+
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.event.AlertStateChanged;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for an alert opening, being resolved or being deleted, pushed on the live
+ * dashboard stream.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertDeltaDto {
+    
+    private Long id;
+    private Long machineId;
+    private Long facilityId;
+    private AlertType type;
+    private Severity severity;
+    private AlertStateChanged.Change change;
+}
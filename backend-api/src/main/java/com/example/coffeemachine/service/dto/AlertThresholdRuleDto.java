@@ -0,0 +1,27 @@
+package com.example.coffeemachine.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for alert threshold rules of a facility or machine.
+ * A null level threshold is inherited from the wider scope.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertThresholdRuleDto {
+    
+    private Long id;
+    private Long facilityId;
+    private Long machineId;
+    private Integer waterLevel;
+    private Integer milkLevel;
+    private Integer beansLevel;
+    private LocalDateTime updatedAt;
+}
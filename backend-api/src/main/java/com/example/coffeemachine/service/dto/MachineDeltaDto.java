@@ -0,0 +1,28 @@
+package com.example.coffeemachine.service.dto;
+
+import com.example.coffeemachine.domain.MachineStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for a change to a machine's readings, pushed on the live dashboard stream.
+ * Only the fields that changed are set; the others are left out of the JSON.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MachineDeltaDto {
+    
+    private Long id;
+    private Long facilityId;
+    private MachineStatus status;
+    private Double temperature;
+    private Integer waterLevel;
+    private Integer milkLevel;
+    private Integer beansLevel;
+}
@@ -1,12 +1,17 @@
 package com.example.coffeemachine.service.dto;
 
 import com.example.coffeemachine.domain.BrewType;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import java.math.BigDecimal;
 
 @Data
 public class RecordUsageRequest {
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
     private BrewType brewType;
     private Integer volumeMl;
     private BigDecimal tempAtBrew;
+    @Size(max = MAX_IDEMPOTENCY_KEY_LENGTH)
+    private String idempotencyKey;
 }
@@ -0,0 +1,22 @@
+package com.example.coffeemachine.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO telling live dashboard subscribers to reload a facility, or one of its machines,
+ * after a change whose details the stream does not have.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResyncDto {
+    
+    private Long facilityId;
+    private Long machineId;
+}
@@ -0,0 +1,13 @@
+package com.example.coffeemachine.service.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class TelemetryBatchRequest {
+
+    // Records are validated one by one during ingestion, so one bad record is rejected alone
+    @NotEmpty
+    private List<TelemetryRecordRequest> records;
+}
@@ -0,0 +1,35 @@
+package com.example.coffeemachine.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of applying a telemetry batch, with one entry per submitted record
+ * in submission order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryBatchResponse {
+
+    private int applied;
+    private int rejected;
+    private List<RecordResult> results;
+
+    public enum Outcome { APPLIED, NOT_FOUND, INVALID, FAILED }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecordResult {
+        private int index;
+        private Long machineId;
+        private Outcome outcome;
+        private String error;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.coffeemachine.service.dto;
+
+import com.example.coffeemachine.domain.BrewType;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import java.math.BigDecimal;
+
+/**
+ * A single reading inside a telemetry batch.
+ * Which fields are used depends on the record type. Constraint violations are
+ * reported as an INVALID result for the record, not as a failed batch.
+ */
+@Data
+public class TelemetryRecordRequest {
+
+    public enum Type { STATUS, LEVELS, SNAPSHOT, USAGE }
+
+    @NotNull
+    private Type type;
+
+    @NotNull
+    private Long machineId;
+
+    private String status;
+    private BigDecimal temperature;
+
+    @Min(value = 0, message = "Water level cannot be negative")
+    @Max(value = 100, message = "Water level cannot exceed 100%")
+    private Integer waterLevel;
+
+    @Min(value = 0, message = "Milk level cannot be negative")
+    @Max(value = 100, message = "Milk level cannot exceed 100%")
+    private Integer milkLevel;
+
+    @Min(value = 0, message = "Beans level cannot be negative")
+    @Max(value = 100, message = "Beans level cannot exceed 100%")
+    private Integer beansLevel;
+
+    private BrewType brewType;
+    private Integer volumeMl;
+    private BigDecimal tempAtBrew;
+
+    @Size(max = 64, message = "Idempotency key cannot exceed 64 characters")
+    private String idempotencyKey;
+}
@@ -0,0 +1,25 @@
+package com.example.coffeemachine.service.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+/**
+ * DTO for setting the alert thresholds of a facility or machine.
+ * A null threshold is inherited from the wider scope.
+ */
+@Data
+public class UpdateAlertThresholdRuleRequest {
+    
+    @Min(value = 0, message = "Water level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Water level threshold must be between 0 and 100")
+    private Integer waterLevel;
+    
+    @Min(value = 0, message = "Milk level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Milk level threshold must be between 0 and 100")
+    private Integer milkLevel;
+    
+    @Min(value = 0, message = "Beans level threshold must be between 0 and 100")
+    @Max(value = 100, message = "Beans level threshold must be between 0 and 100")
+    private Integer beansLevel;
+}
@@ -0,0 +1,13 @@
+package com.example.coffeemachine.service.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+public class UpdateMachineSnapshotRequest {
+    private String status;
+    private BigDecimal temperature;
+    private Integer waterLevel;
+    private Integer milkLevel;
+    private Integer beansLevel;
+}
@@ -0,0 +1,28 @@
+package com.example.coffeemachine.service.mapper;
+
+import com.example.coffeemachine.domain.AlertThresholdRule;
+import com.example.coffeemachine.service.dto.AlertThresholdRuleDto;
+import org.mapstruct.Mapper;
+
+/**
+ * Mapper for the entity {@link AlertThresholdRule} and its DTO {@link AlertThresholdRuleDto}.
+ */
+@Mapper(componentModel = "spring")
+public interface AlertThresholdRuleMapper {
+
+    /**
+     * Map AlertThresholdRule entity to AlertThresholdRuleDto.
+     *
+     * @param rule the AlertThresholdRule entity
+     * @return the AlertThresholdRuleDto
+     */
+    AlertThresholdRuleDto toDto(AlertThresholdRule rule);
+
+    /**
+     * Map a list of AlertThresholdRule entities to a list of AlertThresholdRuleDtos.
+     *
+     * @param rules the list of AlertThresholdRule entities
+     * @return the list of AlertThresholdRuleDtos
+     */
+    java.util.List<AlertThresholdRuleDto> toDto(java.util.List<AlertThresholdRule> rules);
+}
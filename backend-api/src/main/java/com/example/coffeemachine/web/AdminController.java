@@ -1,13 +1,19 @@
 package com.example.coffeemachine.web;
 
 import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.domain.Severity;
 import com.example.coffeemachine.domain.User;
 import com.example.coffeemachine.service.AlertService;
+import com.example.coffeemachine.service.AlertThresholdRuleService;
 import com.example.coffeemachine.service.CoffeeMachineService;
 import com.example.coffeemachine.service.FacilityService;
+import com.example.coffeemachine.service.FleetCounters;
+import com.example.coffeemachine.service.MachineUpdateStream;
 import com.example.coffeemachine.service.UserService;
 import com.example.coffeemachine.service.dto.*;
 import com.example.coffeemachine.service.mapper.AlertMapper;
+import com.example.coffeemachine.service.mapper.AlertThresholdRuleMapper;
 import com.example.coffeemachine.service.mapper.CoffeeMachineMapper;
 import com.example.coffeemachine.service.mapper.FacilityMapper;
 import com.example.coffeemachine.service.mapper.UserMapper;
@@ -18,9 +24,11 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -44,6 +52,10 @@ public class AdminController {
     private final UserMapper userMapper;
     private final CoffeeMachineMapper coffeeMachineMapper;
     private final AlertMapper alertMapper;
+    private final AlertThresholdRuleService alertThresholdRuleService;
+    private final AlertThresholdRuleMapper alertThresholdRuleMapper;
+    private final FleetCounters fleetCounters;
+    private final MachineUpdateStream machineUpdateStream;
 
     // ================== Facility Management ==================
 
@@ -251,19 +263,38 @@ public class AdminController {
     public ResponseEntity<ApiResponse<DashboardSummaryDto>> getSystemUsage() {
         log.debug("Getting system usage statistics");
         
-        // This would typically aggregate data from multiple services
-        // For now, we'll return a basic implementation
+        // Served from in-memory counters, so the cost does not grow with the fleet
+        FleetCounters.Snapshot counts = fleetCounters.snapshot();
         DashboardSummaryDto summary = DashboardSummaryDto.builder()
                 .timestamp(java.time.LocalDateTime.now())
-                .totalFacilities(facilityService.findAllActive().size())
-                .totalMachines(coffeeMachineService.findAllActive().size())
-                .totalUnresolvedAlerts(alertService.getAllUnresolvedAlerts().size())
-                .criticalAlerts(alertService.getCriticalAlerts().size())
+                .totalFacilities((int) counts.facilities())
+                .totalMachines((int) counts.machines())
+                .onlineMachines((int) counts.machines(MachineStatus.ON))
+                .offlineMachines((int) counts.machines(MachineStatus.OFF))
+                .errorMachines((int) counts.machines(MachineStatus.ERROR))
+                .totalUnresolvedAlerts((int) counts.openAlerts())
+                .criticalAlerts((int) counts.openAlerts(Severity.CRITICAL))
+                .warningAlerts((int) counts.openAlerts(Severity.WARNING))
                 .build();
         
         return ResponseEntity.ok(ApiResponse.success(summary, "System usage retrieved successfully"));
     }
 
+    /**
+     * Stream machine and alert changes across every facility as Server-Sent Events.
+     *
+     * @param lastEventId the ID of the last event received, sent by reconnecting clients
+     * @return the event stream
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream fleet changes", description = "Live machine and alert changes for all facilities")
+    public SseEmitter streamFleet(
+            @Parameter(description = "ID of the last event received")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.debug("Opening fleet live stream");
+        return machineUpdateStream.subscribe(null, lastEventId);
+    }
+
     /**
      * Get all system alerts.
      *
@@ -311,4 +342,155 @@ public class AdminController {
         
         return ResponseEntity.ok(ApiResponse.success(statsDto, "Alert statistics retrieved successfully"));
     }
-}
\ No newline at end of file
+
+    // ================== Alert Threshold Rules ==================
+
+    /**
+     * Get all alert threshold rules.
+     *
+     * @return list of facility and machine rules
+     */
+    @GetMapping("/alert-thresholds")
+    @Operation(summary = "Get alert threshold rules", description = "Get all per-facility and per-machine alert threshold rules")
+    public ResponseEntity<ApiResponse<List<AlertThresholdRuleDto>>> getAlertThresholdRules() {
+        log.debug("Getting alert threshold rules");
+        
+        List<AlertThresholdRuleDto> ruleDtos = alertThresholdRuleMapper.toDto(alertThresholdRuleService.findAllActive());
+        
+        return ResponseEntity.ok(ApiResponse.success(ruleDtos, "Alert threshold rules retrieved successfully"));
+    }
+
+    /**
+     * Get the alert threshold rule of a facility.
+     *
+     * @param facilityId the facility ID
+     * @return the facility rule
+     */
+    @GetMapping("/facility/{facilityId}/alert-thresholds")
+    @Operation(summary = "Get facility alert thresholds", description = "Get the alert threshold rule of a facility")
+    public ResponseEntity<ApiResponse<AlertThresholdRuleDto>> getFacilityAlertThresholds(
+            @Parameter(description = "Facility ID") @PathVariable Long facilityId) {
+        
+        return alertThresholdRuleService.findFacilityRule(facilityId)
+                .map(rule -> ResponseEntity.ok(ApiResponse.success(alertThresholdRuleMapper.toDto(rule),
+                        "Facility alert thresholds retrieved successfully")))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Set the alert thresholds of a facility.
+     *
+     * @param facilityId the facility ID
+     * @param request the thresholds; null values use the global defaults
+     * @return the saved facility rule
+     */
+    @PutMapping("/facility/{facilityId}/alert-thresholds")
+    @Operation(summary = "Set facility alert thresholds", description = "Set the alert thresholds of all machines in a facility")
+    public ResponseEntity<ApiResponse<AlertThresholdRuleDto>> updateFacilityAlertThresholds(
+            @Parameter(description = "Facility ID") @PathVariable Long facilityId,
+            @Valid @RequestBody UpdateAlertThresholdRuleRequest request) {
+        
+        log.info("Updating alert thresholds for facility: {}", facilityId);
+        
+        return alertThresholdRuleService.updateFacilityRule(facilityId, request)
+                .map(rule -> ResponseEntity.ok(ApiResponse.success(alertThresholdRuleMapper.toDto(rule),
+                        "Facility alert thresholds updated successfully")))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Remove the alert thresholds of a facility.
+     *
+     * @param facilityId the facility ID
+     * @return deletion confirmation
+     */
+    @DeleteMapping("/facility/{facilityId}/alert-thresholds")
+    @Operation(summary = "Remove facility alert thresholds", description = "Revert a facility to the global alert thresholds")
+    public ResponseEntity<ApiResponse<String>> deleteFacilityAlertThresholds(
+            @Parameter(description = "Facility ID") @PathVariable Long facilityId) {
+        
+        log.info("Removing alert thresholds for facility: {}", facilityId);
+        
+        if (alertThresholdRuleService.deleteFacilityRule(facilityId)) {
+            return ResponseEntity.ok(ApiResponse.success("Facility alert thresholds removed", "Facility uses the global thresholds"));
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Get the alert threshold rule of a machine.
+     *
+     * @param machineId the machine ID
+     * @return the machine rule
+     */
+    @GetMapping("/machine/{machineId}/alert-thresholds")
+    @Operation(summary = "Get machine alert thresholds", description = "Get the alert threshold rule of a machine")
+    public ResponseEntity<ApiResponse<AlertThresholdRuleDto>> getMachineAlertThresholds(
+            @Parameter(description = "Machine ID") @PathVariable Long machineId) {
+        
+        return alertThresholdRuleService.findMachineRule(machineId)
+                .map(rule -> ResponseEntity.ok(ApiResponse.success(alertThresholdRuleMapper.toDto(rule),
+                        "Machine alert thresholds retrieved successfully")))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Set the alert thresholds of a machine.
+     *
+     * @param machineId the machine ID
+     * @param request the thresholds; null values use the facility's thresholds
+     * @return the saved machine rule
+     */
+    @PutMapping("/machine/{machineId}/alert-thresholds")
+    @Operation(summary = "Set machine alert thresholds", description = "Override the alert thresholds of a single machine")
+    public ResponseEntity<ApiResponse<AlertThresholdRuleDto>> updateMachineAlertThresholds(
+            @Parameter(description = "Machine ID") @PathVariable Long machineId,
+            @Valid @RequestBody UpdateAlertThresholdRuleRequest request) {
+        
+        log.info("Updating alert thresholds for machine: {}", machineId);
+        
+        return alertThresholdRuleService.updateMachineRule(machineId, request)
+                .map(rule -> ResponseEntity.ok(ApiResponse.success(alertThresholdRuleMapper.toDto(rule),
+                        "Machine alert thresholds updated successfully")))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Remove the alert thresholds of a machine.
+     *
+     * @param machineId the machine ID
+     * @return deletion confirmation
+     */
+    @DeleteMapping("/machine/{machineId}/alert-thresholds")
+    @Operation(summary = "Remove machine alert thresholds", description = "Revert a machine to its facility's alert thresholds")
+    public ResponseEntity<ApiResponse<String>> deleteMachineAlertThresholds(
+            @Parameter(description = "Machine ID") @PathVariable Long machineId) {
+        
+        log.info("Removing alert thresholds for machine: {}", machineId);
+        
+        if (alertThresholdRuleService.deleteMachineRule(machineId)) {
+            return ResponseEntity.ok(ApiResponse.success("Machine alert thresholds removed", "Machine uses its facility's thresholds"));
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Get the thresholds a machine is currently evaluated against.
+     *
+     * @param machineId the machine ID
+     * @return the effective thresholds after inheritance
+     */
+    @GetMapping("/machine/{machineId}/alert-thresholds/effective")
+    @Operation(summary = "Get effective machine alert thresholds",
+               description = "Get the thresholds a machine is evaluated against after applying facility and machine rules")
+    public ResponseEntity<ApiResponse<AlertThresholdRuleDto>> getEffectiveMachineAlertThresholds(
+            @Parameter(description = "Machine ID") @PathVariable Long machineId) {
+        
+        return alertThresholdRuleService.getEffectiveThresholds(machineId)
+                .map(rule -> ResponseEntity.ok(ApiResponse.success(alertThresholdRuleMapper.toDto(rule),
+                        "Effective alert thresholds retrieved successfully")))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -7,6 +7,9 @@ import com.example.coffeemachine.service.AlertService;
 import com.example.coffeemachine.service.AuthenticationService;
 import com.example.coffeemachine.service.CoffeeMachineService;
 import com.example.coffeemachine.service.FacilityService;
+import com.example.coffeemachine.service.FacilityVersions;
+import com.example.coffeemachine.service.MachineDtoCache;
+import com.example.coffeemachine.service.MachineUpdateStream;
 import com.example.coffeemachine.service.dto.*;
 import com.example.coffeemachine.service.mapper.AlertMapper;
 import com.example.coffeemachine.service.mapper.CoffeeMachineMapper;
@@ -17,12 +20,20 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 /**
  * REST controller for facility operations.
@@ -35,6 +46,10 @@ import java.util.List;
 @Tag(name = "Facility Management", description = "Operations for facility users and administrators")
 public class FacilityController {
 
+    private static final String FACILITY_VERSION_HEADER = "X-Facility-Version";
+    private static final String MACHINE_SYNC_HEADER = "X-Machine-Sync";
+    private static final String REMOVED_MACHINES_HEADER = "X-Removed-Machine-Ids";
+
     private final FacilityService facilityService;
     private final CoffeeMachineService coffeeMachineService;
     private final AlertService alertService;
@@ -42,6 +57,9 @@ public class FacilityController {
     private final FacilityMapper facilityMapper;
     private final CoffeeMachineMapper coffeeMachineMapper;
     private final AlertMapper alertMapper;
+    private final MachineUpdateStream machineUpdateStream;
+    private final FacilityVersions facilityVersions;
+    private final MachineDtoCache machineDtoCache;
 
     /**
      * Get facility details by ID.
@@ -70,21 +88,88 @@ public class FacilityController {
      * Get all coffee machines in a facility.
      * Facility users can only access their own facility's machines.
      *
+     * <p>Responses carry an ETag for the facility's version and the version itself in
+     * {@code X-Facility-Version}. A request whose {@code If-None-Match} matches gets
+     * {@code 304 Not Modified} without a query. With {@code sinceVersion}, only the
+     * machines changed since that version are returned and removed machines are listed
+     * in {@code X-Removed-Machine-Ids}; {@code X-Machine-Sync} says whether the list is
+     * such a {@code delta} or the {@code full} list, which is returned when the changes
+     * since that version are unknown.
+     *
      * @param facilityId the facility ID
+     * @param sinceVersion the version the client holds, to fetch only changed machines
+     * @param ifNoneMatch the ETag of the list the client holds
      * @return list of coffee machines
      */
     @GetMapping("/{facilityId}/machines")
-    @Operation(summary = "Get facility machines", description = "Get all coffee machines in a facility")
+    @Operation(summary = "Get facility machines", description = "Get all coffee machines in a facility, or those changed since a version")
     @PreAuthorize("hasRole('ADMIN') or (hasRole('FACILITY') and @authenticationService.getCurrentUserFacilityId() == #facilityId)")
     public ResponseEntity<ApiResponse<List<CoffeeMachineDto>>> getFacilityMachines(
-            @Parameter(description = "Facility ID") @PathVariable Long facilityId) {
+            @Parameter(description = "Facility ID") @PathVariable Long facilityId,
+            @Parameter(description = "Only return machines changed after this facility version")
+            @RequestParam(required = false) Long sinceVersion,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         log.debug("Getting machines for facility: {}", facilityId);
         
-        List<CoffeeMachine> machines = coffeeMachineService.findByFacilityId(facilityId);
-        List<CoffeeMachineDto> machineDtos = coffeeMachineMapper.toDto(machines);
+        if (!facilityVersions.isEnabled()) {
+            return ResponseEntity.ok(ApiResponse.success(machineDtoCache.facilityMachines(facilityId), "Machines retrieved successfully"));
+        }
+        
+        // Read the version before the machines, so the list is at least as new as the version
+        long version = facilityVersions.version(facilityId);
+        String etag = facilityVersions.etag(version);
+        if (ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals(etag) || tag.equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        
+        Optional<Set<Long>> changed = sinceVersion != null
+                ? facilityVersions.changedSince(facilityId, sinceVersion, version)
+                : Optional.empty();
+        List<CoffeeMachineDto> machineDtos;
+        List<Long> removed = List.of();
+        if (changed.isPresent()) {
+            machineDtos = changed.get().isEmpty()
+                    ? List.of()
+                    : coffeeMachineMapper.toDto(coffeeMachineService.findByFacilityIdAndIds(facilityId, changed.get()));
+            Set<Long> remaining = new TreeSet<>(changed.get());
+            machineDtos.forEach(machine -> remaining.remove(machine.getId()));
+            removed = List.copyOf(remaining);
+        } else {
+            machineDtos = machineDtoCache.facilityMachines(facilityId);
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .header(FACILITY_VERSION_HEADER, Long.toString(version))
+                .header(MACHINE_SYNC_HEADER, changed.isPresent() ? "delta" : "full");
+        if (!removed.isEmpty()) {
+            response.header(REMOVED_MACHINES_HEADER, removed.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+        return response.body(ApiResponse.success(machineDtos, "Machines retrieved successfully"));
+    }
+
+    /**
+     * Stream changes to a facility's machines and alerts as Server-Sent Events.
+     * Facility users can only stream their own facility.
+     *
+     * @param facilityId the facility ID
+     * @param lastEventId the ID of the last event received, sent by reconnecting clients
+     * @return the event stream
+     */
+    @GetMapping(value = "/{facilityId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream facility changes", description = "Live machine and alert changes for a facility")
+    @PreAuthorize("hasRole('ADMIN') or (hasRole('FACILITY') and @authenticationService.getCurrentUserFacilityId() == #facilityId)")
+    public SseEmitter streamFacility(
+            @Parameter(description = "Facility ID") @PathVariable Long facilityId,
+            @Parameter(description = "ID of the last event received")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        
+        log.debug("Opening live stream for facility: {}", facilityId);
         
-        return ResponseEntity.ok(ApiResponse.success(machineDtos, "Machines retrieved successfully"));
+        return machineUpdateStream.subscribe(facilityId, lastEventId);
     }
 
     /**
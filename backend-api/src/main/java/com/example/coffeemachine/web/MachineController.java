@@ -1,11 +1,14 @@
 package com.example.coffeemachine.web;
 
+import com.example.coffeemachine.config.AppProperties;
 import com.example.coffeemachine.domain.CoffeeMachine;
 import com.example.coffeemachine.domain.UsageHistory;
 import com.example.coffeemachine.security.UserPrincipal;
 import com.example.coffeemachine.service.AlertService;
 import com.example.coffeemachine.service.AuthenticationService;
 import com.example.coffeemachine.service.CoffeeMachineService;
+import com.example.coffeemachine.service.MachineDtoCache;
+import com.example.coffeemachine.service.MachineMailboxes;
 import com.example.coffeemachine.service.dto.*;
 import com.example.coffeemachine.service.mapper.AlertMapper;
 import com.example.coffeemachine.service.mapper.CoffeeMachineMapper;
@@ -34,11 +37,14 @@ import java.util.List;
 public class MachineController {
 
     private final CoffeeMachineService coffeeMachineService;
+    private final MachineMailboxes machineMailboxes;
     private final AlertService alertService;
     private final AuthenticationService authenticationService;
     private final CoffeeMachineMapper coffeeMachineMapper;
     private final AlertMapper alertMapper;
     private final UsageHistoryMapper usageHistoryMapper;
+    private final AppProperties appProperties;
+    private final MachineDtoCache machineDtoCache;
 
     /**
      * Get machine status and current levels.
@@ -55,11 +61,8 @@ public class MachineController {
         
         log.debug("Getting status for machine: {}", machineId);
         
-        return coffeeMachineService.getMachineStatus(machineId)
-                .map(machine -> {
-                    CoffeeMachineDto machineDto = coffeeMachineMapper.toDto(machine);
-                    return ResponseEntity.ok(ApiResponse.success(machineDto, "Machine status retrieved successfully"));
-                })
+        return machineDtoCache.machine(machineId)
+                .map(machineDto -> ResponseEntity.ok(ApiResponse.success(machineDto, "Machine status retrieved successfully")))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -78,11 +81,8 @@ public class MachineController {
         
         log.debug("Getting levels for machine: {}", machineId);
         
-        return coffeeMachineService.findById(machineId)
-                .map(machine -> {
-                    CoffeeMachineDto machineDto = coffeeMachineMapper.toDto(machine);
-                    return ResponseEntity.ok(ApiResponse.success(machineDto, "Machine levels retrieved successfully"));
-                })
+        return machineDtoCache.machine(machineId)
+                .map(machineDto -> ResponseEntity.ok(ApiResponse.success(machineDto, "Machine levels retrieved successfully")))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -242,31 +242,72 @@ public class MachineController {
         }
     }
 
-    // Endpoints for MQTT worker integration
+    // Endpoints for MQTT worker integration.
+    // Updates are applied through the machine's mailbox; with wait=false, or when the
+    // apply takes longer than the wait timeout, the response is 202 Accepted.
     @PostMapping("/{machineId}/status")
     @Operation(summary = "Update machine status from MQTT", description = "Internal endpoint for MQTT worker to update machine status")
     public ResponseEntity<Void> updateMachineStatus(
             @Parameter(description = "Machine ID") @PathVariable Long machineId,
+            @Parameter(description = "Wait until the update is applied") @RequestParam(defaultValue = "true") boolean wait,
             @Valid @RequestBody UpdateMachineStatusRequest statusRequest) {
-        coffeeMachineService.updateMachineStatus(machineId, statusRequest);
-        return ResponseEntity.ok().build();
+        return applyInMailbox(machineId, wait, () -> coffeeMachineService.updateMachineStatus(machineId, statusRequest));
     }
 
     @PostMapping("/{machineId}/levels")
     @Operation(summary = "Update machine levels from MQTT", description = "Internal endpoint for MQTT worker to update machine supply levels")
     public ResponseEntity<Void> updateMachineLevels(
             @Parameter(description = "Machine ID") @PathVariable Long machineId,
+            @Parameter(description = "Wait until the update is applied") @RequestParam(defaultValue = "true") boolean wait,
             @Valid @RequestBody UpdateMachineLevelsRequest levelsRequest) {
-        coffeeMachineService.updateMachineLevels(machineId, levelsRequest);
-        return ResponseEntity.ok().build();
+        return applyInMailbox(machineId, wait, () -> coffeeMachineService.updateMachineLevels(machineId, levelsRequest));
+    }
+
+    @PostMapping("/{machineId}/snapshot")
+    @Operation(summary = "Update machine snapshot from MQTT", description = "Internal endpoint for MQTT worker to apply a coalesced status and levels snapshot")
+    public ResponseEntity<Void> updateMachineSnapshot(
+            @Parameter(description = "Machine ID") @PathVariable Long machineId,
+            @Parameter(description = "Wait until the update is applied") @RequestParam(defaultValue = "true") boolean wait,
+            @Valid @RequestBody UpdateMachineSnapshotRequest snapshotRequest) {
+        return applyInMailbox(machineId, wait, () -> coffeeMachineService.updateMachineSnapshot(machineId, snapshotRequest));
     }
 
+    // A retry carrying the same Idempotency-Key header (or idempotencyKey field) as an
+    // earlier request is acknowledged without recording the usage again.
     @PostMapping("/{machineId}/history")
-    @Operation(summary = "Record machine usage from MQTT", description = "Internal endpoint for MQTT worker to record a usage event")
+    @Operation(summary = "Record machine usage from MQTT", description = "Internal endpoint for MQTT worker to record a usage event; retries with the same Idempotency-Key are no-ops")
     public ResponseEntity<Void> recordMachineUsage(
             @Parameter(description = "Machine ID") @PathVariable Long machineId,
+            @Parameter(description = "Key identifying the usage event across retries; overrides the payload field")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Parameter(description = "Wait until the event is recorded") @RequestParam(defaultValue = "true") boolean wait,
             @Valid @RequestBody RecordUsageRequest usageRequest) {
-        coffeeMachineService.recordUsage(machineId, usageRequest);
-        return ResponseEntity.ok().build();
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > RecordUsageRequest.MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().build();
+            }
+            usageRequest.setIdempotencyKey(idempotencyKey);
+        }
+        return applyInMailbox(machineId, wait, () -> coffeeMachineService.recordUsage(machineId, usageRequest));
+    }
+
+    @PostMapping("/telemetry/batch")
+    @Operation(summary = "Ingest telemetry batch from MQTT", description = "Internal endpoint for MQTT worker to apply mixed status, levels and usage records for many machines in one request")
+    public ResponseEntity<TelemetryBatchResponse> ingestTelemetryBatch(
+            @Valid @RequestBody TelemetryBatchRequest batchRequest) {
+        if (batchRequest.getRecords().size() > appProperties.getIngestion().getMaxBatchSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(coffeeMachineService.ingestTelemetry(batchRequest.getRecords()));
+    }
+
+    private ResponseEntity<Void> applyInMailbox(Long machineId, boolean wait, Runnable mutation) {
+        if (!wait) {
+            machineMailboxes.submit(machineId, mutation);
+            return ResponseEntity.accepted().build();
+        }
+        return machineMailboxes.submitAndWait(machineId, mutation)
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.accepted().build();
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@
 -- This single script drops, creates, and populates all tables.
 
 -- Drop existing objects to ensure a clean slate
+DROP TABLE IF EXISTS alert_threshold_rule;
+DROP TABLE IF EXISTS id_sequence;
 DROP TABLE IF EXISTS alert;
 DROP TABLE IF EXISTS usage_history;
 DROP TABLE IF EXISTS coffee_machine;
@@ -48,6 +50,8 @@ CREATE TABLE coffee_machine (
     CONSTRAINT fk_machine_facility FOREIGN KEY (facility_id) REFERENCES facility(id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+CREATE INDEX idx_machine_updated ON coffee_machine(updated_at);
+
 CREATE TABLE usage_history (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     machine_id BIGINT NOT NULL,
@@ -55,12 +59,20 @@ CREATE TABLE usage_history (
     brew_type VARCHAR(20) NOT NULL,
     volume_ml INTEGER NULL,
     temp_at_brew DECIMAL(5,2) NULL,
+    idempotency_key VARCHAR(64) NULL,
     is_active BOOLEAN NOT NULL DEFAULT TRUE,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT fk_usage_machine FOREIGN KEY (machine_id) REFERENCES coffee_machine(id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+ALTER TABLE usage_history ADD CONSTRAINT uk_usage_machine_idempotency UNIQUE (machine_id, idempotency_key);
+
+CREATE TABLE id_sequence (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
 CREATE TABLE alert (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     machine_id BIGINT NOT NULL,
@@ -75,6 +87,30 @@ CREATE TABLE alert (
     CONSTRAINT fk_alert_machine FOREIGN KEY (machine_id) REFERENCES coffee_machine(id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+CREATE INDEX idx_alert_updated ON alert(updated_at);
+
+CREATE TABLE alert_threshold_rule (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    facility_id BIGINT NULL,
+    machine_id BIGINT NULL,
+    water_level INTEGER NULL,
+    milk_level INTEGER NULL,
+    beans_level INTEGER NULL,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_threshold_rule_facility FOREIGN KEY (facility_id) REFERENCES facility(id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT fk_threshold_rule_machine FOREIGN KEY (machine_id) REFERENCES coffee_machine(id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT chk_threshold_rule_scope CHECK ((facility_id IS NULL) <> (machine_id IS NULL)),
+    CONSTRAINT chk_threshold_rule_water CHECK (water_level IS NULL OR (water_level >= 0 AND water_level <= 100)),
+    CONSTRAINT chk_threshold_rule_milk CHECK (milk_level IS NULL OR (milk_level >= 0 AND milk_level <= 100)),
+    CONSTRAINT chk_threshold_rule_beans CHECK (beans_level IS NULL OR (beans_level >= 0 AND beans_level <= 100)),
+    CONSTRAINT uk_threshold_rule_facility UNIQUE (facility_id),
+    CONSTRAINT uk_threshold_rule_machine UNIQUE (machine_id)
+);
+
+CREATE INDEX idx_threshold_rule_updated ON alert_threshold_rule(updated_at);
+
 -- ======================================================================================
 -- DATA INSERTION
 -- Password for all users is 'password' (bcrypt hash: $2a$10$N.zmdr9k7uOCQb376NoUnuTJ8ioctKcnw.tilAYKBcQMZ5m0s1T6)
@@ -116,5 +152,9 @@ INSERT INTO coffee_machine (id, facility_id, status, temperature, water_level, m
 INSERT INTO usage_history (id, machine_id, timestamp, brew_type, volume_ml, temp_at_brew, is_active, created_at, updated_at) VALUES
 (1, 1, '2024-03-10 08:00:00', 'ESPRESSO', 30, 92.5, true, '2024-03-10 08:00:00', '2024-03-10 08:00:00');
 
+-- Continue usage history IDs after the rows above
+INSERT INTO id_sequence (name, next_val)
+SELECT 'usage_history', COALESCE(MAX(id), 0) + 1 FROM usage_history;
+
 INSERT INTO alert (id, machine_id, type, severity, message, threshold_value, resolved, is_active, created_at, updated_at) VALUES
 (1, 4, 'MALFUNCTION', 'CRITICAL', 'Machine has encountered a critical error and requires immediate maintenance', NULL, false, true, '2024-03-10 08:00:00', '2024-03-10 08:00:00');
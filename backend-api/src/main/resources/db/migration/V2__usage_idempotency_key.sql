@@ -0,0 +1,8 @@
+-- Coffee Machine Monitoring System - Usage idempotency keys
+-- Version: 2.0.0
+-- Description: Lets the MQTT worker retry usage events without double-counting them
+
+ALTER TABLE usage_history ADD COLUMN idempotency_key VARCHAR(64) NULL
+    COMMENT 'Client-supplied key identifying one brewing event across retries';
+
+CREATE INDEX idx_usage_machine_idempotency ON usage_history(machine_id, idempotency_key);
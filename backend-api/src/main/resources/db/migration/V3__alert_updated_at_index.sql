@@ -0,0 +1,5 @@
+-- Coffee Machine Monitoring System - Alert change index
+-- Version: 3.0.0
+-- Description: Supports polling for recently changed alerts to keep the open-alert index of each node in sync
+
+CREATE INDEX idx_alert_updated ON alert(updated_at);
@@ -0,0 +1,32 @@
+-- Coffee Machine Monitoring System - Alert threshold rules
+-- Version: 4.0.0
+-- Description: Per-facility and per-machine low-level alert thresholds overriding app.alerts.thresholds
+
+CREATE TABLE alert_threshold_rule (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    facility_id BIGINT NULL,
+    machine_id BIGINT NULL,
+    water_level INTEGER NULL,
+    milk_level INTEGER NULL,
+    beans_level INTEGER NULL,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    -- Foreign Key Constraints
+    CONSTRAINT fk_threshold_rule_facility FOREIGN KEY (facility_id)
+        REFERENCES facility(id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT fk_threshold_rule_machine FOREIGN KEY (machine_id)
+        REFERENCES coffee_machine(id) ON DELETE CASCADE ON UPDATE CASCADE,
+
+    -- Check Constraints
+    CONSTRAINT chk_threshold_rule_scope CHECK ((facility_id IS NULL) <> (machine_id IS NULL)),
+    CONSTRAINT chk_threshold_rule_water CHECK (water_level IS NULL OR (water_level >= 0 AND water_level <= 100)),
+    CONSTRAINT chk_threshold_rule_milk CHECK (milk_level IS NULL OR (milk_level >= 0 AND milk_level <= 100)),
+    CONSTRAINT chk_threshold_rule_beans CHECK (beans_level IS NULL OR (beans_level >= 0 AND beans_level <= 100)),
+
+    -- Indexes
+    UNIQUE KEY uk_threshold_rule_facility (facility_id),
+    UNIQUE KEY uk_threshold_rule_machine (machine_id),
+    INDEX idx_threshold_rule_updated (updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
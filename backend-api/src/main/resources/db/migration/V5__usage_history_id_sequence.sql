@@ -0,0 +1,12 @@
+-- Coffee Machine Monitoring System - Pooled usage history IDs
+-- Version: 5.0.0
+-- Description: Table sequence from which usage_history IDs are allocated in blocks, so usage rows can be batch inserted
+
+CREATE TABLE id_sequence (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Continue after the rows inserted with AUTO_INCREMENT so far
+INSERT INTO id_sequence (name, next_val)
+SELECT 'usage_history', COALESCE(MAX(id), 0) + 1 FROM usage_history;
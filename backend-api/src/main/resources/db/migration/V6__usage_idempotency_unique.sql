@@ -0,0 +1,14 @@
+-- Coffee Machine Monitoring System - Unique usage idempotency keys
+-- Version: 6.0.0
+-- Description: Makes (machine_id, idempotency_key) unique so a retried usage event can never be stored twice
+
+-- Keep the first row of any duplicates recorded before the constraint existed
+DELETE u1 FROM usage_history u1
+INNER JOIN usage_history u2
+    ON u1.machine_id = u2.machine_id
+   AND u1.idempotency_key = u2.idempotency_key
+   AND u1.id > u2.id;
+
+DROP INDEX idx_usage_machine_idempotency ON usage_history;
+
+ALTER TABLE usage_history ADD CONSTRAINT uk_usage_machine_idempotency UNIQUE (machine_id, idempotency_key);
@@ -0,0 +1,5 @@
+-- Coffee Machine Monitoring System - Machine change index
+-- Version: 7.0.0
+-- Description: Supports polling for recently changed machines to keep the facility versions and machine cache of each node in sync
+
+CREATE INDEX idx_machine_updated ON coffee_machine(updated_at);
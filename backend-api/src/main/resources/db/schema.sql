@@ -56,10 +56,21 @@ CREATE TABLE IF NOT EXISTS usage_history (
     brew_type ENUM('ESPRESSO', 'CAPPUCCINO', 'LATTE', 'AMERICANO', 'FLAT_WHITE', 'MOCHA') NOT NULL,
     volume_ml INT NOT NULL,
     temp_at_brew DECIMAL(5,2),
+    idempotency_key VARCHAR(64),
     is_active BOOLEAN DEFAULT TRUE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    FOREIGN KEY (machine_id) REFERENCES coffee_machine(id)
+    FOREIGN KEY (machine_id) REFERENCES coffee_machine(id),
+    UNIQUE KEY uk_usage_machine_idempotency (machine_id, idempotency_key)
+);
+
+-- ======================================================================================
+-- ID SEQUENCES TABLE
+-- Usage history IDs are allocated in blocks from here; a missing row is seeded on first use
+-- ======================================================================================
+CREATE TABLE IF NOT EXISTS id_sequence (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
 );
 
 -- ======================================================================================
@@ -77,6 +88,24 @@ CREATE TABLE IF NOT EXISTS alert (
     FOREIGN KEY (machine_id) REFERENCES coffee_machine(id)
 );
 
+-- ======================================================================================
+-- ALERT THRESHOLD RULES TABLE
+-- ======================================================================================
+CREATE TABLE IF NOT EXISTS alert_threshold_rule (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    facility_id BIGINT UNIQUE,
+    machine_id BIGINT UNIQUE,
+    water_level INT,
+    milk_level INT,
+    beans_level INT,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (facility_id) REFERENCES facility(id) ON DELETE CASCADE,
+    FOREIGN KEY (machine_id) REFERENCES coffee_machine(id) ON DELETE CASCADE,
+    CHECK ((facility_id IS NULL) <> (machine_id IS NULL))
+);
+
 -- ======================================================================================
 -- MAINTENANCE RECORDS TABLE
 -- ======================================================================================
@@ -102,9 +131,12 @@ CREATE INDEX idx_user_role ON user(role);
 CREATE INDEX idx_user_facility ON user(facility_id);
 CREATE INDEX idx_machine_facility ON coffee_machine(facility_id);
 CREATE INDEX idx_machine_status ON coffee_machine(status);
+CREATE INDEX idx_machine_updated ON coffee_machine(updated_at);
 CREATE INDEX idx_usage_machine ON usage_history(machine_id);
 CREATE INDEX idx_usage_timestamp ON usage_history(timestamp);
 CREATE INDEX idx_alert_machine ON alert(machine_id);
 CREATE INDEX idx_alert_type ON alert(type);
+CREATE INDEX idx_alert_updated ON alert(updated_at);
+CREATE INDEX idx_threshold_rule_updated ON alert_threshold_rule(updated_at);
 CREATE INDEX idx_maintenance_machine ON maintenance_record(machine_id);
 CREATE INDEX idx_maintenance_type ON maintenance_record(type);
\ No newline at end of file
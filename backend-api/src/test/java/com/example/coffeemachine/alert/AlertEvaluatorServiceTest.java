@@ -0,0 +1,173 @@
+package com.example.coffeemachine.alert;
+
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import com.example.coffeemachine.service.CoffeeMachineService;
+import com.example.coffeemachine.service.dto.UpdateMachineLevelsRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for debounced low-level alerts.
+ */
+@SpringBootTest(properties = {
+        "app.alerts.debounce-interval-ms=200",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class AlertEvaluatorServiceTest {
+
+    @Autowired
+    private AlertEvaluatorService alertEvaluatorService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private FacilityRepository facilityRepository;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 2, Floor 3");
+        facility = facilityRepository.save(facility);
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setFacility(facility);
+        machine.setStatus(MachineStatus.ON);
+        machine.setWaterLevel(80);
+        machine.setMilkLevel(80);
+        machine.setBeansLevel(80);
+        machineId = coffeeMachineRepository.save(machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should not open a debounced alert when the level recovered without a reading here")
+    void openDueAlerts_LevelRecoveredElsewhere_NoAlert() throws Exception {
+        // Given
+        updateWaterLevel(10);
+        // Refilled through another node, so this node's timer is still pending
+        setWaterLevelDirectly(90);
+
+        // When
+        Thread.sleep(400);
+        alertEvaluatorService.openDueAlerts();
+
+        // Then
+        assertFalse(isLowWaterOpen());
+    }
+
+    @Test
+    @DisplayName("Should arm a lost debounce timer on the next low reading that crosses nothing")
+    void evaluate_LowWithoutTimer_AlertOpensAfterDebounce() throws Exception {
+        // Given
+        // Went low before a restart, or on another node: no timer here
+        setWaterLevelDirectly(10);
+
+        // When
+        updateWaterLevel(9);
+
+        // Then
+        assertTrue(awaitLowWaterOpen());
+    }
+
+    @Test
+    @DisplayName("Should re-arm debounce timers for low machines on startup")
+    void rearmPendingAlerts_LowMachine_AlertOpensAfterDebounce() throws Exception {
+        // Given
+        setWaterLevelDirectly(10);
+
+        // When
+        alertEvaluatorService.rearmPendingAlerts();
+
+        // Then
+        assertTrue(awaitLowWaterOpen());
+    }
+
+    @Test
+    @DisplayName("Should not open an alert for a level oscillating around the threshold within the debounce window")
+    void evaluate_LevelOscillatingAroundThreshold_NoAlert() throws Exception {
+        // Given - threshold 20, each dip recovers before the 200 ms debounce elapses
+        for (int level : new int[] {19, 21, 18, 22, 19, 21}) {
+            updateWaterLevel(level);
+        }
+
+        // When
+        Thread.sleep(400);
+        alertEvaluatorService.openDueAlerts();
+
+        // Then
+        assertFalse(isLowWaterOpen());
+    }
+
+    @Test
+    @DisplayName("Should keep an open alert open until the level clears the hysteresis margin")
+    void evaluate_LevelBetweenThresholdAndResolveLevel_AlertStaysOpen() throws Exception {
+        // Given - threshold 20, hysteresis margin 5
+        updateWaterLevel(10);
+        assertTrue(awaitLowWaterOpen());
+
+        // When
+        updateWaterLevel(20);
+        updateWaterLevel(24);
+
+        // Then
+        assertTrue(isLowWaterOpen());
+
+        // When
+        updateWaterLevel(25);
+
+        // Then
+        assertFalse(isLowWaterOpen());
+    }
+
+    private void updateWaterLevel(int waterLevel) {
+        UpdateMachineLevelsRequest request = new UpdateMachineLevelsRequest();
+        request.setWaterLevel(waterLevel);
+        coffeeMachineService.updateMachineLevels(machineId, request);
+    }
+
+    private void setWaterLevelDirectly(int waterLevel) {
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        machine.setWaterLevel(waterLevel);
+        coffeeMachineRepository.save(machine);
+    }
+
+    private boolean isLowWaterOpen() {
+        return alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_WATER).isPresent();
+    }
+
+    private boolean awaitLowWaterOpen() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            alertEvaluatorService.openDueAlerts();
+            if (isLowWaterOpen()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.coffeemachine.alert;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the timing wheel behind alert debouncing.
+ */
+class HashedTimingWheelTest {
+
+    @Test
+    @DisplayName("Should fire a timer once its delay has passed, and not before")
+    void advance_DelayPassed_Fires() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule(1L, 250, "low water");
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(200, (key, payload) -> fired.add(payload));
+        assertTrue(fired.isEmpty());
+
+        wheel.advance(300, (key, payload) -> fired.add(payload));
+        assertEquals(List.of("low water"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Should count rounds for delays longer than one turn of the wheel")
+    void advance_DelayBeyondWheel_FiresAfterRounds() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4, 0);
+        wheel.schedule(7L, 95, "pending");
+        List<Long> fired = new ArrayList<>();
+
+        wheel.advance(90, (key, payload) -> fired.add(key));
+        assertTrue(fired.isEmpty());
+        assertTrue(wheel.isPending(7L));
+
+        wheel.advance(100, (key, payload) -> fired.add(key));
+        assertEquals(List.of(7L), fired);
+    }
+
+    @Test
+    @DisplayName("Should keep the first deadline and the latest payload when rescheduled")
+    void schedule_AlreadyPending_KeepsDeadlineUpdatesPayload() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        assertTrue(wheel.schedule(1L, 300, "first"));
+        wheel.advance(200, (key, payload) -> { });
+        assertFalse(wheel.schedule(1L, 300, "second"));
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(300, (key, payload) -> fired.add(payload));
+
+        assertEquals(List.of("second"), fired);
+    }
+
+    @Test
+    @DisplayName("Should not fire a cancelled timer")
+    void cancel_Pending_NeverFires() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule(1L, 100, "a");
+        wheel.schedule(2L, 100, "b");
+        wheel.schedule(3L, 100, "c");
+
+        assertTrue(wheel.cancel(2L));
+        assertFalse(wheel.cancel(2L));
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(100, (key, payload) -> fired.add(key));
+
+        assertEquals(2, fired.size());
+        assertFalse(fired.contains(2L));
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.Alert;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests and a table-growth benchmark for the incrementally maintained alert statistics.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+@Slf4j
+class AlertStatisticsCountersTest {
+
+    private static final String INSERT_ALERT_SQL =
+            "INSERT INTO alert (machine_id, type, severity, message, resolved, created_at, updated_at, is_active) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, true)";
+
+    @Autowired
+    private AlertService alertService;
+
+    @Autowired
+    private AlertStatisticsCounters alertStatisticsCounters;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long facilityId;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 6, Floor 2");
+        facilityId = facilityService.createFacility(facility).getId();
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        machineId = facilityService.addMachineToFacility(facilityId, machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should follow alerts opening, resolving and being deleted, and match a rebuild")
+    void statistics_AlertLifecycle_TrackedIncrementally() {
+        // Given
+        AlertStatistics overallBefore = alertService.getOverallAlertStatistics();
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot("ERROR"));
+
+        // Then
+        AlertStatistics opened = alertService.getAlertStatistics(facilityId);
+        assertEquals(1, opened.getTotalAlerts());
+        assertEquals(1, opened.getUnresolvedAlerts());
+        assertEquals(1, opened.getCriticalAlerts());
+        assertEquals(overallBefore.getCriticalAlerts() + 1, alertService.getOverallAlertStatistics().getCriticalAlerts());
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot("ON"));
+
+        // Then
+        AlertStatistics resolved = alertService.getAlertStatistics(facilityId);
+        assertEquals(1, resolved.getTotalAlerts());
+        assertEquals(0, resolved.getUnresolvedAlerts());
+
+        // When
+        Long alertId = alertService.getAlertsByMachineAndType(machineId, AlertType.MALFUNCTION).get(0).getId();
+        alertService.deleteAlert(alertId);
+        alertService.deleteAlert(alertId);
+
+        // Then
+        AlertStatistics incremental = alertService.getAlertStatistics(facilityId);
+        AlertStatistics overallIncremental = alertService.getOverallAlertStatistics();
+        assertEquals(0, incremental.getTotalAlerts());
+        assertEquals(overallBefore, overallIncremental);
+
+        alertStatisticsCounters.reconcile();
+        assertEquals(alertService.getAlertStatistics(facilityId), incremental);
+        assertEquals(alertService.getOverallAlertStatistics(), overallIncremental);
+    }
+
+    @Test
+    @DisplayName("Benchmark: statistics cost stays flat as the alert table grows")
+    void benchmark_StatisticsCostAgainstTableSize() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        int inserted = 0;
+        for (int tableSize : new int[] {1_000, 10_000, 100_000}) {
+            insertAlerts(tableSize - inserted);
+            inserted = tableSize;
+            alertStatisticsCounters.reconcile();
+
+            long streamStart = System.nanoTime();
+            List<Alert> all = alertRepository.findAllActive();
+            long streamMicros = (System.nanoTime() - streamStart) / 1_000;
+
+            statistics.clear();
+            int reads = 10_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                alertService.getOverallAlertStatistics();
+                alertService.getAlertStatistics(facilityId);
+            }
+            double nanosPerRead = (System.nanoTime() - start) / (2.0 * reads);
+
+            log.info("Alert statistics with {} alerts: {} ns per read from counters, {} us to load every active alert",
+                    all.size(), Math.round(nanosPerRead), streamMicros);
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(tableSize, alertService.getAlertStatistics(facilityId).getTotalAlerts());
+        }
+        AlertStatistics facility = alertService.getAlertStatistics(facilityId);
+        assertTrue(facility.getUnresolvedAlerts() > 0 && facility.getUnresolvedAlerts() < facility.getTotalAlerts());
+    }
+
+    /**
+     * Inserts alerts for the test machine directly, alternating resolved and unresolved.
+     */
+    private void insertAlerts(int count) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {machineId, AlertType.LOW_WATER.name(), "WARNING", "Water level low", i % 2 == 0,
+                    now, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ALERT_SQL, rows);
+    }
+
+    private static UpdateMachineSnapshotRequest snapshot(String status) {
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setStatus(status);
+        return request;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.AlertThresholdRule;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import com.example.coffeemachine.service.dto.UpdateAlertThresholdRuleRequest;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for facility and machine alert threshold rules.
+ */
+@SpringBootTest(properties = {
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class AlertThresholdRuleServiceTest {
+
+    @Autowired
+    private AlertThresholdRuleService alertThresholdRuleService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private FacilityRepository facilityRepository;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    private Long facilityId;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 3, Floor 1");
+        facilityId = facilityRepository.save(facility).getId();
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setFacility(facility);
+        machine.setStatus(MachineStatus.ON);
+        machine.setWaterLevel(80);
+        machine.setMilkLevel(80);
+        machine.setBeansLevel(80);
+        machineId = coffeeMachineRepository.save(machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should inherit thresholds from machine rule, then facility rule, then defaults")
+    void getEffectiveThresholds_FacilityAndMachineRules_Inherited() {
+        // Given
+        alertThresholdRuleService.updateFacilityRule(facilityId, request(40, 30, null));
+        alertThresholdRuleService.updateMachineRule(machineId, request(null, 50, null));
+
+        // When
+        AlertThresholdRule effective = alertThresholdRuleService.getEffectiveThresholds(machineId).orElseThrow();
+
+        // Then
+        assertEquals(40, effective.getWaterLevel());
+        assertEquals(50, effective.getMilkLevel());
+        assertEquals(20, effective.getBeansLevel());
+    }
+
+    @Test
+    @DisplayName("Should evaluate alerts against the facility threshold once it changes")
+    void updateFacilityRule_HigherThreshold_AlertsAtNewThreshold() {
+        // Given
+        alertThresholdRuleService.updateFacilityRule(facilityId, request(40, null, null));
+        UpdateMachineSnapshotRequest snapshot = new UpdateMachineSnapshotRequest();
+        snapshot.setStatus("ON");
+        snapshot.setWaterLevel(35);
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot);
+
+        // Then
+        assertTrue(alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_WATER).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the defaults once the facility rule is removed")
+    void deleteFacilityRule_RuleRemoved_DefaultsApply() {
+        // Given
+        alertThresholdRuleService.updateFacilityRule(facilityId, request(40, null, null));
+
+        // When
+        assertTrue(alertThresholdRuleService.deleteFacilityRule(facilityId));
+
+        // Then
+        assertFalse(alertThresholdRuleService.findFacilityRule(facilityId).isPresent());
+        assertEquals(20, alertThresholdRuleService.getEffectiveThresholds(machineId).orElseThrow().getWaterLevel());
+    }
+
+    private static UpdateAlertThresholdRuleRequest request(Integer water, Integer milk, Integer beans) {
+        UpdateAlertThresholdRuleRequest request = new UpdateAlertThresholdRuleRequest();
+        request.setWaterLevel(water);
+        request.setMilkLevel(milk);
+        request.setBeansLevel(beans);
+        return request;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.Alert;
+import com.example.coffeemachine.domain.BrewType;
+import com.example.coffeemachine.domain.AlertType;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.repository.AlertRepository;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import com.example.coffeemachine.service.dto.TelemetryBatchResponse;
+import com.example.coffeemachine.service.dto.TelemetryRecordRequest;
+import com.example.coffeemachine.service.dto.UpdateMachineLevelsRequest;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for machine updates, counting the statements each request issues.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class CoffeeMachineServiceTest {
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private FacilityRepository facilityRepository;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private MachineMailboxes machineMailboxes;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 1, Floor 2");
+        facility = facilityRepository.save(facility);
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setFacility(facility);
+        machine.setStatus(MachineStatus.ON);
+        machine.setTemperature(new BigDecimal("92.00"));
+        machine.setWaterLevel(80);
+        machine.setMilkLevel(80);
+        machine.setBeansLevel(80);
+        machineId = coffeeMachineRepository.save(machine).getId();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Should update levels without loading the machine when no threshold is crossed")
+    void updateMachineLevels_NoCrossing_NoEntityLoad() {
+        // Given
+        UpdateMachineLevelsRequest request = new UpdateMachineLevelsRequest();
+        request.setWaterLevel(70);
+        request.setMilkLevel(60);
+        request.setBeansLevel(50);
+
+        // When
+        coffeeMachineService.updateMachineLevels(machineId, request);
+
+        // Then
+        assertEquals(0, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getLoadCount());
+        // One locking read of the previous levels and one UPDATE, no alert queries
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        assertEquals(70, machine.getWaterLevel());
+        assertEquals(60, machine.getMilkLevel());
+        assertEquals(50, machine.getBeansLevel());
+    }
+
+    @Test
+    @DisplayName("Should evaluate alerts only for levels that crossed their threshold")
+    void updateMachineLevels_Crossing_AlertsForCrossedLevel() {
+        // Given
+        UpdateMachineLevelsRequest request = new UpdateMachineLevelsRequest();
+        request.setWaterLevel(10);
+        request.setMilkLevel(75);
+
+        // When
+        coffeeMachineService.updateMachineLevels(machineId, request);
+
+        // Then
+        // Alerts are evaluated from the change event, so the machine is never loaded
+        assertEquals(0, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getUpdateCount());
+        assertTrue(alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_WATER).isPresent());
+        assertEquals(80, coffeeMachineRepository.findById(machineId).orElseThrow().getBeansLevel());
+    }
+
+    @Test
+    @DisplayName("Should evaluate every alert against one snapshot update")
+    void updateMachineSnapshot_LowLevelsAndError_AlertsFromOneUpdate() {
+        // Given
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setStatus("ERROR");
+        request.setWaterLevel(10);
+        request.setBeansLevel(5);
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, request);
+
+        // Then
+        assertEquals(1, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getLoadCount());
+        assertEquals(1, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getUpdateCount());
+        assertTrue(alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_WATER).isPresent());
+        assertTrue(alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_BEANS).isPresent());
+        assertEquals(MachineStatus.ERROR, coffeeMachineRepository.findById(machineId).orElseThrow().getStatus());
+    }
+
+    @Test
+    @DisplayName("Should not query alerts for readings that keep an open alert open")
+    void updateMachineSnapshot_AlertAlreadyOpen_NoAlertQueries() {
+        // Given
+        UpdateMachineSnapshotRequest low = new UpdateMachineSnapshotRequest();
+        low.setStatus("ON");
+        low.setWaterLevel(10);
+        coffeeMachineService.updateMachineSnapshot(machineId, low);
+        statistics.clear();
+
+        // When
+        UpdateMachineSnapshotRequest lower = new UpdateMachineSnapshotRequest();
+        lower.setStatus("ON");
+        lower.setWaterLevel(8);
+        coffeeMachineService.updateMachineSnapshot(machineId, lower);
+
+        // Then
+        // One SELECT and one UPDATE of the machine, the open alert comes from the index
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(1, alertRepository.findActiveByMachineIdAndType(machineId, AlertType.LOW_WATER).size());
+    }
+
+    @Test
+    @DisplayName("Should resolve an alert another node opened before the open-alert index synced it")
+    void updateMachineLevels_AlertOpenedElsewhere_Resolved() {
+        // Given
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        machine.setWaterLevel(10);
+        coffeeMachineRepository.save(machine);
+        // Saved directly, like another node would, so this node's index does not know it
+        alertRepository.save(new Alert(machine, AlertType.LOW_WATER, Severity.WARNING, "Water level is low", 20));
+
+        // When
+        UpdateMachineLevelsRequest request = new UpdateMachineLevelsRequest();
+        request.setWaterLevel(90);
+        coffeeMachineService.updateMachineLevels(machineId, request);
+
+        // Then
+        assertTrue(alertRepository.findMostRecentUnresolvedByMachineIdAndType(machineId, AlertType.LOW_WATER).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should apply a telemetry batch in the machine's mailbox, after its queued mutations")
+    void ingestTelemetry_MailboxBusy_AppliedInOrder() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        machineMailboxes.submit(machineId, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // When
+        CompletableFuture<TelemetryBatchResponse> batch = CompletableFuture.supplyAsync(() ->
+                coffeeMachineService.ingestTelemetry(List.of(snapshot(40, null), snapshot(null, 30))));
+
+        // Then
+        assertThrows(TimeoutException.class, () -> batch.get(300, TimeUnit.MILLISECONDS));
+        assertEquals(80, coffeeMachineRepository.findById(machineId).orElseThrow().getWaterLevel());
+
+        // When
+        release.countDown();
+
+        // Then
+        assertEquals(2, batch.get(10, TimeUnit.SECONDS).getApplied());
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        assertEquals(40, machine.getWaterLevel());
+        assertEquals(30, machine.getMilkLevel());
+    }
+
+    @Test
+    @DisplayName("Should reject an out-of-range telemetry record alone and apply the rest of its group")
+    void ingestTelemetry_LevelOutOfRange_RecordInvalid() {
+        // Given
+        TelemetryRecordRequest usage = new TelemetryRecordRequest();
+        usage.setType(TelemetryRecordRequest.Type.USAGE);
+        usage.setMachineId(machineId);
+        usage.setBrewType(BrewType.ESPRESSO);
+        usage.setIdempotencyKey("k".repeat(65));
+
+        // When
+        TelemetryBatchResponse response = coffeeMachineService.ingestTelemetry(
+                List.of(snapshot(40, null), snapshot(150, null), usage, snapshot(null, 30)));
+
+        // Then
+        List<TelemetryBatchResponse.Outcome> outcomes = response.getResults().stream()
+                .map(TelemetryBatchResponse.RecordResult::getOutcome)
+                .toList();
+        assertEquals(List.of(TelemetryBatchResponse.Outcome.APPLIED, TelemetryBatchResponse.Outcome.INVALID,
+                TelemetryBatchResponse.Outcome.INVALID, TelemetryBatchResponse.Outcome.APPLIED), outcomes);
+        assertEquals("waterLevel: Water level cannot exceed 100%", response.getResults().get(1).getError());
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        assertEquals(40, machine.getWaterLevel());
+        assertEquals(30, machine.getMilkLevel());
+    }
+
+    private TelemetryRecordRequest snapshot(Integer waterLevel, Integer milkLevel) {
+        TelemetryRecordRequest record = new TelemetryRecordRequest();
+        record.setType(TelemetryRecordRequest.Type.SNAPSHOT);
+        record.setMachineId(machineId);
+        record.setStatus("ON");
+        record.setWaterLevel(waterLevel);
+        record.setMilkLevel(milkLevel);
+        return record;
+    }
+}
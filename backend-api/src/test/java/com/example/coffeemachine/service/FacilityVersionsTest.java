@@ -0,0 +1,168 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.service.dto.ApiResponse;
+import com.example.coffeemachine.service.dto.CoffeeMachineDto;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import com.example.coffeemachine.web.FacilityController;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for per-facility versions and the conditional machine list fetch.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class FacilityVersionsTest {
+
+    @Autowired
+    private FacilityVersions facilityVersions;
+
+    @Autowired
+    private FacilityController facilityController;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private MachineChangeSync machineChangeSync;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long facilityId;
+    private Long firstMachineId;
+    private Long secondMachineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 5, Floor 4");
+        facilityId = facilityService.createFacility(facility).getId();
+        firstMachineId = addMachine();
+        secondMachineId = addMachine();
+    }
+
+    @Test
+    @DisplayName("Should bump the version and report only the machines changed since a version")
+    void changedSince_AfterReadingsAndDelete_ListsChangedMachines() {
+        // Given
+        long before = facilityVersions.version(facilityId);
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(firstMachineId, levels(35));
+
+        // Then
+        long afterUpdate = facilityVersions.version(facilityId);
+        assertTrue(afterUpdate > before);
+        assertEquals(Set.of(firstMachineId), facilityVersions.changedSince(facilityId, before, afterUpdate).orElseThrow());
+
+        // When
+        coffeeMachineService.deleteMachine(secondMachineId);
+
+        // Then
+        long afterDelete = facilityVersions.version(facilityId);
+        assertEquals(Set.of(secondMachineId), facilityVersions.changedSince(facilityId, afterUpdate, afterDelete).orElseThrow());
+        assertTrue(facilityVersions.changedSince(facilityId, 1L, afterDelete).isEmpty());
+        assertTrue(facilityVersions.changedSince(facilityId, afterDelete + 1, afterDelete).isEmpty());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("Should answer 304 without a query while nothing changed, and a delta with removals after")
+    void getFacilityMachines_ConditionalAndSinceVersion_Served() {
+        // Given
+        ResponseEntity<ApiResponse<List<CoffeeMachineDto>>> full = facilityController.getFacilityMachines(facilityId, null, null);
+        String etag = full.getHeaders().getETag();
+        long version = Long.parseLong(full.getHeaders().getFirst("X-Facility-Version"));
+        assertEquals(2, full.getBody().getData().size());
+        assertEquals("full", full.getHeaders().getFirst("X-Machine-Sync"));
+
+        // When
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ResponseEntity<ApiResponse<List<CoffeeMachineDto>>> unchanged = facilityController.getFacilityMachines(facilityId, null, etag);
+
+        // Then
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(firstMachineId, levels(60));
+        coffeeMachineService.deleteMachine(secondMachineId);
+        ResponseEntity<ApiResponse<List<CoffeeMachineDto>>> delta = facilityController.getFacilityMachines(facilityId, version, etag);
+
+        // Then
+        assertEquals(HttpStatus.OK, delta.getStatusCode());
+        assertNotEquals(etag, delta.getHeaders().getETag());
+        assertEquals("delta", delta.getHeaders().getFirst("X-Machine-Sync"));
+        assertEquals(List.of(firstMachineId), delta.getBody().getData().stream().map(CoffeeMachineDto::getId).toList());
+        assertEquals(60, delta.getBody().getData().get(0).getWaterLevel());
+        assertEquals(String.valueOf(secondMachineId), delta.getHeaders().getFirst("X-Removed-Machine-Ids"));
+    }
+
+    @Test
+    @DisplayName("Should bump the version for a machine changed by another node once synced")
+    void sync_MachineChangedElsewhere_VersionBumped() {
+        // Given
+        machineChangeSync.sync();
+        long before = facilityVersions.version(facilityId);
+        // Saved directly, like another node would, so no change is recorded here
+        CoffeeMachine machine = coffeeMachineRepository.findById(firstMachineId).orElseThrow();
+        machine.setWaterLevel(15);
+        coffeeMachineRepository.save(machine);
+        assertEquals(before, facilityVersions.version(facilityId));
+
+        // When
+        machineChangeSync.sync();
+
+        // Then
+        long after = facilityVersions.version(facilityId);
+        assertTrue(after > before);
+        assertEquals(Set.of(firstMachineId), facilityVersions.changedSince(facilityId, before, after).orElseThrow());
+    }
+
+    private Long addMachine() {
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        return facilityService.addMachineToFacility(facilityId, machine).getId();
+    }
+
+    private static UpdateMachineSnapshotRequest levels(int waterLevel) {
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setWaterLevel(waterLevel);
+        return request;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.domain.Severity;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Integration tests for the incrementally maintained fleet counters.
+ */
+@SpringBootTest(properties = {
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class FleetCountersTest {
+
+    @Autowired
+    private FleetCounters fleetCounters;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 4, Floor 3");
+        facility = facilityService.createFacility(facility);
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        machineId = facilityService.addMachineToFacility(facility.getId(), machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should follow status and alert transitions without recounting")
+    void snapshot_StatusAndAlertTransitions_TrackedIncrementally() {
+        // Given
+        FleetCounters.Snapshot before = fleetCounters.snapshot();
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot("ERROR"));
+
+        // Then
+        FleetCounters.Snapshot failed = fleetCounters.snapshot();
+        assertEquals(before.machines(MachineStatus.ON) - 1, failed.machines(MachineStatus.ON));
+        assertEquals(before.machines(MachineStatus.ERROR) + 1, failed.machines(MachineStatus.ERROR));
+        assertEquals(before.openAlerts(Severity.CRITICAL) + 1, failed.openAlerts(Severity.CRITICAL));
+
+        // When
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot("ON"));
+
+        // Then
+        FleetCounters.Snapshot recovered = fleetCounters.snapshot();
+        assertEquals(before.machines(MachineStatus.ON), recovered.machines(MachineStatus.ON));
+        assertEquals(before.openAlerts(Severity.CRITICAL), recovered.openAlerts(Severity.CRITICAL));
+    }
+
+    @Test
+    @DisplayName("Should match a rebuild from the database after machines are added and deleted")
+    void reconcile_AfterAdminChanges_MatchesIncrementalCounts() {
+        // Given
+        long machinesBefore = fleetCounters.snapshot().machines();
+        coffeeMachineService.deleteMachine(machineId);
+        coffeeMachineService.updateMachineSnapshot(machineId, snapshot("ERROR"));
+
+        // When
+        FleetCounters.Snapshot incremental = fleetCounters.snapshot();
+        fleetCounters.reconcile();
+        FleetCounters.Snapshot rebuilt = fleetCounters.snapshot();
+
+        // Then
+        assertEquals(machinesBefore - 1, incremental.machines());
+        assertEquals(rebuilt.facilities(), incremental.facilities());
+        assertArrayEquals(rebuilt.machinesByStatus(), incremental.machinesByStatus());
+        for (int i = 0; i < rebuilt.openAlertsBySeverityAndType().length; i++) {
+            assertArrayEquals(rebuilt.openAlertsBySeverityAndType()[i], incremental.openAlertsBySeverityAndType()[i]);
+        }
+    }
+
+    private static UpdateMachineSnapshotRequest snapshot(String status) {
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setStatus(status);
+        return request;
+    }
+}
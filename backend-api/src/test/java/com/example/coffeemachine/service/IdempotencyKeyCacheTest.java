@@ -0,0 +1,62 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.UsageHistory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the usage idempotency key cache.
+ */
+class IdempotencyKeyCacheTest {
+
+    private AppProperties appProperties;
+    private IdempotencyKeyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getIngestion().getIdempotency().setMaxKeys(3);
+        cache = new IdempotencyKeyCache(appProperties);
+    }
+
+    @Test
+    @DisplayName("Should return the usage recorded under a key for the same machine only")
+    void get_KnownKey_ReturnsUsage() {
+        UsageHistory usage = new UsageHistory();
+        cache.put(1L, "evt-1", usage);
+
+        assertSame(usage, cache.get(1L, "evt-1").orElseThrow());
+        assertFalse(cache.get(2L, "evt-1").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest keys beyond the size bound")
+    void put_BeyondMaxKeys_EvictsOldest() {
+        for (int i = 0; i < 5; i++) {
+            cache.put(1L, "evt-" + i, new UsageHistory());
+        }
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.get(1L, "evt-0").isPresent());
+        assertFalse(cache.get(1L, "evt-1").isPresent());
+        assertTrue(cache.get(1L, "evt-4").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should not return or keep expired keys")
+    void put_Expired_NotReturnedAndDropped() {
+        appProperties.getIngestion().getIdempotency().setTtlMs(0);
+        cache.put(1L, "evt-1", new UsageHistory());
+        assertFalse(cache.get(1L, "evt-1").isPresent());
+
+        cache.put(1L, "evt-2", new UsageHistory());
+        assertEquals(0, cache.size());
+    }
+}
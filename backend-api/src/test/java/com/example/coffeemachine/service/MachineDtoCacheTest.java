@@ -0,0 +1,223 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.service.dto.CoffeeMachineDto;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for the machine DTO cache.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+@SuppressWarnings("unchecked")
+class MachineDtoCacheTest {
+
+    @Autowired
+    private MachineDtoCache machineDtoCache;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private MachineChangeSync machineChangeSync;
+
+    @Autowired
+    private FacilityVersions facilityVersions;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long facilityId;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 7, Floor 2");
+        facilityId = facilityService.createFacility(facility).getId();
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        machineId = facilityService.addMachineToFacility(facilityId, machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads without a query until the machine changes")
+    void machine_HitThenReading_ServesFreshLevels() {
+        // Given
+        machineDtoCache.machine(machineId).orElseThrow();
+        machineDtoCache.facilityMachines(facilityId);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        double hitsBefore = gets("hit");
+
+        // When
+        machineDtoCache.machine(machineId).orElseThrow();
+        List<CoffeeMachineDto> facilityMachines = machineDtoCache.facilityMachines(facilityId);
+
+        // Then
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(List.of(machineId), facilityMachines.stream().map(CoffeeMachineDto::getId).toList());
+        assertEquals(1, gets("hit") - hitsBefore);
+
+        // When
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setWaterLevel(25);
+        coffeeMachineService.updateMachineSnapshot(machineId, request);
+
+        // Then
+        assertEquals(25, machineDtoCache.machine(machineId).orElseThrow().getWaterLevel());
+        assertEquals(25, machineDtoCache.facilityMachines(facilityId).get(0).getWaterLevel());
+
+        // When
+        coffeeMachineService.deleteMachine(machineId);
+
+        // Then
+        assertTrue(machineDtoCache.machine(machineId).isEmpty());
+        assertTrue(machineDtoCache.facilityMachines(facilityId).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should load a missing machine once for concurrent readers")
+    void machine_ConcurrentMisses_LoadedOnce() throws Exception {
+        // Given
+        int readers = 16;
+        double missesBefore = gets("miss");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+
+        // When
+        List<Future<CoffeeMachineDto>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return machineDtoCache.machine(machineId).orElseThrow();
+                }));
+            }
+            start.countDown();
+
+            // Then
+            CoffeeMachineDto first = results.get(0).get();
+            for (Future<CoffeeMachineDto> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, gets("miss") - missesBefore);
+    }
+
+    @Test
+    @DisplayName("Should drop entries for a machine changed by another node once synced")
+    void sync_MachineChangedElsewhere_EntriesInvalidated() {
+        // Given
+        machineChangeSync.sync();
+        machineDtoCache.machine(machineId).orElseThrow();
+        machineDtoCache.facilityMachines(facilityId);
+        // Saved directly, like another node would, so no invalidation happens here
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        machine.setWaterLevel(15);
+        coffeeMachineRepository.save(machine);
+
+        // When
+        machineChangeSync.sync();
+
+        // Then
+        assertEquals(15, machineDtoCache.machine(machineId).orElseThrow().getWaterLevel());
+        assertEquals(15, machineDtoCache.facilityMachines(facilityId).get(0).getWaterLevel());
+    }
+
+    @Test
+    @DisplayName("Should drop entries before the facility version moves on")
+    void invalidateAfterCommit_WithVersionBump_InvalidatesFirst() {
+        // Given
+        machineDtoCache.machine(machineId).orElseThrow();
+        long versionBefore = facilityVersions.version(facilityId);
+        Cache<Long, CoffeeMachineDto> machines = (Cache<Long, CoffeeMachineDto>) ReflectionTestUtils.getField(machineDtoCache, "machines");
+        AtomicBoolean cachedBetween = new AtomicBoolean(true);
+        AtomicLong versionBetween = new AtomicLong();
+
+        // When - the version bump is registered first, and a probe runs between the two
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+            request.setWaterLevel(35);
+            coffeeMachineService.updateMachineSnapshot(machineId, request);
+            facilityVersions.changedAfterCommit(facilityId, machineId);
+            machineDtoCache.invalidateAfterCommit(facilityId, machineId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return MachineDtoCache.INVALIDATE_ORDER;
+                }
+
+                @Override
+                public void afterCommit() {
+                    cachedBetween.set(machines.getIfPresent(machineId) != null);
+                    versionBetween.set(facilityVersions.version(facilityId));
+                }
+            });
+        });
+
+        // Then
+        assertFalse(cachedBetween.get());
+        assertEquals(versionBefore, versionBetween.get());
+        assertTrue(facilityVersions.version(facilityId) > versionBefore);
+        assertEquals(35, machineDtoCache.machine(machineId).orElseThrow().getWaterLevel());
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "machine.dtos").tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the per-machine ingestion mailboxes.
+ */
+class MachineMailboxesTest {
+
+    private MachineMailboxes mailboxes;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIngestion().getMailboxes().setLanes(4);
+        mailboxes = new MachineMailboxes(appProperties);
+        mailboxes.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailboxes.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should apply one machine's mutations in submission order")
+    void submit_SameMachine_AppliedInOrder() throws Exception {
+        List<Integer> applied = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            futures.add(mailboxes.submit(7L, () -> applied.add(value)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1000, applied.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, applied.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not lose updates when many threads mutate the same machine")
+    void submitAndWait_ConcurrentSubmitters_NoLostUpdates() throws Exception {
+        int[] counter = new int[1];
+        ExecutorService submitters = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8; i++) {
+            submitters.execute(() -> {
+                for (int j = 0; j < 500; j++) {
+                    // Read-modify-write without synchronization, made safe by the mailbox
+                    mailboxes.submitAndWait(3L, () -> counter[0] = counter[0] + 1);
+                }
+            });
+        }
+        submitters.shutdown();
+
+        assertTrue(submitters.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(4000, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Should rethrow a failed mutation to a waiting caller")
+    void submitAndWait_MutationFails_Rethrown() {
+        assertThrows(IllegalArgumentException.class, () -> mailboxes.submitAndWait(1L, () -> {
+            throw new IllegalArgumentException("bad reading");
+        }));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Integration tests for the write-behind machine state store.
+ */
+@SpringBootTest(properties = {
+        "app.state-store.enabled=true",
+        "app.state-store.flush-interval-ms=3600000",
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false"
+})
+@ActiveProfiles("test")
+class MachineStateStoreTest {
+
+    @Autowired
+    private MachineStateStore machineStateStore;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 4, Floor 1");
+        Long facilityId = facilityService.createFacility(facility).getId();
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        machine.setWaterLevel(50);
+        machine.setMilkLevel(50);
+        machineId = facilityService.addMachineToFacility(facilityId, machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should hold off readings during a configuration update and apply them to the committed row")
+    void apply_DuringUpdateMachine_WaitsForCommit() throws Exception {
+        // Given
+        machineStateStore.get(machineId).orElseThrow();
+        CoffeeMachine updates = new CoffeeMachine();
+        updates.setWaterLevel(90);
+
+        // When
+        CompletableFuture<MachineLiveState.Applied> reading = new TransactionTemplate(transactionManager).execute(status -> {
+            coffeeMachineService.updateMachine(machineId, updates);
+            CompletableFuture<MachineLiveState.Applied> applied = CompletableFuture.supplyAsync(() ->
+                    machineStateStore.apply(machineId, null, null, null, 30, null).orElseThrow());
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Then - the reading waits for the update to commit
+            assertFalse(applied.isDone());
+            return applied;
+        });
+
+        // Then
+        CoffeeMachine machine = reading.get(5, TimeUnit.SECONDS).machine();
+        assertEquals(90, machine.getWaterLevel());
+        assertEquals(30, machine.getMilkLevel());
+        machineStateStore.flush();
+        CoffeeMachine stored = coffeeMachineRepository.findById(machineId).orElseThrow();
+        assertEquals(90, stored.getWaterLevel());
+        assertEquals(30, stored.getMilkLevel());
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.event.MachineStateChanged;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.service.dto.CoffeeMachineDto;
+import com.example.coffeemachine.service.dto.MachineDeltaDto;
+import com.example.coffeemachine.service.dto.ResyncDto;
+import com.example.coffeemachine.service.dto.UpdateMachineSnapshotRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for the live dashboard stream.
+ */
+@SpringBootTest(properties = {
+        "app.alerts.debounce-interval-ms=0",
+        "app.events.async=false",
+        "app.dashboard.stream.buffer-size=8",
+        "app.dashboard.stream.replay-size=16",
+        "app.dashboard.stream.heartbeat-ms=0"
+})
+@ActiveProfiles("test")
+class MachineUpdateStreamTest {
+
+    @Autowired
+    private MachineUpdateStream machineUpdateStream;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private MachineChangeSync machineChangeSync;
+
+    private Long facilityId;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        facilityId = createFacility();
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setStatus(MachineStatus.ON);
+        machineId = facilityService.addMachineToFacility(facilityId, machine).getId();
+    }
+
+    @Test
+    @DisplayName("Should send a snapshot, then only the changed fields to subscribers in scope")
+    void subscribe_MachineChanged_StreamsCompactDelta() throws Exception {
+        // Given
+        RecordingSink facility = new RecordingSink();
+        RecordingSink otherFacility = new RecordingSink();
+        RecordingSink fleet = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, null, facility);
+        machineUpdateStream.subscribe(createFacility(), null, otherFacility);
+        machineUpdateStream.subscribe(null, null, fleet);
+
+        Sent snapshot = facility.next();
+        assertEquals("snapshot", snapshot.name());
+        assertEquals(List.of(machineId), ((List<?>) snapshot.data()).stream()
+                .map(machine -> ((CoffeeMachineDto) machine).getId()).toList());
+        otherFacility.next();
+        fleet.next();
+
+        // When
+        UpdateMachineSnapshotRequest request = new UpdateMachineSnapshotRequest();
+        request.setStatus("ON");
+        request.setWaterLevel(40);
+        coffeeMachineService.updateMachineSnapshot(machineId, request);
+
+        // Then
+        Sent sent = facility.next();
+        assertEquals("machine", sent.name());
+        MachineDeltaDto delta = (MachineDeltaDto) sent.data();
+        assertEquals(machineId, delta.getId());
+        assertEquals(40, delta.getWaterLevel());
+        assertNull(delta.getStatus());
+        assertNull(delta.getMilkLevel());
+        assertEquals(sent.id(), fleet.next().id());
+        assertNull(otherFacility.poll());
+    }
+
+    @Test
+    @DisplayName("Should replay missed events on reconnect, and resync with a snapshot when they are gone")
+    void subscribe_Reconnect_ReplaysOrResyncs() throws Exception {
+        // Given
+        RecordingSink first = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, null, first);
+        String lastEventId = first.next().id();
+        publishLevels(30);
+        publishLevels(31);
+
+        // When
+        RecordingSink resumed = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, lastEventId, resumed);
+
+        // Then
+        assertEquals(30, ((MachineDeltaDto) resumed.next().data()).getWaterLevel());
+        assertEquals(31, ((MachineDeltaDto) resumed.next().data()).getWaterLevel());
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            publishLevels(50 + i);
+        }
+        RecordingSink tooLate = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, lastEventId, tooLate);
+        RecordingSink otherNode = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, "other-1", otherNode);
+
+        // Then
+        assertEquals("snapshot", tooLate.next().name());
+        assertEquals("snapshot", otherNode.next().name());
+    }
+
+    @Test
+    @DisplayName("Should disconnect a subscriber whose buffer fills without delaying publishers")
+    void publish_SlowSubscriber_Evicted() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(release);
+        MachineUpdateStream.Subscriber subscriber = machineUpdateStream.subscribe(facilityId, null, slow);
+        int before = machineUpdateStream.subscriberCount();
+
+        // When
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            publishLevels(i);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        release.countDown();
+
+        // Then
+        assertTrue(subscriber.isClosed());
+        assertTrue(slow.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(before - 1, machineUpdateStream.subscriberCount());
+        assertTrue(elapsedMs < 1000, "publishing waited on a slow subscriber: " + elapsedMs + " ms");
+    }
+
+    @Test
+    @DisplayName("Should publish changes made by another node once synced")
+    void sync_MachineChangedElsewhere_Published() throws Exception {
+        // Given
+        machineChangeSync.sync();
+        RecordingSink facility = new RecordingSink();
+        machineUpdateStream.subscribe(facilityId, null, facility);
+        assertEquals("snapshot", facility.next().name());
+        // Saved directly, like another node would, so no event is published here
+        CoffeeMachine machine = coffeeMachineRepository.findById(machineId).orElseThrow();
+        machine.setWaterLevel(15);
+        coffeeMachineRepository.save(machine);
+
+        // When
+        machineChangeSync.sync();
+
+        // Then - the readings this node never saw change are sent in full
+        Sent sent = facility.next();
+        assertEquals("machine", sent.name());
+        MachineDeltaDto delta = (MachineDeltaDto) sent.data();
+        assertEquals(machineId, delta.getId());
+        assertEquals(15, delta.getWaterLevel());
+        assertEquals(MachineStatus.ON, delta.getStatus());
+
+        // When
+        coffeeMachineRepository.softDeleteById(machineId);
+        machineChangeSync.sync();
+
+        // Then
+        sent = facility.next();
+        assertEquals("resync", sent.name());
+        assertEquals(machineId, ((ResyncDto) sent.data()).getMachineId());
+    }
+
+    private void publishLevels(int waterLevel) {
+        MachineStateChanged.Readings previous = new MachineStateChanged.Readings(null, null, null, 80, 80);
+        MachineStateChanged.Readings current = new MachineStateChanged.Readings(null, null, waterLevel, 80, 80);
+        machineUpdateStream.onMachineStateChanged(new MachineStateChanged(machineId, facilityId, previous, current,
+                current));
+    }
+
+    private Long createFacility() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 3, Floor 1");
+        return facilityService.createFacility(facility).getId();
+    }
+
+    private record Sent(String id, String name, Object data) {
+    }
+
+    /**
+     * Records sent events; optionally blocks every send after the first until released,
+     * like a client that stopped reading after its snapshot.
+     */
+    private static final class RecordingSink implements MachineUpdateStream.Sink {
+        private final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        private RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        private RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String id, String name, Object data) {
+            try {
+                if (!sent.isEmpty()) {
+                    release.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.add(new Sent(id, name, data));
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        private Sent next() throws InterruptedException {
+            Sent next = sent.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next, "no event received");
+            return next;
+        }
+
+        private Sent poll() throws InterruptedException {
+            return sent.poll(200, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.coffeemachine.service;
+
+import com.example.coffeemachine.config.AppProperties;
+import com.example.coffeemachine.domain.BrewType;
+import com.example.coffeemachine.domain.CoffeeMachine;
+import com.example.coffeemachine.domain.Facility;
+import com.example.coffeemachine.domain.MachineStatus;
+import com.example.coffeemachine.domain.UsageHistory;
+import com.example.coffeemachine.repository.CoffeeMachineRepository;
+import com.example.coffeemachine.repository.FacilityRepository;
+import com.example.coffeemachine.repository.UsageHistoryRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Integration tests and a throughput benchmark for batched, idempotent usage history inserts.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.usage-writer.flush-size=100",
+        "app.usage-writer.flush-interval-ms=600000",
+        "app.usage-writer.id-block-size=64"
+})
+@ActiveProfiles("test")
+@Slf4j
+class UsageHistoryWriterTest {
+
+    @Autowired
+    private CoffeeMachineService coffeeMachineService;
+
+    @Autowired
+    private UsageHistoryWriter usageHistoryWriter;
+
+    @Autowired
+    private CoffeeMachineRepository coffeeMachineRepository;
+
+    @Autowired
+    private FacilityRepository facilityRepository;
+
+    @Autowired
+    private UsageHistoryRepository usageHistoryRepository;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private Long machineId;
+
+    @BeforeEach
+    void setUp() {
+        Facility facility = new Facility();
+        facility.setName("Facility " + UUID.randomUUID().toString().substring(0, 8));
+        facility.setLocation("Building 2, Floor 1");
+        facility = facilityRepository.save(facility);
+
+        CoffeeMachine machine = new CoffeeMachine();
+        machine.setFacility(facility);
+        machine.setStatus(MachineStatus.ON);
+        machine.setTemperature(new BigDecimal("92.00"));
+        machineId = coffeeMachineRepository.save(machine).getId();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        appProperties.getUsageWriter().setBuffered(true);
+        appProperties.getUsageWriter().setMaxPending(10000);
+        doCallRealMethod().when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        usageHistoryWriter.flush();
+    }
+
+    @Test
+    @DisplayName("Should write buffered brews in batches with pooled IDs and no machine load")
+    void recordBrewing_Buffered_BatchedWithPooledIds() {
+        // When
+        for (int i = 0; i < 250; i++) {
+            coffeeMachineService.recordBrewing(machineId, BrewType.ESPRESSO, 30);
+        }
+        usageHistoryWriter.flush();
+
+        // Then
+        List<UsageHistory> stored = usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId);
+        assertEquals(250, stored.size());
+        Set<Long> ids = new HashSet<>();
+        stored.forEach(usage -> ids.add(usage.getId()));
+        assertEquals(250, ids.size());
+        assertEquals(new BigDecimal("92.00"), stored.get(0).getTempAtBrew());
+        assertEquals(0, statistics.getEntityStatistics(CoffeeMachine.class.getName()).getLoadCount());
+    }
+
+    @Test
+    @DisplayName("Should ignore a retried brew whose first attempt is still buffered")
+    void recordBrewing_RetryWhilePending_RecordedOnce() {
+        // When
+        UsageHistory first = coffeeMachineService.recordBrewing(machineId, BrewType.LATTE, 250, "evt-1").orElseThrow();
+        UsageHistory retry = coffeeMachineService.recordBrewing(machineId, BrewType.LATTE, 250, "evt-1").orElseThrow();
+        usageHistoryWriter.flush();
+        UsageHistory afterFlush = coffeeMachineService.recordBrewing(machineId, BrewType.LATTE, 250, "evt-1").orElseThrow();
+
+        // Then
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(first.getId(), afterFlush.getId());
+        assertEquals(1, usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId).size());
+    }
+
+    @Test
+    @DisplayName("Should reject a second row under the same idempotency key at the database")
+    void append_DuplicateKeyPastCache_RejectedByUniqueConstraint() {
+        // Given
+        appProperties.getUsageWriter().setBuffered(false);
+        usageHistoryWriter.append(machineId, LocalDateTime.now(), BrewType.LATTE, 250, null, "evt-2");
+
+        // When / Then
+        assertThrows(DuplicateKeyException.class, () ->
+                usageHistoryWriter.append(machineId, LocalDateTime.now(), BrewType.LATTE, 250, null, "evt-2"));
+        assertEquals(1, usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId).size());
+    }
+
+    @Test
+    @DisplayName("Should keep buffered brews for the next flush when the database is unavailable")
+    void flush_TransientFailure_RowsRetried() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            coffeeMachineService.recordBrewing(machineId, BrewType.MOCHA, 250);
+        }
+        doThrow(new TransientDataAccessResourceException("Connection refused"))
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        // When
+        int failed = usageHistoryWriter.flush();
+
+        // Then
+        assertEquals(0, failed);
+        assertEquals(3, usageHistoryWriter.pendingCount());
+
+        // When
+        doCallRealMethod().when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        int retried = usageHistoryWriter.flush();
+
+        // Then
+        assertEquals(3, retried);
+        assertEquals(0, usageHistoryWriter.pendingCount());
+        assertEquals(3, usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId).size());
+    }
+
+    @Test
+    @DisplayName("Should insert brews on the caller once the buffer is full")
+    void append_BufferFull_InsertedDirectly() {
+        // Given - flushes keep failing, so the buffer fills up
+        appProperties.getUsageWriter().setMaxPending(2);
+        doThrow(new TransientDataAccessResourceException("Connection refused"))
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            coffeeMachineService.recordBrewing(machineId, BrewType.CAPPUCCINO, 180);
+        }
+        usageHistoryWriter.flush();
+
+        // Then
+        assertEquals(2, usageHistoryWriter.pendingCount());
+        assertEquals(3, usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId).size());
+    }
+
+    @Test
+    @DisplayName("Benchmark: buffered batch inserts against one insert per brew")
+    void benchmark_BufferedAgainstPerRowInserts() {
+        int brews = 2000;
+        // Warm up the ID allocator and statement caches
+        record(200);
+        usageHistoryWriter.flush();
+
+        appProperties.getUsageWriter().setBuffered(false);
+        double perRow = record(brews);
+
+        appProperties.getUsageWriter().setBuffered(true);
+        double buffered = record(brews);
+
+        log.info("Usage history inserts: {} brews/s one per brew, {} brews/s buffered ({}x)",
+                Math.round(perRow), Math.round(buffered), String.format("%.1f", buffered / perRow));
+        assertEquals(200 + 2 * brews, usageHistoryRepository.findActiveByMachineIdOrderByTimestampDesc(machineId).size());
+        assertTrue(buffered > 0 && perRow > 0);
+    }
+
+    /**
+     * Records brews through the service and flushes them.
+     *
+     * @return brews per second
+     */
+    private double record(int brews) {
+        long start = System.nanoTime();
+        for (int i = 0; i < brews; i++) {
+            coffeeMachineService.recordBrewing(machineId, BrewType.AMERICANO, 200);
+        }
+        usageHistoryWriter.flush();
+        return brews / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.coffeemachine.config;
 
+import com.example.coffeemachine.mqtt.MqttDispatcher;
+import com.example.coffeemachine.mqtt.PartitionAssignment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
@@ -13,15 +15,20 @@ import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
 import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
 import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
 import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
+import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.nio.charset.StandardCharsets;
+
 @Configuration
 @RequiredArgsConstructor
 @Slf4j
 public class MqttConfig {
 
+    private final PartitionAssignment partitionAssignment;
+
     @Value("${spring.mqtt.broker.url}")
     private String brokerUrl;
 
@@ -62,18 +69,15 @@ public class MqttConfig {
     public MessageProducer inbound() {
         MqttPahoMessageDrivenChannelAdapter adapter = 
             new MqttPahoMessageDrivenChannelAdapter(
-                clientId + "-inbound", 
+                clientId + "-inbound" + partitionAssignment.clientIdSuffix(),
                 mqttClientFactory(),
-                "coffeeMachine/+/temperature",
-                "coffeeMachine/+/waterLevel",
-                "coffeeMachine/+/milkLevel",
-                "coffeeMachine/+/beansLevel",
-                "coffeeMachine/+/status",
-                "coffeeMachine/+/usage"
+                partitionAssignment.topicFilters()
             );
 
         adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
+        DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
         adapter.setQos(1);
         adapter.setOutputChannel(mqttInputChannel());
         
@@ -82,28 +86,34 @@ public class MqttConfig {
 
     @Bean
     @ServiceActivator(inputChannel = "mqttInputChannel")
-    public MessageHandler handler() {
+    public MessageHandler handler(MqttDispatcher dispatcher) {
         return message -> {
             try {
-                Object topicHeader = message.getHeaders().get("mqtt_topic");
+                Object topicHeader = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
                 if (topicHeader == null) {
                     log.warn("Received MQTT message without topic header");
                     return;
                 }
                 
                 String topic = topicHeader.toString();
-                String payload = new String((byte[]) message.getPayload());
+                byte[] payload = (byte[]) message.getPayload();
                 
-                log.info("Received MQTT message on topic: {} with payload: {}", topic, payload);
+                if (log.isDebugEnabled()) {
+                    log.debug("Received MQTT message on topic: {} with payload: {}", topic, new String(payload, StandardCharsets.UTF_8));
+                }
                 
                 // Extract machine ID from topic (e.g., coffeeMachine/123/temperature -> 123)
                 String[] topicParts = topic.split("/");
                 if (topicParts.length >= 3) {
                     String machineId = topicParts[1];
                     String metricType = topicParts[2];
+
+                    if (!partitionAssignment.accept(machineId)) {
+                        return;
+                    }
                     
-                    // Route to appropriate handler based on metric type
-                    routeMessage(machineId, metricType, payload);
+                    // Hand off to the machine's dispatch lane so the Paho thread is released immediately
+                    dispatcher.dispatch(machineId, metricType, payload);
                 } else {
                     log.warn("Invalid topic format: {}", topic);
                 }
@@ -117,10 +127,4 @@ public class MqttConfig {
     public WebClient webClient() {
         return WebClient.builder().build();
     }
-
-    private void routeMessage(String machineId, String metricType, String payload) {
-        // This will be handled by the MqttMessageHandler
-        // The routing logic is implemented there
-        log.debug("Routing message for machine {} metric {}: {}", machineId, metricType, payload);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.MachineLevelsUpdate;
+import com.example.coffeemachine.mqtt.dto.MachineSnapshotUpdate;
+import com.example.coffeemachine.mqtt.dto.MachineStatusUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merges per-metric machine updates into one pending snapshot per machine.
+ * The message handler drains the buffer once per flush window, so the five
+ * metric topics a machine publishes per tick turn into a single backend call.
+ */
+@Component
+@Slf4j
+public class MachineSnapshotCoalescer {
+
+    @Value("${spring.mqtt.coalesce.enabled:true}")
+    private boolean enabled;
+
+    private final Map<Long, MachineSnapshotUpdate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Merges a status/temperature update into the machine's pending snapshot.
+     *
+     * @param update the status update
+     * @return true if the snapshot should be flushed immediately
+     */
+    public boolean merge(MachineStatusUpdate update) {
+        pending.compute(update.getMachineId(), (id, snapshot) -> {
+            MachineSnapshotUpdate merged = snapshot != null ? snapshot : MachineSnapshotUpdate.builder().machineId(id).build();
+            if (update.getStatus() != null) {
+                merged.setStatus(update.getStatus());
+            }
+            if (update.getTemperature() != null) {
+                merged.setTemperature(update.getTemperature());
+            }
+            return merged;
+        });
+        return !isEnabled() || "ERROR".equals(update.getStatus());
+    }
+
+    /**
+     * Merges a levels update into the machine's pending snapshot.
+     *
+     * @param update the levels update
+     * @return true if the snapshot should be flushed immediately
+     */
+    public boolean merge(MachineLevelsUpdate update) {
+        pending.compute(update.getMachineId(), (id, snapshot) -> {
+            MachineSnapshotUpdate merged = snapshot != null ? snapshot : MachineSnapshotUpdate.builder().machineId(id).build();
+            if (update.getWaterLevel() != null) {
+                merged.setWaterLevel(update.getWaterLevel());
+            }
+            if (update.getMilkLevel() != null) {
+                merged.setMilkLevel(update.getMilkLevel());
+            }
+            if (update.getBeansLevel() != null) {
+                merged.setBeansLevel(update.getBeansLevel());
+            }
+            return merged;
+        });
+        return !isEnabled();
+    }
+
+    /**
+     * Removes and returns the pending snapshot for a single machine.
+     *
+     * @param machineId the machine ID
+     * @return the pending snapshot, or null if nothing is buffered
+     */
+    public MachineSnapshotUpdate take(Long machineId) {
+        return pending.remove(machineId);
+    }
+
+    /**
+     * Removes and returns all pending snapshots.
+     *
+     * @return snapshots buffered since the last drain
+     */
+    public List<MachineSnapshotUpdate> drain() {
+        List<MachineSnapshotUpdate> snapshots = new ArrayList<>(pending.size());
+        for (Long machineId : pending.keySet()) {
+            MachineSnapshotUpdate snapshot = pending.remove(machineId);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Number of machines with a pending snapshot.
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
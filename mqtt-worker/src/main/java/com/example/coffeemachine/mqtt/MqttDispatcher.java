@@ -0,0 +1,172 @@
+package com.example.coffeemachine.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Dispatches inbound MQTT messages off the Paho callback thread.
+ * Messages are routed through a precomputed metric-to-handler table onto a fixed
+ * set of single-threaded lanes chosen by hashing the machine ID, so updates for one
+ * machine are applied in arrival order while different machines run in parallel.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MqttDispatcher {
+
+    private final MqttMessageHandler messageHandler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.mqtt.dispatch.lanes:0}")
+    private int laneCount;
+
+    @Value("${spring.mqtt.dispatch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private Map<String, BiConsumer<String, byte[]>> handlers;
+    private Lane[] lanes;
+    private Counter unroutableCounter;
+
+    @PostConstruct
+    public void start() {
+        if (laneCount <= 0) {
+            laneCount = Runtime.getRuntime().availableProcessors();
+        }
+
+        handlers = Map.of(
+            "temperature", messageHandler::handleTemperatureUpdate,
+            "waterLevel", messageHandler::handleWaterLevelUpdate,
+            "milkLevel", messageHandler::handleMilkLevelUpdate,
+            "beansLevel", messageHandler::handleBeansLevelUpdate,
+            "status", messageHandler::handleStatusUpdate,
+            "usage", messageHandler::handleUsageEvent,
+            "telemetry", messageHandler::handleTelemetry
+        );
+
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i);
+        }
+        unroutableCounter = Counter.builder("mqtt.dispatch.unroutable")
+            .description("MQTT messages with an unknown metric type")
+            .register(meterRegistry);
+
+        log.info("MQTT dispatcher started with {} lanes, queue capacity {} per lane", laneCount, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (lanes == null) {
+            return;
+        }
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            try {
+                if (!lane.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Dispatch lane {} did not drain in time, {} messages dropped",
+                            lane.index, lane.executor.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Enqueues a message on the lane owning the given machine.
+     *
+     * @param machineId the machine ID taken from the topic
+     * @param metricType the metric segment of the topic
+     * @param payload the raw message payload
+     * @return true if the message was accepted, false if unroutable or rejected
+     */
+    public boolean dispatch(String machineId, String metricType, byte[] payload) {
+        BiConsumer<String, byte[]> handler = handlers.get(metricType);
+        if (handler == null) {
+            log.warn("No handler for metric type {} (machine {})", metricType, machineId);
+            unroutableCounter.increment();
+            return false;
+        }
+
+        Lane lane = lanes[laneFor(machineId)];
+        long enqueuedAt = System.nanoTime();
+        try {
+            lane.executor.execute(() -> {
+                try {
+                    handler.accept(machineId, payload);
+                } finally {
+                    lane.latency.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            lane.rejected.increment();
+            log.warn("Dispatch lane {} full, dropping {} message for machine {}", lane.index, metricType, machineId);
+            return false;
+        }
+    }
+
+    /**
+     * Resolves the lane index for a machine ID.
+     *
+     * @param machineId the machine ID
+     * @return lane index in [0, laneCount)
+     */
+    int laneFor(String machineId) {
+        return machineId == null ? 0 : Math.floorMod(machineId.hashCode(), lanes.length);
+    }
+
+    /**
+     * A single-threaded executor with a bounded queue and its metrics.
+     */
+    private class Lane {
+        final int index;
+        final ThreadPoolExecutor executor;
+        final Timer latency;
+        final Counter rejected;
+
+        Lane(int index) {
+            this.index = index;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mqtt-dispatch-" + index);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+            String laneTag = String.valueOf(index);
+            Gauge.builder("mqtt.dispatch.queue.depth", executor, e -> e.getQueue().size())
+                .description("Messages waiting on a dispatch lane")
+                .tag("lane", laneTag)
+                .register(meterRegistry);
+            this.latency = Timer.builder("mqtt.dispatch.latency")
+                .description("Time from enqueue to handler completion")
+                .tag("lane", laneTag)
+                .register(meterRegistry);
+            this.rejected = Counter.builder("mqtt.dispatch.rejected")
+                .description("Messages rejected because the lane queue was full")
+                .tag("lane", laneTag)
+                .register(meterRegistry);
+        }
+    }
+}
@@ -3,45 +3,71 @@ package com.example.coffeemachine.mqtt;
 import com.example.coffeemachine.mqtt.dto.MachineStatusUpdate;
 import com.example.coffeemachine.mqtt.dto.MachineLevelsUpdate;
 import com.example.coffeemachine.mqtt.dto.MachineUsageEvent;
-import com.example.coffeemachine.mqtt.dto.MachineAlertEvent;
+import com.example.coffeemachine.mqtt.dto.MachineSnapshotUpdate;
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
-import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MqttMessageHandler {
 
-    private final WebClient webClient;
+    private final TelemetrySender telemetrySender;
     private final MqttPayloadParser payloadParser;
+    private final MachineSnapshotCoalescer snapshotCoalescer;
+    private final SequenceTracker sequenceTracker;
+    private final TelemetryDeadband deadband;
 
-    @Value("${backend.api.base-url}")
-    private String backendApiBaseUrl;
+    private final Queue<MachineUsageEvent> pendingUsage = new ConcurrentLinkedQueue<>();
 
-    public void handleTemperatureUpdate(String machineId, String payload) {
+    // Boot IDs per machine and stream; a new one means that stream's sequence started over
+    private final Map<Long, Boot> boots = new ConcurrentHashMap<>();
+    // Timestamp of the last accepted telemetry frame per machine, which survives a device restart
+    private final Map<Long, Long> frameTimestamps = new ConcurrentHashMap<>();
+
+    // Held from taking a snapshot out of the coalescer until it is queued for sending, so
+    // the scheduled drain and an immediate flush on a dispatch lane cannot reorder one
+    // machine's snapshots. The sender serialises submits on its own lock anyway.
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Dispatch lanes are single-threaded, so one reusable reading per thread is enough
+    private final ThreadLocal<TelemetryReading> readings = ThreadLocal.withInitial(TelemetryReading::new);
+
+    public void handleTemperatureUpdate(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for temperature update: {}", machineId);
                 return;
             }
             
-            BigDecimal temperature = payloadParser.parseTemperature(payload);
-            if (temperature != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeTemperature(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.TEMPERATURE, id, reading)) {
+                    return;
+                }
                 MachineStatusUpdate update = MachineStatusUpdate.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .temperature(temperature)
+                    .machineId(id)
+                    .temperature(BigDecimal.valueOf(reading.getTemperature()))
                     .build();
                 
-                updateMachineStatus(update);
+                submitStatus(update);
             } else {
-                log.warn("Failed to parse temperature from payload: {}", payload);
+                log.warn("Failed to parse temperature from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for temperature update: {}", machineId);
@@ -50,23 +76,27 @@ public class MqttMessageHandler {
         }
     }
 
-    public void handleWaterLevelUpdate(String machineId, String payload) {
+    public void handleWaterLevelUpdate(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for water level update: {}", machineId);
                 return;
             }
             
-            Integer waterLevel = payloadParser.parseLevel(payload);
-            if (waterLevel != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeLevel(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.WATER_LEVEL, id, reading)) {
+                    return;
+                }
                 MachineLevelsUpdate update = MachineLevelsUpdate.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .waterLevel(waterLevel)
+                    .machineId(id)
+                    .waterLevel(reading.getLevel())
                     .build();
                 
-                updateMachineLevels(update);
+                submitLevels(update);
             } else {
-                log.warn("Failed to parse water level from payload: {}", payload);
+                log.warn("Failed to parse water level from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for water level update: {}", machineId);
@@ -75,23 +105,27 @@ public class MqttMessageHandler {
         }
     }
 
-    public void handleMilkLevelUpdate(String machineId, String payload) {
+    public void handleMilkLevelUpdate(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for milk level update: {}", machineId);
                 return;
             }
             
-            Integer milkLevel = payloadParser.parseLevel(payload);
-            if (milkLevel != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeLevel(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.MILK_LEVEL, id, reading)) {
+                    return;
+                }
                 MachineLevelsUpdate update = MachineLevelsUpdate.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .milkLevel(milkLevel)
+                    .machineId(id)
+                    .milkLevel(reading.getLevel())
                     .build();
                 
-                updateMachineLevels(update);
+                submitLevels(update);
             } else {
-                log.warn("Failed to parse milk level from payload: {}", payload);
+                log.warn("Failed to parse milk level from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for milk level update: {}", machineId);
@@ -100,23 +134,27 @@ public class MqttMessageHandler {
         }
     }
 
-    public void handleBeansLevelUpdate(String machineId, String payload) {
+    public void handleBeansLevelUpdate(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for beans level update: {}", machineId);
                 return;
             }
             
-            Integer beansLevel = payloadParser.parseLevel(payload);
-            if (beansLevel != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeLevel(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.BEANS_LEVEL, id, reading)) {
+                    return;
+                }
                 MachineLevelsUpdate update = MachineLevelsUpdate.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .beansLevel(beansLevel)
+                    .machineId(id)
+                    .beansLevel(reading.getLevel())
                     .build();
                 
-                updateMachineLevels(update);
+                submitLevels(update);
             } else {
-                log.warn("Failed to parse beans level from payload: {}", payload);
+                log.warn("Failed to parse beans level from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for beans level update: {}", machineId);
@@ -125,23 +163,27 @@ public class MqttMessageHandler {
         }
     }
 
-    public void handleStatusUpdate(String machineId, String payload) {
+    public void handleStatusUpdate(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for status update: {}", machineId);
                 return;
             }
             
-            String status = payloadParser.parseStatus(payload);
-            if (status != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeStatus(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.STATUS, id, reading)) {
+                    return;
+                }
                 MachineStatusUpdate update = MachineStatusUpdate.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .status(status)
+                    .machineId(id)
+                    .status(reading.getStatus())
                     .build();
                 
-                updateMachineStatus(update);
+                submitStatus(update);
             } else {
-                log.warn("Failed to parse status from payload: {}", payload);
+                log.warn("Failed to parse status from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for status update: {}", machineId);
@@ -150,25 +192,30 @@ public class MqttMessageHandler {
         }
     }
 
-    public void handleUsageEvent(String machineId, String payload) {
+    public void handleUsageEvent(String machineId, byte[] payload) {
         try {
             if (machineId == null || machineId.trim().isEmpty()) {
                 log.warn("Invalid machine ID for usage event: {}", machineId);
                 return;
             }
             
-            MqttPayloadParser.UsageEvent usageEvent = payloadParser.parseUsageEvent(payload);
-            if (usageEvent != null) {
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeUsage(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFresh(SequenceTracker.Stream.USAGE, id, reading)) {
+                    return;
+                }
                 MachineUsageEvent event = MachineUsageEvent.builder()
-                    .machineId(Long.valueOf(machineId))
-                    .brewType(usageEvent.brewType())
-                    .volumeMl(usageEvent.volumeMl())
-                    .tempAtBrew(usageEvent.tempAtBrew())
+                    .machineId(id)
+                    .brewType(reading.getBrewType())
+                    .volumeMl(reading.getVolumeMl())
+                    .tempAtBrew(reading.hasTempAtBrew() ? BigDecimal.valueOf(reading.getTempAtBrew()) : null)
+                    .idempotencyKey(usageKey(id, reading))
                     .build();
                 
-                recordMachineUsage(event);
+                submitUsage(event);
             } else {
-                log.warn("Failed to parse usage event from payload: {}", payload);
+                log.warn("Failed to parse usage event from payload: {}", describe(payload));
             }
         } catch (NumberFormatException e) {
             log.error("Invalid machine ID format for usage event: {}", machineId);
@@ -177,60 +224,166 @@ public class MqttMessageHandler {
         }
     }
 
-    private void updateMachineStatus(MachineStatusUpdate update) {
+    public void handleTelemetry(String machineId, byte[] payload) {
         try {
-            webClient.post()
-                .uri(backendApiBaseUrl + "/api/machine/{id}/status", update.getMachineId())
-                .bodyValue(update)
-                .retrieve()
-                .bodyToMono(Void.class)
-                .doOnSuccess(result -> log.info("Successfully updated status for machine {}", update.getMachineId()))
-                .doOnError(error -> log.error("Failed to update status for machine {}: {}", update.getMachineId(), error.getMessage()))
-                .onErrorResume(error -> {
-                    log.error("Error updating machine status for machine {}: {}", update.getMachineId(), error.getMessage());
-                    return Mono.empty();
-                })
-                .subscribe();
+            if (machineId == null || machineId.trim().isEmpty()) {
+                log.warn("Invalid machine ID for telemetry frame: {}", machineId);
+                return;
+            }
+
+            TelemetryReading reading = readings.get();
+            if (payloadParser.decodeTelemetry(payload, reading)) {
+                Long id = Long.valueOf(machineId);
+                if (!isFreshFrame(id, reading)) {
+                    return;
+                }
+                if (reading.getWaterLevel() >= 0 || reading.getMilkLevel() >= 0 || reading.getBeansLevel() >= 0) {
+                    submitLevels(MachineLevelsUpdate.builder()
+                        .machineId(id)
+                        .waterLevel(reading.getWaterLevel() >= 0 ? reading.getWaterLevel() : null)
+                        .milkLevel(reading.getMilkLevel() >= 0 ? reading.getMilkLevel() : null)
+                        .beansLevel(reading.getBeansLevel() >= 0 ? reading.getBeansLevel() : null)
+                        .build());
+                }
+                // Status last, so an ERROR flush carries the levels from the same frame
+                if (reading.getStatus() != null || !Double.isNaN(reading.getTemperature())) {
+                    submitStatus(MachineStatusUpdate.builder()
+                        .machineId(id)
+                        .status(reading.getStatus())
+                        .temperature(Double.isNaN(reading.getTemperature()) ? null : BigDecimal.valueOf(reading.getTemperature()))
+                        .build());
+                }
+            } else {
+                log.warn("Unsupported telemetry frame for machine {} ({} bytes)", machineId, payload != null ? payload.length : 0);
+            }
+        } catch (NumberFormatException e) {
+            log.error("Invalid machine ID format for telemetry frame: {}", machineId);
         } catch (Exception e) {
-            log.error("Exception while updating machine status for machine {}: {}", update.getMachineId(), e.getMessage());
+            log.error("Error handling telemetry frame for machine {}: {}", machineId, e.getMessage());
         }
     }
 
-    private void updateMachineLevels(MachineLevelsUpdate update) {
+    /**
+     * Sends every snapshot and usage event buffered during the last flush window
+     * to the backend batch endpoint.
+     */
+    @Scheduled(fixedRateString = "${spring.mqtt.coalesce.window-ms:250}")
+    public void flushSnapshots() {
+        flushLock.lock();
         try {
-            webClient.post()
-                .uri(backendApiBaseUrl + "/api/machine/{id}/levels", update.getMachineId())
-                .bodyValue(update)
-                .retrieve()
-                .bodyToMono(Void.class)
-                .doOnSuccess(result -> log.info("Successfully updated levels for machine {}", update.getMachineId()))
-                .doOnError(error -> log.error("Failed to update levels for machine {}: {}", update.getMachineId(), error.getMessage()))
-                .onErrorResume(error -> {
-                    log.error("Error updating machine levels for machine {}: {}", update.getMachineId(), error.getMessage());
-                    return Mono.empty();
-                })
-                .subscribe();
-        } catch (Exception e) {
-            log.error("Exception while updating machine levels for machine {}: {}", update.getMachineId(), e.getMessage());
+            List<TelemetryRecord> records = new ArrayList<>();
+            for (MachineSnapshotUpdate snapshot : snapshotCoalescer.drain()) {
+                MachineSnapshotUpdate changed = deadband.filter(snapshot);
+                if (changed != null) {
+                    records.add(TelemetryRecord.of(changed));
+                }
+            }
+            MachineUsageEvent event;
+            while ((event = pendingUsage.poll()) != null) {
+                records.add(TelemetryRecord.of(event));
+            }
+            if (!records.isEmpty()) {
+                log.debug("Flushing {} buffered telemetry records", records.size());
+                telemetrySender.submit(records);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean isFresh(SequenceTracker.Stream stream, Long machineId, TelemetryReading reading) {
+        if (!reading.hasSequence()) {
+            return true;
         }
+        String bootId = reading.getBootId();
+        if (bootId != null) {
+            // Tracked per stream, since each stream sees the new boot ID on its own first reading
+            long key = SequenceTracker.key(stream, machineId);
+            Boot boot = boots.get(key);
+            if (boot == null) {
+                boots.put(key, new Boot(bootId, null));
+            } else if (!boot.current().equals(bootId)) {
+                if (bootId.equals(boot.retired())) {
+                    log.debug("Dropping {} reading from before machine {} restarted", stream, machineId);
+                    return false;
+                }
+                boots.put(key, new Boot(bootId, boot.current()));
+                sequenceTracker.restart(stream, machineId, reading.getSequence());
+                return true;
+            }
+        }
+        return sequenceTracker.accept(stream, machineId, reading.getSequence());
     }
 
-    private void recordMachineUsage(MachineUsageEvent event) {
+    /**
+     * Frames carry no boot ID, but their timestamp keeps advancing across a device
+     * restart: a frame stamped after the last accepted one is new even if its sequence
+     * number started over, while a redelivery or a reordered frame is not.
+     */
+    private boolean isFreshFrame(Long machineId, TelemetryReading reading) {
+        long timestamp = reading.getTimestampMillis();
+        Long last = frameTimestamps.get(machineId);
+        boolean newer = last != null && timestamp > last;
+        if (!sequenceTracker.accept(SequenceTracker.Stream.TELEMETRY, machineId, reading.getSequence(), newer)) {
+            return false;
+        }
+        frameTimestamps.merge(machineId, timestamp, Math::max);
+        return true;
+    }
+
+    /**
+     * Key the backend uses to store a usage event only once. Events that carry both
+     * the device's boot ID and its usage counter get a key derived from the two, so
+     * even a broker redelivery that slipped past the tracker (e.g. after a worker
+     * restart) is recognised, while a device restart, which starts the counter over,
+     * starts a new key space. Without a boot ID the counter alone could repeat a
+     * stored key and lose the brew, so such events get a random key.
+     */
+    private static String usageKey(Long machineId, TelemetryReading reading) {
+        return reading.hasSequence() && reading.getBootId() != null
+            ? machineId + "-" + reading.getBootId() + "-" + reading.getSequence()
+            : UUID.randomUUID().toString();
+    }
+
+    private void submitStatus(MachineStatusUpdate update) {
+        if (snapshotCoalescer.merge(update)) {
+            flushSnapshot(update.getMachineId());
+        }
+    }
+
+    private void submitLevels(MachineLevelsUpdate update) {
+        if (snapshotCoalescer.merge(update)) {
+            flushSnapshot(update.getMachineId());
+        }
+    }
+
+    private void submitUsage(MachineUsageEvent event) {
+        if (snapshotCoalescer.isEnabled()) {
+            pendingUsage.add(event);
+        } else {
+            telemetrySender.submit(List.of(TelemetryRecord.of(event)));
+        }
+    }
+
+    private void flushSnapshot(Long machineId) {
+        flushLock.lock();
         try {
-            webClient.post()
-                .uri(backendApiBaseUrl + "/api/machine/{id}/history", event.getMachineId())
-                .bodyValue(event)
-                .retrieve()
-                .bodyToMono(Void.class)
-                .doOnSuccess(result -> log.info("Successfully recorded usage for machine {}", event.getMachineId()))
-                .doOnError(error -> log.error("Failed to record usage for machine {}: {}", event.getMachineId(), error.getMessage()))
-                .onErrorResume(error -> {
-                    log.error("Error recording machine usage for machine {}: {}", event.getMachineId(), error.getMessage());
-                    return Mono.empty();
-                })
-                .subscribe();
-        } catch (Exception e) {
-            log.error("Exception while recording machine usage for machine {}: {}", event.getMachineId(), e.getMessage());
+            MachineSnapshotUpdate snapshot = deadband.filter(snapshotCoalescer.take(machineId));
+            if (snapshot != null) {
+                telemetrySender.submit(List.of(TelemetryRecord.of(snapshot)));
+            }
+        } finally {
+            flushLock.unlock();
         }
     }
-}
\ No newline at end of file
+
+    private static String describe(byte[] payload) {
+        return payload != null ? new String(payload, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * A stream's current boot ID and the one before it, whose late redeliveries are stale.
+     */
+    private record Boot(String current, String retired) {
+    }
+}
@@ -1,144 +1,496 @@
 package com.example.coffeemachine.mqtt;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 
+/**
+ * Decodes MQTT sensor payloads.
+ * JSON payloads are read directly from the MQTT byte[] with Jackson's streaming
+ * parser into a reusable {@link TelemetryReading}, without building a Map or
+ * boxing values. Plain-text payloads (e.g. "85.5", "ON", "ESPRESSO:30:92.0") are
+ * still accepted as a fallback. JSON payloads may carry an optional per-machine
+ * {@code "seq"} number and a {@code "boot"} ID the device changes on every start,
+ * exposed through {@link TelemetryReading#getSequence()} and
+ * {@link TelemetryReading#getBootId()}.
+ */
 @Component
 @Slf4j
 public class MqttPayloadParser {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
-    public BigDecimal parseTemperature(String payload) {
+    // Field names accepted for a level reading, in order of preference
+    private static final String[] LEVEL_FIELDS = {"level", "waterLevel", "milkLevel", "beansLevel"};
+
+    private static final String STATUS_ON = "ON";
+    private static final String STATUS_OFF = "OFF";
+    private static final String STATUS_ERROR = "ERROR";
+
+    private static final String SEQUENCE_FIELD = "seq";
+    private static final String BOOT_FIELD = "boot";
+
+    // Longer boot IDs are ignored, so usage idempotency keys stay within 64 characters
+    static final int MAX_BOOT_ID_LENGTH = 24;
+
+    /**
+     * Decodes a temperature reading into {@link TelemetryReading#getTemperature()}.
+     *
+     * @param payload the raw payload
+     * @param out the holder to decode into
+     * @return true if a temperature was decoded
+     */
+    public boolean decodeTemperature(byte[] payload, TelemetryReading out) {
+        out.reset();
+        if (payload == null) {
+            return false;
+        }
+        int start = trimStart(payload);
+        int end = trimEnd(payload, start);
+        if (start == end) {
+            return false;
+        }
         try {
-            if (payload.trim().startsWith("{")) {
-                Map<String, Object> json = objectMapper.readValue(payload, Map.class);
-                Object tempValue = json.get("temperature");
-                if (tempValue != null) {
-                    return new BigDecimal(tempValue.toString());
+            if (payload[start] == '{') {
+                try (JsonParser parser = JSON_FACTORY.createParser(payload, start, end - start)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        return false;
+                    }
+                    boolean found = false;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (!found && "temperature".equals(field) && value != JsonToken.VALUE_NULL) {
+                            out.temperature = readDouble(parser, value);
+                            found = true;
+                        } else if (!readSequenceField(field, parser, value, out)) {
+                            parser.skipChildren();
+                        }
+                    }
+                    return found;
                 }
             }
-            return new BigDecimal(payload.trim());
-        } catch (Exception e) {
-            log.warn("Failed to parse temperature from payload: {}", payload);
-            return null;
+            out.temperature = parseDouble(text(payload, start, end));
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Failed to decode temperature from payload: {}", e.getMessage());
+            return false;
         }
     }
 
-    public Integer parseLevel(String payload) {
+    /**
+     * Decodes a supply level reading (clamped to 0-100) into {@link TelemetryReading#getLevel()}.
+     * Accepts "level", "waterLevel", "milkLevel" or "beansLevel", preferring them in that order.
+     *
+     * @param payload the raw payload
+     * @param out the holder to decode into
+     * @return true if a level was decoded
+     */
+    public boolean decodeLevel(byte[] payload, TelemetryReading out) {
+        out.reset();
+        if (payload == null) {
+            return false;
+        }
+        int start = trimStart(payload);
+        int end = trimEnd(payload, start);
+        if (start == end) {
+            return false;
+        }
         try {
-            if (payload.trim().startsWith("{")) {
-                Map<String, Object> json = objectMapper.readValue(payload, Map.class);
-                // Check for different level field names
-                Object levelValue = json.get("level");
-                if (levelValue == null) {
-                    levelValue = json.get("waterLevel");
-                }
-                if (levelValue == null) {
-                    levelValue = json.get("milkLevel");
-                }
-                if (levelValue == null) {
-                    levelValue = json.get("beansLevel");
-                }
-                if (levelValue != null) {
-                    int level = Integer.parseInt(levelValue.toString());
-                    return Math.max(0, Math.min(100, level));
+            if (payload[start] == '{') {
+                int bestRank = LEVEL_FIELDS.length;
+                try (JsonParser parser = JSON_FACTORY.createParser(payload, start, end - start)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        return false;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        int rank = levelFieldRank(field);
+                        JsonToken value = parser.nextToken();
+                        if (rank < bestRank && value != JsonToken.VALUE_NULL) {
+                            out.level = clampLevel(readInt(parser, value));
+                            bestRank = rank;
+                        } else if (!readSequenceField(field, parser, value, out)) {
+                            parser.skipChildren();
+                        }
+                    }
                 }
+                return bestRank < LEVEL_FIELDS.length;
             }
-            int level = Integer.parseInt(payload.trim());
-            return Math.max(0, Math.min(100, level));
-        } catch (Exception e) {
-            log.warn("Failed to parse level from payload: {}", payload);
-            return null;
+            out.level = clampLevel(Integer.parseInt(text(payload, start, end)));
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Failed to decode level from payload: {}", e.getMessage());
+            return false;
         }
     }
 
-    public String parseStatus(String payload) {
+    /**
+     * Decodes an upper-cased machine status into {@link TelemetryReading#getStatus()}.
+     * The common values ON, OFF and ERROR are returned as shared constants.
+     *
+     * @param payload the raw payload
+     * @param out the holder to decode into
+     * @return true if a status was decoded
+     */
+    public boolean decodeStatus(byte[] payload, TelemetryReading out) {
+        out.reset();
+        if (payload == null) {
+            return false;
+        }
+        int start = trimStart(payload);
+        int end = trimEnd(payload, start);
+        if (start == end) {
+            return false;
+        }
         try {
-            if (payload.trim().startsWith("{")) {
-                Map<String, Object> json = objectMapper.readValue(payload, Map.class);
-                Object statusValue = json.get("status");
-                if (statusValue != null) {
-                    return statusValue.toString().toUpperCase();
+            if (payload[start] == '{') {
+                try (JsonParser parser = JSON_FACTORY.createParser(payload, start, end - start)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        return false;
+                    }
+                    boolean found = false;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (!found && "status".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                            out.status = canonicalStatus(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                            found = true;
+                        } else if (!readSequenceField(field, parser, value, out)) {
+                            parser.skipChildren();
+                        }
+                    }
+                    return found;
                 }
             }
-            return payload.trim().toUpperCase();
-        } catch (Exception e) {
-            log.warn("Failed to parse status from payload: {}", payload);
-            return null;
+            out.status = canonicalStatus(payload, start, end);
+            return true;
+        } catch (IOException e) {
+            log.debug("Failed to decode status from payload: {}", e.getMessage());
+            return false;
         }
     }
 
-    public UsageEvent parseUsageEvent(String payload) {
+    /**
+     * Decodes a brewing event. JSON payloads default to brew type UNKNOWN and volume 0
+     * when fields are missing; plain-text payloads use the form
+     * {@code TYPE:volumeMl[:tempAtBrew]}.
+     *
+     * @param payload the raw payload
+     * @param out the holder to decode into
+     * @return true if a usage event was decoded
+     */
+    public boolean decodeUsage(byte[] payload, TelemetryReading out) {
+        out.reset();
+        if (payload == null) {
+            return false;
+        }
+        int start = trimStart(payload);
+        int end = trimEnd(payload, start);
+        if (start == end) {
+            return false;
+        }
         try {
-            if (payload.trim().startsWith("{")) {
-                Map<String, Object> json = objectMapper.readValue(payload, Map.class);
-                String brewType = getStringValue(json, "brewType", "UNKNOWN");
-                Integer volumeMl = getIntValue(json, "volumeMl", 0);
-                BigDecimal tempAtBrew = getBigDecimalValue(json, "tempAtBrew");
-                return new UsageEvent(brewType, volumeMl, tempAtBrew);
-            }
-            String[] parts = payload.split(":");
-            if (parts.length >= 2) {
-                String brewType = parts[0].trim();
-                Integer volumeMl = parts.length > 1 ? parseIntSafe(parts[1].trim()) : 0;
-                BigDecimal tempAtBrew = parts.length > 2 ? parseBigDecimalSafe(parts[2].trim()) : null;
-                return new UsageEvent(brewType, volumeMl, tempAtBrew);
+            if (payload[start] == '{') {
+                out.brewType = "UNKNOWN";
+                try (JsonParser parser = JSON_FACTORY.createParser(payload, start, end - start)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        return false;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (value == JsonToken.VALUE_NULL) {
+                            continue;
+                        }
+                        switch (field) {
+                            case "brewType" -> out.brewType = parser.getText();
+                            case "volumeMl" -> out.volumeMl = readIntOrDefault(parser, value, 0);
+                            case "tempAtBrew" -> {
+                                try {
+                                    out.tempAtBrew = readDouble(parser, value);
+                                    out.hasTempAtBrew = true;
+                                } catch (NumberFormatException e) {
+                                    log.warn("Failed to parse tempAtBrew value: {}", parser.getText());
+                                }
+                            }
+                            default -> {
+                                if (!readSequenceField(field, parser, value, out)) {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                    }
+                }
+                return true;
             }
-            return null;
-        } catch (Exception e) {
-            log.warn("Failed to parse usage event from payload: {}", payload);
-            return null;
+            return decodePlainUsage(payload, start, end, out);
+        } catch (IOException e) {
+            log.debug("Failed to decode usage event from payload: {}", e.getMessage());
+            return false;
         }
     }
 
-    private String getStringValue(Map<String, Object> json, String key, String defaultValue) {
-        Object value = json.get(key);
-        return value != null ? value.toString() : defaultValue;
+    /**
+     * Decodes a combined binary {@link TelemetryFrame}. Absent levels are left at -1,
+     * an absent temperature at NaN and an absent status at null.
+     *
+     * @param payload the raw payload
+     * @param out the holder to decode into
+     * @return true if the frame had a supported version and length
+     */
+    public boolean decodeTelemetry(byte[] payload, TelemetryReading out) {
+        out.reset();
+        if (payload == null || payload.length < TelemetryFrame.LENGTH || payload[0] != TelemetryFrame.VERSION) {
+            return false;
+        }
+        int status = payload[1] & 0xFF;
+        if (status < TelemetryFrame.STATUSES.length) {
+            out.status = TelemetryFrame.STATUSES[status];
+        }
+        short temperature = (short) (((payload[2] & 0xFF) << 8) | (payload[3] & 0xFF));
+        if (temperature != TelemetryFrame.TEMPERATURE_ABSENT) {
+            out.temperature = temperature / 10.0;
+        }
+        out.waterLevel = frameLevel(payload[4]);
+        out.milkLevel = frameLevel(payload[5]);
+        out.beansLevel = frameLevel(payload[6]);
+        out.sequence = readInt(payload, 7) & 0xFFFFFFFFL;
+        out.hasSequence = true;
+        out.timestampMillis = ((long) readInt(payload, 11) << 32) | (readInt(payload, 15) & 0xFFFFFFFFL);
+        return true;
     }
 
-    private Integer getIntValue(Map<String, Object> json, String key, Integer defaultValue) {
-        Object value = json.get(key);
-        if (value != null) {
-            try {
-                return Integer.parseInt(value.toString());
-            } catch (NumberFormatException e) {
-                log.warn("Failed to parse integer value for key {}: {}", key, value);
+    public BigDecimal parseTemperature(String payload) {
+        TelemetryReading reading = new TelemetryReading();
+        if (payload != null && decodeTemperature(payload.getBytes(StandardCharsets.UTF_8), reading)) {
+            return BigDecimal.valueOf(reading.temperature);
+        }
+        log.warn("Failed to parse temperature from payload: {}", payload);
+        return null;
+    }
+
+    public Integer parseLevel(String payload) {
+        TelemetryReading reading = new TelemetryReading();
+        if (payload != null && decodeLevel(payload.getBytes(StandardCharsets.UTF_8), reading)) {
+            return reading.level;
+        }
+        log.warn("Failed to parse level from payload: {}", payload);
+        return null;
+    }
+
+    public String parseStatus(String payload) {
+        TelemetryReading reading = new TelemetryReading();
+        if (payload != null && decodeStatus(payload.getBytes(StandardCharsets.UTF_8), reading)) {
+            return reading.status;
+        }
+        log.warn("Failed to parse status from payload: {}", payload);
+        return null;
+    }
+
+    public UsageEvent parseUsageEvent(String payload) {
+        TelemetryReading reading = new TelemetryReading();
+        if (payload != null && decodeUsage(payload.getBytes(StandardCharsets.UTF_8), reading)) {
+            return UsageEvent.of(reading);
+        }
+        log.warn("Failed to parse usage event from payload: {}", payload);
+        return null;
+    }
+
+    /**
+     * Reads the optional sequence number ({@code "seq"}) or boot ID ({@code "boot"}),
+     * which the device changes on every start, when its sequence numbers start over.
+     * A non-numeric sequence or an unusable boot ID is ignored rather than failing the
+     * whole reading.
+     *
+     * @return true if the field was one of the two and has been consumed
+     */
+    private static boolean readSequenceField(String field, JsonParser parser, JsonToken value, TelemetryReading out) throws IOException {
+        if (SEQUENCE_FIELD.equals(field)) {
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                out.sequence = parser.getLongValue();
+                out.hasSequence = true;
+            } else {
+                parser.skipChildren();
             }
+            return true;
         }
-        return defaultValue;
+        if (BOOT_FIELD.equals(field)) {
+            String bootId = value.isScalarValue() ? parser.getText() : null;
+            if (bootId != null && !bootId.isBlank() && bootId.length() <= MAX_BOOT_ID_LENGTH) {
+                out.bootId = bootId;
+            } else {
+                parser.skipChildren();
+            }
+            return true;
+        }
+        return false;
     }
 
-    private BigDecimal getBigDecimalValue(Map<String, Object> json, String key) {
-        Object value = json.get(key);
-        if (value != null) {
+    private boolean decodePlainUsage(byte[] payload, int start, int end, TelemetryReading out) {
+        int firstColon = indexOf(payload, (byte) ':', start, end);
+        if (firstColon < 0) {
+            return false;
+        }
+        int secondColon = indexOf(payload, (byte) ':', firstColon + 1, end);
+        int volumeEnd = secondColon < 0 ? end : secondColon;
+
+        out.brewType = text(payload, start, firstColon).trim();
+        try {
+            out.volumeMl = Integer.parseInt(text(payload, firstColon + 1, volumeEnd).trim());
+        } catch (NumberFormatException e) {
+            out.volumeMl = 0;
+        }
+        if (secondColon >= 0) {
+            int thirdColon = indexOf(payload, (byte) ':', secondColon + 1, end);
             try {
-                return new BigDecimal(value.toString());
+                out.tempAtBrew = parseDouble(text(payload, secondColon + 1, thirdColon < 0 ? end : thirdColon).trim());
+                out.hasTempAtBrew = true;
             } catch (NumberFormatException e) {
-                log.warn("Failed to parse BigDecimal value for key {}: {}", key, value);
+                out.hasTempAtBrew = false;
             }
         }
-        return null;
+        return true;
     }
 
-    private Integer parseIntSafe(String value) {
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 0;
+    private static double readDouble(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isNumeric()) {
+            return parser.getDoubleValue();
         }
+        if (value == JsonToken.VALUE_STRING) {
+            return parseDouble(parser.getText().trim());
+        }
+        throw new NumberFormatException("Not a number: " + value);
     }
 
-    private BigDecimal parseBigDecimalSafe(String value) {
+    private static int readInt(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return Integer.parseInt(parser.getText().trim());
+        }
+        throw new NumberFormatException("Not an integer: " + value);
+    }
+
+    private int readIntOrDefault(JsonParser parser, JsonToken value, int defaultValue) throws IOException {
         try {
-            return new BigDecimal(value);
+            return readInt(parser, value);
         } catch (NumberFormatException e) {
-            return null;
+            log.warn("Failed to parse integer value for key {}: {}", parser.currentName(), parser.getText());
+            return defaultValue;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        double parsed = Double.parseDouble(value);
+        if (!Double.isFinite(parsed)) {
+            throw new NumberFormatException("Not a finite number: " + value);
+        }
+        return parsed;
+    }
+
+    private static int levelFieldRank(String field) {
+        for (int i = 0; i < LEVEL_FIELDS.length; i++) {
+            if (LEVEL_FIELDS[i].equals(field)) {
+                return i;
+            }
         }
+        return LEVEL_FIELDS.length;
+    }
+
+    private static int frameLevel(byte value) {
+        int level = value & 0xFF;
+        return level == TelemetryFrame.LEVEL_ABSENT ? -1 : clampLevel(level);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+            | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static int clampLevel(int level) {
+        return Math.max(0, Math.min(100, level));
+    }
+
+    private static String canonicalStatus(char[] chars, int offset, int length) {
+        if (matches(chars, offset, length, STATUS_ON)) return STATUS_ON;
+        if (matches(chars, offset, length, STATUS_OFF)) return STATUS_OFF;
+        if (matches(chars, offset, length, STATUS_ERROR)) return STATUS_ERROR;
+        return new String(chars, offset, length).toUpperCase(Locale.ROOT);
+    }
+
+    private static String canonicalStatus(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (matches(bytes, start, length, STATUS_ON)) return STATUS_ON;
+        if (matches(bytes, start, length, STATUS_OFF)) return STATUS_OFF;
+        if (matches(bytes, start, length, STATUS_ERROR)) return STATUS_ERROR;
+        return text(bytes, start, end).toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean matches(char[] chars, int offset, int length, String upper) {
+        if (length != upper.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toUpperCase(chars[offset + i]) != upper.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, int length, String upper) {
+        if (length != upper.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i];
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b != upper.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same whitespace rule as String.trim(): any byte <= ' '
+    private static int trimStart(byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] bytes, int start) {
+        int end = bytes.length;
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static String text(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
     }
 
     public static class UsageEvent {
@@ -152,6 +504,11 @@ public class MqttPayloadParser {
             this.tempAtBrew = tempAtBrew;
         }
 
+        static UsageEvent of(TelemetryReading reading) {
+            return new UsageEvent(reading.brewType, reading.volumeMl,
+                reading.hasTempAtBrew ? BigDecimal.valueOf(reading.tempAtBrew) : null);
+        }
+
         public String brewType() { return brewType; }
         public Integer volumeMl() { return volumeMl; }
         public BigDecimal tempAtBrew() { return tempAtBrew; }
@@ -0,0 +1,135 @@
+package com.example.coffeemachine.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which machines this worker instance handles when several workers run side by side.
+ * <ul>
+ *   <li>SINGLE: one worker subscribes to every machine.</li>
+ *   <li>PARTITIONED: every worker subscribes to all topics but only dispatches machines whose
+ *       hashed ID falls in its partition, so each machine is owned by exactly one worker and
+ *       keeps per-machine ordering and coalescing. This is a stopgap: MQTT topic filters
+ *       match whole topic levels and cannot select a hash partition of
+ *       {@code coffeeMachine/{id}/...}, so the broker still delivers the whole fleet's traffic
+ *       to every worker, which discards the rest (counted by {@code mqtt.partition.skipped}).
+ *       Broker egress and worker parsing grow with the number of workers. Filtering at the
+ *       broker needs the partition in the topic that devices publish to.</li>
+ *   <li>SHARED: workers join an MQTT shared subscription ({@code $share/group/...}) and the broker
+ *       balances messages between them. This spreads load without duplicate delivery, but the
+ *       broker picks a worker per message, so per-machine ordering is not guaranteed.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionAssignment {
+
+    public enum Mode { SINGLE, PARTITIONED, SHARED }
+
+    private static final List<String> METRICS = List.of(
+        "temperature", "waterLevel", "milkLevel", "beansLevel", "status", "usage", "telemetry");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.mqtt.cluster.mode:SINGLE}")
+    private Mode mode;
+
+    @Value("${spring.mqtt.cluster.group:coffee-machine-workers}")
+    private String group;
+
+    @Value("${spring.mqtt.cluster.instance-count:1}")
+    private int instanceCount;
+
+    @Value("${spring.mqtt.cluster.instance-index:0}")
+    private int instanceIndex;
+
+    private final Set<String> ownedMachines = ConcurrentHashMap.newKeySet();
+    private Counter acceptedCounter;
+    private Counter skippedCounter;
+
+    @PostConstruct
+    public void start() {
+        if (instanceCount < 1 || instanceIndex < 0 || instanceIndex >= instanceCount) {
+            throw new IllegalStateException("Invalid cluster instance " + instanceIndex + " of " + instanceCount);
+        }
+        acceptedCounter = Counter.builder("mqtt.partition.accepted")
+            .description("Messages for machines owned by this worker")
+            .register(meterRegistry);
+        skippedCounter = Counter.builder("mqtt.partition.skipped")
+            .description("Messages skipped because another worker owns the machine")
+            .register(meterRegistry);
+        Gauge.builder("mqtt.partition.machines", ownedMachines, Set::size)
+            .description("Distinct machines this worker has handled")
+            .register(meterRegistry);
+
+        log.info("Cluster mode {}: instance {} of {}", mode, instanceIndex, instanceCount);
+        if (mode == Mode.PARTITIONED && instanceCount > 1) {
+            log.warn("Partitioned mode filters in the worker: every instance receives the whole fleet's traffic");
+        }
+    }
+
+    /**
+     * Topic filters this instance subscribes to. In PARTITIONED mode these are the same
+     * for every instance; see the class comment.
+     */
+    public String[] topicFilters() {
+        String prefix = mode == Mode.SHARED ? "$share/" + group + "/" : "";
+        return METRICS.stream()
+            .map(metric -> prefix + "coffeeMachine/+/" + metric)
+            .toArray(String[]::new);
+    }
+
+    /**
+     * Suffix that keeps MQTT client IDs unique when several instances share a configuration.
+     */
+    public String clientIdSuffix() {
+        return mode == Mode.SINGLE ? "" : "-" + instanceIndex;
+    }
+
+    /**
+     * Checks whether this instance owns a machine and records the outcome.
+     *
+     * @param machineId the machine ID taken from the topic
+     * @return true if the message should be dispatched here
+     */
+    public boolean accept(String machineId) {
+        if (mode == Mode.PARTITIONED && partitionOf(machineId, instanceCount) != instanceIndex) {
+            skippedCounter.increment();
+            return false;
+        }
+        acceptedCounter.increment();
+        ownedMachines.add(machineId);
+        return true;
+    }
+
+    /**
+     * Partition for a machine ID. The hash is mixed first so partitions and the
+     * dispatcher's lanes (plain hash modulo lane count) stay independent.
+     */
+    public static int partitionOf(String machineId, int partitions) {
+        int h = machineId == null ? 0 : machineId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitions);
+    }
+
+    public Mode getMode() { return mode; }
+    public String getGroup() { return group; }
+    public int getInstanceCount() { return instanceCount; }
+    public int getInstanceIndex() { return instanceIndex; }
+    public Set<String> getOwnedMachines() { return Set.copyOf(ownedMachines); }
+    public long getAcceptedMessages() { return (long) acceptedCounter.count(); }
+    public long getSkippedMessages() { return (long) skippedCounter.count(); }
+}
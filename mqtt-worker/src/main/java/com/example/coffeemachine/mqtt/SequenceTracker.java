@@ -0,0 +1,163 @@
+package com.example.coffeemachine.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Drops QoS 1 redeliveries and stale out-of-order readings before they reach the
+ * coalescer or the backend. The last accepted sequence number is tracked per
+ * machine and per stream (topic), since MQTT only orders messages within a topic.
+ *
+ * <p>Sequence numbers are compared as 32-bit serial numbers so the binary frame's
+ * counter can wrap. A reading that falls further behind than
+ * {@code spring.mqtt.dedup.reorder-window} is taken as a device restart and accepted,
+ * as is one that falls behind less far but is known to be newer than the last accepted
+ * reading (e.g. by the binary frame's timestamp). A restart known from elsewhere (e.g.
+ * a new boot ID) is recorded with {@link #restart}.
+ * Readings without a sequence number are always accepted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SequenceTracker {
+
+    public enum Stream { TEMPERATURE, WATER_LEVEL, MILK_LEVEL, BEANS_LEVEL, STATUS, USAGE, TELEMETRY }
+
+    private static final int STREAM_BITS = 3;
+    private static final int SEGMENTS = 16;
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.mqtt.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.mqtt.dedup.reorder-window:1024}")
+    private int reorderWindow;
+
+    @Value("${spring.mqtt.dedup.expected-machines:1024}")
+    private int expectedMachines;
+
+    // Striped so dispatch lanes rarely contend; a machine always maps to the same segment
+    private LongLongHashMap[] segments;
+    private Counter duplicateCounter;
+    private Counter staleCounter;
+
+    @PostConstruct
+    public void start() {
+        int perSegment = Math.max(16, expectedMachines * Stream.values().length / SEGMENTS);
+        segments = new LongLongHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongLongHashMap(perSegment);
+        }
+        duplicateCounter = Counter.builder("mqtt.dedup.dropped")
+            .tag("reason", "duplicate")
+            .description("Readings dropped because their sequence number was already seen")
+            .register(meterRegistry);
+        staleCounter = Counter.builder("mqtt.dedup.dropped")
+            .tag("reason", "stale")
+            .description("Readings dropped because a newer sequence number was already seen")
+            .register(meterRegistry);
+        Gauge.builder("mqtt.dedup.tracked", this, SequenceTracker::trackedStreams)
+            .description("Machine streams with a tracked sequence number")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Records a reading's sequence number if it is newer than the last one seen.
+     *
+     * @param stream the topic the reading arrived on
+     * @param machineId the machine ID
+     * @param sequence the reading's sequence number
+     * @return true if the reading should be processed, false if it is a duplicate or stale
+     */
+    public boolean accept(Stream stream, long machineId, long sequence) {
+        return accept(stream, machineId, sequence, false);
+    }
+
+    /**
+     * Records a reading's sequence number if it is newer than the last one seen, or if
+     * the reading itself is known to be newer, in which case a sequence number that did
+     * not advance means the device restarted.
+     *
+     * @param stream the topic the reading arrived on
+     * @param machineId the machine ID
+     * @param sequence the reading's sequence number
+     * @param newer true if the reading was produced after the last accepted one
+     * @return true if the reading should be processed, false if it is a duplicate or stale
+     */
+    public boolean accept(Stream stream, long machineId, long sequence, boolean newer) {
+        if (!enabled) {
+            return true;
+        }
+        long key = key(stream, machineId);
+        LongLongHashMap segment = segments[(int) (machineId & (SEGMENTS - 1))];
+        synchronized (segment) {
+            long last = segment.get(key, MISSING);
+            if (last != MISSING) {
+                int delta = (int) sequence - (int) last;
+                if (delta <= 0 && newer) {
+                    segment.put(key, sequence);
+                    log.debug("Machine {} restarted its {} sequence at {}", machineId, stream, sequence);
+                    return true;
+                }
+                if (delta == 0) {
+                    duplicateCounter.increment();
+                    log.debug("Dropping duplicate {} reading {} for machine {}", stream, sequence, machineId);
+                    return false;
+                }
+                if (delta < 0 && delta >= -reorderWindow) {
+                    staleCounter.increment();
+                    log.debug("Dropping stale {} reading {} for machine {} (last {})", stream, sequence, machineId, last);
+                    return false;
+                }
+            }
+            segment.put(key, sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Records the first sequence number after a device restart, replacing the last
+     * one seen even if it was higher.
+     *
+     * @param stream the topic the reading arrived on
+     * @param machineId the machine ID
+     * @param sequence the reading's sequence number
+     */
+    public void restart(Stream stream, long machineId, long sequence) {
+        if (!enabled) {
+            return;
+        }
+        long key = key(stream, machineId);
+        LongLongHashMap segment = segments[(int) (machineId & (SEGMENTS - 1))];
+        synchronized (segment) {
+            segment.put(key, sequence);
+        }
+        log.debug("Machine {} restarted its {} sequence at {}", machineId, stream, sequence);
+    }
+
+    /**
+     * Packs a machine ID and stream into the single key a machine stream is tracked under.
+     */
+    static long key(Stream stream, long machineId) {
+        return (machineId << STREAM_BITS) | stream.ordinal();
+    }
+
+    public int trackedStreams() {
+        int total = 0;
+        for (LongLongHashMap segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+}
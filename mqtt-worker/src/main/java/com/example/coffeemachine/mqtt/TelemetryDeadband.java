@@ -0,0 +1,186 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.MachineSnapshotUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change-detection filter applied to coalesced snapshots before they are sent.
+ * Each reading is compared with the last value forwarded for the same machine;
+ * readings that moved by less than the metric's deadband are removed from the
+ * snapshot, and a snapshot left with nothing to report is dropped entirely.
+ * Status changes always pass. Every {@code spring.mqtt.deadband.max-silence-ms}
+ * a machine's next snapshot is forwarded in full as a heartbeat, so readings held
+ * back inside the deadband never stay stale on the backend for longer than that.
+ *
+ * <p>Values are remembered as soon as a snapshot passes the filter. If the sender
+ * then drops it, it calls {@link #forget} so the machine's next snapshot is sent in
+ * full instead of being measured against values the backend never received.
+ */
+@Component
+@RequiredArgsConstructor
+public class TelemetryDeadband {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.mqtt.deadband.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.mqtt.deadband.temperature:0.5}")
+    private double temperatureDeadband;
+
+    @Value("${spring.mqtt.deadband.level:1}")
+    private int levelDeadband;
+
+    @Value("${spring.mqtt.deadband.max-silence-ms:300000}")
+    private long maxSilenceMs;
+
+    private final Map<Long, Forwarded> forwarded = new ConcurrentHashMap<>();
+
+    private Counter temperatureSuppressed;
+    private Counter waterSuppressed;
+    private Counter milkSuppressed;
+    private Counter beansSuppressed;
+    private Counter statusSuppressed;
+    private Counter snapshotsForwarded;
+    private Counter snapshotsSuppressed;
+    private Counter heartbeats;
+    private Counter forgotten;
+
+    @PostConstruct
+    public void start() {
+        temperatureSuppressed = suppressedCounter("temperature");
+        waterSuppressed = suppressedCounter("waterLevel");
+        milkSuppressed = suppressedCounter("milkLevel");
+        beansSuppressed = suppressedCounter("beansLevel");
+        statusSuppressed = suppressedCounter("status");
+        snapshotsForwarded = snapshotCounter("forwarded", "Snapshots sent with at least one changed reading");
+        snapshotsSuppressed = snapshotCounter("suppressed", "Snapshots dropped because nothing moved past its deadband");
+        heartbeats = snapshotCounter("heartbeat", "Snapshots sent in full because the machine hit max silence");
+        forgotten = Counter.builder("mqtt.deadband.forgotten")
+            .description("Machines whose forwarded values were reset because their snapshot was dropped")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Removes readings that have not moved past their deadband.
+     *
+     * @param snapshot the coalesced snapshot; readings inside the deadband are set to null
+     * @return the snapshot to send, or null if there is nothing worth sending
+     */
+    public MachineSnapshotUpdate filter(MachineSnapshotUpdate snapshot) {
+        if (!enabled || snapshot == null) {
+            return snapshot;
+        }
+        long now = System.currentTimeMillis();
+        Forwarded last = forwarded.computeIfAbsent(snapshot.getMachineId(), id -> new Forwarded());
+        synchronized (last) {
+            if (last.fullAt == 0 || (maxSilenceMs > 0 && now - last.fullAt >= maxSilenceMs)) {
+                (last.fullAt == 0 ? snapshotsForwarded : heartbeats).increment();
+                last.remember(snapshot);
+                last.fullAt = now;
+                return snapshot;
+            }
+
+            if (snapshot.getStatus() != null && snapshot.getStatus().equals(last.status)) {
+                snapshot.setStatus(null);
+                statusSuppressed.increment();
+            }
+            if (snapshot.getTemperature() != null && !Double.isNaN(last.temperature)
+                    && Math.abs(snapshot.getTemperature().doubleValue() - last.temperature) < temperatureDeadband) {
+                snapshot.setTemperature(null);
+                temperatureSuppressed.increment();
+            }
+            if (snapshot.getWaterLevel() != null && withinLevelBand(snapshot.getWaterLevel(), last.waterLevel)) {
+                snapshot.setWaterLevel(null);
+                waterSuppressed.increment();
+            }
+            if (snapshot.getMilkLevel() != null && withinLevelBand(snapshot.getMilkLevel(), last.milkLevel)) {
+                snapshot.setMilkLevel(null);
+                milkSuppressed.increment();
+            }
+            if (snapshot.getBeansLevel() != null && withinLevelBand(snapshot.getBeansLevel(), last.beansLevel)) {
+                snapshot.setBeansLevel(null);
+                beansSuppressed.increment();
+            }
+
+            if (snapshot.getStatus() == null && snapshot.getTemperature() == null && snapshot.getWaterLevel() == null
+                    && snapshot.getMilkLevel() == null && snapshot.getBeansLevel() == null) {
+                snapshotsSuppressed.increment();
+                return null;
+            }
+            snapshotsForwarded.increment();
+            last.remember(snapshot);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Forgets the values forwarded for a machine whose snapshot was dropped before
+     * reaching the backend, so its next snapshot is forwarded in full.
+     *
+     * @param machineId the machine ID
+     */
+    public void forget(Long machineId) {
+        if (machineId != null && forwarded.remove(machineId) != null) {
+            forgotten.increment();
+        }
+    }
+
+    private boolean withinLevelBand(int level, int lastLevel) {
+        return lastLevel >= 0 && Math.abs(level - lastLevel) < levelDeadband;
+    }
+
+    private Counter suppressedCounter(String metric) {
+        return Counter.builder("mqtt.deadband.suppressed")
+            .tag("metric", metric)
+            .description("Readings removed from snapshots because they stayed inside the deadband")
+            .register(meterRegistry);
+    }
+
+    private Counter snapshotCounter(String outcome, String description) {
+        return Counter.builder("mqtt.deadband.snapshots")
+            .tag("outcome", outcome)
+            .description(description)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Last values forwarded for one machine. Only the readings that were sent are
+     * updated, so slow drift is measured against what the backend actually holds.
+     */
+    private static final class Forwarded {
+        String status;
+        double temperature = Double.NaN;
+        int waterLevel = -1;
+        int milkLevel = -1;
+        int beansLevel = -1;
+        // Last time the machine's snapshot was sent unfiltered
+        long fullAt;
+
+        void remember(MachineSnapshotUpdate snapshot) {
+            if (snapshot.getStatus() != null) {
+                status = snapshot.getStatus();
+            }
+            if (snapshot.getTemperature() != null) {
+                temperature = snapshot.getTemperature().doubleValue();
+            }
+            if (snapshot.getWaterLevel() != null) {
+                waterLevel = snapshot.getWaterLevel();
+            }
+            if (snapshot.getMilkLevel() != null) {
+                milkLevel = snapshot.getMilkLevel();
+            }
+            if (snapshot.getBeansLevel() != null) {
+                beansLevel = snapshot.getBeansLevel();
+            }
+        }
+    }
+}
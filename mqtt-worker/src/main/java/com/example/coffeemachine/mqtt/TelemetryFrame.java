@@ -0,0 +1,79 @@
+package com.example.coffeemachine.mqtt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary telemetry frame published on {@code coffeeMachine/{id}/telemetry}.
+ * One frame replaces the five per-metric JSON documents of a simulator tick.
+ *
+ * <pre>
+ * offset size field
+ *  0     1    version (1)
+ *  1     1    status: 0 OFF, 1 ON, 2 ERROR, 0xFF absent
+ *  2     2    temperature in tenths of a degree Celsius (signed), 0x8000 absent
+ *  4     1    water level percent, 0xFF absent
+ *  5     1    milk level percent, 0xFF absent
+ *  6     1    beans level percent, 0xFF absent
+ *  7     4    sequence number (unsigned, wraps)
+ * 11     8    timestamp, epoch millis
+ * </pre>
+ * All multi-byte fields are big-endian. Decoders accept longer frames with the same
+ * version so fields can be appended later without breaking older workers.
+ */
+public final class TelemetryFrame {
+
+    public static final byte VERSION = 1;
+    public static final int LENGTH = 19;
+
+    static final int STATUS_ABSENT = 0xFF;
+    static final short TEMPERATURE_ABSENT = Short.MIN_VALUE;
+    static final int LEVEL_ABSENT = 0xFF;
+
+    static final String[] STATUSES = {"OFF", "ON", "ERROR"};
+
+    private TelemetryFrame() {
+    }
+
+    /**
+     * Encodes one reading.
+     *
+     * @param sequence per-machine sequence number
+     * @param timestampMillis reading time, epoch millis
+     * @param temperature temperature in Celsius, or NaN if absent
+     * @param waterLevel water level percent, or -1 if absent
+     * @param milkLevel milk level percent, or -1 if absent
+     * @param beansLevel beans level percent, or -1 if absent
+     * @param status ON, OFF or ERROR, or null if absent
+     * @return the encoded frame
+     */
+    public static byte[] encode(long sequence, long timestampMillis, double temperature,
+                                int waterLevel, int milkLevel, int beansLevel, String status) {
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH);
+        frame.put(VERSION);
+        frame.put((byte) statusCode(status));
+        frame.putShort(Double.isNaN(temperature)
+            ? TEMPERATURE_ABSENT
+            : (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, Math.round(temperature * 10))));
+        frame.put((byte) levelCode(waterLevel));
+        frame.put((byte) levelCode(milkLevel));
+        frame.put((byte) levelCode(beansLevel));
+        frame.putInt((int) sequence);
+        frame.putLong(timestampMillis);
+        return frame.array();
+    }
+
+    private static int statusCode(String status) {
+        if (status != null) {
+            for (int i = 0; i < STATUSES.length; i++) {
+                if (STATUSES[i].equals(status)) {
+                    return i;
+                }
+            }
+        }
+        return STATUS_ABSENT;
+    }
+
+    private static int levelCode(int level) {
+        return level < 0 ? LEVEL_ABSENT : Math.min(100, level);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.coffeemachine.mqtt;
+
+/**
+ * Mutable holder the payload parser decodes into.
+ * One instance is reused per dispatch lane thread, so decoding a reading does
+ * not allocate boxed numbers or intermediate maps. Only the fields written by
+ * the last successful decode call are meaningful.
+ */
+public final class TelemetryReading {
+
+    double temperature;
+    int level;
+    String status;
+    String brewType;
+    int volumeMl;
+    double tempAtBrew;
+    boolean hasTempAtBrew;
+    String bootId;
+
+    // Combined telemetry frame; levels are -1 and temperature NaN when absent
+    int waterLevel;
+    int milkLevel;
+    int beansLevel;
+    long sequence;
+    boolean hasSequence;
+    long timestampMillis;
+
+    /**
+     * Clears all fields before a new decode.
+     */
+    public void reset() {
+        temperature = Double.NaN;
+        level = 0;
+        status = null;
+        brewType = null;
+        volumeMl = 0;
+        tempAtBrew = Double.NaN;
+        hasTempAtBrew = false;
+        waterLevel = -1;
+        milkLevel = -1;
+        beansLevel = -1;
+        sequence = 0;
+        hasSequence = false;
+        bootId = null;
+        timestampMillis = 0;
+    }
+
+    public double getTemperature() { return temperature; }
+    public int getLevel() { return level; }
+    public String getStatus() { return status; }
+    public String getBrewType() { return brewType; }
+    public int getVolumeMl() { return volumeMl; }
+    public double getTempAtBrew() { return tempAtBrew; }
+    public boolean hasTempAtBrew() { return hasTempAtBrew; }
+    public int getWaterLevel() { return waterLevel; }
+    public int getMilkLevel() { return milkLevel; }
+    public int getBeansLevel() { return beansLevel; }
+    public long getSequence() { return sequence; }
+    public boolean hasSequence() { return hasSequence; }
+    public String getBootId() { return bootId; }
+    public long getTimestampMillis() { return timestampMillis; }
+}
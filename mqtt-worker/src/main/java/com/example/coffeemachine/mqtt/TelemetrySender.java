@@ -0,0 +1,452 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.TelemetryBatchResult;
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single outbound pipeline from the worker to the backend batch endpoint.
+ * Records are queued in a bounded buffer and pulled by one Flux only as fast as
+ * the configured number of concurrent requests completes, so a slow backend can
+ * no longer grow the worker heap. What happens when the buffer is full is set by
+ * {@code backend.api.sender.overflow-policy}.
+ *
+ * <p>The buffer is split into one partition per concurrent request, chosen by machine
+ * ID, and each partition has at most one batch in flight, retries included. A
+ * machine's batches therefore reach the backend in the order they were queued, so an
+ * older snapshot can never overwrite a newer one.
+ *
+ * <p>When a snapshot is dropped rather than sent or spilled, the
+ * {@link TelemetryDeadband} forgets that machine, so the next snapshot carries the
+ * readings the dropped one would have delivered.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetrySender {
+
+    public enum OverflowPolicy {
+        /**
+         * Merge a snapshot into the same machine's queued snapshot, dropping the older
+         * values. Records with nothing to merge into, such as usage events, are handed
+         * to the spillover, or block like {@link #BLOCK} when there is none; queued
+         * records of other machines are never evicted.
+         */
+        DROP_OLDEST,
+        /** Block the calling dispatch lane until space frees up or the timeout expires. */
+        BLOCK,
+        /** Hand the record to the configured {@link TelemetrySpillover}, e.g. the on-disk spool. */
+        SPILL
+    }
+
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<TelemetrySpillover> spillover;
+    private final TelemetryDeadband deadband;
+
+    @Value("${backend.api.base-url}")
+    private String backendApiBaseUrl;
+
+    @Value("${backend.api.batch.max-records:1000}")
+    private int maxBatchRecords;
+
+    @Value("${backend.api.sender.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    @Value("${backend.api.sender.concurrency:4}")
+    private int concurrency;
+
+    @Value("${backend.api.sender.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${backend.api.sender.block-timeout-ms:1000}")
+    private long blockTimeoutMs;
+
+    @Value("${backend.api.sender.shutdown-timeout-ms:5000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${backend.api.sender.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+
+    @Value("${backend.api.sender.retry.min-backoff-ms:200}")
+    private long retryMinBackoffMs;
+
+    @Value("${backend.api.sender.retry.max-backoff-ms:5000}")
+    private long retryMaxBackoffMs;
+
+    @Value("${backend.api.sender.retry.jitter:0.5}")
+    private double retryJitter;
+
+    // Queued records per partition, and whether the partition has a batch in flight. Guarded by lock.
+    private ArrayDeque<TelemetryRecord>[] partitions;
+    private boolean[] busy;
+    private int buffered;
+    private int nextPartition;
+    // Latest queued snapshot per machine, so overflow merges without scanning the buffer. Guarded by lock.
+    private final Map<Long, TelemetryRecord> queuedSnapshots = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile FluxSink<Batch> sink;
+    private Disposable pipeline;
+    private Retry retrySpec;
+    private Counter sentCounter;
+    private Counter retryCounter;
+    private Counter spilledCounter;
+    private Counter overflowDropCounter;
+    private Counter timeoutDropCounter;
+    private Counter failedDropCounter;
+
+    /**
+     * Records of one partition, posted as a single request.
+     */
+    private record Batch(int partition, List<TelemetryRecord> records) {
+    }
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void start() {
+        int partitionCount = Math.max(1, concurrency);
+        partitions = new ArrayDeque[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new ArrayDeque<>();
+        }
+        busy = new boolean[partitionCount];
+
+        Gauge.builder("mqtt.sender.inflight", inFlight, AtomicInteger::get)
+            .description("Batch requests currently in flight to the backend")
+            .register(meterRegistry);
+        Gauge.builder("mqtt.sender.buffer.size", this, TelemetrySender::bufferedRecords)
+            .description("Telemetry records waiting to be sent")
+            .register(meterRegistry);
+        sentCounter = Counter.builder("mqtt.sender.sent")
+            .description("Telemetry records delivered to the backend")
+            .register(meterRegistry);
+        retryCounter = Counter.builder("mqtt.sender.retries")
+            .description("Batch requests retried after a transient failure")
+            .register(meterRegistry);
+        spilledCounter = Counter.builder("mqtt.sender.spilled")
+            .description("Telemetry records handed to the spillover on overflow or failure")
+            .register(meterRegistry);
+        overflowDropCounter = droppedCounter("overflow");
+        timeoutDropCounter = droppedCounter("timeout");
+        failedDropCounter = droppedCounter("failed");
+
+        retrySpec = Retry.backoff(retryMaxAttempts, Duration.ofMillis(retryMinBackoffMs))
+            .maxBackoff(Duration.ofMillis(retryMaxBackoffMs))
+            .jitter(retryJitter)
+            .filter(TelemetrySender::isTransient)
+            .doBeforeRetry(signal -> retryCounter.increment())
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+        pipeline = Flux.<Batch>create(emitter -> {
+                sink = emitter;
+                emitter.onRequest(n -> drain());
+            })
+            .flatMap(this::post, partitionCount, 1)
+            .subscribe();
+
+        log.info("Telemetry sender started: buffer {} records, concurrency {}, overflow policy {}",
+                bufferCapacity, concurrency, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        while ((bufferedRecords() > 0 || inFlight.get() > 0) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int remaining = bufferedRecords();
+        if (remaining > 0) {
+            log.warn("Telemetry sender stopped with {} unsent records", remaining);
+        }
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+    }
+
+    /**
+     * Queues records for delivery, applying the overflow policy when the buffer is full.
+     *
+     * @param records the records to send
+     */
+    public void submit(List<TelemetryRecord> records) {
+        List<TelemetryRecord> overflow = null;
+        lock.lock();
+        try {
+            for (TelemetryRecord record : records) {
+                if (!offer(record)) {
+                    if (overflow == null) {
+                        overflow = new ArrayList<>();
+                    }
+                    overflow.add(record);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for outbound buffer space");
+        } finally {
+            lock.unlock();
+        }
+        if (overflow != null) {
+            spill(overflow);
+        }
+        drain();
+    }
+
+    /**
+     * Number of records waiting in the outbound buffer.
+     */
+    public int bufferedRecords() {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; returns false if the record must be spilled
+    private boolean offer(TelemetryRecord record) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        while (buffered >= bufferCapacity) {
+            if (overflowPolicy == OverflowPolicy.DROP_OLDEST && mergeIntoQueued(record)) {
+                return true;
+            }
+            if (overflowPolicy == OverflowPolicy.SPILL
+                    || (overflowPolicy == OverflowPolicy.DROP_OLDEST && spillover.getIfAvailable() != null)) {
+                return false;
+            }
+            if (remainingNanos <= 0) {
+                timeoutDropCounter.increment();
+                log.warn("Outbound buffer full for {} ms, dropping {} record for machine {}",
+                        blockTimeoutMs, record.getType(), record.getMachineId());
+                forgetDropped(List.of(record));
+                return true;
+            }
+            remainingNanos = notFull.awaitNanos(remainingNanos);
+        }
+        partitions[partitionOf(record)].addLast(record);
+        buffered++;
+        if (isSnapshot(record)) {
+            queuedSnapshots.put(record.getMachineId(), record);
+        }
+        return true;
+    }
+
+    // Overwrites the machine's latest queued snapshot with the fields the newer one carries
+    private boolean mergeIntoQueued(TelemetryRecord newer) {
+        TelemetryRecord queued = isSnapshot(newer) ? queuedSnapshots.get(newer.getMachineId()) : null;
+        if (queued == null) {
+            return false;
+        }
+        if (newer.getStatus() != null) queued.setStatus(newer.getStatus());
+        if (newer.getTemperature() != null) queued.setTemperature(newer.getTemperature());
+        if (newer.getWaterLevel() != null) queued.setWaterLevel(newer.getWaterLevel());
+        if (newer.getMilkLevel() != null) queued.setMilkLevel(newer.getMilkLevel());
+        if (newer.getBeansLevel() != null) queued.setBeansLevel(newer.getBeansLevel());
+        log.debug("Outbound buffer full, merged snapshot into the queued one for machine {}", newer.getMachineId());
+        return true;
+    }
+
+    private int partitionOf(TelemetryRecord record) {
+        return record.getMachineId() == null ? 0 : (int) Math.floorMod(record.getMachineId(), (long) partitions.length);
+    }
+
+    private static boolean isSnapshot(TelemetryRecord record) {
+        return "SNAPSHOT".equals(record.getType()) && record.getMachineId() != null;
+    }
+
+    private void spill(List<TelemetryRecord> records) {
+        int spilled = trySpill(records);
+        int dropped = records.size() - spilled;
+        if (dropped > 0) {
+            overflowDropCounter.increment(dropped);
+            log.warn("Outbound buffer full and no room in a spillover, dropped {} of {} records", dropped, records.size());
+            forgetDropped(records.subList(spilled, records.size()));
+        }
+    }
+
+    // Records that will never reach the backend; their machines' deadband values are stale
+    private void forgetDropped(List<TelemetryRecord> records) {
+        for (TelemetryRecord record : records) {
+            if (isSnapshot(record)) {
+                deadband.forget(record.getMachineId());
+            }
+        }
+    }
+
+    // Returns how many records the spillover took
+    private int trySpill(List<TelemetryRecord> records) {
+        TelemetrySpillover target = spillover.getIfAvailable();
+        int spilled = target != null ? target.spill(records) : 0;
+        spilledCounter.increment(spilled);
+        return spilled;
+    }
+
+    /**
+     * Emits batches while the pipeline has outstanding demand. The work-in-progress
+     * counter keeps a single thread draining even when submit and request race.
+     */
+    private void drain() {
+        FluxSink<Batch> emitter = sink;
+        if (emitter == null || wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (emitter.requestedFromDownstream() > 0) {
+                Batch batch = pollBatch();
+                if (batch == null) {
+                    break;
+                }
+                emitter.next(batch);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // Takes a batch from the next partition that has records and nothing in flight, or returns null
+    private Batch pollBatch() {
+        lock.lock();
+        try {
+            for (int i = 0; i < partitions.length; i++) {
+                int partition = (nextPartition + i) % partitions.length;
+                ArrayDeque<TelemetryRecord> queue = partitions[partition];
+                if (busy[partition] || queue.isEmpty()) {
+                    continue;
+                }
+                int size = Math.min(queue.size(), Math.max(1, maxBatchRecords));
+                List<TelemetryRecord> records = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    TelemetryRecord record = queue.pollFirst();
+                    if (isSnapshot(record) && queuedSnapshots.get(record.getMachineId()) == record) {
+                        queuedSnapshots.remove(record.getMachineId());
+                    }
+                    records.add(record);
+                }
+                buffered -= size;
+                busy[partition] = true;
+                nextPartition = (partition + 1) % partitions.length;
+                notFull.signalAll();
+                return new Batch(partition, records);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(int partition) {
+        lock.lock();
+        try {
+            busy[partition] = false;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Posts one batch to the backend without buffering or retries.
+     *
+     * @param batch the records to send
+     * @return the backend's batch result
+     */
+    public Mono<TelemetryBatchResult> send(List<TelemetryRecord> batch) {
+        return webClient.post()
+            .uri(backendApiBaseUrl + "/api/machine/telemetry/batch")
+            .bodyValue(Map.of("records", batch))
+            .retrieve()
+            .bodyToMono(TelemetryBatchResult.class);
+    }
+
+    private Mono<Void> post(Batch pending) {
+        List<TelemetryRecord> batch = pending.records();
+        return send(batch)
+            .retryWhen(retrySpec)
+            .doOnSubscribe(subscription -> inFlight.incrementAndGet())
+            .doOnSuccess(result -> {
+                sentCounter.increment(batch.size());
+                TelemetrySpillover target = spillover.getIfAvailable();
+                if (target != null) {
+                    target.delivered(batch);
+                }
+                if (result != null && result.getRejected() > 0) {
+                    log.warn("Backend rejected {} of {} telemetry records", result.getRejected(), batch.size());
+                } else {
+                    log.debug("Successfully sent {} telemetry records", batch.size());
+                }
+            })
+            .onErrorResume(error -> {
+                int spilled = trySpill(batch);
+                int dropped = batch.size() - spilled;
+                if (dropped == 0) {
+                    log.warn("Failed to send telemetry batch of {} records, spooled for replay: {}", batch.size(), error.getMessage());
+                } else {
+                    failedDropCounter.increment(dropped);
+                    log.error("Failed to send telemetry batch of {} records, dropped {}: {}",
+                            batch.size(), dropped, error.getMessage());
+                    forgetDropped(batch.subList(spilled, batch.size()));
+                }
+                return Mono.empty();
+            })
+            .doFinally(signal -> {
+                inFlight.decrementAndGet();
+                release(pending.partition());
+            })
+            .then();
+    }
+
+    private Counter droppedCounter(String reason) {
+        return Counter.builder("mqtt.sender.dropped")
+            .description("Telemetry records dropped before reaching the backend")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+
+import java.util.List;
+
+/**
+ * Destination for telemetry records the sender cannot deliver right now.
+ * Used by the SPILL overflow policy of {@link TelemetrySender} and for batches
+ * that still fail after retries.
+ */
+public interface TelemetrySpillover {
+
+    /**
+     * Persists records for later delivery, in order, until the first one that does not fit.
+     *
+     * @param records the records that could not be buffered or delivered
+     * @return how many of the records, from the start of the list, were accepted
+     */
+    int spill(List<TelemetryRecord> records);
+
+    /**
+     * Notified after the sender delivered a live batch to the backend.
+     *
+     * @param records the delivered records
+     */
+    default void delivered(List<TelemetryRecord> records) {
+    }
+}
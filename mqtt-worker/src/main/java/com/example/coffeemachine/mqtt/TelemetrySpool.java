@@ -0,0 +1,660 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Append-only on-disk spool for telemetry the backend could not take.
+ * Records are framed into fixed-size memory-mapped segment files, so a spill is a
+ * memory copy and survives a worker crash. A dedicated replay thread sends them
+ * back in write order at {@code backend.api.spool.replay.records-per-second},
+ * backing off while the backend keeps failing, so live traffic is never blocked.
+ *
+ * <p>Sealed segments are compacted once there are enough of them: status and level
+ * readings collapse into the latest value of each field per machine, while usage
+ * events are always kept in full. Each field keeps the time it was spooled, so fields
+ * spooled at different times are written back as separate frames. On replay, each field of a spooled snapshot is dropped when
+ * the sender has since delivered a live value for the same machine and field, and
+ * the snapshot is skipped once none of its fields are left. Live snapshots carry
+ * only the fields that changed, so one live update does not supersede a whole
+ * spooled snapshot.
+ */
+@Component
+@ConditionalOnProperty(prefix = "backend.api.spool", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetrySpool implements TelemetrySpillover {
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "replay.checkpoint";
+
+    // Frame: int length | long writtenAt | byte type | byte field mask | long machineId | fields...
+    // The high bit of the type byte flags a trailing idempotency key, so older frames still decode
+    private static final String[] TYPES = {"STATUS", "LEVELS", "SNAPSHOT", "USAGE"};
+    private static final int TYPE_SNAPSHOT = 2;
+    private static final int TYPE_HAS_KEY = 0x80;
+    private static final int MAX_FRAME_BYTES = 1024;
+
+    private static final int F_STATUS = 1;
+    private static final int F_TEMPERATURE = 1 << 1;
+    private static final int F_WATER = 1 << 2;
+    private static final int F_MILK = 1 << 3;
+    private static final int F_BEANS = 1 << 4;
+    private static final int F_BREW_TYPE = 1 << 5;
+    private static final int F_VOLUME = 1 << 6;
+    private static final int F_TEMP_AT_BREW = 1 << 7;
+
+    // Snapshot fields tracked for live delivery, indexing the liveDeliveredAt arrays
+    private static final int L_STATUS = 0;
+    private static final int L_TEMPERATURE = 1;
+    private static final int L_WATER = 2;
+    private static final int L_MILK = 3;
+    private static final int L_BEANS = 4;
+    private static final int LIVE_FIELDS = 5;
+
+    private final TelemetrySender telemetrySender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${backend.api.spool.directory}")
+    private String directory;
+
+    @Value("${backend.api.spool.segment-bytes:16777216}")
+    private int segmentBytes;
+
+    @Value("${backend.api.spool.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${backend.api.spool.compact-threshold:4}")
+    private int compactThreshold;
+
+    @Value("${backend.api.spool.replay.records-per-second:500}")
+    private int replayRate;
+
+    @Value("${backend.api.spool.replay.interval-ms:1000}")
+    private long replayIntervalMs;
+
+    @Value("${backend.api.spool.replay.max-backoff-ms:30000}")
+    private long replayMaxBackoffMs;
+
+    // Segment files by sequence number; the highest one is the active segment. Guarded by this.
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_FRAME_BYTES);
+    // Per machine, when a live value of each snapshot field was last delivered
+    private final Map<Long, AtomicLongArray> liveDeliveredAt = new ConcurrentHashMap<>();
+
+    private Path spoolDir;
+    private MappedByteBuffer active;
+    private volatile long activeSeq;
+    private volatile int activeLimit;
+
+    // Replay position, advanced only by the replay thread
+    private MappedByteBuffer checkpoint;
+    private volatile long cursorSeq;
+    private volatile int cursorPos;
+    private long backoffMs;
+    private long nextReplayAt;
+
+    private ScheduledExecutorService replayExecutor;
+    private Counter writtenCounter;
+    private Counter replayedCounter;
+    private Counter skippedCounter;
+    private Counter compactionCounter;
+
+    @PostConstruct
+    public void start() throws IOException {
+        spoolDir = Paths.get(directory);
+        Files.createDirectories(spoolDir);
+        recover();
+
+        writtenCounter = Counter.builder("mqtt.spool.written")
+            .description("Telemetry records written to the spool")
+            .register(meterRegistry);
+        replayedCounter = Counter.builder("mqtt.spool.replayed")
+            .description("Spooled telemetry records replayed to the backend")
+            .register(meterRegistry);
+        skippedCounter = Counter.builder("mqtt.spool.skipped")
+            .description("Spooled snapshots skipped because newer live values were delivered for all their fields")
+            .register(meterRegistry);
+        compactionCounter = Counter.builder("mqtt.spool.compactions")
+            .description("Spool segment compactions")
+            .register(meterRegistry);
+        Gauge.builder("mqtt.spool.segments", this, TelemetrySpool::segmentCount)
+            .description("Spool segment files on disk")
+            .register(meterRegistry);
+
+        replayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telemetry-spool-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replayExecutor.scheduleWithFixedDelay(this::replay, replayIntervalMs, replayIntervalMs, TimeUnit.MILLISECONDS);
+
+        log.info("Telemetry spool started in {} with {} segments", spoolDir, segmentCount());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            if (active != null) {
+                active.force();
+            }
+        }
+    }
+
+    @Override
+    public synchronized int spill(List<TelemetryRecord> records) {
+        if (active == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int written = 0;
+        try {
+            for (TelemetryRecord record : records) {
+                encode(record, now, scratch);
+                if (active.remaining() < scratch.remaining()) {
+                    if ((long) (segments.size() + 1) * segmentBytes > maxBytes) {
+                        log.warn("Spool is full ({} bytes), rejecting {} records", maxBytes, records.size() - written);
+                        break;
+                    }
+                    roll();
+                }
+                active.put(scratch);
+                activeLimit = active.position();
+                written++;
+            }
+        } catch (IOException | BufferOverflowException | ArithmeticException e) {
+            log.error("Failed to write telemetry to the spool: {}", e.getMessage());
+        }
+        writtenCounter.increment(written);
+        return written;
+    }
+
+    @Override
+    public void delivered(List<TelemetryRecord> records) {
+        if (isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TelemetryRecord record : records) {
+            if (!"USAGE".equals(record.getType()) && record.getMachineId() != null) {
+                AtomicLongArray deliveredAt = liveDeliveredAt.computeIfAbsent(record.getMachineId(),
+                    id -> new AtomicLongArray(LIVE_FIELDS));
+                if (record.getStatus() != null) deliveredAt.set(L_STATUS, now);
+                if (record.getTemperature() != null) deliveredAt.set(L_TEMPERATURE, now);
+                if (record.getWaterLevel() != null) deliveredAt.set(L_WATER, now);
+                if (record.getMilkLevel() != null) deliveredAt.set(L_MILK, now);
+                if (record.getBeansLevel() != null) deliveredAt.set(L_BEANS, now);
+            }
+        }
+    }
+
+    /**
+     * Whether every spooled record has been replayed.
+     */
+    public boolean isEmpty() {
+        return cursorSeq == activeSeq && cursorPos >= activeLimit;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Sends the next slice of spooled records. Runs on the replay thread only.
+     */
+    void replay() {
+        long now = System.currentTimeMillis();
+        if (now < nextReplayAt) {
+            return;
+        }
+        try {
+            compactIfNeeded();
+            if (isEmpty()) {
+                liveDeliveredAt.clear();
+                return;
+            }
+
+            int maxRecords = (int) Math.max(1, replayRate * replayIntervalMs / 1000);
+            Slice slice = read(cursorSeq, cursorPos, maxRecords, Long.MAX_VALUE);
+            List<TelemetryRecord> fresh = new ArrayList<>(slice.records.size());
+            for (SpooledRecord spooled : slice.records) {
+                TelemetryRecord record = withoutSupersededFields(spooled);
+                if (record == null) {
+                    skippedCounter.increment();
+                } else {
+                    fresh.add(record);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                telemetrySender.send(fresh).block(Duration.ofSeconds(30));
+                replayedCounter.increment(fresh.size());
+            }
+            advance(slice.endSeq, slice.endPos);
+            backoffMs = 0;
+        } catch (Exception e) {
+            backoffMs = backoffMs == 0 ? replayIntervalMs : Math.min(replayMaxBackoffMs, backoffMs * 2);
+            nextReplayAt = now + backoffMs;
+            log.warn("Spool replay failed, retrying in {} ms: {}", backoffMs, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the snapshot fields a live delivery has superseded since the record was spooled.
+     *
+     * @return the record to replay, or null when every field was superseded
+     */
+    private TelemetryRecord withoutSupersededFields(SpooledRecord spooled) {
+        TelemetryRecord record = spooled.record;
+        AtomicLongArray deliveredAt = "USAGE".equals(record.getType()) ? null : liveDeliveredAt.get(record.getMachineId());
+        if (deliveredAt == null) {
+            return record;
+        }
+        long writtenAt = spooled.writtenAt;
+        if (deliveredAt.get(L_STATUS) > writtenAt) record.setStatus(null);
+        if (deliveredAt.get(L_TEMPERATURE) > writtenAt) record.setTemperature(null);
+        if (deliveredAt.get(L_WATER) > writtenAt) record.setWaterLevel(null);
+        if (deliveredAt.get(L_MILK) > writtenAt) record.setMilkLevel(null);
+        if (deliveredAt.get(L_BEANS) > writtenAt) record.setBeansLevel(null);
+        boolean empty = record.getStatus() == null && record.getTemperature() == null
+            && record.getWaterLevel() == null && record.getMilkLevel() == null && record.getBeansLevel() == null;
+        return empty ? null : record;
+    }
+
+    /**
+     * Merges all sealed segments from the replay cursor on into one, keeping the latest
+     * value of each snapshot field per machine and every usage event.
+     */
+    void compactIfNeeded() throws IOException {
+        List<Long> sealed;
+        synchronized (this) {
+            sealed = new ArrayList<>(segments.headMap(activeSeq).keySet());
+        }
+        if (sealed.size() < compactThreshold) {
+            return;
+        }
+        long lastSealed = sealed.get(sealed.size() - 1);
+        Slice slice = read(cursorSeq, cursorPos, Integer.MAX_VALUE, lastSealed);
+
+        List<SpooledRecord> usage = new ArrayList<>();
+        // Per machine, the latest spooled record carrying each snapshot field
+        Map<Long, SpooledRecord[]> snapshots = new LinkedHashMap<>();
+        for (SpooledRecord spooled : slice.records) {
+            TelemetryRecord record = spooled.record;
+            if ("USAGE".equals(record.getType())) {
+                usage.add(spooled);
+                continue;
+            }
+            SpooledRecord[] latest = snapshots.computeIfAbsent(record.getMachineId(), id -> new SpooledRecord[LIVE_FIELDS]);
+            if (record.getStatus() != null) latest[L_STATUS] = spooled;
+            if (record.getTemperature() != null) latest[L_TEMPERATURE] = spooled;
+            if (record.getWaterLevel() != null) latest[L_WATER] = spooled;
+            if (record.getMilkLevel() != null) latest[L_MILK] = spooled;
+            if (record.getBeansLevel() != null) latest[L_BEANS] = spooled;
+        }
+        List<SpooledRecord> compacted = new ArrayList<>(usage.size() + snapshots.size());
+        compacted.addAll(usage);
+        for (SpooledRecord[] latest : snapshots.values()) {
+            compacted.addAll(framesBySpoolTime(latest));
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES);
+        long size = 0;
+        for (SpooledRecord spooled : compacted) {
+            encode(spooled.record, spooled.writtenAt, frame);
+            size += frame.remaining();
+        }
+        Path tmp = spoolDir.resolve(SEGMENT_PREFIX + lastSealed + SEGMENT_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, Integer.BYTES));
+            for (SpooledRecord spooled : compacted) {
+                encode(spooled.record, spooled.writtenAt, frame);
+                out.put(frame);
+            }
+            out.force();
+        }
+        Files.move(tmp, segmentPath(lastSealed), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        advance(lastSealed, 0);
+
+        compactionCounter.increment();
+        log.info("Compacted {} spool segments: {} records -> {}", sealed.size(), slice.records.size(), compacted.size());
+    }
+
+    /**
+     * Builds one snapshot frame per spooled record that still holds the latest value of
+     * some field, stamped with that record's spool time, so replay can tell which
+     * fields a live delivery superseded.
+     *
+     * @param latest the latest spooled record per snapshot field, null where none
+     * @return the frames, oldest first
+     */
+    private static List<SpooledRecord> framesBySpoolTime(SpooledRecord[] latest) {
+        // Keyed by identity: several fields usually come from the same record
+        Map<SpooledRecord, TelemetryRecord> frames = new LinkedHashMap<>();
+        for (int field = 0; field < LIVE_FIELDS; field++) {
+            SpooledRecord source = latest[field];
+            if (source == null) {
+                continue;
+            }
+            TelemetryRecord frame = frames.computeIfAbsent(source, s -> TelemetryRecord.builder()
+                .type("SNAPSHOT")
+                .machineId(s.record.getMachineId())
+                .build());
+            switch (field) {
+                case L_STATUS -> frame.setStatus(source.record.getStatus());
+                case L_TEMPERATURE -> frame.setTemperature(source.record.getTemperature());
+                case L_WATER -> frame.setWaterLevel(source.record.getWaterLevel());
+                case L_MILK -> frame.setMilkLevel(source.record.getMilkLevel());
+                default -> frame.setBeansLevel(source.record.getBeansLevel());
+            }
+        }
+        List<SpooledRecord> result = new ArrayList<>(frames.size());
+        frames.forEach((source, frame) -> result.add(new SpooledRecord(source.writtenAt, frame)));
+        result.sort(Comparator.comparingLong(spooled -> spooled.writtenAt));
+        return result;
+    }
+
+    private void advance(long seq, int pos) {
+        cursorSeq = seq;
+        cursorPos = pos;
+        checkpoint.putLong(0, seq);
+        checkpoint.putInt(Long.BYTES, pos);
+        checkpoint.force();
+
+        List<Path> consumed = new ArrayList<>();
+        synchronized (this) {
+            Map<Long, Path> head = segments.headMap(seq);
+            consumed.addAll(head.values());
+            head.clear();
+        }
+        for (Path path : consumed) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete replayed spool segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads up to {@code maxRecords} frames starting at the given position, not past segment {@code untilSeq}.
+     */
+    private Slice read(long fromSeq, int fromPos, int maxRecords, long untilSeq) throws IOException {
+        Map<Long, Path> range;
+        long currentActive;
+        ByteBuffer activeView;
+        synchronized (this) {
+            range = new TreeMap<>(segments.subMap(fromSeq, true, untilSeq, true));
+            currentActive = activeSeq;
+            activeView = active.duplicate();
+            activeView.limit(activeLimit);
+        }
+
+        Slice slice = new Slice(fromSeq, fromPos);
+        for (Map.Entry<Long, Path> entry : range.entrySet()) {
+            long seq = entry.getKey();
+            ByteBuffer buffer;
+            if (seq == currentActive) {
+                buffer = activeView;
+            } else {
+                try (FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            int pos = seq == fromSeq ? fromPos : 0;
+            slice.endSeq = seq;
+            slice.endPos = pos;
+            while (pos + Integer.BYTES <= buffer.limit()) {
+                int length = buffer.getInt(pos);
+                if (length <= 0 || pos + Integer.BYTES + length > buffer.limit()) {
+                    break;
+                }
+                slice.records.add(decode(buffer.duplicate().position(pos + Integer.BYTES).limit(pos + Integer.BYTES + length)));
+                pos += Integer.BYTES + length;
+                slice.endPos = pos;
+                if (slice.records.size() >= maxRecords) {
+                    return slice;
+                }
+            }
+            if (seq == currentActive) {
+                break;
+            }
+            Long next = range.keySet().stream().filter(s -> s > seq).findFirst().orElse(null);
+            if (next != null) {
+                slice.endSeq = next;
+                slice.endPos = 0;
+            }
+        }
+        return slice;
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    String seq = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                    segments.put(Long.parseLong(seq), path);
+                } else if (name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                    path.toFile().delete();
+                }
+            });
+        }
+
+        try (FileChannel channel = FileChannel.open(spoolDir.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES + Integer.BYTES);
+        }
+        long savedSeq = checkpoint.getLong(0);
+        int savedPos = checkpoint.getInt(Long.BYTES);
+
+        if (segments.isEmpty()) {
+            openActive(Math.max(1, savedSeq));
+            cursorSeq = activeSeq;
+            cursorPos = 0;
+            return;
+        }
+        if (segments.containsKey(savedSeq)) {
+            cursorSeq = savedSeq;
+            cursorPos = savedPos;
+        } else {
+            cursorSeq = segments.firstKey();
+            cursorPos = 0;
+        }
+        segments.headMap(cursorSeq).values().forEach(path -> path.toFile().delete());
+        segments.headMap(cursorSeq).clear();
+        openActive(segments.lastKey());
+    }
+
+    // Called with the lock held
+    private void roll() throws IOException {
+        active.force();
+        openActive(activeSeq + 1);
+    }
+
+    private void openActive(long seq) throws IOException {
+        Path path = segmentPath(seq);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+        }
+        // Find the end of the frames already written (the file is zero-filled past it)
+        int pos = 0;
+        while (pos + Integer.BYTES <= active.capacity()) {
+            int length = active.getInt(pos);
+            if (length <= 0 || pos + Integer.BYTES + length > active.capacity()) {
+                break;
+            }
+            pos += Integer.BYTES + length;
+        }
+        active.position(pos);
+        segments.put(seq, path);
+        activeSeq = seq;
+        activeLimit = pos;
+    }
+
+    private Path segmentPath(long seq) {
+        return spoolDir.resolve(SEGMENT_PREFIX + String.format("%020d", seq) + SEGMENT_SUFFIX);
+    }
+
+    private static void encode(TelemetryRecord record, long writtenAt, ByteBuffer out) {
+        out.clear();
+        out.position(Integer.BYTES);
+        out.putLong(writtenAt);
+        out.put((byte) (typeCode(record.getType()) | (record.getIdempotencyKey() != null ? TYPE_HAS_KEY : 0)));
+        int maskPos = out.position();
+        out.put((byte) 0);
+        out.putLong(record.getMachineId());
+        int mask = 0;
+        if (record.getStatus() != null) {
+            mask |= F_STATUS;
+            putString(out, record.getStatus());
+        }
+        if (record.getTemperature() != null) {
+            mask |= F_TEMPERATURE;
+            putDecimal(out, record.getTemperature());
+        }
+        if (record.getWaterLevel() != null) {
+            mask |= F_WATER;
+            out.putInt(record.getWaterLevel());
+        }
+        if (record.getMilkLevel() != null) {
+            mask |= F_MILK;
+            out.putInt(record.getMilkLevel());
+        }
+        if (record.getBeansLevel() != null) {
+            mask |= F_BEANS;
+            out.putInt(record.getBeansLevel());
+        }
+        if (record.getBrewType() != null) {
+            mask |= F_BREW_TYPE;
+            putString(out, record.getBrewType());
+        }
+        if (record.getVolumeMl() != null) {
+            mask |= F_VOLUME;
+            out.putInt(record.getVolumeMl());
+        }
+        if (record.getTempAtBrew() != null) {
+            mask |= F_TEMP_AT_BREW;
+            putDecimal(out, record.getTempAtBrew());
+        }
+        if (record.getIdempotencyKey() != null) {
+            putString(out, record.getIdempotencyKey());
+        }
+        out.put(maskPos, (byte) mask);
+        out.putInt(0, out.position() - Integer.BYTES);
+        out.flip();
+    }
+
+    private static SpooledRecord decode(ByteBuffer in) {
+        long writtenAt = in.getLong();
+        int typeByte = in.get() & 0xFF;
+        String type = TYPES[typeByte & ~TYPE_HAS_KEY];
+        int mask = in.get() & 0xFF;
+        TelemetryRecord.TelemetryRecordBuilder record = TelemetryRecord.builder()
+            .type(type)
+            .machineId(in.getLong());
+        if ((mask & F_STATUS) != 0) record.status(getString(in));
+        if ((mask & F_TEMPERATURE) != 0) record.temperature(getDecimal(in));
+        if ((mask & F_WATER) != 0) record.waterLevel(in.getInt());
+        if ((mask & F_MILK) != 0) record.milkLevel(in.getInt());
+        if ((mask & F_BEANS) != 0) record.beansLevel(in.getInt());
+        if ((mask & F_BREW_TYPE) != 0) record.brewType(getString(in));
+        if ((mask & F_VOLUME) != 0) record.volumeMl(in.getInt());
+        if ((mask & F_TEMP_AT_BREW) != 0) record.tempAtBrew(getDecimal(in));
+        if ((typeByte & TYPE_HAS_KEY) != 0) record.idempotencyKey(getString(in));
+        return new SpooledRecord(writtenAt, record.build());
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        return TYPE_SNAPSHOT;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putDecimal(ByteBuffer out, BigDecimal value) {
+        out.putInt(value.scale());
+        out.putLong(value.unscaledValue().longValueExact());
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer in) {
+        int scale = in.getInt();
+        return new BigDecimal(BigInteger.valueOf(in.getLong()), scale);
+    }
+
+    private static final class SpooledRecord {
+        final long writtenAt;
+        final TelemetryRecord record;
+
+        SpooledRecord(long writtenAt, TelemetryRecord record) {
+            this.writtenAt = writtenAt;
+            this.record = record;
+        }
+    }
+
+    private static final class Slice {
+        final List<SpooledRecord> records = new ArrayList<>();
+        long endSeq;
+        int endPos;
+
+        Slice(long seq, int pos) {
+            this.endSeq = seq;
+            this.endPos = pos;
+        }
+    }
+}
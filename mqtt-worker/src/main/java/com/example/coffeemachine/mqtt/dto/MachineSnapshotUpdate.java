@@ -0,0 +1,17 @@
+package com.example.coffeemachine.mqtt.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class MachineSnapshotUpdate {
+    private Long machineId;
+    private String status;
+    private BigDecimal temperature;
+    private Integer waterLevel;
+    private Integer milkLevel;
+    private Integer beansLevel;
+}
@@ -12,4 +12,5 @@ public class MachineUsageEvent {
     private String brewType;
     private Integer volumeMl;
     private BigDecimal tempAtBrew;
+    private String idempotencyKey;
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.example.coffeemachine.mqtt.dto;
+
+import lombok.Data;
+
+/**
+ * Summary of the backend's response to a telemetry batch.
+ */
+@Data
+public class TelemetryBatchResult {
+    private int applied;
+    private int rejected;
+}
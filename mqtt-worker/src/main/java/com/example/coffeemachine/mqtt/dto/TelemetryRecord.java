@@ -0,0 +1,48 @@
+package com.example.coffeemachine.mqtt.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One entry of a telemetry batch sent to the backend batch endpoint.
+ */
+@Data
+@Builder
+public class TelemetryRecord {
+    private String type;
+    private Long machineId;
+    private String status;
+    private BigDecimal temperature;
+    private Integer waterLevel;
+    private Integer milkLevel;
+    private Integer beansLevel;
+    private String brewType;
+    private Integer volumeMl;
+    private BigDecimal tempAtBrew;
+    private String idempotencyKey;
+
+    public static TelemetryRecord of(MachineSnapshotUpdate snapshot) {
+        return TelemetryRecord.builder()
+            .type("SNAPSHOT")
+            .machineId(snapshot.getMachineId())
+            .status(snapshot.getStatus())
+            .temperature(snapshot.getTemperature())
+            .waterLevel(snapshot.getWaterLevel())
+            .milkLevel(snapshot.getMilkLevel())
+            .beansLevel(snapshot.getBeansLevel())
+            .build();
+    }
+
+    public static TelemetryRecord of(MachineUsageEvent event) {
+        return TelemetryRecord.builder()
+            .type("USAGE")
+            .machineId(event.getMachineId())
+            .brewType(event.getBrewType())
+            .volumeMl(event.getVolumeMl())
+            .tempAtBrew(event.getTempAtBrew())
+            .idempotencyKey(event.getIdempotencyKey())
+            .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.coffeemachine.simulator;
 
+import com.example.coffeemachine.mqtt.TelemetryFrame;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.*;
@@ -62,11 +63,17 @@ public class SensorDataSimulator {
     @Value("${simulator.usage.probability:0.3}")
     private double usageProbability;
 
+    // json: five per-metric documents per tick; binary: one TelemetryFrame on coffeeMachine/{id}/telemetry
+    @Value("${simulator.payload-format:json}")
+    private String payloadFormat;
+
     private MqttClient mqttClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final Random random = new Random();
     private final Map<Long, MachineState> machineStates = new ConcurrentHashMap<>();
     private final AtomicInteger messageCounter = new AtomicInteger(0);
+    // Sent with every JSON reading; changes on every start, when sequences start over
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
 
     /**
      * Represents the current state of a simulated coffee machine.
@@ -79,6 +86,8 @@ public class SensorDataSimulator {
         String status;
         LocalDateTime lastUsage;
         int usageCount;
+        long sequence;
+        long usageSequence;
 
         MachineState() {
             // Initialize with random realistic values
@@ -249,25 +258,35 @@ public class SensorDataSimulator {
      */
     private void sendSensorData(Long machineId, MachineState state, LocalDateTime timestamp) {
         try {
+            // One sequence number per tick; the worker tracks it separately per topic
+            long sequence = ++state.sequence;
+
+            if ("binary".equalsIgnoreCase(payloadFormat)) {
+                sendMqttMessage("coffeeMachine/" + machineId + "/telemetry",
+                        createTelemetryFrame(state, sequence));
+                messageCounter.incrementAndGet();
+                return;
+            }
+
             // Send temperature data
             sendMqttMessage("coffeeMachine/" + machineId + "/temperature", 
-                    createTemperaturePayload(state.temperature));
+                    createTemperaturePayload(state.temperature, sequence));
 
             // Send water level data
             sendMqttMessage("coffeeMachine/" + machineId + "/waterLevel", 
-                    createLevelPayload("waterLevel", state.waterLevel));
+                    createLevelPayload("waterLevel", state.waterLevel, sequence));
 
             // Send milk level data
             sendMqttMessage("coffeeMachine/" + machineId + "/milkLevel", 
-                    createLevelPayload("milkLevel", state.milkLevel));
+                    createLevelPayload("milkLevel", state.milkLevel, sequence));
 
             // Send beans level data
             sendMqttMessage("coffeeMachine/" + machineId + "/beansLevel", 
-                    createLevelPayload("beansLevel", state.beansLevel));
+                    createLevelPayload("beansLevel", state.beansLevel, sequence));
 
             // Send status data
             sendMqttMessage("coffeeMachine/" + machineId + "/status", 
-                    createStatusPayload(state.status));
+                    createStatusPayload(state.status, sequence));
 
             messageCounter.incrementAndGet();
 
@@ -306,6 +325,8 @@ public class SensorDataSimulator {
             usageEvent.put("volumeMl", volumeMl);
             usageEvent.put("tempAtBrew", Math.round(tempAtBrew * 10.0) / 10.0);
             usageEvent.put("timestamp", timestamp.toString());
+            usageEvent.put("seq", ++state.usageSequence);
+            usageEvent.put("boot", bootId);
 
             String payload = objectMapper.writeValueAsString(usageEvent);
             sendMqttMessage("coffeeMachine/" + machineId + "/usage", payload);
@@ -328,9 +349,11 @@ public class SensorDataSimulator {
     /**
      * Creates a temperature payload.
      */
-    private String createTemperaturePayload(double temperature) {
+    private String createTemperaturePayload(double temperature, long sequence) {
         try {
             Map<String, Object> payload = new HashMap<>();
+            payload.put("seq", sequence);
+            payload.put("boot", bootId);
             payload.put("temperature", Math.round(temperature * 10.0) / 10.0);
             payload.put("unit", "Celsius");
             payload.put("timestamp", LocalDateTime.now().toString());
@@ -343,9 +366,11 @@ public class SensorDataSimulator {
     /**
      * Creates a level payload.
      */
-    private String createLevelPayload(String levelType, double level) {
+    private String createLevelPayload(String levelType, double level, long sequence) {
         try {
             Map<String, Object> payload = new HashMap<>();
+            payload.put("seq", sequence);
+            payload.put("boot", bootId);
             payload.put(levelType, Math.round(level));
             payload.put("unit", "percent");
             payload.put("timestamp", LocalDateTime.now().toString());
@@ -358,9 +383,11 @@ public class SensorDataSimulator {
     /**
      * Creates a status payload.
      */
-    private String createStatusPayload(String status) {
+    private String createStatusPayload(String status, long sequence) {
         try {
             Map<String, Object> payload = new HashMap<>();
+            payload.put("seq", sequence);
+            payload.put("boot", bootId);
             payload.put("status", status);
             payload.put("timestamp", LocalDateTime.now().toString());
             return objectMapper.writeValueAsString(payload);
@@ -369,21 +396,42 @@ public class SensorDataSimulator {
         }
     }
 
+    /**
+     * Creates a combined binary telemetry frame.
+     */
+    private byte[] createTelemetryFrame(MachineState state, long sequence) {
+        return TelemetryFrame.encode(sequence, System.currentTimeMillis(),
+                state.temperature,
+                (int) Math.round(state.waterLevel),
+                (int) Math.round(state.milkLevel),
+                (int) Math.round(state.beansLevel),
+                state.status);
+    }
+
     /**
      * Sends a message to a specific MQTT topic.
      */
     private void sendMqttMessage(String topic, String payload) {
+        if (sendMqttMessage(topic, payload.getBytes())) {
+            log.debug("Sent MQTT message to topic {}: {}", topic, payload);
+        }
+    }
+
+    /**
+     * @return true if the message was published, false if publishing failed (already logged)
+     */
+    private boolean sendMqttMessage(String topic, byte[] payload) {
         try {
-            MqttMessage message = new MqttMessage(payload.getBytes());
+            MqttMessage message = new MqttMessage(payload);
             message.setQos(1);
             message.setRetained(false);
             
             mqttClient.publish(topic, message);
-            
-            log.debug("Sent MQTT message to topic {}: {}", topic, payload);
+            return true;
             
         } catch (MqttException e) {
             log.error("Failed to send MQTT message to topic {}: {}", topic, e.getMessage());
+            return false;
         }
     }
 
@@ -401,6 +449,7 @@ public class SensorDataSimulator {
         stats.put("enabled", enabled);
         stats.put("intervalMs", intervalMs);
         stats.put("numberOfMachines", numberOfMachines);
+        stats.put("payloadFormat", payloadFormat);
         stats.put("totalMessagesSent", messageCounter.get());
         stats.put("machineStates", machineStates.size());
         stats.put("lastUpdate", LocalDateTime.now().toString());
@@ -0,0 +1,43 @@
+package com.example.coffeemachine.web;
+
+import com.example.coffeemachine.mqtt.PartitionAssignment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/partitions) showing which machines this worker owns.
+ */
+@Component
+@Endpoint(id = "partitions")
+@RequiredArgsConstructor
+public class PartitionsEndpoint {
+
+    private static final int MACHINE_SAMPLE = 100;
+
+    private final PartitionAssignment partitionAssignment;
+
+    @ReadOperation
+    public Map<String, Object> partitions() {
+        List<String> owned = partitionAssignment.getOwnedMachines().stream()
+            .sorted()
+            .toList();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("mode", partitionAssignment.getMode());
+        response.put("group", partitionAssignment.getGroup());
+        response.put("instanceIndex", partitionAssignment.getInstanceIndex());
+        response.put("instanceCount", partitionAssignment.getInstanceCount());
+        response.put("topicFilters", partitionAssignment.topicFilters());
+        response.put("acceptedMessages", partitionAssignment.getAcceptedMessages());
+        response.put("skippedMessages", partitionAssignment.getSkippedMessages());
+        response.put("ownedMachineCount", owned.size());
+        response.put("ownedMachines", owned.subList(0, Math.min(MACHINE_SAMPLE, owned.size())));
+        return response;
+    }
+}
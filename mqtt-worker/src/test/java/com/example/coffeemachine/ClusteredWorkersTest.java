@@ -0,0 +1,128 @@
+package com.example.coffeemachine;
+
+import com.example.coffeemachine.mqtt.PartitionAssignment;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs several workers in one JVM against an embedded broker and checks that in
+ * partitioned mode every machine is handled by exactly one of them.
+ */
+class ClusteredWorkersTest {
+
+    private static final int WORKERS = 3;
+    private static final int MACHINES = 30;
+
+    @TempDir
+    Path brokerData;
+
+    private Server broker;
+    private int brokerPort;
+    private final List<ConfigurableApplicationContext> workers = new ArrayList<>();
+
+    @BeforeEach
+    void startBroker() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            brokerPort = socket.getLocalPort();
+        }
+        Properties properties = new Properties();
+        properties.setProperty("host", "127.0.0.1");
+        properties.setProperty("port", String.valueOf(brokerPort));
+        properties.setProperty("websocket_port", "disabled");
+        properties.setProperty("allow_anonymous", "true");
+        properties.setProperty("persistence_enabled", "false");
+        properties.setProperty("data_path", brokerData.toString());
+        broker = new Server();
+        broker.startServer(new MemoryConfig(properties));
+    }
+
+    @AfterEach
+    void stopAll() {
+        workers.forEach(ConfigurableApplicationContext::close);
+        if (broker != null) {
+            broker.stopServer();
+        }
+    }
+
+    @Test
+    void partitionedWorkers_EachMachineOwnedByExactlyOneWorker() throws Exception {
+        // Given
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(startWorker(i));
+        }
+
+        // When - publish until every machine has been picked up (subscriptions complete asynchronously)
+        Set<String> expected = new HashSet<>();
+        for (int id = 1; id <= MACHINES; id++) {
+            expected.add(String.valueOf(id));
+        }
+        MqttClient publisher = new MqttClient("tcp://127.0.0.1:" + brokerPort, "cluster-test-publisher", new MemoryPersistence());
+        publisher.connect();
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!owned().equals(expected) && System.currentTimeMillis() < deadline) {
+            for (String id : expected) {
+                publisher.publish("coffeeMachine/" + id + "/status", "ON".getBytes(StandardCharsets.UTF_8), 1, false);
+            }
+            Thread.sleep(200);
+        }
+        publisher.disconnect();
+        publisher.close();
+
+        // Then
+        assertEquals(expected, owned());
+        int claimed = 0;
+        for (ConfigurableApplicationContext worker : workers) {
+            PartitionAssignment assignment = worker.getBean(PartitionAssignment.class);
+            for (String machineId : assignment.getOwnedMachines()) {
+                assertEquals(assignment.getInstanceIndex(), PartitionAssignment.partitionOf(machineId, WORKERS));
+            }
+            assertTrue(assignment.getSkippedMessages() > 0);
+            claimed += assignment.getOwnedMachines().size();
+        }
+        assertEquals(MACHINES, claimed, "a machine was handled by more than one worker");
+    }
+
+    private Set<String> owned() {
+        Set<String> owned = new HashSet<>();
+        for (ConfigurableApplicationContext worker : workers) {
+            owned.addAll(worker.getBean(PartitionAssignment.class).getOwnedMachines());
+        }
+        return owned;
+    }
+
+    private ConfigurableApplicationContext startWorker(int index) {
+        return new SpringApplicationBuilder(MqttWorkerApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--simulator.enabled=false",
+                "--spring.mqtt.broker.url=tcp://127.0.0.1:" + brokerPort,
+                "--spring.mqtt.broker.client-id=cluster-test",
+                "--spring.mqtt.cluster.mode=PARTITIONED",
+                "--spring.mqtt.cluster.instance-count=" + WORKERS,
+                "--spring.mqtt.cluster.instance-index=" + index,
+                "--backend.api.base-url=http://127.0.0.1:9",
+                "--backend.api.sender.retry.max-attempts=0",
+                "--backend.api.sender.shutdown-timeout-ms=0");
+    }
+}
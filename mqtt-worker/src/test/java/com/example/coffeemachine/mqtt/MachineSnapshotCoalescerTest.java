@@ -0,0 +1,87 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.MachineLevelsUpdate;
+import com.example.coffeemachine.mqtt.dto.MachineSnapshotUpdate;
+import com.example.coffeemachine.mqtt.dto.MachineStatusUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-machine snapshot coalescer.
+ */
+class MachineSnapshotCoalescerTest {
+
+    private MachineSnapshotCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new MachineSnapshotCoalescer();
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+    }
+
+    @Test
+    @DisplayName("Should merge all metrics for a machine into one snapshot")
+    void merge_AllMetrics_ProducesSingleSnapshot() {
+        // When
+        coalescer.merge(MachineStatusUpdate.builder().machineId(1L).temperature(new BigDecimal("91.5")).build());
+        coalescer.merge(MachineLevelsUpdate.builder().machineId(1L).waterLevel(80).build());
+        coalescer.merge(MachineLevelsUpdate.builder().machineId(1L).milkLevel(60).build());
+        coalescer.merge(MachineLevelsUpdate.builder().machineId(1L).beansLevel(40).build());
+        coalescer.merge(MachineStatusUpdate.builder().machineId(1L).status("ON").build());
+        List<MachineSnapshotUpdate> snapshots = coalescer.drain();
+
+        // Then
+        assertEquals(1, snapshots.size());
+        MachineSnapshotUpdate snapshot = snapshots.get(0);
+        assertEquals("ON", snapshot.getStatus());
+        assertEquals(new BigDecimal("91.5"), snapshot.getTemperature());
+        assertEquals(80, snapshot.getWaterLevel());
+        assertEquals(60, snapshot.getMilkLevel());
+        assertEquals(40, snapshot.getBeansLevel());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    @DisplayName("Should keep only the latest value of a metric within a window")
+    void merge_RepeatedMetric_KeepsLatest() {
+        // When
+        coalescer.merge(MachineLevelsUpdate.builder().machineId(1L).waterLevel(80).build());
+        coalescer.merge(MachineLevelsUpdate.builder().machineId(1L).waterLevel(78).build());
+
+        // Then
+        assertEquals(78, coalescer.drain().get(0).getWaterLevel());
+    }
+
+    @Test
+    @DisplayName("Should request an immediate flush on transition to ERROR")
+    void merge_ErrorStatus_RequestsImmediateFlush() {
+        // When
+        boolean levelsUrgent = coalescer.merge(MachineLevelsUpdate.builder().machineId(2L).waterLevel(50).build());
+        boolean errorUrgent = coalescer.merge(MachineStatusUpdate.builder().machineId(2L).status("ERROR").build());
+
+        // Then
+        assertFalse(levelsUrgent);
+        assertTrue(errorUrgent);
+        MachineSnapshotUpdate snapshot = coalescer.take(2L);
+        assertEquals("ERROR", snapshot.getStatus());
+        assertEquals(50, snapshot.getWaterLevel());
+        assertNull(coalescer.take(2L));
+    }
+
+    @Test
+    @DisplayName("Should flush every update when coalescing is disabled")
+    void merge_Disabled_AlwaysRequestsFlush() {
+        // Given
+        ReflectionTestUtils.setField(coalescer, "enabled", false);
+
+        // When & Then
+        assertTrue(coalescer.merge(MachineLevelsUpdate.builder().machineId(3L).milkLevel(10).build()));
+    }
+}
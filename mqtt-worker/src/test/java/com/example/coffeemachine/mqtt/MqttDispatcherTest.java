@@ -0,0 +1,127 @@
+package com.example.coffeemachine.mqtt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the MQTT dispatcher lanes.
+ */
+@ExtendWith(MockitoExtension.class)
+class MqttDispatcherTest {
+
+    @Mock
+    private MqttMessageHandler messageHandler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MqttDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new MqttDispatcher(messageHandler, meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "laneCount", 4);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should route messages to the handler for their metric type")
+    void dispatch_KnownMetric_InvokesHandler() {
+        // When
+        boolean accepted = dispatcher.dispatch("7", "waterLevel", bytes("{\"waterLevel\": 50}"));
+
+        // Then
+        assertTrue(accepted);
+        verify(messageHandler, timeout(1000)).handleWaterLevelUpdate(eq("7"), aryEq(bytes("{\"waterLevel\": 50}")));
+    }
+
+    @Test
+    @DisplayName("Should count and skip unknown metric types")
+    void dispatch_UnknownMetric_ReturnsFalse() {
+        // When
+        boolean accepted = dispatcher.dispatch("7", "pressure", bytes("1.2"));
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(1.0, meterRegistry.counter("mqtt.dispatch.unroutable").count());
+        verifyNoInteractions(messageHandler);
+    }
+
+    @Test
+    @DisplayName("Should keep messages for the same machine in order")
+    void dispatch_SameMachine_PreservesOrder() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 100);
+        dispatcher.shutdown();
+        dispatcher.start();
+        List<String> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+        doAnswer(invocation -> {
+            seen.add(new String((byte[]) invocation.getArgument(1), StandardCharsets.UTF_8));
+            done.countDown();
+            return null;
+        }).when(messageHandler).handleStatusUpdate(eq("42"), any(byte[].class));
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            dispatcher.dispatch("42", "status", bytes(String.valueOf(i)));
+        }
+
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(String.valueOf(i), seen.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject messages when a lane queue is full")
+    void dispatch_LaneFull_RecordsRejection() throws InterruptedException {
+        // Given - block the lane's worker thread so the single queue slot fills up
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(messageHandler).handleStatusUpdate(eq("1"), any(byte[].class));
+        dispatcher.dispatch("1", "status", bytes("ON"));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        dispatcher.dispatch("1", "status", bytes("OFF"));
+
+        // When
+        boolean accepted = dispatcher.dispatch("1", "status", bytes("ERROR"));
+        release.countDown();
+
+        // Then
+        assertFalse(accepted);
+        String lane = String.valueOf(dispatcher.laneFor("1"));
+        assertEquals(1.0, meterRegistry.get("mqtt.dispatch.rejected").tag("lane", lane).counter().count());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,37 +1,73 @@
 package com.example.coffeemachine.mqtt;
 
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests for MQTT Message Handler.
  * Note: These are basic tests that verify the methods can be called without throwing exceptions.
- * Full integration testing would require a more complex WebClient mocking setup.
+ * Outbound HTTP behaviour is covered by TelemetrySenderTest.
  */
 @ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
 class MqttMessageHandlerTest {
 
     @Mock
-    private WebClient webClient;
+    private TelemetrySender telemetrySender;
 
     private MqttMessageHandler messageHandler;
     private MqttPayloadParser payloadParser;
+    private MachineSnapshotCoalescer snapshotCoalescer;
+    private SequenceTracker sequenceTracker;
+    private TelemetryDeadband deadband;
 
     @BeforeEach
     void setUp() {
         payloadParser = new MqttPayloadParser();
-        messageHandler = new MqttMessageHandler(webClient, payloadParser);
+        snapshotCoalescer = new MachineSnapshotCoalescer();
+        ReflectionTestUtils.setField(snapshotCoalescer, "enabled", true);
+        sequenceTracker = new SequenceTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sequenceTracker, "enabled", true);
+        ReflectionTestUtils.setField(sequenceTracker, "reorderWindow", 1024);
+        ReflectionTestUtils.setField(sequenceTracker, "expectedMachines", 16);
+        sequenceTracker.start();
+        deadband = new TelemetryDeadband(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(deadband, "enabled", true);
+        ReflectionTestUtils.setField(deadband, "temperatureDeadband", 0.5);
+        ReflectionTestUtils.setField(deadband, "levelDeadband", 1);
+        ReflectionTestUtils.setField(deadband, "maxSilenceMs", 300_000L);
+        deadband.start();
+        messageHandler = new MqttMessageHandler(telemetrySender, payloadParser, snapshotCoalescer, sequenceTracker, deadband);
     }
 
     @Test
     void handleTemperatureUpdate_ValidPayload_DoesNotThrowException() {
         // Given
         String machineId = "123";
-        String payload = "{\"temperature\": 85.5}";
+        byte[] payload = "{\"temperature\": 85.5}".getBytes(StandardCharsets.UTF_8);
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleTemperatureUpdate(machineId, payload);
@@ -41,7 +77,7 @@ class MqttMessageHandlerTest {
     void handleWaterLevelUpdate_ValidPayload_DoesNotThrowException() {
         // Given
         String machineId = "123";
-        String payload = "{\"waterLevel\": 75}";
+        byte[] payload = "{\"waterLevel\": 75}".getBytes(StandardCharsets.UTF_8);
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleWaterLevelUpdate(machineId, payload);
@@ -51,7 +87,7 @@ class MqttMessageHandlerTest {
     void handleStatusUpdate_ValidPayload_DoesNotThrowException() {
         // Given
         String machineId = "123";
-        String payload = "{\"status\": \"ON\"}";
+        byte[] payload = "{\"status\": \"ON\"}".getBytes(StandardCharsets.UTF_8);
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleStatusUpdate(machineId, payload);
@@ -61,7 +97,7 @@ class MqttMessageHandlerTest {
     void handleUsageEvent_ValidPayload_DoesNotThrowException() {
         // Given
         String machineId = "123";
-        String payload = "{\"brewType\": \"ESPRESSO\", \"volumeMl\": 30, \"tempAtBrew\": 92.0}";
+        byte[] payload = "{\"brewType\": \"ESPRESSO\", \"volumeMl\": 30, \"tempAtBrew\": 92.0}".getBytes(StandardCharsets.UTF_8);
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleUsageEvent(machineId, payload);
@@ -71,7 +107,7 @@ class MqttMessageHandlerTest {
     void handleTemperatureUpdate_InvalidMachineId_DoesNotThrowException() {
         // Given
         String machineId = "invalid";
-        String payload = "{\"temperature\": 85.5}";
+        byte[] payload = "{\"temperature\": 85.5}".getBytes(StandardCharsets.UTF_8);
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleTemperatureUpdate(machineId, payload);
@@ -81,9 +117,202 @@ class MqttMessageHandlerTest {
     void handleTemperatureUpdate_NullPayload_DoesNotThrowException() {
         // Given
         String machineId = "123";
-        String payload = null;
+        byte[] payload = null;
 
         // When & Then - verify no exceptions are thrown
         messageHandler.handleTemperatureUpdate(machineId, payload);
     }
-}
\ No newline at end of file
+
+    @Test
+    void handleLevelAndStatusUpdates_SameMachine_CoalescedIntoOneSnapshot() {
+        // Given
+        String machineId = "123";
+
+        // When
+        messageHandler.handleTemperatureUpdate(machineId, "{\"temperature\": 91.0}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleWaterLevelUpdate(machineId, "{\"waterLevel\": 60}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleMilkLevelUpdate(machineId, "{\"milkLevel\": 40}".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertEquals(1, snapshotCoalescer.size());
+    }
+
+    @Test
+    void flushSnapshots_BufferedReadingsAndUsage_SentAsSingleBatch() {
+        // When
+        messageHandler.handleTemperatureUpdate("1", "{\"temperature\": 90.0}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleBeansLevelUpdate("1", "{\"beansLevel\": 30}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleWaterLevelUpdate("2", "{\"waterLevel\": 70}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleUsageEvent("1", "{\"brewType\": \"LATTE\", \"volumeMl\": 200}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        assertEquals(3, records.getValue().size());
+        assertEquals(0, snapshotCoalescer.size());
+    }
+
+    @Test
+    void handleTelemetry_BinaryFrame_MergedIntoOneSnapshot() {
+        // Given
+        byte[] frame = TelemetryFrame.encode(7, System.currentTimeMillis(), 91.5, 60, 40, 30, "ON");
+
+        // When
+        messageHandler.handleTelemetry("5", frame);
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        TelemetryRecord snapshot = records.getValue().get(0);
+        assertEquals(1, records.getValue().size());
+        assertEquals(5L, snapshot.getMachineId());
+        assertEquals("ON", snapshot.getStatus());
+        assertEquals(0, new BigDecimal("91.5").compareTo(snapshot.getTemperature()));
+        assertEquals(60, snapshot.getWaterLevel());
+        assertEquals(40, snapshot.getMilkLevel());
+        assertEquals(30, snapshot.getBeansLevel());
+    }
+
+    @Test
+    void handleUsageEvent_Redelivered_SubmittedOnceWithStableKey() {
+        // Given
+        byte[] usage = "{\"brewType\": \"LATTE\", \"volumeMl\": 200, \"seq\": 12, \"boot\": \"k3x9\"}".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        messageHandler.handleUsageEvent("4", usage);
+        messageHandler.handleUsageEvent("4", usage);
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        assertEquals(1, records.getValue().size());
+        assertEquals("4-k3x9-12", records.getValue().get(0).getIdempotencyKey());
+    }
+
+    @Test
+    void handleUsageEvent_DeviceRestarted_NewKeys() {
+        // Given
+        messageHandler.handleUsageEvent("5", "{\"brewType\": \"LATTE\", \"seq\": 1, \"boot\": \"a1\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleUsageEvent("5", "{\"brewType\": \"LATTE\", \"seq\": 2, \"boot\": \"a1\"}".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        messageHandler.handleUsageEvent("5", "{\"brewType\": \"MOCHA\", \"seq\": 1, \"boot\": \"b7\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleUsageEvent("5", "{\"brewType\": \"MOCHA\", \"seq\": 2}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        List<String> keys = records.getValue().stream().map(TelemetryRecord::getIdempotencyKey).toList();
+        assertEquals(List.of("5-a1-1", "5-a1-2", "5-b7-1"), keys.subList(0, 3));
+        assertEquals(4, Set.copyOf(keys).size());
+    }
+
+    @Test
+    void handleTelemetry_StaleFrame_Dropped() {
+        // Given
+        long now = System.currentTimeMillis();
+
+        // When
+        messageHandler.handleTelemetry("6", TelemetryFrame.encode(10, now, 90.0, 50, 50, 50, "ON"));
+        messageHandler.handleTelemetry("6", TelemetryFrame.encode(9, now - 1000, 20.0, 90, 90, 90, "OFF"));
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        assertEquals("ON", records.getValue().get(0).getStatus());
+        assertEquals(50, records.getValue().get(0).getWaterLevel());
+    }
+
+    @Test
+    void handleStatusUpdate_DeviceRestartedMidStream_NewReadingsAccepted() {
+        // Given
+        messageHandler.handleStatusUpdate("9", "{\"status\": \"ON\", \"seq\": 500, \"boot\": \"a1\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.flushSnapshots();
+
+        // When
+        messageHandler.handleStatusUpdate("9", "{\"status\": \"ERROR\", \"seq\": 1, \"boot\": \"b2\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleStatusUpdate("9", "{\"status\": \"OFF\", \"seq\": 2, \"boot\": \"b2\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.handleStatusUpdate("9", "{\"status\": \"ON\", \"seq\": 501, \"boot\": \"a1\"}".getBytes(StandardCharsets.UTF_8));
+        messageHandler.flushSnapshots();
+
+        // Then - a redelivery from before the restart starts no new boot of its own
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender, times(3)).submit(records.capture());
+        List<String> statuses = records.getAllValues().stream()
+            .flatMap(List::stream)
+            .map(TelemetryRecord::getStatus)
+            .toList();
+        assertEquals(List.of("ON", "ERROR", "OFF"), statuses);
+    }
+
+    @Test
+    void handleTelemetry_DeviceRestartedMidStream_LaterFramesAccepted() {
+        // Given
+        long now = System.currentTimeMillis();
+        messageHandler.handleTelemetry("6", TelemetryFrame.encode(900, now - 2000, 90.0, 50, 50, 50, "ON"));
+
+        // When
+        messageHandler.handleTelemetry("6", TelemetryFrame.encode(1, now, 20.0, 90, 90, 90, "OFF"));
+        messageHandler.handleTelemetry("6", TelemetryFrame.encode(1, now, 20.0, 90, 90, 90, "OFF"));
+        messageHandler.flushSnapshots();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).submit(records.capture());
+        assertEquals(1, records.getValue().size());
+        assertEquals("OFF", records.getValue().get(0).getStatus());
+        assertEquals(90, records.getValue().get(0).getWaterLevel());
+    }
+
+    @Test
+    void handleStatusUpdate_ErrorDuringScheduledFlush_QueuedAfterDrainedSnapshot() throws Exception {
+        // Given - the scheduled flush has drained an ON snapshot and is inside submit
+        List<String> queued = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch drained = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            List<TelemetryRecord> records = invocation.getArgument(0);
+            if ("ON".equals(records.get(0).getStatus())) {
+                drained.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            records.forEach(record -> queued.add(record.getStatus()));
+            return null;
+        }).when(telemetrySender).submit(anyList());
+        messageHandler.handleStatusUpdate("9", "{\"status\": \"ON\"}".getBytes(StandardCharsets.UTF_8));
+        Thread scheduler = new Thread(messageHandler::flushSnapshots);
+        scheduler.start();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+
+        // When - an ERROR arrives on the dispatch lane and is flushed immediately
+        Thread lane = new Thread(() -> messageHandler.handleStatusUpdate("9",
+            "{\"status\": \"ERROR\"}".getBytes(StandardCharsets.UTF_8)));
+        lane.start();
+        Thread.sleep(200);
+        release.countDown();
+        scheduler.join(5000);
+        lane.join(5000);
+
+        // Then
+        assertEquals(List.of("ON", "ERROR"), queued);
+    }
+
+    @Test
+    void flushSnapshots_UnchangedReadings_NotResent() {
+        // Given
+        messageHandler.handleTelemetry("8", TelemetryFrame.encode(1, System.currentTimeMillis(), 92.0, 70, 50, 40, "ON"));
+        messageHandler.flushSnapshots();
+
+        // When
+        messageHandler.handleTelemetry("8", TelemetryFrame.encode(2, System.currentTimeMillis(), 92.2, 70, 50, 40, "ON"));
+        messageHandler.flushSnapshots();
+
+        // Then
+        verify(telemetrySender, times(1)).submit(anyList());
+    }
+}
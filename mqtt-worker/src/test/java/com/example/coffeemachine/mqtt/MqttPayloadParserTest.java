@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -103,4 +104,105 @@ class MqttPayloadParserTest {
         // Then
         assertNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should decode JSON and plain-text payloads into a reused reading")
+    void decode_BytePayloads_ReusesReading() {
+        // Given
+        TelemetryReading reading = new TelemetryReading();
+
+        // When / Then
+        assertTrue(parser.decodeLevel(bytes("{\"beansLevel\": 10, \"level\": 130}"), reading));
+        assertEquals(100, reading.getLevel());
+        assertTrue(parser.decodeStatus(bytes("  off\n"), reading));
+        assertSame("OFF", reading.getStatus());
+        assertTrue(parser.decodeUsage(bytes("LATTE:250:88.5"), reading));
+        assertEquals("LATTE", reading.getBrewType());
+        assertEquals(250, reading.getVolumeMl());
+        assertEquals(88.5, reading.getTempAtBrew());
+        assertTrue(parser.decodeUsage(bytes("{\"brewType\": \"ESPRESSO\"}"), reading));
+        assertEquals(0, reading.getVolumeMl());
+        assertFalse(reading.hasTempAtBrew());
+    }
+
+    @Test
+    @DisplayName("Should reject non-finite temperatures")
+    void decodeTemperature_NonFinite_ReturnsFalse() {
+        assertFalse(parser.decodeTemperature(bytes("NaN"), new TelemetryReading()));
+        assertFalse(parser.decodeTemperature(bytes("{\"temperature\": \"Infinity\"}"), new TelemetryReading()));
+    }
+
+    @Test
+    @DisplayName("Should expose an optional sequence number from JSON payloads")
+    void decode_SequenceField_Exposed() {
+        // Given
+        TelemetryReading reading = new TelemetryReading();
+
+        // When / Then
+        assertTrue(parser.decodeTemperature(bytes("{\"temperature\": 90.5, \"seq\": 41}"), reading));
+        assertEquals(90.5, reading.getTemperature());
+        assertTrue(reading.hasSequence());
+        assertEquals(41, reading.getSequence());
+        assertTrue(parser.decodeStatus(bytes("{\"seq\": 42, \"status\": \"ON\", \"boot\": \"lq2k9x\"}"), reading));
+        assertEquals(42, reading.getSequence());
+        assertEquals("lq2k9x", reading.getBootId());
+        assertTrue(parser.decodeLevel(bytes("{\"seq\": \"x\", \"milkLevel\": 30}"), reading));
+        assertFalse(reading.hasSequence());
+        assertTrue(parser.decodeUsage(bytes("{\"brewType\": \"LATTE\", \"seq\": 7}"), reading));
+        assertEquals(7, reading.getSequence());
+        assertNull(reading.getBootId());
+        assertTrue(parser.decodeUsage(bytes("{\"boot\": \"lq2k9x\", \"seq\": 8}"), reading));
+        assertEquals("lq2k9x", reading.getBootId());
+        assertTrue(parser.decodeUsage(bytes("{\"boot\": \"" + "x".repeat(25) + "\", \"seq\": 9}"), reading));
+        assertNull(reading.getBootId());
+        assertFalse(parser.decodeTemperature(bytes("{\"seq\": 43}"), reading));
+    }
+
+    @Test
+    @DisplayName("Should decode a binary telemetry frame")
+    void decodeTelemetry_EncodedFrame_RoundTrips() {
+        // Given
+        byte[] frame = TelemetryFrame.encode(0xFFFFFFFEL, 1_700_000_000_123L, 92.34, 61, 40, 7, "ERROR");
+
+        // When
+        TelemetryReading reading = new TelemetryReading();
+        boolean decoded = parser.decodeTelemetry(frame, reading);
+
+        // Then
+        assertTrue(decoded);
+        assertEquals(TelemetryFrame.LENGTH, frame.length);
+        assertEquals(92.3, reading.getTemperature());
+        assertEquals(61, reading.getWaterLevel());
+        assertEquals(40, reading.getMilkLevel());
+        assertEquals(7, reading.getBeansLevel());
+        assertSame("ERROR", reading.getStatus());
+        assertEquals(0xFFFFFFFEL, reading.getSequence());
+        assertEquals(1_700_000_000_123L, reading.getTimestampMillis());
+    }
+
+    @Test
+    @DisplayName("Should leave absent frame fields unset and reject unknown versions")
+    void decodeTelemetry_PartialOrUnknownFrame() {
+        // Given
+        TelemetryReading reading = new TelemetryReading();
+        byte[] partial = TelemetryFrame.encode(1, 0, Double.NaN, 55, -1, -1, null);
+
+        // When / Then
+        assertTrue(parser.decodeTelemetry(partial, reading));
+        assertTrue(Double.isNaN(reading.getTemperature()));
+        assertNull(reading.getStatus());
+        assertEquals(55, reading.getWaterLevel());
+        assertEquals(-1, reading.getMilkLevel());
+        assertEquals(-1, reading.getBeansLevel());
+
+        byte[] future = partial.clone();
+        future[0] = 2;
+        assertFalse(parser.decodeTelemetry(future, reading));
+        assertFalse(parser.decodeTelemetry(new byte[] {TelemetryFrame.VERSION, 0, 0}, reading));
+        assertFalse(parser.decodeTelemetry(bytes("{\"temperature\": 90}"), reading));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.coffeemachine.mqtt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming payload decoder against the previous Map-based parser.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PayloadParserBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadParserBenchmark {
+
+    private static final byte[] TEMPERATURE = bytes("{\"temperature\": 92.5, \"unit\": \"C\"}");
+    private static final byte[] LEVEL = bytes("{\"waterLevel\": 64}");
+    private static final byte[] STATUS = bytes("{\"status\": \"on\"}");
+    private static final byte[] USAGE = bytes("{\"brewType\": \"ESPRESSO\", \"volumeMl\": 30, \"tempAtBrew\": 92.0}");
+
+    private final MqttPayloadParser parser = new MqttPayloadParser();
+    private final TelemetryReading reading = new TelemetryReading();
+    private final MapPayloadParser mapParser = new MapPayloadParser();
+
+    @Benchmark
+    public void streamingDecode(Blackhole bh) {
+        parser.decodeTemperature(TEMPERATURE, reading);
+        bh.consume(reading.temperature);
+        parser.decodeLevel(LEVEL, reading);
+        bh.consume(reading.level);
+        parser.decodeStatus(STATUS, reading);
+        bh.consume(reading.status);
+        parser.decodeUsage(USAGE, reading);
+        bh.consume(reading.volumeMl);
+    }
+
+    @Benchmark
+    public void mapDecode(Blackhole bh) {
+        bh.consume(mapParser.parseTemperature(new String(TEMPERATURE, StandardCharsets.UTF_8)));
+        bh.consume(mapParser.parseLevel(new String(LEVEL, StandardCharsets.UTF_8)));
+        bh.consume(mapParser.parseStatus(new String(STATUS, StandardCharsets.UTF_8)));
+        bh.consume(mapParser.parseUsageVolume(new String(USAGE, StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The JSON path of the parser before streaming decode, kept as the baseline.
+     */
+    @SuppressWarnings("unchecked")
+    static class MapPayloadParser {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        BigDecimal parseTemperature(String payload) {
+            try {
+                Map<String, Object> json = objectMapper.readValue(payload.trim(), Map.class);
+                return new BigDecimal(json.get("temperature").toString());
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        Integer parseLevel(String payload) {
+            try {
+                Map<String, Object> json = objectMapper.readValue(payload.trim(), Map.class);
+                Object levelValue = json.get("level");
+                if (levelValue == null) {
+                    levelValue = json.get("waterLevel");
+                }
+                return Math.max(0, Math.min(100, Integer.parseInt(levelValue.toString())));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        String parseStatus(String payload) {
+            try {
+                Map<String, Object> json = objectMapper.readValue(payload.trim(), Map.class);
+                return json.get("status").toString().toUpperCase();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        Integer parseUsageVolume(String payload) {
+            try {
+                Map<String, Object> json = objectMapper.readValue(payload.trim(), Map.class);
+                Object tempAtBrew = json.get("tempAtBrew");
+                if (tempAtBrew != null) {
+                    new BigDecimal(tempAtBrew.toString());
+                }
+                return Integer.parseInt(json.get("volumeMl").toString());
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
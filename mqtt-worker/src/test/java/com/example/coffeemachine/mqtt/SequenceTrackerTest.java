@@ -0,0 +1,94 @@
+package com.example.coffeemachine.mqtt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the per-machine sequence tracker and its primitive map.
+ */
+class SequenceTrackerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SequenceTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new SequenceTracker(meterRegistry);
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "reorderWindow", 100);
+        ReflectionTestUtils.setField(tracker, "expectedMachines", 4);
+        tracker.start();
+    }
+
+    @Test
+    @DisplayName("Should drop duplicates and stale readings per machine and stream")
+    void accept_DuplicateAndStale_Dropped() {
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 1, 5));
+        assertFalse(tracker.accept(SequenceTracker.Stream.TELEMETRY, 1, 5));
+        assertFalse(tracker.accept(SequenceTracker.Stream.TELEMETRY, 1, 4));
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 1, 7));
+
+        // Other machines and other topics of the same machine are tracked independently
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 2, 5));
+        assertTrue(tracker.accept(SequenceTracker.Stream.USAGE, 1, 1));
+
+        assertEquals(1.0, meterRegistry.get("mqtt.dedup.dropped").tag("reason", "duplicate").counter().count());
+        assertEquals(1.0, meterRegistry.get("mqtt.dedup.dropped").tag("reason", "stale").counter().count());
+        assertEquals(3, tracker.trackedStreams());
+    }
+
+    @Test
+    @DisplayName("Should accept wrapped counters and device restarts")
+    void accept_WrapAndRestart_Accepted() {
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 3, 0xFFFFFFFFL));
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 3, 0));
+        assertFalse(tracker.accept(SequenceTracker.Stream.TELEMETRY, 3, 0xFFFFFFFFL));
+
+        assertTrue(tracker.accept(SequenceTracker.Stream.STATUS, 3, 5000));
+        assertTrue(tracker.accept(SequenceTracker.Stream.STATUS, 3, 1));
+    }
+
+    @Test
+    @DisplayName("Should accept a reading known to be newer as a restart")
+    void accept_NewerReadingBehind_Accepted() {
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 4, 50));
+        assertFalse(tracker.accept(SequenceTracker.Stream.TELEMETRY, 4, 1, false));
+
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 4, 1, true));
+        assertTrue(tracker.accept(SequenceTracker.Stream.TELEMETRY, 4, 2));
+        assertFalse(tracker.accept(SequenceTracker.Stream.TELEMETRY, 4, 2));
+    }
+
+    @Test
+    @DisplayName("Should accept everything when disabled")
+    void accept_Disabled_AlwaysTrue() {
+        ReflectionTestUtils.setField(tracker, "enabled", false);
+
+        assertTrue(tracker.accept(SequenceTracker.Stream.TEMPERATURE, 1, 1));
+        assertTrue(tracker.accept(SequenceTracker.Stream.TEMPERATURE, 1, 1));
+    }
+
+    @Test
+    @DisplayName("Should keep every entry when the map grows")
+    void longLongHashMap_Grows_KeepsEntries() {
+        LongLongHashMap map = new LongLongHashMap(2);
+        for (long key = -500; key < 5000; key++) {
+            map.put(key, key * 3);
+        }
+        map.put(42, -1);
+
+        assertEquals(5500, map.size());
+        assertEquals(-1, map.get(42, 0));
+        assertEquals(-1500, map.get(-500, 0));
+        assertEquals(14997, map.get(4999, 0));
+        assertEquals(7, map.get(5000, 7));
+    }
+}
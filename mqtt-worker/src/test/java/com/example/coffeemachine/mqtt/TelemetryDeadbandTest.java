@@ -0,0 +1,125 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.MachineSnapshotUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-machine deadband filter.
+ */
+class TelemetryDeadbandTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TelemetryDeadband deadband;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deadband = new TelemetryDeadband(meterRegistry);
+        ReflectionTestUtils.setField(deadband, "enabled", true);
+        ReflectionTestUtils.setField(deadband, "temperatureDeadband", 0.5);
+        ReflectionTestUtils.setField(deadband, "levelDeadband", 2);
+        ReflectionTestUtils.setField(deadband, "maxSilenceMs", 300_000L);
+        deadband.start();
+    }
+
+    @Test
+    @DisplayName("Should drop readings inside the deadband and keep the ones that moved")
+    void filter_SmallChanges_Suppressed() {
+        // Given
+        assertNotNull(deadband.filter(snapshot("ON", "92.0", 80)));
+
+        // When
+        MachineSnapshotUpdate quiet = deadband.filter(snapshot("ON", "92.3", 79));
+        MachineSnapshotUpdate moved = deadband.filter(snapshot("ON", "92.6", 78));
+
+        // Then
+        assertNull(quiet);
+        assertNotNull(moved);
+        assertNull(moved.getStatus());
+        assertEquals(new BigDecimal("92.6"), moved.getTemperature());
+        assertEquals(78, moved.getWaterLevel());
+        assertEquals(1.0, meterRegistry.get("mqtt.deadband.snapshots").tag("outcome", "suppressed").counter().count());
+        assertEquals(2.0, meterRegistry.get("mqtt.deadband.suppressed").tag("metric", "status").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should measure drift against the last forwarded value")
+    void filter_SlowDrift_EventuallyForwarded() {
+        // Given
+        deadband.filter(snapshot(null, "90.0", null));
+
+        // When / Then
+        assertNull(deadband.filter(snapshot(null, "90.3", null)));
+        assertNull(deadband.filter(snapshot(null, "90.4", null)));
+        assertNotNull(deadband.filter(snapshot(null, "90.5", null)));
+    }
+
+    @Test
+    @DisplayName("Should always forward status changes")
+    void filter_StatusChange_Forwarded() {
+        // Given
+        deadband.filter(snapshot("ON", "92.0", 80));
+
+        // When
+        MachineSnapshotUpdate error = deadband.filter(snapshot("ERROR", "92.0", 80));
+
+        // Then
+        assertNotNull(error);
+        assertEquals("ERROR", error.getStatus());
+        assertNull(error.getTemperature());
+        assertNull(error.getWaterLevel());
+    }
+
+    @Test
+    @DisplayName("Should forward a full snapshot once max silence has passed")
+    void filter_MaxSilence_Heartbeat() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(deadband, "maxSilenceMs", 5L);
+        deadband.filter(snapshot("ON", "92.0", 80));
+        Thread.sleep(10);
+
+        // When
+        MachineSnapshotUpdate heartbeat = deadband.filter(snapshot("ON", "92.0", 80));
+
+        // Then
+        assertNotNull(heartbeat);
+        assertEquals("ON", heartbeat.getStatus());
+        assertEquals(80, heartbeat.getWaterLevel());
+        assertEquals(1.0, meterRegistry.get("mqtt.deadband.snapshots").tag("outcome", "heartbeat").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should forward a full snapshot after a dropped one is forgotten")
+    void forget_DroppedSnapshot_NextForwardedInFull() {
+        // Given - the second snapshot passes the filter but never reaches the backend
+        deadband.filter(snapshot("ON", "92.0", 80));
+        deadband.filter(snapshot("ERROR", "95.0", 70));
+
+        // When
+        deadband.forget(1L);
+        MachineSnapshotUpdate next = deadband.filter(snapshot("ERROR", "95.1", 70));
+
+        // Then
+        assertNotNull(next);
+        assertEquals("ERROR", next.getStatus());
+        assertEquals(new BigDecimal("95.1"), next.getTemperature());
+        assertEquals(70, next.getWaterLevel());
+    }
+
+    private static MachineSnapshotUpdate snapshot(String status, String temperature, Integer waterLevel) {
+        return MachineSnapshotUpdate.builder()
+            .machineId(1L)
+            .status(status)
+            .temperature(temperature != null ? new BigDecimal(temperature) : null)
+            .waterLevel(waterLevel)
+            .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.coffeemachine.mqtt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one simulator tick published as five per-metric JSON documents against a
+ * single {@link TelemetryFrame}. Decode cost is the benchmark score; bytes per reading
+ * are printed once per trial. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TelemetryFormatBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryFormatBenchmark {
+
+    // Same shape as the simulator's JSON payloads, including unit and timestamp strings
+    private static final byte[] TEMPERATURE = bytes("{\"unit\":\"Celsius\",\"temperature\":92.4,\"timestamp\":\"2024-05-01T10:15:30.123456789\"}");
+    private static final byte[] WATER = bytes("{\"unit\":\"percent\",\"waterLevel\":64,\"timestamp\":\"2024-05-01T10:15:30.123456789\"}");
+    private static final byte[] MILK = bytes("{\"unit\":\"percent\",\"milkLevel\":48,\"timestamp\":\"2024-05-01T10:15:30.123456789\"}");
+    private static final byte[] BEANS = bytes("{\"unit\":\"percent\",\"beansLevel\":71,\"timestamp\":\"2024-05-01T10:15:30.123456789\"}");
+    private static final byte[] STATUS = bytes("{\"status\":\"ON\",\"timestamp\":\"2024-05-01T10:15:30.123456789\"}");
+
+    private static final byte[] FRAME = TelemetryFrame.encode(42, 1_714_558_530_123L, 92.4, 64, 48, 71, "ON");
+
+    private final MqttPayloadParser parser = new MqttPayloadParser();
+    private final TelemetryReading reading = new TelemetryReading();
+
+    @Setup(Level.Trial)
+    public void reportSizes() {
+        int json = TEMPERATURE.length + WATER.length + MILK.length + BEANS.length + STATUS.length;
+        System.out.printf("Bytes per reading: json=%d over 5 messages, binary=%d over 1 message%n",
+            json, FRAME.length);
+    }
+
+    @Benchmark
+    public void jsonDecode(Blackhole bh) {
+        parser.decodeTemperature(TEMPERATURE, reading);
+        bh.consume(reading.temperature);
+        parser.decodeLevel(WATER, reading);
+        bh.consume(reading.level);
+        parser.decodeLevel(MILK, reading);
+        bh.consume(reading.level);
+        parser.decodeLevel(BEANS, reading);
+        bh.consume(reading.level);
+        parser.decodeStatus(STATUS, reading);
+        bh.consume(reading.status);
+    }
+
+    @Benchmark
+    public void binaryDecode(Blackhole bh) {
+        parser.decodeTelemetry(FRAME, reading);
+        bh.consume(reading.temperature);
+        bh.consume(reading.waterLevel);
+        bh.consume(reading.milkLevel);
+        bh.consume(reading.beansLevel);
+        bh.consume(reading.status);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
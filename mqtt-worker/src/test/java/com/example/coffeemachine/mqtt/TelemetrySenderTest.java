@@ -0,0 +1,248 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the backpressured telemetry sender.
+ */
+@SuppressWarnings("unchecked")
+class TelemetrySenderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectProvider<TelemetrySpillover> spilloverProvider = mock(ObjectProvider.class);
+    private final TelemetryDeadband deadband = mock(TelemetryDeadband.class);
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+    private TelemetrySender sender;
+
+    @AfterEach
+    void tearDown() {
+        sender.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should post buffered records in batches of at most max-records")
+    void submit_MoreRecordsThanBatchSize_PostsSeveralBatches() {
+        // Given
+        sender = startSender(request -> ok(), TelemetrySender.OverflowPolicy.DROP_OLDEST, 10);
+        ReflectionTestUtils.setField(sender, "maxBatchRecords", 2);
+
+        // When
+        sender.submit(List.of(snapshot(1L), snapshot(2L), snapshot(3L)));
+
+        // Then
+        assertEquals(2, requests.size());
+        assertEquals(HttpMethod.POST, requests.get(0).method());
+        assertEquals("http://backend/api/machine/telemetry/batch", requests.get(0).url().toString());
+        assertEquals(3.0, meterRegistry.counter("mqtt.sender.sent").count());
+    }
+
+    @Test
+    @DisplayName("Should merge into a machine's queued snapshot when the buffer is full")
+    void submit_BufferFullDropOldest_MergesSameMachineSnapshot() {
+        // Given - the backend never answers, so one batch stays in flight
+        sender = startSender(request -> Mono.never(), TelemetrySender.OverflowPolicy.DROP_OLDEST, 2);
+        sender.submit(List.of(snapshot(1L)));
+        TelemetryRecord older = snapshot(2L);
+        older.setWaterLevel(10);
+        older.setMilkLevel(15);
+        sender.submit(List.of(older, snapshot(3L)));
+
+        // When
+        TelemetryRecord newer = snapshot(2L);
+        newer.setMilkLevel(20);
+        sender.submit(List.of(newer));
+
+        // Then - machine 2 keeps one snapshot with the newer values over the older ones
+        assertEquals(2, sender.bufferedRecords());
+        assertEquals(10, older.getWaterLevel());
+        assertEquals(20, older.getMilkLevel());
+        assertEquals(0.0, meterRegistry.get("mqtt.sender.dropped").tag("reason", "overflow").counter().count());
+        assertEquals(1.0, meterRegistry.get("mqtt.sender.inflight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should spill a usage event instead of evicting queued records when the buffer is full")
+    void submit_BufferFullDropOldestUsage_SpillsUsage() {
+        // Given
+        TelemetrySpillover spillover = mock(TelemetrySpillover.class);
+        when(spillover.spill(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        when(spilloverProvider.getIfAvailable()).thenReturn(spillover);
+        sender = startSender(request -> Mono.never(), TelemetrySender.OverflowPolicy.DROP_OLDEST, 2);
+        sender.submit(List.of(snapshot(1L)));
+        sender.submit(List.of(snapshot(2L), snapshot(3L)));
+
+        // When
+        TelemetryRecord usage = TelemetryRecord.builder().type("USAGE").machineId(4L).build();
+        sender.submit(List.of(usage));
+
+        // Then
+        verify(spillover).spill(List.of(usage));
+        assertEquals(2, sender.bufferedRecords());
+        assertEquals(0.0, meterRegistry.get("mqtt.sender.dropped").tag("reason", "overflow").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should hand overflowing records to the spillover")
+    void submit_BufferFullSpill_SpillsOverflow() {
+        // Given
+        TelemetrySpillover spillover = mock(TelemetrySpillover.class);
+        when(spillover.spill(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        when(spilloverProvider.getIfAvailable()).thenReturn(spillover);
+        sender = startSender(request -> Mono.never(), TelemetrySender.OverflowPolicy.SPILL, 1);
+        sender.submit(List.of(snapshot(1L)));
+
+        // When
+        sender.submit(List.of(snapshot(2L), snapshot(3L), snapshot(4L)));
+
+        // Then
+        verify(spillover).spill(argThat(records -> records.size() == 2));
+        assertEquals(2.0, meterRegistry.counter("mqtt.sender.spilled").count());
+    }
+
+    @Test
+    @DisplayName("Should count only the records the spillover could not take as dropped")
+    void submit_SpilloverFillsPartWay_DropsRest() {
+        // Given
+        TelemetrySpillover spillover = mock(TelemetrySpillover.class);
+        when(spillover.spill(anyList())).thenReturn(1);
+        when(spilloverProvider.getIfAvailable()).thenReturn(spillover);
+        sender = startSender(request -> Mono.never(), TelemetrySender.OverflowPolicy.SPILL, 1);
+        sender.submit(List.of(snapshot(1L)));
+
+        // When
+        sender.submit(List.of(snapshot(2L), snapshot(3L), snapshot(4L)));
+
+        // Then
+        assertEquals(1.0, meterRegistry.counter("mqtt.sender.spilled").count());
+        assertEquals(1.0, meterRegistry.get("mqtt.sender.dropped").tag("reason", "overflow").counter().count());
+        verify(deadband, never()).forget(3L);
+        verify(deadband).forget(4L);
+    }
+
+    @Test
+    @DisplayName("Should make the deadband forget machines whose snapshots failed to send")
+    void submit_BackendRejectsBatch_DeadbandForgetsMachines() {
+        // Given
+        sender = startSender(request -> Mono.just(ClientResponse.create(HttpStatus.BAD_REQUEST).build()),
+                TelemetrySender.OverflowPolicy.DROP_OLDEST, 10);
+
+        // When
+        sender.submit(List.of(snapshot(1L), snapshot(2L)));
+
+        // Then
+        verify(deadband, timeout(5000)).forget(1L);
+        verify(deadband, timeout(5000)).forget(2L);
+        assertEquals(2.0, meterRegistry.get("mqtt.sender.dropped").tag("reason", "failed").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should retry transient backend failures")
+    void submit_BackendUnavailable_RetriesWithBackoff() throws InterruptedException {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        sender = startSender(request -> {
+            if (attempts.getAndIncrement() == 0) {
+                return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+            }
+            delivered.countDown();
+            return ok();
+        }, TelemetrySender.OverflowPolicy.DROP_OLDEST, 10);
+
+        // When
+        sender.submit(List.of(snapshot(1L)));
+
+        // Then
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("mqtt.sender.retries").count());
+    }
+
+    @Test
+    @DisplayName("Should not post a machine's next batch while its previous one is in flight")
+    void submit_SlowFirstPost_SameMachineBatchesInOrder() {
+        // Given - the first request hangs until released, later ones answer at once
+        CompletableFuture<ClientResponse> firstResponse = new CompletableFuture<>();
+        sender = startSender(request -> requests.size() == 1 ? Mono.fromFuture(firstResponse) : ok(),
+            TelemetrySender.OverflowPolicy.DROP_OLDEST, 10, 4);
+        sender.submit(List.of(snapshot(1L)));
+
+        // When
+        sender.submit(List.of(snapshot(1L)));
+        sender.submit(List.of(snapshot(2L)));
+
+        // Then - machine 2 is posted alongside, machine 1's second batch waits
+        assertEquals(2, requests.size());
+        assertEquals(1, sender.bufferedRecords());
+
+        // When
+        firstResponse.complete(ok().block());
+
+        // Then
+        assertEquals(3, requests.size());
+        assertEquals(0, sender.bufferedRecords());
+        assertEquals(3.0, meterRegistry.counter("mqtt.sender.sent").count());
+    }
+
+    private TelemetrySender startSender(ExchangeFunction backend, TelemetrySender.OverflowPolicy policy, int capacity) {
+        return startSender(backend, policy, capacity, 1);
+    }
+
+    private TelemetrySender startSender(ExchangeFunction backend, TelemetrySender.OverflowPolicy policy, int capacity,
+                                        int concurrency) {
+        WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                requests.add(request);
+                return backend.exchange(request);
+            })
+            .build();
+        TelemetrySender telemetrySender = new TelemetrySender(webClient, meterRegistry, spilloverProvider, deadband);
+        ReflectionTestUtils.setField(telemetrySender, "backendApiBaseUrl", "http://backend");
+        ReflectionTestUtils.setField(telemetrySender, "maxBatchRecords", 1000);
+        ReflectionTestUtils.setField(telemetrySender, "bufferCapacity", capacity);
+        ReflectionTestUtils.setField(telemetrySender, "concurrency", concurrency);
+        ReflectionTestUtils.setField(telemetrySender, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(telemetrySender, "retryMaxAttempts", 3);
+        ReflectionTestUtils.setField(telemetrySender, "retryMinBackoffMs", 1L);
+        ReflectionTestUtils.setField(telemetrySender, "retryMaxBackoffMs", 10L);
+        ReflectionTestUtils.setField(telemetrySender, "retryJitter", 0.5);
+        ReflectionTestUtils.setField(telemetrySender, "shutdownTimeoutMs", 0L);
+        telemetrySender.start();
+        return telemetrySender;
+    }
+
+    private static Mono<ClientResponse> ok() {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+            .header("Content-Type", "application/json")
+            .body("{\"applied\": 1, \"rejected\": 0}")
+            .build());
+    }
+
+    private static TelemetryRecord snapshot(Long machineId) {
+        return TelemetryRecord.builder().type("SNAPSHOT").machineId(machineId).build();
+    }
+}
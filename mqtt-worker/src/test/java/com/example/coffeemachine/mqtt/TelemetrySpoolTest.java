@@ -0,0 +1,233 @@
+package com.example.coffeemachine.mqtt;
+
+import com.example.coffeemachine.mqtt.dto.TelemetryBatchResult;
+import com.example.coffeemachine.mqtt.dto.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the memory-mapped telemetry spool.
+ */
+@SuppressWarnings("unchecked")
+class TelemetrySpoolTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private final TelemetrySender telemetrySender = mock(TelemetrySender.class);
+    private final List<TelemetrySpool> spools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        spools.forEach(TelemetrySpool::shutdown);
+    }
+
+    @Test
+    @DisplayName("Should replay spooled records in write order")
+    void replay_SpooledRecords_SentInOrder() throws IOException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool spool = startSpool(1 << 16);
+        TelemetryRecord snapshot = snapshot(1L, 40);
+        snapshot.setTemperature(new BigDecimal("92.5"));
+        TelemetryRecord usage = usage(1L, 30);
+        usage.setIdempotencyKey("1-7");
+        assertEquals(3, spool.spill(List.of(snapshot, usage, snapshot(2L, 70))));
+
+        // When
+        spool.replay();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> sent = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).send(sent.capture());
+        assertEquals(List.of(snapshot, usage, snapshot(2L, 70)), sent.getValue());
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep records and back off when the backend is still down")
+    void replay_BackendDown_KeepsRecords() throws IOException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.error(new IllegalStateException("down")));
+        TelemetrySpool spool = startSpool(1 << 16);
+        spool.spill(List.of(usage(1L, 30)));
+
+        // When
+        spool.replay();
+        spool.replay();
+
+        // Then - the second tick falls inside the backoff window
+        verify(telemetrySender, times(1)).send(anyList());
+        assertFalse(spool.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should compact rolled segments to the latest snapshot per machine and all usage events")
+    void compact_RolledSegments_KeepsLatestSnapshotAndAllUsage() throws IOException {
+        // Given - tiny segments so every couple of records rolls a new one
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool spool = startSpool(64);
+        for (int level = 1; level <= 10; level++) {
+            spool.spill(List.of(snapshot(1L, level)));
+            spool.spill(List.of(usage(1L, level)));
+        }
+        assertTrue(spool.segmentCount() > 4);
+
+        // When
+        spool.replay();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> sent = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).send(sent.capture());
+        List<TelemetryRecord> replayed = sent.getValue();
+        assertEquals(10, replayed.stream().filter(r -> "USAGE".equals(r.getType())).count());
+        // One merged snapshot from the compacted segments, plus the one still in the active segment
+        List<Integer> snapshotLevels = replayed.stream()
+            .filter(r -> "SNAPSHOT".equals(r.getType()))
+            .map(TelemetryRecord::getWaterLevel)
+            .toList();
+        assertEquals(List.of(9, 10), snapshotLevels);
+    }
+
+    @Test
+    @DisplayName("Should resume from the checkpoint after a restart")
+    void start_ExistingSpool_ResumesReplay() throws IOException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool first = startSpool(1 << 16);
+        first.spill(List.of(usage(1L, 30)));
+        first.replay();
+        first.spill(List.of(usage(2L, 40)));
+        first.shutdown();
+
+        // When
+        TelemetrySpool second = startSpool(1 << 16);
+        second.replay();
+
+        // Then
+        ArgumentCaptor<List<TelemetryRecord>> sent = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender, times(2)).send(sent.capture());
+        assertEquals(List.of(usage(2L, 40)), sent.getAllValues().get(1));
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should skip spooled snapshots superseded by a live delivery")
+    void replay_NewerLiveSnapshot_SkipsSpooledSnapshot() throws IOException, InterruptedException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool spool = startSpool(1 << 16);
+        spool.spill(List.of(snapshot(1L, 40), usage(1L, 30)));
+        Thread.sleep(5);
+        spool.delivered(List.of(snapshot(1L, 35)));
+
+        // When
+        spool.replay();
+
+        // Then
+        verify(telemetrySender).send(List.of(usage(1L, 30)));
+    }
+
+    @Test
+    @DisplayName("Should replay the spooled fields a partial live delivery did not cover")
+    void replay_PartialLiveSnapshot_ReplaysRemainingFields() throws IOException, InterruptedException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool spool = startSpool(1 << 16);
+        TelemetryRecord spooled = snapshot(1L, 40);
+        spooled.setMilkLevel(60);
+        spool.spill(List.of(spooled));
+        Thread.sleep(5);
+        spool.delivered(List.of(snapshot(1L, 35)));
+
+        // When
+        spool.replay();
+
+        // Then
+        TelemetryRecord remaining = TelemetryRecord.builder().type("SNAPSHOT").machineId(1L).milkLevel(60).build();
+        verify(telemetrySender).send(List.of(remaining));
+    }
+
+    @Test
+    @DisplayName("Should keep each field's spool time through compaction, so live values delivered in between win")
+    void compact_LiveDeliveryBetweenSpills_StaleFieldNotReplayed() throws IOException, InterruptedException {
+        // Given
+        when(telemetrySender.send(anyList())).thenReturn(Mono.just(new TelemetryBatchResult()));
+        TelemetrySpool spool = startSpool(64);
+        TelemetryRecord first = snapshot(1L, 40);
+        first.setMilkLevel(60);
+        spool.spill(List.of(first));
+        Thread.sleep(5);
+        spool.delivered(List.of(snapshot(1L, 35)));
+        Thread.sleep(5);
+        spool.spill(List.of(TelemetryRecord.builder().type("SNAPSHOT").machineId(1L).milkLevel(55).build()));
+        for (int volume = 1; volume <= 8; volume++) {
+            spool.spill(List.of(usage(2L, volume)));
+        }
+        assertTrue(spool.segmentCount() > 4);
+
+        // When
+        spool.replay();
+
+        // Then - the spooled water level predates the live one; the newer milk level is kept
+        ArgumentCaptor<List<TelemetryRecord>> sent = ArgumentCaptor.forClass(List.class);
+        verify(telemetrySender).send(sent.capture());
+        List<TelemetryRecord> snapshots = sent.getValue().stream()
+            .filter(r -> "SNAPSHOT".equals(r.getType()))
+            .toList();
+        assertEquals(List.of(TelemetryRecord.builder().type("SNAPSHOT").machineId(1L).milkLevel(55).build()), snapshots);
+    }
+
+    @Test
+    @DisplayName("Should report how many records fit when the spool fills part-way")
+    void spill_SpoolFillsPartWay_ReturnsWrittenCount() throws IOException {
+        // Given - room for the active segment and one more
+        TelemetrySpool spool = startSpool(64);
+        ReflectionTestUtils.setField(spool, "maxBytes", 128L);
+
+        // When
+        int written = spool.spill(List.of(usage(1L, 1), usage(1L, 2), usage(1L, 3), usage(1L, 4), usage(1L, 5)));
+
+        // Then
+        assertTrue(written > 0 && written < 5);
+    }
+
+    private TelemetrySpool startSpool(int segmentBytes) throws IOException {
+        TelemetrySpool spool = new TelemetrySpool(telemetrySender, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spool, "directory", spoolDir.toString());
+        ReflectionTestUtils.setField(spool, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(spool, "maxBytes", 1L << 30);
+        ReflectionTestUtils.setField(spool, "compactThreshold", 4);
+        ReflectionTestUtils.setField(spool, "replayRate", 1000);
+        // A long interval keeps the background thread idle; tests drive replay() directly
+        ReflectionTestUtils.setField(spool, "replayIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(spool, "replayMaxBackoffMs", 120_000L);
+        spool.start();
+        spools.add(spool);
+        return spool;
+    }
+
+    private static TelemetryRecord snapshot(Long machineId, int waterLevel) {
+        return TelemetryRecord.builder().type("SNAPSHOT").machineId(machineId).waterLevel(waterLevel).build();
+    }
+
+    private static TelemetryRecord usage(Long machineId, int volumeMl) {
+        return TelemetryRecord.builder().type("USAGE").machineId(machineId).brewType("ESPRESSO").volumeMl(volumeMl).build();
+    }
+}
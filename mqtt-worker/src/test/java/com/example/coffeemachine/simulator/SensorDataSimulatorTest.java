@@ -1,9 +1,14 @@
 package com.example.coffeemachine.simulator;
 
+import com.example.coffeemachine.mqtt.MqttPayloadParser;
+import com.example.coffeemachine.mqtt.TelemetryReading;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -11,6 +16,13 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for the Sensor Data Simulator.
@@ -191,4 +203,32 @@ class SensorDataSimulatorTest {
             assertTrue(status.equals("ON") || status.equals("OFF") || status.equals("ERROR"));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should publish one binary telemetry frame per machine in binary mode")
+    void shouldPublishBinaryTelemetryFrames() throws Exception {
+        // Given
+        MqttClient mqttClient = mock(MqttClient.class);
+        when(mqttClient.isConnected()).thenReturn(true);
+        ReflectionTestUtils.setField(simulator, "mqttClient", mqttClient);
+        ReflectionTestUtils.setField(simulator, "payloadFormat", "binary");
+        ReflectionTestUtils.setField(simulator, "usageProbability", 0.0);
+
+        // When
+        simulator.generateAndSendSensorData();
+        simulator.generateAndSendSensorData();
+
+        // Then
+        ArgumentCaptor<MqttMessage> messages = ArgumentCaptor.forClass(MqttMessage.class);
+        verify(mqttClient, times(2)).publish(eq("coffeeMachine/1/telemetry"), messages.capture());
+        verify(mqttClient, times(6)).publish(anyString(), any(MqttMessage.class));
+
+        MqttPayloadParser parser = new MqttPayloadParser();
+        TelemetryReading reading = new TelemetryReading();
+        assertTrue(parser.decodeTelemetry(messages.getAllValues().get(1).getPayload(), reading));
+        assertEquals(2, reading.getSequence());
+        assertTrue(reading.getWaterLevel() >= 0 && reading.getWaterLevel() <= 100);
+        assertNotNull(reading.getStatus());
+        assertEquals(6, simulator.getSimulationStats().get("totalMessagesSent"));
+    }
+}